@@ -0,0 +1,65 @@
+package com.example.snapeditprovs.database;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.snapeditprovs.models.MediaInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test of the stored probes; they live in the app's SQLite database
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaProbeDaoTest {
+
+    @Test
+    public void probe_isReturnedUntilTheFileChanges() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        MediaProbeDao dao = new MediaProbeDao(context);
+        String path = "/test/probe_" + System.nanoTime() + ".mp4";
+
+        MediaInfo info = new MediaInfo();
+        info.setPath(path);
+        info.setSize(1000);
+        info.setLastModified(2000);
+        info.setDuration(12.5);
+        info.setVideoCodec("h264");
+        info.setWidth(1920);
+        info.setHeight(1080);
+        info.setFrameRate(30);
+        info.setVideoProfile("High");
+        info.setVideoLevel(41);
+        info.setPixelFormat("yuv420p");
+        info.setRotation(90);
+        info.setAudioCodec("aac");
+        info.setAudioChannels(2);
+        dao.putMediaInfo(info);
+
+        MediaInfo stored = dao.getMediaInfo(path, 1000, 2000);
+        assertNotNull(stored);
+        assertEquals(12.5, stored.getDuration(), 1e-9);
+        assertEquals("h264", stored.getVideoCodec());
+        assertEquals(1920, stored.getWidth());
+        assertEquals("High", stored.getVideoProfile());
+        assertEquals(41, stored.getVideoLevel());
+        assertEquals("yuv420p", stored.getPixelFormat());
+        assertEquals(90, stored.getRotation());
+        assertTrue(stored.hasAudio());
+
+        // A file of another size or date was replaced, so its probe is stale
+        assertNull(dao.getMediaInfo(path, 1001, 2000));
+        assertNull(dao.getMediaInfo(path, 1000, 2001));
+
+        info.setSize(1001);
+        info.setAudioCodec(null);
+        dao.putMediaInfo(info);
+        assertFalse(dao.getMediaInfo(path, 1001, 2000).hasAudio());
+        assertNull(dao.getMediaInfo(path, 1000, 2000));
+    }
+}
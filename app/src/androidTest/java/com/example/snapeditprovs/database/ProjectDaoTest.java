@@ -0,0 +1,54 @@
+package com.example.snapeditprovs.database;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test of how an import stores its clips one at a time
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProjectDaoTest {
+
+    @Test
+    public void importedClips_areAppendedAndShareTheirThumbnail() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ProjectDao dao = new ProjectDao(context);
+        Project project = new Project();
+        project.setName("Import test");
+        long projectId = dao.insertProject(project);
+        assertNotEquals(-1, projectId);
+
+        String source = "/test/import_" + System.nanoTime() + ".mp4";
+        try {
+            for (int i = 0; i < 2; i++) {
+                VideoClip clip = new VideoClip(source, 0, 4, project.getDuration());
+                project.addVideoClip(clip);
+                assertNotEquals(-1, dao.addVideoClip(project, clip));
+            }
+            assertTrue(dao.updateThumbnailPath(source, "/test/thumbnail.jpg"));
+            assertTrue(dao.updateProjectThumbnail(projectId, "/test/thumbnail.jpg"));
+
+            Project stored = dao.getProject(projectId);
+            assertNotNull(stored);
+            assertEquals(8.0, stored.getDuration(), 1e-9);
+            assertEquals(2, stored.getVideoClips().size());
+            assertEquals(4.0, stored.getVideoClips().get(1).getTimelinePosition(), 1e-9);
+            for (VideoClip clip : stored.getVideoClips()) {
+                assertEquals("/test/thumbnail.jpg", clip.getThumbnailPath());
+            }
+            assertEquals("/test/thumbnail.jpg", stored.getThumbnailPath());
+        } finally {
+            dao.deleteProject(projectId);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.snapeditprovs.utils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test of the filmstrip levels; FilmstripCache depends on
+ * android.graphics and android.util, so it runs on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FilmstripCacheTest {
+
+    @Test
+    public void filmstrip_levelFollowsTimelineZoom() {
+        // Tiles drawn 160 px wide: 8 s apart at 20 px/s, 1 s apart at 160 px/s
+        assertEquals(0, FilmstripCache.getLevel(20, 160));
+        assertEquals(1, FilmstripCache.getLevel(40, 160));
+        assertEquals(3, FilmstripCache.getLevel(160, 160));
+        assertEquals(FilmstripCache.LEVEL_COUNT - 1, FilmstripCache.getLevel(1000, 160));
+        assertEquals(0, FilmstripCache.getLevel(5, 160));
+        assertEquals(1.0, FilmstripCache.getSecondsPerTile(3), 1e-9);
+    }
+}
@@ -16,13 +16,18 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
 
 import com.example.snapeditprovs.adapters.FilterAdapter;
 import com.example.snapeditprovs.adapters.TextStyleAdapter;
 import com.example.snapeditprovs.adapters.TimelineAdapter;
 import com.example.snapeditprovs.adapters.TransitionAdapter;
 import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.utils.FilmstripCache;
+import com.example.snapeditprovs.utils.MediaImporter;
 import com.example.snapeditprovs.viewmodels.EditorViewModel;
+import com.example.snapeditprovs.workers.ProxyJobs;
+import com.example.snapeditprovs.workers.ProxyWorker;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.Player;
@@ -84,6 +89,24 @@ public class EditorActivity extends AppCompatActivity {
             currentProject = project;
             updateUI(project);
         });
+
+        // Clips of a project that is still importing appear as they are probed
+        MediaImporter.getInstance(this).getUpdatedProject().observe(this, updatedProjectId -> {
+            if (updatedProjectId != null) {
+                viewModel.onImportProgress(updatedProjectId);
+            }
+        });
+
+        // Preview from proxies as soon as they are generated
+        ProxyJobs.getWorkInfo(this).observe(this, workInfos -> {
+            for (WorkInfo workInfo : workInfos) {
+                String sourcePath = workInfo.getOutputData().getString(ProxyWorker.KEY_SOURCE_PATH);
+                String proxyPath = workInfo.getOutputData().getString(ProxyWorker.KEY_PROXY_PATH);
+                if (workInfo.getState() == WorkInfo.State.SUCCEEDED && sourcePath != null && proxyPath != null) {
+                    viewModel.onProxyReady(sourcePath, proxyPath);
+                }
+            }
+        });
     }
 
     private void initViews() {
@@ -145,6 +168,11 @@ public class EditorActivity extends AppCompatActivity {
             scaleDetector.onTouchEvent(event);
             return false;
         });
+        
+        // Zooming resizes the clips; their filmstrips switch level as they are redrawn
+        viewModel.getTimelineScale().observe(this, scale -> timelineAdapter.setTimelineScale(scale));
+        FilmstripCache.getInstance(this).getTileUpdates().observe(this,
+                updates -> timelineAdapter.onFilmstripTilesUpdated());
     }
 
     private void setupToolbarButtons() {
@@ -299,8 +327,8 @@ public class EditorActivity extends AppCompatActivity {
             // Update timeline
             timelineAdapter.setClips(project.getVideoClips());
             
-            // Update ExoPlayer with the main clip
-            MediaItem mediaItem = MediaItem.fromUri(Uri.parse(project.getVideoClips().get(0).getPath()));
+            // Update ExoPlayer with the main clip, decoding its proxy when there is one
+            MediaItem mediaItem = MediaItem.fromUri(Uri.parse(project.getVideoClips().get(0).getPreviewPath()));
             player.setMediaItem(mediaItem);
             player.prepare();
         }
@@ -3,8 +3,11 @@ package com.example.snapeditprovs;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.text.format.Formatter;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.RadioGroup;
 import android.widget.SeekBar;
@@ -25,6 +28,7 @@ import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.ui.PlayerView;
 import java.io.File;
+import java.util.Locale;
 
 public class ExportActivity extends AppCompatActivity {
 
@@ -32,10 +36,12 @@ public class ExportActivity extends AppCompatActivity {
     private PlayerView previewPlayerView;
     private ExoPlayer previewPlayer;
     private ProgressBar exportProgressBar;
-    private TextView exportStatusText, bitrateText, framerateText;
-    private Button exportButton, shareButton;
+    private TextView exportStatusText, bitrateText, framerateText, estimateText;
+    private Button exportButton, shareButton, pauseButton, cancelExportButton;
+    private LinearLayout exportControls;
     private RadioGroup resolutionRadioGroup;
     private SeekBar bitrateSeekBar, framerateSeekBar;
+    private CheckBox segmentedExportCheckBox;
     private long projectId;
 
     @Override
@@ -72,10 +78,30 @@ public class ExportActivity extends AppCompatActivity {
             exportStatusText.setText("Exporting: " + progress + "%");
         });
 
+        // Observe export telemetry for the remaining time
+        viewModel.getExportTelemetry().observe(this, telemetry -> {
+            if (telemetry != null && telemetry.getEtaMs() > 0 && telemetry.getPercent() < 100) {
+                long seconds = telemetry.getEtaMs() / 1000;
+                exportStatusText.setText(String.format(Locale.US, "Exporting: %d%% (%d:%02d left, %.1fx)",
+                        telemetry.getPercent(), seconds / 60, seconds % 60, telemetry.getSpeed()));
+            }
+        });
+
+        // Observe the estimate, which follows the sliders
+        viewModel.getExportEstimate().observe(this, estimate -> {
+            if (estimate != null) {
+                long seconds = estimate.getTimeMs() / 1000;
+                estimateText.setText(String.format(Locale.US, "About %s, %s%d:%02d to export",
+                        Formatter.formatShortFileSize(this, estimate.getSizeBytes()),
+                        estimate.isMeasured() ? "" : "roughly ", seconds / 60, seconds % 60));
+            }
+        });
+
         // Observe export completion
         viewModel.getExportCompleted().observe(this, completed -> {
             if (completed) {
                 exportProgressBar.setVisibility(View.GONE);
+                exportControls.setVisibility(View.GONE);
                 exportStatusText.setText("Export completed");
                 shareButton.setEnabled(true);
                 
@@ -88,11 +114,20 @@ public class ExportActivity extends AppCompatActivity {
         viewModel.getExportError().observe(this, error -> {
             if (error != null && !error.isEmpty()) {
                 exportProgressBar.setVisibility(View.GONE);
+                exportControls.setVisibility(View.GONE);
                 exportStatusText.setText("Export failed: " + error);
                 exportButton.setEnabled(true);
             }
         });
 
+        // Observe pause state; a paused export keeps its rendered segments
+        viewModel.getExportPaused().observe(this, paused -> {
+            pauseButton.setText(paused ? R.string.resume : R.string.pause);
+            if (paused) {
+                exportStatusText.setText("Export paused");
+            }
+        });
+
         // Observe project data
         viewModel.getProject().observe(this, this::updatePreviewPlayer);
     }
@@ -103,11 +138,16 @@ public class ExportActivity extends AppCompatActivity {
         exportStatusText = findViewById(R.id.exportStatusText);
         bitrateText = findViewById(R.id.bitrateText);
         framerateText = findViewById(R.id.framerateText);
+        estimateText = findViewById(R.id.estimateText);
         exportButton = findViewById(R.id.exportButton);
         shareButton = findViewById(R.id.shareButton);
+        pauseButton = findViewById(R.id.pauseButton);
+        cancelExportButton = findViewById(R.id.cancelExportButton);
+        exportControls = findViewById(R.id.exportControls);
         resolutionRadioGroup = findViewById(R.id.resolutionRadioGroup);
         bitrateSeekBar = findViewById(R.id.bitrateSeekBar);
         framerateSeekBar = findViewById(R.id.framerateSeekBar);
+        segmentedExportCheckBox = findViewById(R.id.segmentedExportCheckBox);
 
         // Initialize UI state
         exportProgressBar.setVisibility(View.GONE);
@@ -165,6 +205,11 @@ public class ExportActivity extends AppCompatActivity {
             public void onStopTrackingTouch(SeekBar seekBar) {}
         });
 
+        // Export mode: render segments in parallel and stitch them, off by default
+        segmentedExportCheckBox.setChecked(viewModel.getExportSettings().isSegmentedExport());
+        segmentedExportCheckBox.setOnCheckedChangeListener((button, checked) ->
+                viewModel.setSegmentedExport(checked));
+
         // Export button
         exportButton.setOnClickListener(v -> {
             // Start export process
@@ -173,11 +218,25 @@ public class ExportActivity extends AppCompatActivity {
             
             exportButton.setEnabled(false);
             exportProgressBar.setVisibility(View.VISIBLE);
+            exportControls.setVisibility(View.VISIBLE);
             exportStatusText.setText("Preparing export...");
             
             viewModel.exportProject(outputFileName);
         });
 
+        // Pause button, which resumes a paused export
+        pauseButton.setOnClickListener(v -> {
+            if (Boolean.TRUE.equals(viewModel.getExportPaused().getValue())) {
+                exportStatusText.setText("Resuming export...");
+                viewModel.resumeExport();
+            } else {
+                viewModel.pauseExport();
+            }
+        });
+
+        // Cancel button
+        cancelExportButton.setOnClickListener(v -> viewModel.cancelExport());
+
         // Share button
         shareButton.setOnClickListener(v -> {
             String exportedFilePath = viewModel.getExportedFilePath();
@@ -198,7 +257,7 @@ public class ExportActivity extends AppCompatActivity {
     private void updatePreviewPlayer(Project project) {
         if (project != null && !project.getVideoClips().isEmpty()) {
             // Load the first clip for preview
-            MediaItem mediaItem = MediaItem.fromUri(Uri.parse(project.getVideoClips().get(0).getPath()));
+            MediaItem mediaItem = MediaItem.fromUri(Uri.parse(project.getVideoClips().get(0).getPreviewPath()));
             previewPlayer.setMediaItem(mediaItem);
             previewPlayer.prepare();
             
@@ -1,6 +1,8 @@
 package com.example.snapeditprovs;
 
+import android.content.ClipData;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -22,6 +24,9 @@ import com.example.snapeditprovs.models.Project;
 import com.example.snapeditprovs.viewmodels.ProjectViewModel;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class HomeActivity extends AppCompatActivity implements ProjectAdapter.OnProjectClickListener {
 
@@ -66,6 +71,16 @@ public class HomeActivity extends AppCompatActivity implements ProjectAdapter.On
             }
         });
 
+        // Open the editor as soon as a new project is stored; its clips fill in while it imports
+        viewModel.getCreatedProjectId().observe(this, projectId -> {
+            if (projectId != null) {
+                viewModel.onCreatedProjectOpened();
+                Intent intent = new Intent(this, EditorActivity.class);
+                intent.putExtra("projectId", projectId.longValue());
+                startActivity(intent);
+            }
+        });
+
         // Set up empty state button
         Button createFirstProject = findViewById(R.id.createFirstProject);
         createFirstProject.setOnClickListener(v -> createNewProject());
@@ -82,6 +97,7 @@ public class HomeActivity extends AppCompatActivity implements ProjectAdapter.On
         Intent pickVideoIntent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
         pickVideoIntent.addCategory(Intent.CATEGORY_OPENABLE);
         pickVideoIntent.setType("video/*");
+        pickVideoIntent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
         startActivityForResult(pickVideoIntent, 1);
     }
 
@@ -89,11 +105,19 @@ public class HomeActivity extends AppCompatActivity implements ProjectAdapter.On
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == 1 && resultCode == RESULT_OK && data != null) {
-            // Create new project and start editor
-            viewModel.createProject(data.getData(), System.currentTimeMillis());
-            Intent intent = new Intent(this, EditorActivity.class);
-            intent.putExtra("projectId", viewModel.getLastCreatedProjectId());
-            startActivity(intent);
+            // Create new project from the picked videos, in picked order
+            List<Uri> videoUris = new ArrayList<>();
+            ClipData clipData = data.getClipData();
+            if (clipData != null) {
+                for (int i = 0; i < clipData.getItemCount(); i++) {
+                    videoUris.add(clipData.getItemAt(i).getUri());
+                }
+            } else if (data.getData() != null) {
+                videoUris.add(data.getData());
+            }
+            if (!videoUris.isEmpty()) {
+                viewModel.importClips(videoUris, System.currentTimeMillis());
+            }
         }
     }
 
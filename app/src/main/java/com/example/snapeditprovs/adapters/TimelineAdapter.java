@@ -13,6 +13,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.example.snapeditprovs.R;
 import com.example.snapeditprovs.models.VideoClip;
+import com.example.snapeditprovs.utils.FilmstripCache;
+import com.example.snapeditprovs.utils.FilmstripDrawable;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -26,6 +28,11 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
     private final OnClipClickListener listener;
     private int selectedClipPosition = -1;
     private float timelineScale = 1.0f;
+    private final FilmstripCache filmstripCache;
+
+    // Partial rebinds that leave the thumbnail and text alone
+    private static final Object PAYLOAD_SCALE = new Object();
+    private static final Object PAYLOAD_TILES = new Object();
 
     public interface OnClipClickListener {
         void onClipClick(VideoClip clip);
@@ -35,6 +42,7 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
         this.context = context;
         this.clips = new ArrayList<>();
         this.listener = listener;
+        this.filmstripCache = FilmstripCache.getInstance(context);
     }
 
     public void setClips(List<VideoClip> clips) {
@@ -44,7 +52,14 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
 
     public void setTimelineScale(float scale) {
         this.timelineScale = scale;
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SCALE);
+    }
+
+    /**
+     * Redraw the filmstrips with tiles that became available
+     */
+    public void onFilmstripTilesUpdated() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_TILES);
     }
 
     @NonNull
@@ -54,6 +69,19 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
         return new ClipViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull ClipViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        if (payloads.contains(PAYLOAD_SCALE)) {
+            // Pinch-zoom only resizes; the filmstrip picks its level when drawn
+            setItemWidth(holder, clips.get(position));
+        }
+        holder.clipFilmstrip.invalidate();
+    }
+
     @Override
     public void onBindViewHolder(@NonNull ClipViewHolder holder, int position) {
         VideoClip clip = clips.get(position);
@@ -72,13 +100,10 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
         } else {
             holder.clipThumbnail.setImageResource(R.drawable.placeholder_thumbnail);
         }
+        String sourceKey = clip.getPath() != null ? filmstripCache.requestSourceKey(clip.getPath()) : null;
+        holder.clipFilmstrip.setImageDrawable(new FilmstripDrawable(filmstripCache, clip, sourceKey));
         
-        // Set item width based on duration and scale
-        int baseWidth = (int) (300 * clip.getDuration() / 10.0); // 300dp for 10 seconds
-        int scaledWidth = (int) (baseWidth * timelineScale);
-        ViewGroup.LayoutParams layoutParams = holder.itemView.getLayoutParams();
-        layoutParams.width = Math.max(150, scaledWidth); // Min width of 150dp
-        holder.itemView.setLayoutParams(layoutParams);
+        setItemWidth(holder, clip);
         
         // Set selected state
         holder.itemView.setSelected(position == selectedClipPosition);
@@ -91,6 +116,16 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
         });
     }
 
+    private void setItemWidth(ClipViewHolder holder, VideoClip clip) {
+        // Set item width based on duration and scale
+        float density = context.getResources().getDisplayMetrics().density;
+        int baseWidth = (int) (300 * density * clip.getDuration() / 10.0); // 300dp for 10 seconds
+        int scaledWidth = (int) (baseWidth * timelineScale);
+        ViewGroup.LayoutParams layoutParams = holder.itemView.getLayoutParams();
+        layoutParams.width = Math.max((int) (150 * density), scaledWidth); // Min width of 150dp
+        holder.itemView.setLayoutParams(layoutParams);
+    }
+
     @Override
     public int getItemCount() {
         return clips.size();
@@ -98,11 +133,13 @@ public class TimelineAdapter extends RecyclerView.Adapter<TimelineAdapter.ClipVi
 
     static class ClipViewHolder extends RecyclerView.ViewHolder {
         ImageView clipThumbnail;
+        ImageView clipFilmstrip;
         TextView clipDuration;
 
         ClipViewHolder(@NonNull View itemView) {
             super(itemView);
             clipThumbnail = itemView.findViewById(R.id.clipThumbnail);
+            clipFilmstrip = itemView.findViewById(R.id.clipFilmstrip);
             clipDuration = itemView.findViewById(R.id.clipDuration);
         }
     }
@@ -8,7 +8,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     // Database information
     private static final String DATABASE_NAME = "snapedit.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 6;
     
     // Table names
     public static final String TABLE_PROJECTS = "projects";
@@ -18,6 +18,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String TABLE_STICKER_OVERLAYS = "sticker_overlays";
     public static final String TABLE_TRANSITIONS = "transitions";
     public static final String TABLE_FILTERS = "filters";
+    public static final String TABLE_MEDIA_PROBES = "media_probes";
+    public static final String TABLE_EXPORT_RUNS = "export_runs";
+    public static final String TABLE_ENCODER_CALIBRATIONS = "encoder_calibrations";
     
     // Common columns
     public static final String COLUMN_ID = "id";
@@ -41,6 +44,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_SPEED = "speed";
     public static final String COLUMN_IS_MUTED = "is_muted";
     public static final String COLUMN_IS_REVERSED = "is_reversed";
+    public static final String COLUMN_PROXY_PATH = "proxy_path";
     
     // Audio clip table columns (some shared with video clips)
     public static final String COLUMN_TYPE = "type";
@@ -84,6 +88,39 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COLUMN_CLIP_END_ID = "clip_end_id";
     public static final String COLUMN_POSITION = "position";
 
+    // Media probe table columns (some shared with other tables)
+    public static final String COLUMN_SIZE = "size";
+    public static final String COLUMN_BITRATE = "bitrate";
+    public static final String COLUMN_VIDEO_CODEC = "video_codec";
+    public static final String COLUMN_FRAME_RATE = "frame_rate";
+    public static final String COLUMN_VIDEO_PROFILE = "video_profile";
+    public static final String COLUMN_VIDEO_LEVEL = "video_level";
+    public static final String COLUMN_PIXEL_FORMAT = "pixel_format";
+    public static final String COLUMN_KEYFRAME_INTERVAL = "keyframe_interval";
+    public static final String COLUMN_AUDIO_CODEC = "audio_codec";
+    public static final String COLUMN_AUDIO_CHANNELS = "audio_channels";
+    public static final String COLUMN_AUDIO_CHANNEL_LAYOUT = "audio_channel_layout";
+    public static final String COLUMN_AUDIO_SAMPLE_RATE = "audio_sample_rate";
+
+    // Export run table columns (some shared with other tables)
+    public static final String COLUMN_STARTED_AT = "started_at";
+    public static final String COLUMN_RESOLUTION = "resolution";
+    public static final String COLUMN_FRAMERATE = "framerate";
+    public static final String COLUMN_SEGMENTED = "segmented";
+    public static final String COLUMN_RETURN_CODE = "return_code";
+    public static final String COLUMN_APP_VERSION = "app_version";
+    public static final String COLUMN_DEVICE = "device";
+    public static final String COLUMN_SDK_INT = "sdk_int";
+    public static final String COLUMN_ENCODED_SECONDS = "encoded_seconds";
+    public static final String COLUMN_TOTAL_SECONDS = "total_seconds";
+    public static final String COLUMN_ELAPSED_MS = "elapsed_ms";
+    public static final String COLUMN_FPS = "fps";
+    public static final String COLUMN_OUTPUT_BITRATE = "output_bitrate";
+
+    // Encoder calibration table columns (some shared with other tables)
+    public static final String COLUMN_PRESET = "preset";
+    public static final String COLUMN_MEASURED_AT = "measured_at";
+
     // Create table statements
     private static final String CREATE_PROJECTS_TABLE = "CREATE TABLE " + TABLE_PROJECTS + " (" +
             COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -111,6 +148,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             COLUMN_THUMBNAIL_PATH + " TEXT, " +
             COLUMN_IS_MUTED + " INTEGER, " +
             COLUMN_IS_REVERSED + " INTEGER, " +
+            COLUMN_PROXY_PATH + " TEXT, " +
             "FOREIGN KEY(" + COLUMN_PROJECT_ID + ") REFERENCES " + TABLE_PROJECTS + "(" + COLUMN_ID + ") ON DELETE CASCADE" +
             ");";
     
@@ -198,6 +236,60 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             "FOREIGN KEY(" + COLUMN_PROJECT_ID + ") REFERENCES " + TABLE_PROJECTS + "(" + COLUMN_ID + ") ON DELETE CASCADE" +
             ");";
 
+    // One row per file path; a row is stale once the file's size or mtime changes
+    private static final String CREATE_MEDIA_PROBES_TABLE = "CREATE TABLE " + TABLE_MEDIA_PROBES + " (" +
+            COLUMN_PATH + " TEXT PRIMARY KEY, " +
+            COLUMN_SIZE + " INTEGER NOT NULL, " +
+            COLUMN_LAST_MODIFIED + " INTEGER NOT NULL, " +
+            COLUMN_DURATION + " REAL, " +
+            COLUMN_BITRATE + " INTEGER, " +
+            COLUMN_VIDEO_CODEC + " TEXT, " +
+            COLUMN_WIDTH + " INTEGER, " +
+            COLUMN_HEIGHT + " INTEGER, " +
+            COLUMN_ROTATION + " INTEGER, " +
+            COLUMN_FRAME_RATE + " REAL, " +
+            COLUMN_VIDEO_PROFILE + " TEXT, " +
+            COLUMN_VIDEO_LEVEL + " INTEGER, " +
+            COLUMN_PIXEL_FORMAT + " TEXT, " +
+            COLUMN_KEYFRAME_INTERVAL + " REAL, " +
+            COLUMN_AUDIO_CODEC + " TEXT, " +
+            COLUMN_AUDIO_CHANNELS + " INTEGER, " +
+            COLUMN_AUDIO_CHANNEL_LAYOUT + " TEXT, " +
+            COLUMN_AUDIO_SAMPLE_RATE + " INTEGER" +
+            ");";
+
+    // Not tied to a project row, so the history outlives deleted projects
+    private static final String CREATE_EXPORT_RUNS_TABLE = "CREATE TABLE " + TABLE_EXPORT_RUNS + " (" +
+            COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            COLUMN_PROJECT_ID + " INTEGER, " +
+            COLUMN_STARTED_AT + " INTEGER NOT NULL, " +
+            COLUMN_RESOLUTION + " INTEGER, " +
+            COLUMN_FRAMERATE + " INTEGER, " +
+            COLUMN_BITRATE + " INTEGER, " +
+            COLUMN_SEGMENTED + " INTEGER, " +
+            COLUMN_RETURN_CODE + " INTEGER, " +
+            COLUMN_APP_VERSION + " TEXT, " +
+            COLUMN_DEVICE + " TEXT, " +
+            COLUMN_SDK_INT + " INTEGER, " +
+            COLUMN_ENCODED_SECONDS + " REAL, " +
+            COLUMN_TOTAL_SECONDS + " REAL, " +
+            COLUMN_ELAPSED_MS + " INTEGER, " +
+            COLUMN_FPS + " REAL, " +
+            COLUMN_SPEED + " REAL, " +
+            COLUMN_OUTPUT_BITRATE + " REAL, " +
+            COLUMN_SIZE + " INTEGER" +
+            ");";
+
+    // One measurement per preset and resolution; a new one replaces the old
+    private static final String CREATE_ENCODER_CALIBRATIONS_TABLE = "CREATE TABLE " + TABLE_ENCODER_CALIBRATIONS + " (" +
+            COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            COLUMN_PRESET + " TEXT NOT NULL, " +
+            COLUMN_RESOLUTION + " INTEGER NOT NULL, " +
+            COLUMN_FPS + " REAL, " +
+            COLUMN_MEASURED_AT + " INTEGER, " +
+            "UNIQUE (" + COLUMN_PRESET + ", " + COLUMN_RESOLUTION + ")" +
+            ");";
+
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -211,14 +303,32 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(CREATE_STICKER_OVERLAYS_TABLE);
         db.execSQL(CREATE_FILTERS_TABLE);
         db.execSQL(CREATE_TRANSITIONS_TABLE);
+        db.execSQL(CREATE_MEDIA_PROBES_TABLE);
+        db.execSQL(CREATE_EXPORT_RUNS_TABLE);
+        db.execSQL(CREATE_ENCODER_CALIBRATIONS_TABLE);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         // For future upgrades, implement appropriate schema changes
         if (oldVersion < 2) {
-            // Example: Add a new column to projects table
-            // db.execSQL("ALTER TABLE " + TABLE_PROJECTS + " ADD COLUMN new_column TEXT;");
+            db.execSQL(CREATE_MEDIA_PROBES_TABLE);
+        }
+        if (oldVersion < 3) {
+            db.execSQL(CREATE_EXPORT_RUNS_TABLE);
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_VIDEO_CLIPS + " ADD COLUMN " + COLUMN_PROXY_PATH + " TEXT");
+        }
+        if (oldVersion < 5) {
+            db.execSQL(CREATE_ENCODER_CALIBRATIONS_TABLE);
+        }
+        if (oldVersion >= 2 && oldVersion < 6) {
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA_PROBES + " ADD COLUMN " + COLUMN_VIDEO_PROFILE + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA_PROBES + " ADD COLUMN " + COLUMN_VIDEO_LEVEL + " INTEGER");
+            db.execSQL("ALTER TABLE " + TABLE_MEDIA_PROBES + " ADD COLUMN " + COLUMN_PIXEL_FORMAT + " TEXT");
+            // Stored probes lack the new columns; files are probed again on next use
+            db.execSQL("DELETE FROM " + TABLE_MEDIA_PROBES);
         }
     }
     
@@ -0,0 +1,106 @@
+package com.example.snapeditprovs.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.snapeditprovs.models.EncoderCalibration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EncoderCalibrationDao {
+    private static final String TAG = "EncoderCalibrationDao";
+
+    private final DatabaseHelper dbHelper;
+    private SQLiteDatabase database;
+
+    public EncoderCalibrationDao(Context context) {
+        dbHelper = new DatabaseHelper(context);
+    }
+
+    private void open() {
+        database = dbHelper.getWritableDatabase();
+    }
+
+    private void close() {
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+    }
+
+    /**
+     * Store a calibration, replacing an earlier one of the same preset and resolution
+     * @param calibration The calibration
+     * @return True if it was stored
+     */
+    public synchronized boolean saveCalibration(EncoderCalibration calibration) {
+        open();
+
+        try {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_PRESET, calibration.getPreset());
+            values.put(DatabaseHelper.COLUMN_RESOLUTION, calibration.getResolution());
+            values.put(DatabaseHelper.COLUMN_FPS, calibration.getFps());
+            values.put(DatabaseHelper.COLUMN_MEASURED_AT, calibration.getMeasuredAt());
+
+            return database.insertWithOnConflict(DatabaseHelper.TABLE_ENCODER_CALIBRATIONS, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE) != -1;
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving encoder calibration", e);
+            return false;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Get the calibrations measured at one resolution
+     * @param resolution Export resolution, e.g. 1080
+     * @return Calibrations of every measured preset
+     */
+    public synchronized List<EncoderCalibration> getCalibrations(int resolution) {
+        List<EncoderCalibration> calibrations = new ArrayList<>();
+        open();
+
+        Cursor cursor = null;
+        try {
+            cursor = database.query(DatabaseHelper.TABLE_ENCODER_CALIBRATIONS, null,
+                    DatabaseHelper.COLUMN_RESOLUTION + " = ?", new String[] {String.valueOf(resolution)},
+                    null, null, null);
+
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    calibrations.add(cursorToCalibration(cursor));
+                } while (cursor.moveToNext());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting encoder calibrations", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            close();
+        }
+
+        return calibrations;
+    }
+
+    private EncoderCalibration cursorToCalibration(Cursor cursor) {
+        EncoderCalibration calibration = new EncoderCalibration();
+
+        int presetIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_PRESET);
+        int resolutionIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_RESOLUTION);
+        int fpsIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_FPS);
+        int measuredAtIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_MEASURED_AT);
+
+        if (presetIndex != -1) calibration.setPreset(cursor.getString(presetIndex));
+        if (resolutionIndex != -1) calibration.setResolution(cursor.getInt(resolutionIndex));
+        if (fpsIndex != -1) calibration.setFps(cursor.getDouble(fpsIndex));
+        if (measuredAtIndex != -1) calibration.setMeasuredAt(cursor.getLong(measuredAtIndex));
+
+        return calibration;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.snapeditprovs.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.snapeditprovs.models.ExportRun;
+import com.example.snapeditprovs.models.ExportTelemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExportRunDao {
+    private static final String TAG = "ExportRunDao";
+
+    private final DatabaseHelper dbHelper;
+    private SQLiteDatabase database;
+
+    public ExportRunDao(Context context) {
+        dbHelper = new DatabaseHelper(context);
+    }
+
+    private void open() {
+        database = dbHelper.getWritableDatabase();
+    }
+
+    private void close() {
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+    }
+
+    /**
+     * Insert the record of a finished export
+     * @param run The export run
+     * @return The ID of the newly inserted run, or -1 on error
+     */
+    public synchronized long insertExportRun(ExportRun run) {
+        open();
+
+        try {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_PROJECT_ID, run.getProjectId());
+            values.put(DatabaseHelper.COLUMN_STARTED_AT, run.getStartedAt());
+            values.put(DatabaseHelper.COLUMN_RESOLUTION, run.getResolution());
+            values.put(DatabaseHelper.COLUMN_FRAMERATE, run.getFramerate());
+            values.put(DatabaseHelper.COLUMN_BITRATE, run.getBitrate());
+            values.put(DatabaseHelper.COLUMN_SEGMENTED, run.isSegmented() ? 1 : 0);
+            values.put(DatabaseHelper.COLUMN_RETURN_CODE, run.getReturnCode());
+            values.put(DatabaseHelper.COLUMN_APP_VERSION, run.getAppVersion());
+            values.put(DatabaseHelper.COLUMN_DEVICE, run.getDevice());
+            values.put(DatabaseHelper.COLUMN_SDK_INT, run.getSdkInt());
+
+            ExportTelemetry telemetry = run.getTelemetry();
+            if (telemetry != null) {
+                values.put(DatabaseHelper.COLUMN_ENCODED_SECONDS, telemetry.getEncodedSeconds());
+                values.put(DatabaseHelper.COLUMN_TOTAL_SECONDS, telemetry.getTotalSeconds());
+                values.put(DatabaseHelper.COLUMN_ELAPSED_MS, telemetry.getElapsedMs());
+                values.put(DatabaseHelper.COLUMN_FPS, telemetry.getFps());
+                values.put(DatabaseHelper.COLUMN_SPEED, telemetry.getSpeed());
+                values.put(DatabaseHelper.COLUMN_OUTPUT_BITRATE, telemetry.getBitrateKbps());
+                values.put(DatabaseHelper.COLUMN_SIZE, telemetry.getSizeBytes());
+            }
+
+            long id = database.insert(DatabaseHelper.TABLE_EXPORT_RUNS, null, values);
+            run.setId(id);
+            return id;
+        } catch (Exception e) {
+            Log.e(TAG, "Error inserting export run", e);
+            return -1;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Get the most recent export runs
+     * @param limit Maximum number of runs
+     * @return Runs, newest first
+     */
+    public synchronized List<ExportRun> getRecentExportRuns(int limit) {
+        List<ExportRun> runs = new ArrayList<>();
+        open();
+
+        Cursor cursor = null;
+        try {
+            cursor = database.query(DatabaseHelper.TABLE_EXPORT_RUNS, null, null, null,
+                    null, null, DatabaseHelper.COLUMN_STARTED_AT + " DESC", String.valueOf(limit));
+
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    runs.add(cursorToExportRun(cursor));
+                } while (cursor.moveToNext());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting export runs", e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            close();
+        }
+
+        return runs;
+    }
+
+    private ExportRun cursorToExportRun(Cursor cursor) {
+        ExportRun run = new ExportRun();
+
+        int idIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_ID);
+        int projectIdIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_PROJECT_ID);
+        int startedAtIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_STARTED_AT);
+        int resolutionIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_RESOLUTION);
+        int framerateIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_FRAMERATE);
+        int bitrateIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_BITRATE);
+        int segmentedIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_SEGMENTED);
+        int returnCodeIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_RETURN_CODE);
+        int appVersionIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_APP_VERSION);
+        int deviceIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_DEVICE);
+        int sdkIntIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_SDK_INT);
+        int elapsedMsIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_ELAPSED_MS);
+
+        if (idIndex != -1) run.setId(cursor.getLong(idIndex));
+        if (projectIdIndex != -1) run.setProjectId(cursor.getLong(projectIdIndex));
+        if (startedAtIndex != -1) run.setStartedAt(cursor.getLong(startedAtIndex));
+        if (resolutionIndex != -1) run.setResolution(cursor.getInt(resolutionIndex));
+        if (framerateIndex != -1) run.setFramerate(cursor.getInt(framerateIndex));
+        if (bitrateIndex != -1) run.setBitrate(cursor.getInt(bitrateIndex));
+        if (segmentedIndex != -1) run.setSegmented(cursor.getInt(segmentedIndex) == 1);
+        if (returnCodeIndex != -1) run.setReturnCode(cursor.getInt(returnCodeIndex));
+        if (appVersionIndex != -1) run.setAppVersion(cursor.getString(appVersionIndex));
+        if (deviceIndex != -1) run.setDevice(cursor.getString(deviceIndex));
+        if (sdkIntIndex != -1) run.setSdkInt(cursor.getInt(sdkIntIndex));
+
+        if (elapsedMsIndex != -1 && !cursor.isNull(elapsedMsIndex)) {
+            run.setTelemetry(new ExportTelemetry(
+                    run.getReturnCode() == 0 ? 100 : 0,
+                    cursor.getDouble(cursor.getColumnIndex(DatabaseHelper.COLUMN_ENCODED_SECONDS)),
+                    cursor.getDouble(cursor.getColumnIndex(DatabaseHelper.COLUMN_TOTAL_SECONDS)),
+                    cursor.getLong(elapsedMsIndex),
+                    0,
+                    cursor.getDouble(cursor.getColumnIndex(DatabaseHelper.COLUMN_FPS)),
+                    cursor.getDouble(cursor.getColumnIndex(DatabaseHelper.COLUMN_SPEED)),
+                    cursor.getDouble(cursor.getColumnIndex(DatabaseHelper.COLUMN_OUTPUT_BITRATE)),
+                    cursor.getLong(cursor.getColumnIndex(DatabaseHelper.COLUMN_SIZE))));
+        }
+
+        return run;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.snapeditprovs.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.snapeditprovs.models.MediaInfo;
+
+public class MediaProbeDao {
+    private static final String TAG = "MediaProbeDao";
+
+    private final DatabaseHelper dbHelper;
+    private SQLiteDatabase database;
+
+    public MediaProbeDao(Context context) {
+        dbHelper = new DatabaseHelper(context);
+    }
+
+    private void open() {
+        database = dbHelper.getWritableDatabase();
+    }
+
+    private void close() {
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+    }
+
+    /**
+     * Get the stored probe of a file
+     * @param path Path of the file
+     * @param size Current size of the file
+     * @param lastModified Current modification time of the file
+     * @return The media info, or null if the file was never probed or has changed since
+     */
+    public synchronized MediaInfo getMediaInfo(String path, long size, long lastModified) {
+        open();
+
+        Cursor cursor = null;
+        try {
+            cursor = database.query(DatabaseHelper.TABLE_MEDIA_PROBES, null,
+                    DatabaseHelper.COLUMN_PATH + " = ? AND " + DatabaseHelper.COLUMN_SIZE + " = ? AND "
+                            + DatabaseHelper.COLUMN_LAST_MODIFIED + " = ?",
+                    new String[]{path, String.valueOf(size), String.valueOf(lastModified)},
+                    null, null, null);
+
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            return cursorToMediaInfo(cursor);
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting media probe", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            close();
+        }
+    }
+
+    /**
+     * Store the probe of a file, replacing any older probe of the same path
+     * @param info Media info with path, size and modification time set
+     */
+    public synchronized void putMediaInfo(MediaInfo info) {
+        open();
+
+        try {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_PATH, info.getPath());
+            values.put(DatabaseHelper.COLUMN_SIZE, info.getSize());
+            values.put(DatabaseHelper.COLUMN_LAST_MODIFIED, info.getLastModified());
+            values.put(DatabaseHelper.COLUMN_DURATION, info.getDuration());
+            values.put(DatabaseHelper.COLUMN_BITRATE, info.getBitrate());
+            values.put(DatabaseHelper.COLUMN_VIDEO_CODEC, info.getVideoCodec());
+            values.put(DatabaseHelper.COLUMN_WIDTH, info.getWidth());
+            values.put(DatabaseHelper.COLUMN_HEIGHT, info.getHeight());
+            values.put(DatabaseHelper.COLUMN_ROTATION, info.getRotation());
+            values.put(DatabaseHelper.COLUMN_FRAME_RATE, info.getFrameRate());
+            values.put(DatabaseHelper.COLUMN_VIDEO_PROFILE, info.getVideoProfile());
+            values.put(DatabaseHelper.COLUMN_VIDEO_LEVEL, info.getVideoLevel());
+            values.put(DatabaseHelper.COLUMN_PIXEL_FORMAT, info.getPixelFormat());
+            values.put(DatabaseHelper.COLUMN_KEYFRAME_INTERVAL, info.getKeyframeInterval());
+            values.put(DatabaseHelper.COLUMN_AUDIO_CODEC, info.getAudioCodec());
+            values.put(DatabaseHelper.COLUMN_AUDIO_CHANNELS, info.getAudioChannels());
+            values.put(DatabaseHelper.COLUMN_AUDIO_CHANNEL_LAYOUT, info.getAudioChannelLayout());
+            values.put(DatabaseHelper.COLUMN_AUDIO_SAMPLE_RATE, info.getAudioSampleRate());
+
+            database.insertWithOnConflict(DatabaseHelper.TABLE_MEDIA_PROBES, null, values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        } catch (Exception e) {
+            Log.e(TAG, "Error storing media probe", e);
+        } finally {
+            close();
+        }
+    }
+
+    private MediaInfo cursorToMediaInfo(Cursor cursor) {
+        MediaInfo info = new MediaInfo();
+
+        int pathIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_PATH);
+        int sizeIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_SIZE);
+        int lastModifiedIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_LAST_MODIFIED);
+        int durationIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_DURATION);
+        int bitrateIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_BITRATE);
+        int videoCodecIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_VIDEO_CODEC);
+        int widthIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_WIDTH);
+        int heightIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_HEIGHT);
+        int rotationIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_ROTATION);
+        int frameRateIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_FRAME_RATE);
+        int videoProfileIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_VIDEO_PROFILE);
+        int videoLevelIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_VIDEO_LEVEL);
+        int pixelFormatIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_PIXEL_FORMAT);
+        int keyframeIntervalIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_KEYFRAME_INTERVAL);
+        int audioCodecIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_AUDIO_CODEC);
+        int audioChannelsIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_AUDIO_CHANNELS);
+        int audioChannelLayoutIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_AUDIO_CHANNEL_LAYOUT);
+        int audioSampleRateIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_AUDIO_SAMPLE_RATE);
+
+        if (pathIndex != -1) info.setPath(cursor.getString(pathIndex));
+        if (sizeIndex != -1) info.setSize(cursor.getLong(sizeIndex));
+        if (lastModifiedIndex != -1) info.setLastModified(cursor.getLong(lastModifiedIndex));
+        if (durationIndex != -1) info.setDuration(cursor.getDouble(durationIndex));
+        if (bitrateIndex != -1) info.setBitrate(cursor.getLong(bitrateIndex));
+        if (videoCodecIndex != -1) info.setVideoCodec(cursor.getString(videoCodecIndex));
+        if (widthIndex != -1) info.setWidth(cursor.getInt(widthIndex));
+        if (heightIndex != -1) info.setHeight(cursor.getInt(heightIndex));
+        if (rotationIndex != -1) info.setRotation(cursor.getInt(rotationIndex));
+        if (frameRateIndex != -1) info.setFrameRate(cursor.getDouble(frameRateIndex));
+        if (videoProfileIndex != -1) info.setVideoProfile(cursor.getString(videoProfileIndex));
+        if (videoLevelIndex != -1) info.setVideoLevel(cursor.getInt(videoLevelIndex));
+        if (pixelFormatIndex != -1) info.setPixelFormat(cursor.getString(pixelFormatIndex));
+        if (keyframeIntervalIndex != -1) info.setKeyframeInterval(cursor.getDouble(keyframeIntervalIndex));
+        if (audioCodecIndex != -1) info.setAudioCodec(cursor.getString(audioCodecIndex));
+        if (audioChannelsIndex != -1) info.setAudioChannels(cursor.getInt(audioChannelsIndex));
+        if (audioChannelLayoutIndex != -1) info.setAudioChannelLayout(cursor.getString(audioChannelLayoutIndex));
+        if (audioSampleRateIndex != -1) info.setAudioSampleRate(cursor.getInt(audioSampleRateIndex));
+
+        return info;
+    }
+}
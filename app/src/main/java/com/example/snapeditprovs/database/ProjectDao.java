@@ -183,6 +183,114 @@ public class ProjectDao {
         }
     }
 
+    /**
+     * Record the proxy of a source file on every clip that plays it
+     * @param sourcePath Path of the source file
+     * @param proxyPath Path of its proxy
+     * @return True if update successful, false otherwise
+     */
+    public boolean updateProxyPath(String sourcePath, String proxyPath) {
+        open();
+        
+        try {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_PROXY_PATH, proxyPath);
+            database.update(DatabaseHelper.TABLE_VIDEO_CLIPS, values,
+                    DatabaseHelper.COLUMN_PATH + " = ?", new String[]{sourcePath});
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating proxy path", e);
+            return false;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Append a clip to a stored project, e.g. while its sources are still
+     * being imported. The project's size and duration are updated with it.
+     * @param project The stored project, with the clip already added
+     * @param clip The clip to insert
+     * @return The ID of the clip, or -1 if the insert failed
+     */
+    public synchronized long addVideoClip(Project project, VideoClip clip) {
+        open();
+        
+        try {
+            database.beginTransaction();
+            
+            ContentValues projectValues = new ContentValues();
+            projectValues.put(DatabaseHelper.COLUMN_LAST_MODIFIED, project.getLastModified());
+            projectValues.put(DatabaseHelper.COLUMN_WIDTH, project.getWidth());
+            projectValues.put(DatabaseHelper.COLUMN_HEIGHT, project.getHeight());
+            projectValues.put(DatabaseHelper.COLUMN_DURATION, project.getDuration());
+            database.update(DatabaseHelper.TABLE_PROJECTS, projectValues,
+                    DatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(project.getId())});
+            
+            long clipId = insertVideoClip(clip, project.getId());
+            
+            database.setTransactionSuccessful();
+            
+            return clipId;
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding video clip", e);
+            return -1;
+        } finally {
+            if (database != null) {
+                database.endTransaction();
+            }
+            close();
+        }
+    }
+
+    /**
+     * Record the thumbnail of a source file on every clip that plays it and
+     * has none yet
+     * @param sourcePath Path of the source file
+     * @param thumbnailPath Path of its thumbnail
+     * @return True if update successful, false otherwise
+     */
+    public synchronized boolean updateThumbnailPath(String sourcePath, String thumbnailPath) {
+        open();
+        
+        try {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_THUMBNAIL_PATH, thumbnailPath);
+            database.update(DatabaseHelper.TABLE_VIDEO_CLIPS, values,
+                    DatabaseHelper.COLUMN_PATH + " = ? AND " + DatabaseHelper.COLUMN_THUMBNAIL_PATH + " IS NULL",
+                    new String[]{sourcePath});
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating thumbnail path", e);
+            return false;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Set the thumbnail shown for a project in the project list
+     * @param projectId The ID of the project
+     * @param thumbnailPath Path of the thumbnail
+     * @return True if update successful, false otherwise
+     */
+    public synchronized boolean updateProjectThumbnail(long projectId, String thumbnailPath) {
+        open();
+        
+        try {
+            ContentValues values = new ContentValues();
+            values.put(DatabaseHelper.COLUMN_THUMBNAIL_PATH, thumbnailPath);
+            database.update(DatabaseHelper.TABLE_PROJECTS, values,
+                    DatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(projectId)});
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating project thumbnail", e);
+            return false;
+        } finally {
+            close();
+        }
+    }
+
     /**
      * Delete a project from the database
      * @param projectId The ID of the project to delete
@@ -324,6 +432,7 @@ public class ProjectDao {
         values.put(DatabaseHelper.COLUMN_THUMBNAIL_PATH, clip.getThumbnailPath());
         values.put(DatabaseHelper.COLUMN_IS_MUTED, clip.isMuted() ? 1 : 0);
         values.put(DatabaseHelper.COLUMN_IS_REVERSED, clip.isReversed() ? 1 : 0);
+        values.put(DatabaseHelper.COLUMN_PROXY_PATH, clip.getProxyPath());
         
         long id = database.insert(DatabaseHelper.TABLE_VIDEO_CLIPS, null, values);
         clip.setId(id);
@@ -471,6 +580,7 @@ public class ProjectDao {
         int thumbnailPathIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_THUMBNAIL_PATH);
         int isMutedIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_IS_MUTED);
         int isReversedIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_IS_REVERSED);
+        int proxyPathIndex = cursor.getColumnIndex(DatabaseHelper.COLUMN_PROXY_PATH);
         
         if (idIndex != -1) clip.setId(cursor.getLong(idIndex));
         if (pathIndex != -1) clip.setPath(cursor.getString(pathIndex));
@@ -485,6 +595,7 @@ public class ProjectDao {
         if (thumbnailPathIndex != -1) clip.setThumbnailPath(cursor.getString(thumbnailPathIndex));
         if (isMutedIndex != -1) clip.setMuted(cursor.getInt(isMutedIndex) == 1);
         if (isReversedIndex != -1) clip.setReversed(cursor.getInt(isReversedIndex) == 1);
+        if (proxyPathIndex != -1) clip.setProxyPath(cursor.getString(proxyPathIndex));
         
         return clip;
     }
@@ -0,0 +1,168 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.TextOverlay;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes text overlays as one ASS subtitle script, burned in by a single ass
+ * filter. libass only lays out the events active at a frame, so the per-frame
+ * cost does not grow with the number of overlays the way chained drawtext
+ * nodes with enable expressions do.
+ */
+public class AssScriptBuilder {
+
+    // Same duration the drawtext animations used
+    private static final int ANIMATION_MS = 500;
+
+    /**
+     * Build the script
+     * @param overlays Overlays with times in output seconds
+     * @param width Width of the script's coordinate space, normally the output width
+     * @param height Height of the script's coordinate space
+     * @return The ASS script
+     */
+    public static String build(List<TextOverlay> overlays, int width, int height) {
+        StringBuilder script = new StringBuilder();
+        script.append("[Script Info]\n")
+                .append("ScriptType: v4.00+\n")
+                .append("PlayResX: ").append(width).append('\n')
+                .append("PlayResY: ").append(height).append('\n')
+                .append("WrapStyle: 2\n")
+                .append("ScaledBorderAndShadow: yes\n\n");
+
+        // Outline and box colours are set per event; BorderStyle 3 draws the box
+        script.append("[V4+ Styles]\n")
+                .append("Format: Name, Fontname, Fontsize, PrimaryColour, SecondaryColour, OutlineColour, ")
+                .append("BackColour, Bold, Italic, Underline, StrikeOut, ScaleX, ScaleY, Spacing, Angle, ")
+                .append("BorderStyle, Outline, Shadow, Alignment, MarginL, MarginR, MarginV, Encoding\n")
+                .append("Style: Plain,Roboto,24,&H00FFFFFF,&H00FFFFFF,&H00000000,&H00000000,")
+                .append("0,0,0,0,100,100,0,0,1,0,0,5,0,0,0,1\n")
+                .append("Style: Boxed,Roboto,24,&H00FFFFFF,&H00FFFFFF,&H00000000,&H00000000,")
+                .append("0,0,0,0,100,100,0,0,3,8,0,5,0,0,0,1\n\n");
+
+        script.append("[Events]\n")
+                .append("Format: Layer, Start, End, Style, Name, MarginL, MarginR, MarginV, Effect, Text\n");
+        for (int i = 0; i < overlays.size(); i++) {
+            appendEvent(script, overlays.get(i), i, width, height);
+        }
+        return script.toString();
+    }
+
+    private static void appendEvent(StringBuilder script, TextOverlay overlay, int layer, int width, int height) {
+        if (overlay.getText() == null || overlay.getEndTime() <= overlay.getStartTime()) {
+            return;
+        }
+
+        boolean boxed = alphaOf(overlay.getBackgroundColor()) != 0;
+        int x = Math.round(overlay.getPositionX() * width);
+        int y = Math.round(overlay.getPositionY() * height);
+
+        StringBuilder tags = new StringBuilder();
+        tags.append("\\an").append(anchor(overlay.getAlignment()));
+        if (overlay.getFontName() != null) {
+            tags.append("\\fn").append(overlay.getFontName());
+        }
+        tags.append("\\fs").append(Math.round(overlay.getFontSize()))
+                .append("\\c").append(color(overlay.getColor()))
+                .append("\\1a").append(alpha(overlay.getColor()))
+                .append("\\b").append(overlay.isBold() ? 1 : 0)
+                .append("\\i").append(overlay.isItalic() ? 1 : 0)
+                .append("\\u").append(overlay.isUnderline() ? 1 : 0);
+        if (boxed) {
+            tags.append("\\3c").append(color(overlay.getBackgroundColor()))
+                    .append("\\3a").append(alpha(overlay.getBackgroundColor()));
+        }
+        if (overlay.getRotation() != 0) {
+            // ASS rotates counter-clockwise, the editor clockwise
+            tags.append("\\frz").append(FilterGraphCompiler.format(-overlay.getRotation()));
+        }
+
+        String animation = overlay.getAnimation();
+        if ("slide".equals(animation)) {
+            tags.append("\\move(0,").append(y).append(',').append(x).append(',').append(y)
+                    .append(",0,").append(ANIMATION_MS).append(')');
+        } else {
+            tags.append("\\pos(").append(x).append(',').append(y).append(')');
+        }
+        if ("fade".equals(animation)) {
+            tags.append("\\fad(").append(ANIMATION_MS).append(',').append(ANIMATION_MS).append(')');
+        } else if ("zoom".equals(animation)) {
+            tags.append("\\fscx0\\fscy0\\t(0,").append(ANIMATION_MS).append(",\\fscx100\\fscy100)");
+        }
+
+        script.append("Dialogue: ").append(layer).append(',')
+                .append(time(overlay.getStartTime())).append(',')
+                .append(time(overlay.getEndTime())).append(',')
+                .append(boxed ? "Boxed" : "Plain").append(",,0,0,0,,{")
+                .append(tags).append('}')
+                .append(escape(overlay.getText()))
+                .append('\n');
+    }
+
+    /**
+     * Map the editor alignment to a middle-row ASS anchor, so the position is
+     * the vertical centre of the text as in the editor preview
+     */
+    private static int anchor(int alignment) {
+        switch (alignment) {
+            case 0:
+                return 4;
+            case 2:
+                return 6;
+            default:
+                return 5;
+        }
+    }
+
+    /**
+     * Convert an ARGB colour to an ASS &HBBGGRR& colour
+     */
+    static String color(int argb) {
+        return String.format(Locale.US, "&H%02X%02X%02X&",
+                argb & 0xFF, (argb >> 8) & 0xFF, (argb >> 16) & 0xFF);
+    }
+
+    /**
+     * Convert the alpha of an ARGB colour to an ASS alpha, where 00 is opaque
+     */
+    static String alpha(int argb) {
+        return String.format(Locale.US, "&H%02X&", 255 - alphaOf(argb));
+    }
+
+    static String time(double seconds) {
+        long centiseconds = Math.round(Math.max(0, seconds) * 100);
+        return String.format(Locale.US, "%d:%02d:%02d.%02d",
+                centiseconds / 360000, (centiseconds / 6000) % 60, (centiseconds / 100) % 60, centiseconds % 100);
+    }
+
+    /**
+     * Escape override blocks and line breaks; a backslash only needs breaking
+     * up where libass would read it as an escape
+     */
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char next = i + 1 < text.length() ? text.charAt(i + 1) : 0;
+            if (c == '\n') {
+                escaped.append("\\N");
+            } else if (c == '\r') {
+                continue;
+            } else if (c == '{' || c == '}') {
+                escaped.append('\\').append(c);
+            } else if (c == '\\' && (next == 'n' || next == 'N' || next == 'h' || next == '{' || next == '}')) {
+                // A word joiner keeps the backslash literal
+                escaped.append(c).append('\u2060');
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static int alphaOf(int argb) {
+        return (argb >>> 24) & 0xFF;
+    }
+}
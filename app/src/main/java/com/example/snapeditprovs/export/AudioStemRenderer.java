@@ -0,0 +1,66 @@
+package com.example.snapeditprovs.export;
+
+import android.util.Log;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.Project;
+
+import java.io.File;
+
+/**
+ * Renders the mixed audio of a project once into a cached stem. The stem is
+ * keyed by the fingerprint of its own command, which covers every parameter
+ * that affects the audio and nothing that only affects the video. Exports
+ * encode their video without audio and mux the stem in by stream copy, so an
+ * audio-only edit re-renders just the stem.
+ */
+public class AudioStemRenderer {
+    private static final String TAG = "AudioStemRenderer";
+
+    private final RenderCache cache;
+    private final FFmpegSession session = new FFmpegSession();
+
+    /**
+     * @param cache Cache holding the stems
+     */
+    public AudioStemRenderer(RenderCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the audio stem of a project, rendering it on a cache miss. Blocks
+     * while the stem is rendered.
+     * @param project The project to export
+     * @param settings Export settings; only the audio layout is used
+     * @return The stem, or null if rendering failed or was cancelled
+     */
+    public File render(Project project, ExportSettings settings) {
+        ExportCommand command = FilterGraphCompiler.compileAudioStem(project, settings);
+        String key = RenderCache.fingerprint(command);
+        File cached = cache.get(key);
+        if (cached != null) {
+            Log.d(TAG, "Reusing audio stem " + key);
+            return cached;
+        }
+
+        if (session.isCancelled()) {
+            return null;
+        }
+        command.setOutputPath(cache.getPendingFile(key).getAbsolutePath());
+        int returnCode = session.execute(command.toArguments().toArray(new String[0]));
+        if (returnCode != Config.RETURN_CODE_SUCCESS) {
+            Log.e(TAG, "Audio stem failed with code: " + returnCode);
+            cache.discard(key);
+            return null;
+        }
+        return cache.commit(key);
+    }
+
+    /**
+     * Cancel render() from another thread
+     */
+    public void cancel() {
+        session.cancel();
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.snapeditprovs.export;
+
+import android.util.Log;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.example.snapeditprovs.models.MediaInfo;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces reversed clips with reversed intermediates before an export.
+ * The reverse and areverse filters buffer every decoded frame of their input,
+ * so a whole clip does not fit in memory. Instead the clip is cut into
+ * GOP-aligned chunks of at most MAX_CHUNK_SECONDS, each chunk is reversed on
+ * its own, and the chunks are joined in reverse order with the concat demuxer.
+ * Audio is not chunked: AAC frames and priming samples do not line up with
+ * the chunk cuts, so joined audio chunks click and drift. The clip's audio is
+ * reversed in one areverse pass instead, which holds only its decoded PCM,
+ * and is encoded once while the joined video is copied. The joined file is kept in a RenderCache, so later exports of the same clip
+ * range skip this step.
+ */
+public class ChunkedReverser {
+    private static final String TAG = "ChunkedReverser";
+
+    // Bounds the frames reverse holds at once: about 30 decoded 1080p frames at 30 fps
+    static final double MAX_CHUNK_SECONDS = 1.0;
+
+    private final File workDir;
+    private final SourceInspector inspector;
+    private final RenderCache cache;
+    private final FFmpegSession session = new FFmpegSession();
+
+    /**
+     * @param workDir Directory for the chunk files
+     * @param inspector Source probe for keyframes and audio streams, or null
+     * @param cache Cache holding the reversed clips
+     */
+    public ChunkedReverser(File workDir, SourceInspector inspector, RenderCache cache) {
+        this.workDir = workDir;
+        this.inspector = inspector;
+        this.cache = cache;
+    }
+
+    /**
+     * Get a copy of a project whose reversed clips play their reversed
+     * intermediate forwards. Blocks while intermediates are rendered.
+     * @param project The project to export
+     * @return The prepared project, the project itself if it has no reversed
+     *         clips, or null if rendering failed or was cancelled
+     */
+    public Project prepare(Project project) {
+        Project prepared = null;
+        for (int i = 0; i < project.getVideoClips().size(); i++) {
+            VideoClip clip = project.getVideoClips().get(i);
+            if (!clip.isReversed()) {
+                continue;
+            }
+
+            File reversed = reverse(clip);
+            if (reversed == null) {
+                return null;
+            }
+            if (prepared == null) {
+                prepared = copyOf(project);
+            }
+
+            VideoClip replacement = clip.duplicate();
+            replacement.setPath(reversed.getAbsolutePath());
+            replacement.setStartTime(0);
+            replacement.setEndTime(clip.getEndTime() - clip.getStartTime());
+            replacement.setReversed(false);
+            prepared.getVideoClips().set(i, replacement);
+        }
+        if (prepared != null) {
+            cache.trimToSize();
+        }
+        return prepared != null ? prepared : project;
+    }
+
+    /**
+     * Cancel prepare() from another thread
+     */
+    public void cancel() {
+        session.cancel();
+    }
+
+    /**
+     * Split a source range into chunks that start on keyframes where possible
+     * and are at most maxChunk seconds long
+     * @param keyframesUs Sorted keyframe times in microseconds, or null if unknown
+     * @return Chunk ranges as {start, end} in source time, in playback order
+     */
+    static List<double[]> planChunks(double start, double end, long[] keyframesUs, double maxChunk) {
+        List<Double> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        if (keyframesUs != null) {
+            for (long keyframeUs : keyframesUs) {
+                double time = keyframeUs / 1_000_000.0;
+                if (time > start && time < end) {
+                    boundaries.add(time);
+                }
+            }
+        }
+        boundaries.add(end);
+
+        List<double[]> chunks = new ArrayList<>();
+        double chunkStart = start;
+        for (int i = 1; i < boundaries.size(); i++) {
+            double boundary = boundaries.get(i);
+            // Merge short GOPs into one chunk; split long ones evenly
+            if (i < boundaries.size() - 1 && boundaries.get(i + 1) - chunkStart <= maxChunk) {
+                continue;
+            }
+            int parts = (int) Math.ceil((boundary - chunkStart) / maxChunk - 1e-9);
+            double step = (boundary - chunkStart) / Math.max(1, parts);
+            for (int part = 0; part < parts; part++) {
+                double partEnd = part == parts - 1 ? boundary : chunkStart + step;
+                chunks.add(new double[] {chunkStart, partEnd});
+                chunkStart = partEnd;
+            }
+        }
+        return chunks;
+    }
+
+    private File reverse(VideoClip clip) {
+        MediaInfo info = inspector != null ? inspector.getMediaInfo(clip.getPath()) : null;
+        boolean audio = !clip.isMuted() && (info == null || info.hasAudio());
+        KeyframeIndex index = inspector != null ? inspector.getKeyframeIndex(clip.getPath()) : null;
+        long[] keyframes = index != null ? index.getTimesUs() : null;
+
+        List<double[]> chunks = planChunks(clip.getStartTime(), clip.getEndTime(), keyframes, MAX_CHUNK_SECONDS);
+        List<ExportCommand> commands = new ArrayList<>();
+        List<String> fingerprints = new ArrayList<>();
+        for (double[] chunk : chunks) {
+            ExportCommand command = compileChunk(clip.getPath(), chunk[0], chunk[1]);
+            commands.add(command);
+            fingerprints.add(RenderCache.fingerprint(command));
+        }
+
+        String chunksKey = RenderCache.combine(fingerprints);
+        File chunkDir = new File(workDir, chunksKey);
+        File concatList = new File(chunkDir, "chunks.txt");
+        ExportCommand join = compileJoin(concatList, clip.getPath(), clip.getStartTime(), clip.getEndTime(), audio);
+        // Taken before the list is written, so the key does not depend on it
+        List<String> keyParts = new ArrayList<>();
+        keyParts.add(chunksKey);
+        keyParts.add(RenderCache.fingerprint(join));
+        String key = RenderCache.combine(keyParts);
+        File cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Log.d(TAG, "Reversing " + clip.getPath() + " in " + chunks.size() + " chunks");
+        chunkDir.mkdirs();
+        try {
+            // The last chunk plays first
+            List<File> reversedOrder = new ArrayList<>();
+            for (int i = commands.size() - 1; i >= 0; i--) {
+                File chunkFile = new File(chunkDir, "chunk_" + i + ".mp4");
+                ExportCommand command = commands.get(i);
+                command.setOutputPath(chunkFile.getAbsolutePath());
+                if (!run(command.toArguments())) {
+                    return null;
+                }
+                reversedOrder.add(chunkFile);
+            }
+
+            SegmentedExporter.writeConcatList(concatList, reversedOrder);
+            join.setOutputPath(cache.getPendingFile(key).getAbsolutePath());
+            if (!run(join.toArguments())) {
+                cache.discard(key);
+                return null;
+            }
+            return cache.commit(key);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing chunk list", e);
+            return null;
+        } finally {
+            deleteRecursively(chunkDir);
+        }
+    }
+
+    /**
+     * Compile the command reversing the video of one chunk. Chunks are encoded
+     * at high quality with the same settings so they can be joined by stream copy.
+     */
+    static ExportCommand compileChunk(String path, double start, double end) {
+        ExportCommand command = new ExportCommand();
+        FilterGraph graph = command.getGraph();
+        int input = FilterGraphCompiler.addClipInput(command, path, start, end);
+
+        command.addMap(graph.chain(FilterGraph.source(input, FilterGraph.MediaType.VIDEO), "reverse"));
+        command.addOutputOptions("-c:v", "libx264", "-preset", "veryfast", "-crf", "16", "-pix_fmt", "yuv420p",
+                "-an");
+        return command;
+    }
+
+    /**
+     * Compile the command joining the reversed chunks listed in concatList
+     * and, if the clip has audio, muxing in its audio reversed in one pass
+     */
+    static ExportCommand compileJoin(File concatList, String path, double start, double end, boolean audio) {
+        ExportCommand command = new ExportCommand();
+        FilterGraph graph = command.getGraph();
+        int chunks = command.addInput(concatList.getAbsolutePath(), "-f", "concat", "-safe", "0");
+
+        command.addMap(FilterGraph.source(chunks, FilterGraph.MediaType.VIDEO));
+        command.addOutputOptions("-c:v", "copy");
+        if (audio) {
+            int input = FilterGraphCompiler.addClipInput(command, path, start, end);
+            command.addMap(graph.chain(FilterGraph.source(input, FilterGraph.MediaType.AUDIO), "areverse"));
+            command.addOutputOptions("-c:a", "aac", "-b:a", "192k", "-ar", "48000", "-ac", "2");
+        } else {
+            command.addOutputOptions("-an");
+        }
+        return command;
+    }
+
+    private boolean run(List<String> arguments) {
+        int returnCode = session.execute(arguments.toArray(new String[0]));
+        if (returnCode != Config.RETURN_CODE_SUCCESS) {
+            Log.e(TAG, "Reverse step failed with code: " + returnCode);
+            return false;
+        }
+        return true;
+    }
+
+    private static Project copyOf(Project project) {
+        Project copy = project.duplicate();
+        copy.setId(project.getId());
+        copy.setName(project.getName());
+        copy.setCreatedAt(project.getCreatedAt());
+        copy.setLastModified(project.getLastModified());
+        return copy;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
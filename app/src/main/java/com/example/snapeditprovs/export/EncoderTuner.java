@@ -0,0 +1,124 @@
+package com.example.snapeditprovs.export;
+
+import android.util.Log;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.example.snapeditprovs.models.EncoderCalibration;
+import com.example.snapeditprovs.models.ExportSettings;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Picks the libx264 preset of an export from the encoding speed measured on
+ * this device. A slower preset compresses better at the same bitrate, so the
+ * slowest preset that still finishes within the user's time budget is used.
+ * Presets are calibrated lazily, fastest first, and calibration stops at the
+ * first preset that is too slow, since every slower one is slower still.
+ * A failed or cancelled calibration says nothing about speed, so tuning then
+ * stops and the export keeps its default preset.
+ */
+public class EncoderTuner {
+    private static final String TAG = "EncoderTuner";
+
+    // Fastest first; slower than medium costs a lot of time for little gain on phones
+    static final String[] PRESETS = {"ultrafast", "superfast", "veryfast", "faster", "fast", "medium"};
+    public static final String FASTEST_PRESET = PRESETS[0];
+
+    // Length of a calibration encode
+    static final int CALIBRATION_FRAMES = 60;
+
+    // A real export also decodes its sources and runs their filters, which the
+    // synthetic calibration source does not
+    static final double HEADROOM = 1.5;
+
+    /**
+     * Measures the speed of a preset that has not been calibrated yet
+     */
+    public interface Calibrator {
+        /**
+         * @return Frames encoded per second, or a negative value if the measurement failed
+         */
+        double measure(String preset);
+    }
+
+    /**
+     * Get the encoding speed an export needs to finish within its time budget
+     * @param outputDuration Duration of the output in seconds
+     * @param renditionCount Number of renditions encoded from the same frames
+     * @return Frames per second, or 0 if the export has no budget
+     */
+    public static double getRequiredFps(ExportSettings settings, double outputDuration, int renditionCount) {
+        if (settings.getTimeBudgetSeconds() <= 0) {
+            return 0;
+        }
+        double frames = settings.getFramerate() * outputDuration * Math.max(1, renditionCount);
+        return frames * HEADROOM / settings.getTimeBudgetSeconds();
+    }
+
+    /**
+     * Choose the slowest preset that encodes at least the required speed
+     * @param requiredFps Speed from getRequiredFps()
+     * @param calibrations Stored calibrations at the export resolution
+     * @param calibrator Measures presets missing from calibrations, or null to use only stored ones
+     * @param defaultPreset Preset returned if a calibration fails
+     * @return The preset, or null if even the fastest one is too slow
+     */
+    public static String choosePreset(double requiredFps, List<EncoderCalibration> calibrations,
+                                      Calibrator calibrator, String defaultPreset) {
+        Map<String, Double> fpsByPreset = new HashMap<>();
+        for (EncoderCalibration calibration : calibrations) {
+            fpsByPreset.put(calibration.getPreset(), calibration.getFps());
+        }
+
+        String chosen = null;
+        for (String preset : PRESETS) {
+            Double fps = fpsByPreset.get(preset);
+            if (fps == null) {
+                if (calibrator == null) {
+                    break;
+                }
+                fps = calibrator.measure(preset);
+                if (fps < 0) {
+                    return defaultPreset;
+                }
+            }
+            if (fps < requiredFps) {
+                break;
+            }
+            chosen = preset;
+        }
+        return chosen;
+    }
+
+    /**
+     * Measure the speed of a preset by encoding a synthetic source at the
+     * export's size and bitrate. Blocks while the encode runs.
+     * @param session Session to run the encode in, so it can be cancelled
+     * @return Frames encoded per second, or -1 if the encode failed or was cancelled
+     */
+    public static double measure(FFmpegSession session, String preset, ExportSettings settings) {
+        String[] arguments = {
+                "-f", "lavfi",
+                "-i", String.format(Locale.US, "testsrc2=size=%dx%d:rate=%d",
+                        settings.getOutputWidth(), settings.getOutputHeight(), settings.getFramerate()),
+                "-frames:v", String.valueOf(CALIBRATION_FRAMES),
+                "-b:v", settings.getBitrate() + "k",
+                "-c:v", "libx264", "-preset", preset, "-profile:v", "high",
+                "-f", "null", "-"
+        };
+
+        long started = System.nanoTime();
+        int returnCode = session.execute(arguments);
+        long elapsed = System.nanoTime() - started;
+        if (returnCode != Config.RETURN_CODE_SUCCESS || elapsed <= 0) {
+            Log.e(TAG, "Calibration of " + preset + " failed with code: " + returnCode);
+            return -1;
+        }
+        double fps = CALIBRATION_FRAMES * 1e9 / elapsed;
+        Log.d(TAG, String.format(Locale.US, "Calibrated %s at %dp: %.1f fps", preset, settings.getResolution(), fps));
+        return fps;
+    }
+}
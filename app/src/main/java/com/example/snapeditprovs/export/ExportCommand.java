@@ -0,0 +1,226 @@
+package com.example.snapeditprovs.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled FFmpeg invocation: input options, the filter graph, and one or
+ * more outputs with their mapped pads and encoder options. Strings are only
+ * produced when the command is emitted.
+ */
+public class ExportCommand {
+
+    /**
+     * One output file of the command
+     */
+    public static class Output {
+        private final List<FilterGraph.Pad> maps = new ArrayList<>();
+        private final List<String> options = new ArrayList<>();
+        private String path;
+
+        public List<FilterGraph.Pad> getMaps() {
+            return maps;
+        }
+
+        public List<String> getOptions() {
+            return options;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    private final List<List<String>> inputs = new ArrayList<>();
+    private final FilterGraph graph = new FilterGraph();
+    private final List<Output> outputs = new ArrayList<>();
+    private final Map<String, String> generatedFiles = new LinkedHashMap<>();
+    private final List<StickerSprite> sprites = new ArrayList<>();
+
+    public ExportCommand() {
+        outputs.add(new Output());
+    }
+
+    /**
+     * Add an input file
+     * @param path Input file path
+     * @param options Options placed before the -i of this input
+     * @return The index of the input
+     */
+    public int addInput(String path, String... options) {
+        List<String> args = new ArrayList<>();
+        for (String option : options) {
+            args.add(option);
+        }
+        args.add("-i");
+        args.add(path);
+        inputs.add(args);
+        return inputs.size() - 1;
+    }
+
+    public List<List<String>> getInputs() {
+        return inputs;
+    }
+
+    public FilterGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Add a text file the command reads, such as a subtitle script. It is only
+     * written by writeGeneratedFiles().
+     * @param path Absolute path the filter graph refers to
+     * @param content File content
+     */
+    public void addGeneratedFile(String path, String content) {
+        generatedFiles.put(path, content);
+    }
+
+    public Map<String, String> getGeneratedFiles() {
+        return generatedFiles;
+    }
+
+    /**
+     * Add a sticker sprite the command composites. It is only rendered by
+     * writeGeneratedFiles().
+     */
+    public void addSprite(StickerSprite sprite) {
+        sprites.add(sprite);
+    }
+
+    public List<StickerSprite> getSprites() {
+        return sprites;
+    }
+
+    /**
+     * Write the generated files and render the sprites before the command runs.
+     * Their names are derived from their content, so existing files are left
+     * as they are.
+     * @param renderer Renders sticker sprites; may be null if the command has none
+     */
+    public void writeGeneratedFiles(SpriteRenderer renderer) throws IOException {
+        for (StickerSprite sprite : sprites) {
+            if (renderer == null || !renderer.render(sprite)) {
+                throw new IOException("Could not render sticker " + sprite.getSourcePath());
+            }
+        }
+        for (Map.Entry<String, String> entry : generatedFiles.entrySet()) {
+            File file = new File(entry.getKey());
+            if (file.exists()) {
+                continue;
+            }
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            File pending = new File(file.getPath() + ".tmp");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(pending), StandardCharsets.UTF_8)) {
+                writer.write(entry.getValue());
+            }
+            if (!pending.renameTo(file)) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * Start another output file. Maps, output options and the output path set
+     * afterwards apply to the new output.
+     */
+    public void addOutput() {
+        outputs.add(new Output());
+    }
+
+    public List<Output> getOutputs() {
+        return outputs;
+    }
+
+    private Output currentOutput() {
+        return outputs.get(outputs.size() - 1);
+    }
+
+    public List<FilterGraph.Pad> getMaps() {
+        return currentOutput().maps;
+    }
+
+    public void addMap(FilterGraph.Pad pad) {
+        currentOutput().maps.add(pad);
+    }
+
+    public List<String> getOutputOptions() {
+        return currentOutput().options;
+    }
+
+    public void addOutputOptions(String... options) {
+        for (String option : options) {
+            currentOutput().options.add(option);
+        }
+    }
+
+    public String getOutputPath() {
+        return currentOutput().path;
+    }
+
+    public void setOutputPath(String outputPath) {
+        currentOutput().path = outputPath;
+    }
+
+    /**
+     * Emit the command as an argument list suitable for FFmpeg.execute(String[])
+     */
+    public List<String> toArguments() {
+        List<String> args = new ArrayList<>();
+        for (List<String> input : inputs) {
+            args.addAll(input);
+        }
+
+        if (!graph.isEmpty()) {
+            List<FilterGraph.Pad> mapped = new ArrayList<>();
+            for (Output output : outputs) {
+                mapped.addAll(output.maps);
+            }
+            args.add("-filter_complex");
+            args.add(graph.toFilterComplex(mapped));
+        }
+
+        for (int i = 0; i < outputs.size(); i++) {
+            Output output = outputs.get(i);
+            for (FilterGraph.Pad pad : output.maps) {
+                args.add("-map");
+                args.add(pad.toMapSpecifier());
+            }
+            args.addAll(output.options);
+            if (i == 0) {
+                args.add("-y");
+            }
+            args.add(output.path);
+        }
+        return args;
+    }
+
+    /**
+     * Emit the command as a single string, quoting arguments that contain spaces
+     */
+    public String toCommandString() {
+        StringBuilder builder = new StringBuilder();
+        for (String arg : toArguments()) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            if (arg.indexOf(' ') >= 0 || arg.indexOf(';') >= 0 || arg.indexOf('[') >= 0) {
+                builder.append('"').append(arg.replace("\"", "\\\"")).append('"');
+            } else {
+                builder.append(arg);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.EncoderCalibration;
+import com.example.snapeditprovs.models.ExportRun;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.ExportTelemetry;
+import com.example.snapeditprovs.models.Project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predicts the output size and wall-clock time of an export before it runs.
+ * The size follows from the bitrates. The time is the frame count divided
+ * by the throughput of this device at the export resolution, scaled by the
+ * cost of the compiled filter graph: each expensive node adds its per-frame
+ * cost for the stretch of the timeline it processes. Pieces an earlier export
+ * left in the render cache are not accounted for, so the time is an upper
+ * bound once a project has been exported before.
+ */
+public class ExportEstimator {
+
+    // Muxing overhead of the MP4 container
+    static final double CONTAINER_OVERHEAD = 1.02;
+
+    // Typical GIF size per pixel and frame after palette dithering and frame diffs
+    static final double GIF_BYTES_PER_PIXEL = 0.1;
+
+    // Throughput assumed without any measurement: 1080p frames per second of a mid-range phone
+    static final double DEFAULT_FPS_1080P = 25;
+
+    // Runs of at least this many frames give a usable throughput; shorter ones are mostly startup
+    static final int MIN_HISTORY_FRAMES = 150;
+
+    // Per-frame cost of a node relative to decoding, scaling and encoding the frame
+    private static final Map<String, Double> NODE_COSTS = new HashMap<>();
+
+    static {
+        // Reversed clips are pre-rendered in chunks: a decode and an intermediate encode
+        NODE_COSTS.put("reverse", 1.5);
+        NODE_COSTS.put("lut3d", 0.4);
+        NODE_COSTS.put("xfade", 0.3);
+        NODE_COSTS.put("drawtext", 0.2);
+        NODE_COSTS.put("overlay", 0.2);
+        NODE_COSTS.put("ass", 0.15);
+        NODE_COSTS.put("eq", 0.1);
+        NODE_COSTS.put("colortemperature", 0.1);
+        NODE_COSTS.put("fade", 0.05);
+        NODE_COSTS.put("paletteuse", 0.5);
+    }
+
+    /**
+     * Predicted cost of one export
+     */
+    public static class Estimate {
+        private final long sizeBytes;
+        private final long timeMs;
+        private final boolean measured;
+
+        Estimate(long sizeBytes, long timeMs, boolean measured) {
+            this.sizeBytes = sizeBytes;
+            this.timeMs = timeMs;
+            this.measured = measured;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public long getTimeMs() {
+            return timeMs;
+        }
+
+        /**
+         * Whether the time is based on throughput measured on this device
+         * rather than on a default
+         */
+        public boolean isMeasured() {
+            return measured;
+        }
+    }
+
+    /**
+     * Estimate an export
+     * @param throughputFps Frames per second this device exports at the export
+     *                      resolution, from getThroughputFps(), or 0 if unknown
+     */
+    public static Estimate estimate(Project project, ExportSettings settings, double throughputFps) {
+        double duration = FilterGraphCompiler.getOutputDuration(project);
+        boolean measured = throughputFps > 0;
+        double fps = measured ? throughputFps : getDefaultFps(settings);
+        if (duration <= 0) {
+            return new Estimate(0, 0, measured);
+        }
+
+        ExportCommand command = FilterGraphCompiler.compile(project, settings);
+        double frames = settings.getFramerate() * duration;
+        double cost = 1 + getGraphCost(command, duration);
+        long timeMs = Math.round(frames * cost / fps * 1000);
+        return new Estimate(estimateSize(settings, duration), timeMs, measured);
+    }
+
+    /**
+     * Get the extra per-frame cost of the filter graph, averaged over the timeline
+     */
+    static double getGraphCost(ExportCommand command, double duration) {
+        if (duration <= 0) {
+            return 0;
+        }
+        FilterGraph graph = command.getGraph();
+        Map<FilterGraph.Node, Double> memo = new HashMap<>();
+        double cost = 0;
+        for (FilterGraph.Node node : graph.getNodes()) {
+            Double nodeCost = NODE_COSTS.get(node.getName());
+            if (nodeCost != null) {
+                cost += nodeCost * processedSeconds(command, node, duration, memo) / duration;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Get how many seconds of the timeline a node works on. A transition only
+     * blends its overlap and an overlay only composites while its sprite runs;
+     * other nodes process everything upstream of them.
+     */
+    private static double processedSeconds(ExportCommand command, FilterGraph.Node node, double duration,
+                                           Map<FilterGraph.Node, Double> memo) {
+        Double known = memo.get(node);
+        if (known != null) {
+            return known;
+        }
+
+        double seconds;
+        if ("xfade".equals(node.getName()) && node.hasArg("duration")) {
+            seconds = Double.parseDouble(node.getArg("duration"));
+        } else if ("overlay".equals(node.getName()) && node.getInputs().size() > 1) {
+            seconds = padSeconds(command, node.getInputs().get(1), duration, memo);
+        } else {
+            seconds = 0;
+            for (FilterGraph.Pad input : node.getInputs()) {
+                seconds += padSeconds(command, input, duration, memo);
+            }
+        }
+        seconds = Math.min(duration, seconds);
+        memo.put(node, seconds);
+        return seconds;
+    }
+
+    private static double padSeconds(ExportCommand command, FilterGraph.Pad pad, double duration,
+                                     Map<FilterGraph.Node, Double> memo) {
+        if (!pad.isSource()) {
+            FilterGraph.Node producer = command.getGraph().producerOf(pad);
+            return producer != null ? processedSeconds(command, producer, duration, memo) : duration;
+        }
+
+        // Source pads are labelled "<input>:<type>"; clip inputs carry their length in -t
+        String label = pad.getLabel();
+        int input = Integer.parseInt(label.substring(0, label.indexOf(':')));
+        List<String> options = command.getInputs().get(input);
+        int length = options.indexOf("-t");
+        return length >= 0 ? Double.parseDouble(options.get(length + 1)) : duration;
+    }
+
+    static long estimateSize(ExportSettings settings, double duration) {
+        if (settings.isGif()) {
+            int width = Math.min(settings.getOutputWidth(), FilterGraphCompiler.GIF_MAX_WIDTH);
+            double height = (double) width * settings.getOutputHeight() / settings.getOutputWidth();
+            double frames = Math.min(settings.getFramerate(), FilterGraphCompiler.GIF_MAX_FRAMERATE) * duration;
+            return Math.round(width * height * frames * GIF_BYTES_PER_PIXEL);
+        }
+        double kbps = settings.getBitrate() + (settings.isIncludeAudio() ? 128 : 0);
+        return Math.round(kbps * 1000 / 8 * duration * CONTAINER_OVERHEAD);
+    }
+
+    /**
+     * Get the export throughput of this device at the resolution of the
+     * settings: the median over recent successful exports, or else the
+     * calibrated speed of the export's preset with decoding headroom
+     * @param runs Recent export runs, e.g. from ExportRunDao
+     * @param calibrations Encoder calibrations at the export resolution
+     * @return Frames per second, or 0 if nothing was measured
+     */
+    public static double getThroughputFps(List<ExportRun> runs, List<EncoderCalibration> calibrations,
+                                          ExportSettings settings) {
+        List<Double> samples = new ArrayList<>();
+        for (ExportRun run : runs) {
+            ExportTelemetry telemetry = run.getTelemetry();
+            if (run.getReturnCode() != 0 || run.getResolution() != settings.getResolution()
+                    || telemetry == null || telemetry.getElapsedMs() <= 0) {
+                continue;
+            }
+            double frames = telemetry.getTotalSeconds() * run.getFramerate();
+            if (frames >= MIN_HISTORY_FRAMES) {
+                samples.add(frames / (telemetry.getElapsedMs() / 1000.0));
+            }
+        }
+        if (!samples.isEmpty()) {
+            Collections.sort(samples);
+            return samples.get(samples.size() / 2);
+        }
+
+        for (EncoderCalibration calibration : calibrations) {
+            if (calibration.getPreset().equals(settings.getEncoderPreset()) && calibration.getFps() > 0) {
+                return calibration.getFps() / EncoderTuner.HEADROOM;
+            }
+        }
+        return 0;
+    }
+
+    private static double getDefaultFps(ExportSettings settings) {
+        double pixels = (double) settings.getOutputWidth() * settings.getOutputHeight();
+        return DEFAULT_FPS_1080P * (1920.0 * 1080) / pixels;
+    }
+}
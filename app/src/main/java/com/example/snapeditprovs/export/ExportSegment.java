@@ -0,0 +1,138 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.StickerOverlay;
+import com.example.snapeditprovs.models.TextOverlay;
+import com.example.snapeditprovs.models.Transition;
+import com.example.snapeditprovs.models.VideoClip;
+
+/**
+ * A contiguous part of the timeline that can be rendered independently of the
+ * rest. A segment covers a range of clips, optionally without the start of
+ * its first clip and the end of its last clip, so a transition window can be
+ * cut out of the clips around it. A transition never spans two segments.
+ */
+public class ExportSegment {
+    private final int index;
+    private final int firstClip;
+    private final int lastClip;
+    private final double headTrim;
+    private final double tailTrim;
+    private final double outputStart;
+    private final double outputDuration;
+
+    public ExportSegment(int index, int firstClip, int lastClip, double outputStart, double outputDuration) {
+        this(index, firstClip, lastClip, 0, 0, outputStart, outputDuration);
+    }
+
+    /**
+     * @param headTrim Output seconds left out at the start of the first clip
+     * @param tailTrim Output seconds left out at the end of the last clip
+     */
+    public ExportSegment(int index, int firstClip, int lastClip, double headTrim, double tailTrim,
+                         double outputStart, double outputDuration) {
+        this.index = index;
+        this.firstClip = firstClip;
+        this.lastClip = lastClip;
+        this.headTrim = headTrim;
+        this.tailTrim = tailTrim;
+        this.outputStart = outputStart;
+        this.outputDuration = outputDuration;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getFirstClip() {
+        return firstClip;
+    }
+
+    public int getLastClip() {
+        return lastClip;
+    }
+
+    public double getHeadTrim() {
+        return headTrim;
+    }
+
+    public double getTailTrim() {
+        return tailTrim;
+    }
+
+    /**
+     * Get the position of this segment in the exported video, in seconds
+     */
+    public double getOutputStart() {
+        return outputStart;
+    }
+
+    /**
+     * Get the length of this segment in the exported video, in seconds
+     */
+    public double getOutputDuration() {
+        return outputDuration;
+    }
+
+    public double getOutputEnd() {
+        return outputStart + outputDuration;
+    }
+
+    /**
+     * Build a stand-alone project containing only this segment. Overlays are
+     * shifted into segment time; project-level audio clips are left out and
+     * mixed when the segments are stitched.
+     */
+    public Project toProject(Project source) {
+        Project segment = new Project();
+        segment.setName(source.getName());
+        segment.setWidth(source.getWidth());
+        segment.setHeight(source.getHeight());
+
+        for (int i = firstClip; i <= lastClip; i++) {
+            VideoClip clip = source.getVideoClips().get(i);
+            VideoClip copy = clip.duplicate();
+            double from = i == firstClip ? headTrim : 0;
+            double to = clip.getOutputDuration() - (i == lastClip ? tailTrim : 0);
+            if (from > 0 || to < clip.getOutputDuration()) {
+                double[] range = TransitionPlanner.sourceRange(clip, from, to);
+                copy.setStartTime(range[0]);
+                copy.setEndTime(range[1]);
+            }
+            segment.addVideoClip(copy);
+        }
+
+        for (Transition transition : source.getTransitions()) {
+            if (transition.getPosition() >= firstClip && transition.getPosition() < lastClip) {
+                Transition copy = transition.duplicate();
+                copy.setPosition(transition.getPosition() - firstClip);
+                segment.addTransition(copy);
+            }
+        }
+
+        if (source.getAppliedFilter() != null) {
+            segment.setAppliedFilter(source.getAppliedFilter().duplicate());
+        }
+
+        for (TextOverlay overlay : source.getTextOverlays()) {
+            if (overlay.getEndTime() > outputStart && overlay.getStartTime() < getOutputEnd()) {
+                TextOverlay copy = overlay.duplicate();
+                copy.setStartTime(overlay.getStartTime() - outputStart);
+                copy.setEndTime(overlay.getEndTime() - outputStart);
+                segment.addTextOverlay(copy);
+            }
+        }
+
+        for (StickerOverlay overlay : source.getStickerOverlays()) {
+            if (overlay.getEndTime() > outputStart && overlay.getStartTime() < getOutputEnd()) {
+                StickerOverlay copy = overlay.duplicate();
+                copy.setStartTime(overlay.getStartTime() - outputStart);
+                copy.setEndTime(overlay.getEndTime() - outputStart);
+                segment.addStickerOverlay(copy);
+            }
+        }
+
+        segment.setDuration(outputDuration);
+        return segment;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.snapeditprovs.export;
+
+import android.util.Log;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.arthenica.mobileffmpeg.FFmpeg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Shares the CPU cores between all FFmpeg sessions of the app. Left alone,
+ * every session sizes its decoder, filter and encoder threads for the whole
+ * device, so an export running next to a proxy job and a thumbnail runs
+ * three times too many threads. Each session instead asks for a grant of
+ * threads by priority and passes them to FFmpeg as -threads and
+ * -filter_threads. Interactive sessions never wait; export and background
+ * sessions wait while the budget is used up, background ones also while an
+ * export is waiting.
+ */
+public class FFmpegGovernor {
+    private static final String TAG = "FFmpegGovernor";
+
+    /**
+     * Session priority, most important first
+     */
+    public enum Priority {
+        // The user is waiting on it, e.g. a thumbnail or a trim in the editor
+        INTERACTIVE,
+        // A running export
+        EXPORT,
+        // Work nobody waits for, e.g. editing proxies
+        BACKGROUND
+    }
+
+    /**
+     * Threads granted to one session, or to a group of sessions sharing them
+     */
+    public static class Grant {
+        private final Priority priority;
+        private final int threads;
+
+        Grant(Priority priority, int threads) {
+            this.priority = priority;
+            this.threads = threads;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+    }
+
+    /**
+     * Snapshot of the governor's state and of the decisions it made so far
+     */
+    public static class Metrics {
+        private final int coreBudget;
+        private final int threadsInUse;
+        private final int[] running;
+        private final int[] waiting;
+        private final long grants;
+        private final long queuedGrants;
+        private final long totalWaitMs;
+
+        Metrics(int coreBudget, int threadsInUse, int[] running, int[] waiting,
+                long grants, long queuedGrants, long totalWaitMs) {
+            this.coreBudget = coreBudget;
+            this.threadsInUse = threadsInUse;
+            this.running = running;
+            this.waiting = waiting;
+            this.grants = grants;
+            this.queuedGrants = queuedGrants;
+            this.totalWaitMs = totalWaitMs;
+        }
+
+        public int getCoreBudget() {
+            return coreBudget;
+        }
+
+        /**
+         * Threads granted to running sessions; interactive sessions may push
+         * this over the budget
+         */
+        public int getThreadsInUse() {
+            return threadsInUse;
+        }
+
+        public int getRunning(Priority priority) {
+            return running[priority.ordinal()];
+        }
+
+        public int getWaiting(Priority priority) {
+            return waiting[priority.ordinal()];
+        }
+
+        public long getGrants() {
+            return grants;
+        }
+
+        /**
+         * Grants that had to wait for threads to be released
+         */
+        public long getQueuedGrants() {
+            return queuedGrants;
+        }
+
+        public long getTotalWaitMs() {
+            return totalWaitMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d/%d threads, running %d/%d/%d, waiting %d/%d/%d, "
+                            + "%d grants, %d queued for %d ms",
+                    threadsInUse, coreBudget, running[0], running[1], running[2],
+                    waiting[0], waiting[1], waiting[2], grants, queuedGrants, totalWaitMs);
+        }
+    }
+
+    private static FFmpegGovernor instance;
+
+    private final int coreBudget;
+    private final int[] running = new int[Priority.values().length];
+    private final int[] waiting = new int[Priority.values().length];
+    private int threadsInUse;
+    private long grants;
+    private long queuedGrants;
+    private long totalWaitMs;
+
+    FFmpegGovernor(int coreBudget) {
+        this.coreBudget = Math.max(1, coreBudget);
+    }
+
+    public static synchronized FFmpegGovernor getInstance() {
+        if (instance == null) {
+            instance = new FFmpegGovernor(Runtime.getRuntime().availableProcessors());
+        }
+        return instance;
+    }
+
+    public int getCoreBudget() {
+        return coreBudget;
+    }
+
+    /**
+     * Get the most threads a session of a priority is granted
+     */
+    int getShare(Priority priority) {
+        switch (priority) {
+            case INTERACTIVE:
+                return Math.max(1, Math.min(2, coreBudget / 2));
+            case BACKGROUND:
+                return Math.max(1, coreBudget / 4);
+            default:
+                return coreBudget;
+        }
+    }
+
+    /**
+     * Take threads for a session, waiting while the budget is used up
+     * @param priority Priority of the session
+     * @param cancelled Checked whenever the wait is woken; returning true gives up
+     * @return The grant, or null if the wait was cancelled or interrupted
+     */
+    public synchronized Grant acquire(Priority priority, BooleanSupplier cancelled) {
+        long waitStart = 0;
+        waiting[priority.ordinal()]++;
+        try {
+            while (!canStart(priority)) {
+                if (cancelled.getAsBoolean()) {
+                    return null;
+                }
+                if (waitStart == 0) {
+                    waitStart = System.currentTimeMillis();
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            waiting[priority.ordinal()]--;
+        }
+
+        int threads = Math.min(getShare(priority), Math.max(1, coreBudget - threadsInUse));
+        threadsInUse += threads;
+        running[priority.ordinal()]++;
+        grants++;
+        if (waitStart != 0) {
+            queuedGrants++;
+            totalWaitMs += System.currentTimeMillis() - waitStart;
+        }
+        Log.d(TAG, "Granted " + threads + " threads to " + priority + ": " + getMetrics());
+        return new Grant(priority, threads);
+    }
+
+    /**
+     * Return the threads of a grant
+     */
+    public synchronized void release(Grant grant) {
+        if (grant == null) {
+            return;
+        }
+        threadsInUse -= grant.threads;
+        running[grant.priority.ordinal()]--;
+        notifyAll();
+    }
+
+    /**
+     * Wake waiting acquire() calls so they re-check their cancelled condition
+     */
+    public synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(coreBudget, threadsInUse, running.clone(), waiting.clone(),
+                grants, queuedGrants, totalWaitMs);
+    }
+
+    private boolean canStart(Priority priority) {
+        if (priority == Priority.INTERACTIVE) {
+            return true;
+        }
+        if (threadsInUse >= coreBudget) {
+            return false;
+        }
+        // Background work yields to an export waiting for threads
+        return priority != Priority.BACKGROUND || waiting[Priority.EXPORT.ordinal()] == 0;
+    }
+
+    /**
+     * Limit the threads of a command: the filter threads, and the decoder and
+     * encoder threads of each input and video output
+     * @param arguments FFmpeg arguments
+     * @param threads Threads of the session
+     * @return The limited arguments
+     */
+    public static String[] withThreads(String[] arguments, int threads) {
+        String count = String.valueOf(Math.max(1, threads));
+        List<String> limited = new ArrayList<>();
+        limited.add("-filter_threads");
+        limited.add(count);
+        limited.add("-filter_complex_threads");
+        limited.add(count);
+        for (String argument : arguments) {
+            if ("-i".equals(argument) || "-c:v".equals(argument)) {
+                limited.add("-threads");
+                limited.add(count);
+            }
+            limited.add(argument);
+        }
+        return limited.toArray(new String[0]);
+    }
+
+    /**
+     * Run a short command synchronously within the budget. Blocks while the
+     * command waits for threads and while it runs.
+     * @return FFmpeg return code, or RETURN_CODE_CANCEL if the wait was interrupted
+     */
+    public int execute(Priority priority, String[] arguments) {
+        Grant grant = acquire(priority, () -> false);
+        if (grant == null) {
+            return Config.RETURN_CODE_CANCEL;
+        }
+        try {
+            return FFmpeg.execute(withThreads(arguments, grant.getThreads()));
+        } finally {
+            release(grant);
+        }
+    }
+
+    /**
+     * Run a command given as one string, see execute(Priority, String[])
+     */
+    public int execute(Priority priority, String command) {
+        return execute(priority, FFmpeg.parseArguments(command));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.snapeditprovs.export;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.arthenica.mobileffmpeg.FFmpeg;
+import com.arthenica.mobileffmpeg.Statistics;
+import com.arthenica.mobileffmpeg.StatisticsCallback;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A blocking FFmpeg run under an execution ID of its own. FFmpeg.execute()
+ * runs every call under the same default ID and FFmpeg.cancel() stops all of
+ * them, so cancelling an export that way would also kill e.g. a proxy job
+ * running next to it. A session is cancelled by its ID only, and statistics
+ * can be matched to it through Statistics.getExecutionId(). Each command
+ * takes its threads from the FFmpegGovernor first.
+ * <p>
+ * mobile-ffmpeg has a single statistics callback for the whole process. It is
+ * installed once here and hands each update to the listener registered for
+ * its execution ID, so jobs running side by side never replace each other's.
+ */
+public class FFmpegSession {
+    private static final long NO_EXECUTION = -1;
+    private static final Map<Long, StatisticsCallback> statisticsListeners = new ConcurrentHashMap<>();
+    private static boolean statisticsCallbackInstalled;
+
+    private final FFmpegGovernor.Priority priority;
+    private volatile long executionId = NO_EXECUTION;
+    private volatile boolean cancelled;
+    private volatile StatisticsCallback statisticsListener;
+
+    /**
+     * Create a session of export priority
+     */
+    public FFmpegSession() {
+        this(FFmpegGovernor.Priority.EXPORT);
+    }
+
+    /**
+     * @param priority Priority of the session's commands in the governor
+     */
+    public FFmpegSession(FFmpegGovernor.Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Set the listener receiving the statistics of this session's commands
+     * @param listener The listener, or null to ignore them
+     */
+    public void setStatisticsListener(StatisticsCallback listener) {
+        statisticsListener = listener;
+    }
+
+    /**
+     * Run one FFmpeg command. Blocks while it waits for threads and while it runs.
+     * @return FFmpeg return code, RETURN_CODE_CANCEL if the session was cancelled
+     */
+    public int execute(String[] arguments) {
+        FFmpegGovernor governor = FFmpegGovernor.getInstance();
+        FFmpegGovernor.Grant grant = governor.acquire(priority, () -> cancelled);
+        if (grant == null) {
+            return Config.RETURN_CODE_CANCEL;
+        }
+        try {
+            return run(FFmpegGovernor.withThreads(arguments, grant.getThreads()));
+        } finally {
+            governor.release(grant);
+        }
+    }
+
+    private int run(String[] arguments) {
+        if (cancelled) {
+            return Config.RETURN_CODE_CANCEL;
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger result = new AtomicInteger(Config.RETURN_CODE_SUCCESS);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executionId = FFmpeg.executeAsync(arguments, (id, returnCode) -> {
+                result.set(returnCode);
+                done.countDown();
+            }, executor);
+            StatisticsCallback listener = statisticsListener;
+            if (listener != null) {
+                addStatisticsListener(executionId, listener);
+            }
+            // cancel() may have run before the ID was known
+            if (cancelled) {
+                FFmpeg.cancel(executionId);
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            FFmpeg.cancel(executionId);
+            return Config.RETURN_CODE_CANCEL;
+        } finally {
+            removeStatisticsListener(executionId);
+            executionId = NO_EXECUTION;
+            executor.shutdown();
+        }
+        return result.get();
+    }
+
+    /**
+     * Cancel the running command from another thread; later commands of this
+     * session return RETURN_CODE_CANCEL without running
+     */
+    public void cancel() {
+        cancelled = true;
+        FFmpegGovernor.getInstance().wakeUp();
+        long id = executionId;
+        if (id != NO_EXECUTION) {
+            FFmpeg.cancel(id);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Get the execution ID of the running command
+     * @return The ID, or -1 if no command is running
+     */
+    public long getExecutionId() {
+        return executionId;
+    }
+
+    /**
+     * Route the statistics of one FFmpeg execution to a listener until
+     * removeStatisticsListener() is called for it
+     */
+    public static void addStatisticsListener(long executionId, StatisticsCallback listener) {
+        synchronized (statisticsListeners) {
+            if (!statisticsCallbackInstalled) {
+                Config.enableStatisticsCallback(FFmpegSession::dispatchStatistics);
+                statisticsCallbackInstalled = true;
+            }
+        }
+        statisticsListeners.put(executionId, listener);
+    }
+
+    /**
+     * Stop routing the statistics of an execution
+     */
+    public static void removeStatisticsListener(long executionId) {
+        statisticsListeners.remove(executionId);
+    }
+
+    /**
+     * Hand a statistics update to the listener of its execution, if any
+     */
+    static void dispatchStatistics(Statistics statistics) {
+        StatisticsCallback listener = statisticsListeners.get(statistics.getExecutionId());
+        if (listener != null) {
+            listener.apply(statistics);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.snapeditprovs.export;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed node/edge model of an FFmpeg filter graph.
+ * Nodes are kept in insertion order, which is always a valid topological order
+ * because a node can only consume pads that were created before it.
+ */
+public class FilterGraph {
+
+    public enum MediaType {
+        VIDEO("v"),
+        AUDIO("a");
+
+        private final String suffix;
+
+        MediaType(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+
+    /**
+     * An edge of the graph. Source pads refer to an input file stream ("0:v"),
+     * every other pad is a labelled output of a node.
+     */
+    public static class Pad {
+        private final String label;
+        private final MediaType type;
+        private final boolean source;
+
+        private Pad(String label, MediaType type, boolean source) {
+            this.label = label;
+            this.type = type;
+            this.source = source;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public MediaType getType() {
+            return type;
+        }
+
+        public boolean isSource() {
+            return source;
+        }
+
+        /**
+         * Get the pad as it must be written in a -map option
+         */
+        public String toMapSpecifier() {
+            return source ? label : "[" + label + "]";
+        }
+
+        @Override
+        public String toString() {
+            return "[" + label + "]";
+        }
+    }
+
+    /**
+     * A single filter instance with its options and connected pads
+     */
+    public static class Node {
+        private final String name;
+        private final List<String[]> args = new ArrayList<>();
+        private final List<Pad> inputs = new ArrayList<>();
+        private final List<Pad> outputs = new ArrayList<>();
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Add a named option (key=value)
+         */
+        public Node arg(String key, Object value) {
+            args.add(new String[]{key, String.valueOf(value)});
+            return this;
+        }
+
+        /**
+         * Add a positional option
+         */
+        public Node arg(Object value) {
+            args.add(new String[]{null, String.valueOf(value)});
+            return this;
+        }
+
+        public String getArg(String key) {
+            for (String[] arg : args) {
+                if (key.equals(arg[0])) {
+                    return arg[1];
+                }
+            }
+            return null;
+        }
+
+        public boolean hasArg(String key) {
+            return getArg(key) != null;
+        }
+
+        public List<String[]> getArgs() {
+            return args;
+        }
+
+        public Node input(Pad pad) {
+            inputs.add(pad);
+            return this;
+        }
+
+        public List<Pad> getInputs() {
+            return inputs;
+        }
+
+        public List<Pad> getOutputs() {
+            return outputs;
+        }
+
+        String argsToString() {
+            StringBuilder builder = new StringBuilder();
+            for (String[] arg : args) {
+                if (builder.length() > 0) {
+                    builder.append(':');
+                }
+                if (arg[0] != null) {
+                    builder.append(arg[0]).append('=');
+                }
+                builder.append(escape(arg[1]));
+            }
+            return builder.toString();
+        }
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<MediaType, Integer> labelCounters = new HashMap<>();
+
+    /**
+     * Get a pad referring to a stream of an input file
+     * @param inputIndex Index of the -i input
+     * @param type Stream type
+     */
+    public static Pad source(int inputIndex, MediaType type) {
+        return new Pad(inputIndex + ":" + type.getSuffix(), type, true);
+    }
+
+    /**
+     * Append a new node to the graph
+     * @param name FFmpeg filter name
+     */
+    public Node add(String name) {
+        Node node = new Node(name);
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Create a new labelled output pad on a node
+     */
+    public Pad output(Node node, MediaType type) {
+        int counter = labelCounters.containsKey(type) ? labelCounters.get(type) : 0;
+        labelCounters.put(type, counter + 1);
+        Pad pad = new Pad(type.getSuffix() + counter, type, false);
+        node.outputs.add(pad);
+        return pad;
+    }
+
+    /**
+     * Convenience for the common single-input, single-output filter
+     */
+    public Pad chain(Pad input, String name, Object... keyValues) {
+        Node node = add(name).input(input);
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            node.arg((String) keyValues[i], keyValues[i + 1]);
+        }
+        return output(node, input.getType());
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Find the node producing a pad, or null for source pads
+     */
+    public Node producerOf(Pad pad) {
+        for (Node node : nodes) {
+            if (node.outputs.contains(pad)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count how many node inputs consume a pad
+     */
+    public int consumerCount(Pad pad) {
+        int count = 0;
+        for (Node node : nodes) {
+            for (Pad input : node.inputs) {
+                if (input == pad) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Replace every use of a pad with another pad
+     */
+    void rewire(Pad from, Pad to) {
+        for (Node node : nodes) {
+            for (int i = 0; i < node.inputs.size(); i++) {
+                if (node.inputs.get(i) == from) {
+                    node.inputs.set(i, to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Emit the graph as a -filter_complex string. Single-use links between
+     * consecutive nodes are written as comma-joined chains so no intermediate
+     * label is emitted for them.
+     * @param outputs Pads that are mapped to the output file and must stay labelled
+     */
+    public String toFilterComplex(List<Pad> outputs) {
+        Map<Pad, Integer> uses = new HashMap<>();
+        for (Node node : nodes) {
+            for (Pad input : node.inputs) {
+                Integer count = uses.get(input);
+                uses.put(input, count == null ? 1 : count + 1);
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            Node previous = i > 0 ? nodes.get(i - 1) : null;
+            boolean continuesChain = previous != null && continuesChain(previous, node, uses, outputs);
+
+            if (!continuesChain) {
+                if (builder.length() > 0) {
+                    builder.append(';');
+                }
+                for (Pad input : node.inputs) {
+                    builder.append(input);
+                }
+            } else {
+                builder.append(',');
+            }
+
+            builder.append(node.name);
+            String args = node.argsToString();
+            if (!args.isEmpty()) {
+                builder.append('=').append(args);
+            }
+
+            Node next = i + 1 < nodes.size() ? nodes.get(i + 1) : null;
+            if (next == null || !continuesChain(node, next, uses, outputs)) {
+                for (Pad output : node.outputs) {
+                    builder.append(output);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean continuesChain(Node previous, Node next, Map<Pad, Integer> uses, List<Pad> outputs) {
+        if (previous.outputs.size() != 1 || next.inputs.size() != 1) {
+            return false;
+        }
+        Pad link = previous.outputs.get(0);
+        Integer count = uses.get(link);
+        return next.inputs.get(0) == link && count != null && count == 1 && !outputs.contains(link);
+    }
+
+    /**
+     * Escape an option value for both the option parser and the graph parser.
+     * Values containing ':' or quotes are quoted first, then graph syntax
+     * characters are backslash-escaped.
+     */
+    static String escape(String value) {
+        String escaped = value;
+        if (value.indexOf(':') >= 0 || value.indexOf('\'') >= 0 || value.indexOf('\\') >= 0) {
+            escaped = "'" + value.replace("'", "'\\''") + "'";
+        }
+        StringBuilder builder = new StringBuilder(escaped.length());
+        for (int i = 0; i < escaped.length(); i++) {
+            char c = escaped.charAt(i);
+            if (c == '\\' || c == '\'' || c == '[' || c == ']' || c == ',' || c == ';') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
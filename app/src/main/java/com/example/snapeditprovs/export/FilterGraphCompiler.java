@@ -0,0 +1,899 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.AudioClip;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.Filter;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.StickerOverlay;
+import com.example.snapeditprovs.models.TextOverlay;
+import com.example.snapeditprovs.models.Transition;
+import com.example.snapeditprovs.models.VideoClip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiles a Project and its ExportSettings into an ExportCommand.
+ * The filter graph is built as typed nodes, optimized, and only turned into
+ * a string when the command is emitted.
+ */
+public class FilterGraphCompiler {
+
+    private static final double STICKER_FADE_SECONDS = 0.5;
+
+    // GIF frames are buffered until the palette is known, so keep them small
+    static final int GIF_MAX_FRAMERATE = 15;
+    static final int GIF_MAX_WIDTH = 480;
+
+    /**
+     * Compile the export command for a project
+     * @param project The project to export
+     * @param settings Export settings
+     * @return The compiled, optimized command
+     */
+    public static ExportCommand compile(Project project, ExportSettings settings) {
+        ExportCommand command = new ExportCommand();
+        FilterGraph.Pad[] streams = compileTimeline(command, project, settings, hasAudio(settings));
+
+        if (streams[0] != null) {
+            command.addMap(settings.isGif()
+                    ? appendGifPalette(command.getGraph(), streams[0], settings)
+                    : streams[0]);
+        }
+        if (streams[1] != null && hasAudio(settings)) {
+            command.addMap(streams[1]);
+        }
+
+        FilterGraphOptimizer.optimize(command.getGraph(), command.getMaps());
+
+        addVideoOutputOptions(command, settings);
+        addAudioOutputOptions(command, settings);
+        command.setOutputPath(settings.getFullOutputPath());
+        return command;
+    }
+
+    /**
+     * Compile one command that writes several renditions of a project. The
+     * timeline is decoded and filtered once, then split into one encoder output
+     * per rendition, each with its own size, bitrate and framerate.
+     * Text overlays are drawn before the split, in the coordinates of the first
+     * rendition, so every rendition shows them at the same relative position.
+     * @param project The project to export
+     * @param renditions Settings of each rendition, each with its own output path
+     */
+    public static ExportCommand compileRenditions(Project project, List<ExportSettings> renditions) {
+        return compileRenditions(project, renditions, null);
+    }
+
+    /**
+     * Compile one command that writes several renditions of a project
+     * @param stemPath Audio stem from compileAudioStem(), stream-copied into every
+     *                 rendition with audio; null to mix the audio in this command
+     */
+    public static ExportCommand compileRenditions(Project project, List<ExportSettings> renditions,
+                                                  String stemPath) {
+        if (renditions.size() == 1 && stemPath == null) {
+            return compile(project, renditions.get(0));
+        }
+
+        ExportCommand command = new ExportCommand();
+        FilterGraph graph = command.getGraph();
+
+        int audible = 0;
+        for (ExportSettings settings : renditions) {
+            if (hasAudio(settings)) {
+                audible++;
+            }
+        }
+
+        FilterGraph.Pad[] streams = compileTimeline(command, project, renditions.get(0),
+                audible > 0 && stemPath == null);
+        int stemInput = stemPath != null ? command.addInput(stemPath) : -1;
+        List<FilterGraph.Pad> roots = new ArrayList<>();
+        for (FilterGraph.Pad stream : streams) {
+            if (stream != null) {
+                roots.add(stream);
+            }
+        }
+        // Optimize the shared part only; the split outputs are final
+        FilterGraphOptimizer.optimize(graph, roots);
+        FilterGraph.Pad video = streams[0] != null ? roots.get(0) : null;
+        FilterGraph.Pad audio = streams[1] != null ? roots.get(roots.size() - 1) : null;
+
+        List<FilterGraph.Pad> videoBranches = video != null
+                ? fork(graph, video, "split", renditions.size())
+                : new ArrayList<>();
+        List<FilterGraph.Pad> audioBranches = audio != null
+                ? fork(graph, audio, "asplit", audible)
+                : new ArrayList<>();
+
+        int audioBranch = 0;
+        for (int i = 0; i < renditions.size(); i++) {
+            ExportSettings settings = renditions.get(i);
+            if (i > 0) {
+                command.addOutput();
+            }
+            if (video != null) {
+                command.addMap(settings.isGif()
+                        ? appendGifPalette(graph, videoBranches.get(i), settings)
+                        : videoBranches.get(i));
+            }
+            if (audio != null && hasAudio(settings)) {
+                command.addMap(audioBranches.get(audioBranch++));
+            }
+            addVideoOutputOptions(command, settings);
+            if (stemInput != -1 && hasAudio(settings)) {
+                command.addMap(FilterGraph.source(stemInput, FilterGraph.MediaType.AUDIO));
+                command.addOutputOptions("-c:a", "copy");
+            } else {
+                addAudioOutputOptions(command, settings);
+            }
+            command.setOutputPath(settings.getFullOutputPath());
+        }
+        return command;
+    }
+
+    /**
+     * Add the inputs and the filter graph of the whole timeline
+     * @param settings Settings that place text overlays
+     * @param includeAudio Whether to compile the audio; a timeline without audio then gets a silent track
+     * @return The final video and audio pads, either of which may be null
+     */
+    private static FilterGraph.Pad[] compileTimeline(ExportCommand command, Project project,
+                                                     ExportSettings settings, boolean includeAudio) {
+        FilterGraph graph = command.getGraph();
+
+        List<VideoClip> videoClips = project.getVideoClips();
+        List<AudioClip> audioClips = project.getAudioClips();
+
+        // Inputs: video clips of the same file share one decoder where the planner
+        // finds it cheaper, then one input per audio clip. Every input is already
+        // cut to the range it serves.
+        List<InputPlanner.Input> videoInputs = InputPlanner.plan(videoClips);
+        FilterGraph.Pad[] clipVideoPads = new FilterGraph.Pad[videoClips.size()];
+        FilterGraph.Pad[] clipAudioPads = new FilterGraph.Pad[videoClips.size()];
+        InputPlanner.Input[] clipInputs = new InputPlanner.Input[videoClips.size()];
+        for (InputPlanner.Input input : videoInputs) {
+            int inputIndex = addClipInput(command, input.getPath(), input.getStart(), input.getEnd());
+            fanOut(graph, inputIndex, input, videoClips, clipVideoPads, clipAudioPads, includeAudio);
+            for (int clipIndex : input.getClipIndexes()) {
+                clipInputs[clipIndex] = input;
+            }
+        }
+        List<Integer> audioInputIndexes = new ArrayList<>();
+        if (includeAudio) {
+            for (AudioClip clip : audioClips) {
+                audioInputIndexes.add(addClipInput(command, clip.getPath(), clip.getStartTime(), clip.getEndTime()));
+            }
+        }
+
+        // Per-clip video chains
+        List<FilterGraph.Pad> videoStreams = new ArrayList<>();
+        for (int i = 0; i < videoClips.size(); i++) {
+            videoStreams.add(compileClipVideo(graph, clipVideoPads[i], clipInputs[i], videoClips.get(i)));
+        }
+
+        // Per-clip audio chains; muted clips keep their place in the sequence as silence
+        List<FilterGraph.Pad> clipAudioStreams = new ArrayList<>();
+        for (int i = 0; i < videoClips.size() && includeAudio; i++) {
+            VideoClip clip = videoClips.get(i);
+            clipAudioStreams.add(clip.isMuted()
+                    ? appendSilence(graph, clip.getOutputDuration())
+                    : compileClipAudio(graph, clipAudioPads[i], clipInputs[i], clip));
+        }
+        List<FilterGraph.Pad> audioClipStreams = new ArrayList<>();
+        for (int i = 0; i < audioInputIndexes.size(); i++) {
+            audioClipStreams.add(compileAudioClip(graph, audioInputIndexes.get(i), audioClips.get(i)));
+        }
+
+        // Join clips, then apply the project filter once to the joined stream
+        FilterGraph.Pad video = null;
+        if (!videoStreams.isEmpty()) {
+            video = joinClips(graph, videoStreams, videoClips, project.getTransitions());
+            if (project.getAppliedFilter() != null) {
+                video = appendFilter(graph, video, project.getAppliedFilter());
+            }
+            if (!project.getStickerOverlays().isEmpty()) {
+                video = appendStickers(command, video, project.getStickerOverlays(), settings);
+            }
+            if (!project.getTextOverlays().isEmpty() && settings.getScratchPath() != null) {
+                video = appendSubtitles(command, video, project.getTextOverlays(), settings);
+            } else {
+                for (TextOverlay overlay : project.getTextOverlays()) {
+                    video = appendTextOverlay(graph, video, overlay, settings);
+                }
+            }
+        }
+
+        FilterGraph.Pad audio = video != null && includeAudio
+                ? mixTimelineAudio(graph, project, clipAudioStreams, audioClipStreams)
+                : null;
+
+        return new FilterGraph.Pad[] {video, audio};
+    }
+
+    /**
+     * Compile the command that joins rendered segments with the concat demuxer.
+     * Video is always stream-copied; audio is copied too unless the project has
+     * audio clips, which are mixed over the joined segment audio here. The
+     * segments are MPEG-TS files: their H.264 carries its parameter sets in-band,
+     * so pieces from different encoders stay decodable after the join, and
+     * their ADTS audio is converted back for MP4.
+     * @param concatListPath Path of the concat demuxer list file
+     * @param project The full project
+     * @param settings Export settings
+     */
+    public static ExportCommand compileStitch(String concatListPath, Project project, ExportSettings settings) {
+        return compileStitch(concatListPath, null, project, settings);
+    }
+
+    /**
+     * Compile the command that joins rendered segments
+     * @param stemPath Audio stem from compileAudioStem() to stream-copy in, or
+     *                 null to take the audio from the segments
+     */
+    public static ExportCommand compileStitch(String concatListPath, String stemPath, Project project,
+                                              ExportSettings settings) {
+        if (stemPath != null && settings.isIncludeAudio()) {
+            ExportCommand command = new ExportCommand();
+            command.addInput(concatListPath, "-f", "concat", "-safe", "0");
+            return muxStem(command, stemPath, settings);
+        }
+
+        ExportCommand command = new ExportCommand();
+        FilterGraph graph = command.getGraph();
+        command.addInput(concatListPath, "-f", "concat", "-safe", "0");
+        command.addMap(FilterGraph.source(0, FilterGraph.MediaType.VIDEO));
+
+        List<AudioClip> audioClips = project.getAudioClips();
+        if (!settings.isIncludeAudio()) {
+            command.addOutputOptions("-c:v", "copy", "-an");
+        } else if (audioClips.isEmpty()) {
+            command.addMap(FilterGraph.source(0, FilterGraph.MediaType.AUDIO));
+            command.addOutputOptions("-c", "copy", "-bsf:a", "aac_adtstoasc");
+        } else {
+            FilterGraph.Node mix = graph.add("amix")
+                    .arg("inputs", audioClips.size() + 1)
+                    .arg("duration", "first")
+                    .input(FilterGraph.source(0, FilterGraph.MediaType.AUDIO));
+            for (AudioClip clip : audioClips) {
+                int inputIndex = addClipInput(command, clip.getPath(), clip.getStartTime(), clip.getEndTime());
+                mix.input(appendDelay(graph, compileAudioClip(graph, inputIndex, clip), clip.getTimelinePosition()));
+            }
+            command.addMap(graph.output(mix, FilterGraph.MediaType.AUDIO));
+            FilterGraphOptimizer.optimize(graph, command.getMaps());
+            command.addOutputOptions("-c:v", "copy");
+            addAudioOutputOptions(command, settings);
+        }
+
+        command.setOutputPath(settings.getFullOutputPath());
+        return command;
+    }
+
+    /**
+     * Compile a command that stream-copies the video of a source range into an
+     * MPEG-TS piece. The start must be a keyframe so the input seek lands on it
+     * exactly. The H.264 is converted to Annex B, which repeats the source's
+     * parameter sets before every keyframe, so the copied GOPs decode with their
+     * own SPS/PPS after the join. Audio is re-encoded to the export layout since
+     * it is cheap; the source must have an audio stream if audio is included.
+     * @param path Source file
+     * @param start Start of the range in source time, on a keyframe
+     * @param end End of the range in source time
+     * @param settings Export settings with the output path of this piece
+     */
+    public static ExportCommand compileStreamCopy(String path, double start, double end, ExportSettings settings) {
+        ExportCommand command = new ExportCommand();
+        command.addInput(path, "-ss", format(start), "-t", format(end - start));
+        command.addMap(FilterGraph.source(0, FilterGraph.MediaType.VIDEO));
+        command.addOutputOptions("-c:v", "copy", "-bsf:v", "h264_mp4toannexb");
+        if (settings.isIncludeAudio()) {
+            command.addMap(FilterGraph.source(0, FilterGraph.MediaType.AUDIO));
+        }
+        addAudioOutputOptions(command, settings);
+        command.addOutputOptions("-avoid_negative_ts", "make_zero");
+        command.setOutputPath(settings.getFullOutputPath());
+        return command;
+    }
+
+    /**
+     * Compile the command rendering the mixed audio of a project into a stem:
+     * clip audio in timeline order, crossfaded over transitions, with the audio
+     * clips mixed in at their timeline positions. The stem is encoded in the
+     * export audio layout and has exactly the length of the exported video, so
+     * it can be muxed in by stream copy. Its fingerprint depends only on what
+     * affects the audio, so video-only edits leave a cached stem valid.
+     * @param project The project to export
+     * @param settings Export settings with the output path of the stem
+     */
+    public static ExportCommand compileAudioStem(Project project, ExportSettings settings) {
+        ExportCommand command = new ExportCommand();
+        FilterGraph graph = command.getGraph();
+        List<VideoClip> videoClips = project.getVideoClips();
+
+        // Muted clips keep their place in the sequence as silence
+        List<FilterGraph.Pad> clipStreams = new ArrayList<>();
+        for (VideoClip clip : videoClips) {
+            if (clip.isMuted()) {
+                clipStreams.add(appendSilence(graph, clip.getOutputDuration()));
+                continue;
+            }
+            int inputIndex = addClipInput(command, clip.getPath(), clip.getStartTime(), clip.getEndTime());
+            FilterGraph.Pad pad = FilterGraph.source(inputIndex, FilterGraph.MediaType.AUDIO);
+            pad = graph.output(graph.add("asetpts").arg("PTS-STARTPTS").input(pad), FilterGraph.MediaType.AUDIO);
+            pad = graph.chain(pad, "volume", "volume", format(clip.getVolume()));
+            if (clip.isReversed()) {
+                pad = graph.chain(pad, "areverse");
+            }
+            clipStreams.add(appendTempo(graph, pad, clip.getSpeed()));
+        }
+        List<FilterGraph.Pad> audioClipStreams = new ArrayList<>();
+        for (AudioClip clip : project.getAudioClips()) {
+            int inputIndex = addClipInput(command, clip.getPath(), clip.getStartTime(), clip.getEndTime());
+            audioClipStreams.add(compileAudioClip(graph, inputIndex, clip));
+        }
+
+        FilterGraph.Pad audio = mixTimelineAudio(graph, project, clipStreams, audioClipStreams);
+        command.addMap(audio);
+        FilterGraphOptimizer.optimize(graph, command.getMaps());
+
+        addAudioOutputOptions(command, settings);
+        command.setOutputPath(settings.getFullOutputPath());
+        return command;
+    }
+
+    /**
+     * Mix the audio of a timeline the way its video is joined: clip audio in
+     * timeline order, crossfaded over transitions, with the audio clips mixed
+     * in at their timeline positions. Sources whose audio ends early are
+     * padded, and the result never outlasts the video.
+     * @param clipStreams Audio of every video clip, silence for muted ones
+     * @param audioClipStreams Audio of every audio clip from compileAudioClip()
+     */
+    private static FilterGraph.Pad mixTimelineAudio(FilterGraph graph, Project project,
+                                                    List<FilterGraph.Pad> clipStreams,
+                                                    List<FilterGraph.Pad> audioClipStreams) {
+        double duration = getOutputDuration(project);
+        FilterGraph.Pad audio = clipStreams.isEmpty()
+                ? appendSilence(graph, duration)
+                : joinClipAudio(graph, clipStreams, project.getVideoClips(), project.getTransitions());
+
+        if (!audioClipStreams.isEmpty()) {
+            FilterGraph.Node mix = graph.add("amix")
+                    .arg("inputs", audioClipStreams.size() + 1)
+                    .arg("duration", "first")
+                    .input(audio);
+            List<AudioClip> audioClips = project.getAudioClips();
+            for (int i = 0; i < audioClipStreams.size(); i++) {
+                mix.input(appendDelay(graph, audioClipStreams.get(i), audioClips.get(i).getTimelinePosition()));
+            }
+            audio = graph.output(mix, FilterGraph.MediaType.AUDIO);
+        }
+
+        audio = graph.chain(audio, "apad");
+        return graph.chain(audio, "atrim", "duration", format(duration));
+    }
+
+    /**
+     * Compile a command muxing an audio stem into an encoded video, both by
+     * stream copy
+     * @param videoPath Video encoded without audio
+     * @param stemPath Audio stem from compileAudioStem()
+     * @param settings Export settings with the final output path
+     */
+    public static ExportCommand compileRemux(String videoPath, String stemPath, ExportSettings settings) {
+        ExportCommand command = new ExportCommand();
+        command.addInput(videoPath);
+        return muxStem(command, stemPath, settings);
+    }
+
+    private static ExportCommand muxStem(ExportCommand command, String stemPath, ExportSettings settings) {
+        int stemInput = command.addInput(stemPath);
+        command.addMap(FilterGraph.source(0, FilterGraph.MediaType.VIDEO));
+        command.addMap(FilterGraph.source(stemInput, FilterGraph.MediaType.AUDIO));
+        command.addOutputOptions("-c", "copy");
+        command.setOutputPath(settings.getFullOutputPath());
+        return command;
+    }
+
+    /**
+     * Delay an audio clip to its timeline position
+     */
+    private static FilterGraph.Pad appendDelay(FilterGraph graph, FilterGraph.Pad pad, double position) {
+        if (position <= 0) {
+            return pad;
+        }
+        return graph.chain(pad, "adelay",
+                "delays", format(position * 1000),
+                "all", 1);
+    }
+
+    /**
+     * Change the tempo of clip audio to match the clip speed. One atempo
+     * instance handles factors from 0.5 to 2, so larger changes are chained.
+     */
+    private static FilterGraph.Pad appendTempo(FilterGraph graph, FilterGraph.Pad pad, double speed) {
+        while (speed > 2.0) {
+            pad = graph.chain(pad, "atempo", "tempo", "2");
+            speed /= 2.0;
+        }
+        while (speed < 0.5) {
+            pad = graph.chain(pad, "atempo", "tempo", "0.5");
+            speed /= 0.5;
+        }
+        if (speed != 1.0) {
+            pad = graph.chain(pad, "atempo", "tempo", format(speed));
+        }
+        return pad;
+    }
+
+    /**
+     * Get the length of the exported video: clip lengths after speed, minus
+     * the overlap of every transition
+     */
+    public static double getOutputDuration(Project project) {
+        return SegmentPlanner.getOutputDuration(SegmentPlanner.plan(project));
+    }
+
+    /**
+     * Add a clip input with an input-side seek. FFmpeg then starts decoding at
+     * the keyframe before the clip start and discards only up to the exact start,
+     * instead of decoding the source from zero for a trim filter to drop.
+     * @return Index of the input
+     */
+    static int addClipInput(ExportCommand command, String path, double start, double end) {
+        List<String> options = new ArrayList<>();
+        if (start > 0) {
+            options.add("-ss");
+            options.add(format(start));
+        }
+        if (end > start) {
+            options.add("-t");
+            options.add(format(end - start));
+        }
+        return command.addInput(path, options.toArray(new String[0]));
+    }
+
+    private static void addVideoOutputOptions(ExportCommand command, ExportSettings settings) {
+        if (settings.isGif()) {
+            // Frame rate and size are set in the graph; loop forever
+            command.addOutputOptions("-loop", "0");
+            return;
+        }
+        command.addOutputOptions(
+                "-s", settings.getOutputWidth() + "x" + settings.getOutputHeight(),
+                "-b:v", settings.getBitrate() + "k",
+                "-r", String.valueOf(settings.getFramerate()),
+                "-c:v", "libx264", "-preset", settings.getEncoderPreset(),
+                "-profile:v", settings.getVideoProfile(), "-pix_fmt", "yuv420p");
+        if (settings.getVideoLevel() != null) {
+            command.addOutputOptions("-level", settings.getVideoLevel());
+        }
+    }
+
+    private static void addAudioOutputOptions(ExportCommand command, ExportSettings settings) {
+        if (hasAudio(settings)) {
+            // Fixed layout so independently rendered segments can be stream-copied together
+            command.addOutputOptions("-c:a", "aac", "-b:a", "128k", "-ar", "48000", "-ac", "2");
+        } else {
+            command.addOutputOptions("-an");
+        }
+    }
+
+    private static boolean hasAudio(ExportSettings settings) {
+        return settings.isIncludeAudio() && !settings.isGif();
+    }
+
+    /**
+     * Turn a stream into GIF frames in one pass. Frame rate and size are
+     * reduced first and repeated frames are dropped, so the palette work
+     * only sees the frames that end up in the file. split feeds palettegen
+     * and paletteuse from the same decode; paletteuse holds the frames until
+     * palettegen emits the palette at the end of the stream.
+     */
+    private static FilterGraph.Pad appendGifPalette(FilterGraph graph, FilterGraph.Pad pad, ExportSettings settings) {
+        pad = graph.chain(pad, "fps", "fps", Math.min(settings.getFramerate(), GIF_MAX_FRAMERATE));
+        pad = graph.chain(pad, "scale",
+                "w", Math.min(settings.getOutputWidth(), GIF_MAX_WIDTH),
+                "h", -2,
+                "flags", "lanczos");
+        pad = graph.chain(pad, "mpdecimate");
+
+        List<FilterGraph.Pad> branches = fork(graph, pad, "split", 2);
+        // diff weighs the palette towards what moves, which dominates after mpdecimate
+        FilterGraph.Pad palette = graph.chain(branches.get(0), "palettegen", "stats_mode", "diff");
+        FilterGraph.Node paletteUse = graph.add("paletteuse")
+                .arg("dither", "bayer")
+                .arg("bayer_scale", 5)
+                .arg("diff_mode", "rectangle")
+                .input(branches.get(1))
+                .input(palette);
+        return graph.output(paletteUse, FilterGraph.MediaType.VIDEO);
+    }
+
+    private static FilterGraph.Pad appendSilence(FilterGraph graph, double duration) {
+        FilterGraph.Node source = graph.add("anullsrc")
+                .arg("channel_layout", "stereo")
+                .arg("sample_rate", 48000);
+        FilterGraph.Pad pad = graph.output(source, FilterGraph.MediaType.AUDIO);
+        return graph.chain(pad, "atrim", "duration", format(duration));
+    }
+
+    /**
+     * Connect an input to the clips it serves. A shared input is fanned out
+     * with split/asplit so the file is demuxed and decoded once.
+     */
+    private static void fanOut(FilterGraph graph, int inputIndex, InputPlanner.Input input,
+                               List<VideoClip> clips, FilterGraph.Pad[] videoPads, FilterGraph.Pad[] audioPads,
+                               boolean includeAudio) {
+        List<Integer> audible = new ArrayList<>();
+        for (int clipIndex : input.getClipIndexes()) {
+            if (includeAudio && !clips.get(clipIndex).isMuted()) {
+                audible.add(clipIndex);
+            }
+        }
+        split(graph, FilterGraph.source(inputIndex, FilterGraph.MediaType.VIDEO), "split",
+                input.getClipIndexes(), videoPads);
+        split(graph, FilterGraph.source(inputIndex, FilterGraph.MediaType.AUDIO), "asplit",
+                audible, audioPads);
+    }
+
+    private static void split(FilterGraph graph, FilterGraph.Pad source, String filter,
+                              List<Integer> clipIndexes, FilterGraph.Pad[] pads) {
+        List<FilterGraph.Pad> branches = fork(graph, source, filter, clipIndexes.size());
+        for (int i = 0; i < clipIndexes.size(); i++) {
+            pads[clipIndexes.get(i)] = branches.get(i);
+        }
+    }
+
+    /**
+     * Fan a stream out to several consumers with split/asplit
+     * @return One pad per consumer; the stream itself if there is only one
+     */
+    private static List<FilterGraph.Pad> fork(FilterGraph graph, FilterGraph.Pad source, String filter, int count) {
+        List<FilterGraph.Pad> branches = new ArrayList<>();
+        if (count == 1) {
+            branches.add(source);
+        } else if (count > 1) {
+            FilterGraph.Node node = graph.add(filter).arg(count).input(source);
+            for (int i = 0; i < count; i++) {
+                branches.add(graph.output(node, source.getType()));
+            }
+        }
+        return branches;
+    }
+
+    private static FilterGraph.Pad compileClipVideo(FilterGraph graph, FilterGraph.Pad pad,
+                                                    InputPlanner.Input input, VideoClip clip) {
+        // A dedicated input is already seeked and cut to the clip range; a shared
+        // one still needs the clip's range relative to the input start
+        if (input.isShared()) {
+            pad = graph.chain(pad, "trim",
+                    "start", format(clip.getStartTime() - input.getStart()),
+                    "end", format(clip.getEndTime() - input.getStart()));
+        }
+
+        // Reset timestamps and apply speed in a single setpts
+        String pts = clip.getSpeed() != 1.0f
+                ? format(1.0 / clip.getSpeed()) + "*(PTS-STARTPTS)"
+                : "PTS-STARTPTS";
+        pad = graph.output(graph.add("setpts").arg(pts).input(pad), FilterGraph.MediaType.VIDEO);
+
+        // reverse buffers the whole clip; ExportWorker replaces reversed clips
+        // with ChunkedReverser output before compiling, so this only remains
+        // for callers that compile the stored project directly
+        if (clip.isReversed()) {
+            pad = graph.chain(pad, "reverse");
+        }
+        return pad;
+    }
+
+    private static FilterGraph.Pad compileClipAudio(FilterGraph graph, FilterGraph.Pad pad,
+                                                    InputPlanner.Input input, VideoClip clip) {
+        if (input.isShared()) {
+            pad = graph.chain(pad, "atrim",
+                    "start", format(clip.getStartTime() - input.getStart()),
+                    "end", format(clip.getEndTime() - input.getStart()));
+        }
+        pad = graph.output(graph.add("asetpts").arg("PTS-STARTPTS").input(pad), FilterGraph.MediaType.AUDIO);
+        pad = graph.chain(pad, "volume", "volume", format(clip.getVolume()));
+
+        if (clip.isReversed()) {
+            pad = graph.chain(pad, "areverse");
+        }
+        return appendTempo(graph, pad, clip.getSpeed());
+    }
+
+    static FilterGraph.Pad compileAudioClip(FilterGraph graph, int inputIndex, AudioClip clip) {
+        // Audio clips are mixed in parallel, so a shared input would have to buffer
+        // one clip while another plays; each keeps its own seeked input
+        FilterGraph.Pad pad = FilterGraph.source(inputIndex, FilterGraph.MediaType.AUDIO);
+        pad = graph.output(graph.add("asetpts").arg("PTS-STARTPTS").input(pad), FilterGraph.MediaType.AUDIO);
+
+        if (clip.isFadeIn()) {
+            pad = graph.chain(pad, "afade",
+                    "t", "in",
+                    "st", "0",
+                    "d", format(clip.getFadeInDuration()));
+        }
+        if (clip.isFadeOut()) {
+            pad = graph.chain(pad, "afade",
+                    "t", "out",
+                    "st", format(clip.getDuration() - clip.getFadeOutDuration()),
+                    "d", format(clip.getFadeOutDuration()));
+        }
+
+        return graph.chain(pad, "volume", "volume", format(clip.getVolume()));
+    }
+
+    /**
+     * Join the clip streams in timeline order in one pass. Runs of clips without
+     * a transition between them share one concat node; transitions become xfade
+     * nodes whose offset is the end of the stream joined so far minus the overlap.
+     */
+    private static FilterGraph.Pad joinClips(FilterGraph graph, List<FilterGraph.Pad> streams,
+                                             List<VideoClip> clips, List<Transition> transitions) {
+        Map<Integer, Transition> transitionsByPosition = TransitionPlanner.index(transitions);
+        double[] overlaps = TransitionPlanner.overlaps(clips, transitionsByPosition);
+
+        List<FilterGraph.Pad> run = new ArrayList<>();
+        run.add(streams.get(0));
+        double joinedDuration = clips.get(0).getOutputDuration();
+        for (int i = 1; i < streams.size(); i++) {
+            Transition transition = transitionsByPosition.get(i - 1);
+            double overlap = overlaps[i - 1];
+            if (transition == null || overlap <= 0) {
+                run.add(streams.get(i));
+                joinedDuration += clips.get(i).getOutputDuration();
+                continue;
+            }
+
+            FilterGraph.Pad joined = concat(graph, run, FilterGraph.MediaType.VIDEO);
+            FilterGraph.Node xfade = graph.add("xfade")
+                    .arg("transition", transition.getFFmpegTransitionName())
+                    .arg("duration", format(overlap))
+                    .arg("offset", format(joinedDuration - overlap))
+                    .input(joined)
+                    .input(streams.get(i));
+            run.clear();
+            run.add(graph.output(xfade, FilterGraph.MediaType.VIDEO));
+            joinedDuration += clips.get(i).getOutputDuration() - overlap;
+        }
+        return concat(graph, run, FilterGraph.MediaType.VIDEO);
+    }
+
+    /**
+     * Join clip audio in timeline order the way joinClips() joins the video:
+     * concat for hard cuts and acrossfade over each transition's overlap, so
+     * the joined audio has exactly the length of the joined video
+     */
+    private static FilterGraph.Pad joinClipAudio(FilterGraph graph, List<FilterGraph.Pad> streams,
+                                                 List<VideoClip> clips, List<Transition> transitions) {
+        double[] overlaps = TransitionPlanner.overlaps(clips, TransitionPlanner.index(transitions));
+
+        List<FilterGraph.Pad> run = new ArrayList<>();
+        run.add(streams.get(0));
+        for (int i = 1; i < streams.size(); i++) {
+            if (overlaps[i - 1] <= 0) {
+                run.add(streams.get(i));
+                continue;
+            }
+
+            FilterGraph.Node crossfade = graph.add("acrossfade")
+                    .arg("d", format(overlaps[i - 1]))
+                    .input(concat(graph, run, FilterGraph.MediaType.AUDIO))
+                    .input(streams.get(i));
+            run.clear();
+            run.add(graph.output(crossfade, FilterGraph.MediaType.AUDIO));
+        }
+        return concat(graph, run, FilterGraph.MediaType.AUDIO);
+    }
+
+    private static FilterGraph.Pad concat(FilterGraph graph, List<FilterGraph.Pad> streams,
+                                          FilterGraph.MediaType type) {
+        if (streams.size() == 1) {
+            return streams.get(0);
+        }
+        boolean video = type == FilterGraph.MediaType.VIDEO;
+        FilterGraph.Node node = graph.add("concat")
+                .arg("n", streams.size())
+                .arg("v", video ? 1 : 0)
+                .arg("a", video ? 0 : 1);
+        for (FilterGraph.Pad stream : streams) {
+            node.input(stream);
+        }
+        return graph.output(node, type);
+    }
+
+    /**
+     * Append the nodes for a Filter. Each adjustment is its own eq node here;
+     * the optimizer fuses those that eq applies in the same order.
+     */
+    static FilterGraph.Pad appendFilter(FilterGraph graph, FilterGraph.Pad pad, Filter filter) {
+        if ("preset".equals(filter.getType()) && filter.getLut() != null && !filter.getLut().isEmpty()) {
+            return graph.chain(pad, "lut3d", "file", filter.getLut());
+        }
+
+        if (filter.getBrightness() != 0.0f) {
+            pad = graph.chain(pad, "eq", "brightness", format(filter.getBrightness() + 1.0f));
+        }
+        if (filter.getContrast() != 1.0f) {
+            pad = graph.chain(pad, "eq", "contrast", format(filter.getContrast()));
+        }
+        if (filter.getSaturation() != 1.0f) {
+            pad = graph.chain(pad, "eq", "saturation", format(filter.getSaturation()));
+        }
+        if (filter.getExposure() != 0.0f) {
+            pad = graph.chain(pad, "eq", "gamma", format(1.0f / (1.0f + filter.getExposure())));
+        }
+        if (filter.getTemperature() != 0.0f || filter.getTint() != 0.0f) {
+            pad = graph.chain(pad, "colortemperature",
+                    "temperature", format(3500 + (filter.getTemperature() * 3000)));
+        }
+        return pad;
+    }
+
+    /**
+     * Composite sticker sprites. The timeline is scaled to the output size
+     * first so every sprite can be rendered once at its final pixel size.
+     * Each sprite input only has frames inside its sticker's window, and the
+     * overlay is disabled outside it, so frames without the sticker pass through.
+     * Without a scratch directory to hold sprites, the sticker image itself is
+     * scaled and rotated in the graph instead, without its motion animation.
+     */
+    private static FilterGraph.Pad appendStickers(ExportCommand command, FilterGraph.Pad pad,
+                                                  List<StickerOverlay> stickers, ExportSettings settings) {
+        FilterGraph graph = command.getGraph();
+        pad = graph.chain(pad, "scale",
+                "w", settings.getOutputWidth(),
+                "h", settings.getOutputHeight());
+
+        for (StickerOverlay sticker : stickers) {
+            double duration = sticker.getEndTime() - sticker.getStartTime();
+            if (sticker.getPath() == null || duration <= 0) {
+                continue;
+            }
+
+            FilterGraph.Pad spritePad;
+            if (settings.getScratchPath() != null) {
+                StickerSprite sprite = StickerSprite.of(sticker, settings.getOutputWidth(), settings.getScratchPath());
+                command.addSprite(sprite);
+                double frameRate = sprite.isSequence() ? sprite.getFrameRate() : settings.getFramerate();
+                int input = command.addInput(sprite.getPath(),
+                        "-loop", "1",
+                        "-framerate", format(frameRate),
+                        "-t", format(duration));
+                spritePad = FilterGraph.source(input, FilterGraph.MediaType.VIDEO);
+            } else {
+                spritePad = appendStickerStill(command, sticker, duration, settings);
+            }
+
+            if ("fade".equals(sticker.getAnimation())) {
+                // Alpha ramps on the small sprite, not the frame
+                double fade = Math.min(STICKER_FADE_SECONDS, duration / 2);
+                spritePad = graph.chain(spritePad, "fade",
+                        "t", "in", "st", "0", "d", format(fade), "alpha", 1);
+                spritePad = graph.chain(spritePad, "fade",
+                        "t", "out", "st", format(duration - fade), "d", format(fade), "alpha", 1);
+            }
+            spritePad = graph.output(graph.add("setpts")
+                    .arg("PTS-STARTPTS+" + format(sticker.getStartTime()) + "/TB")
+                    .input(spritePad), FilterGraph.MediaType.VIDEO);
+
+            // eval=init computes the position once; the sprite already has its final size
+            FilterGraph.Node overlay = graph.add("overlay")
+                    .arg("x", "W*" + format(sticker.getPositionX()) + "-w/2")
+                    .arg("y", "H*" + format(sticker.getPositionY()) + "-h/2")
+                    .arg("eval", "init")
+                    .arg("eof_action", "pass")
+                    .arg("enable", "between(t," + format(sticker.getStartTime()) + ","
+                            + format(sticker.getEndTime()) + ")")
+                    .input(pad)
+                    .input(spritePad);
+            pad = graph.output(overlay, FilterGraph.MediaType.VIDEO);
+        }
+        return pad;
+    }
+
+    /**
+     * Add a sticker image as a still, scaled and rotated like its sprite
+     */
+    private static FilterGraph.Pad appendStickerStill(ExportCommand command, StickerOverlay sticker,
+                                                      double duration, ExportSettings settings) {
+        FilterGraph graph = command.getGraph();
+        int input = command.addInput(sticker.getPath(),
+                "-loop", "1",
+                "-framerate", format(settings.getFramerate()),
+                "-t", format(duration));
+
+        FilterGraph.Pad pad = FilterGraph.source(input, FilterGraph.MediaType.VIDEO);
+        pad = graph.chain(pad, "scale",
+                "w", StickerSprite.getWidth(sticker, settings.getOutputWidth()),
+                "h", -1);
+        if (sticker.getRotation() != 0) {
+            // Clockwise like the sprite, into a transparent bounding box
+            pad = graph.chain(pad, "format", "pix_fmts", "rgba");
+            pad = graph.chain(pad, "rotate",
+                    "a", format(Math.toRadians(sticker.getRotation())),
+                    "ow", "rotw(a)",
+                    "oh", "roth(a)",
+                    "c", "none");
+        }
+        return pad;
+    }
+
+    /**
+     * Burn all text overlays in with one ass filter. The script is named after
+     * its content, so unchanged overlays keep the command, and with it the
+     * render cache key, stable across exports.
+     */
+    private static FilterGraph.Pad appendSubtitles(ExportCommand command, FilterGraph.Pad pad,
+                                                   List<TextOverlay> overlays, ExportSettings settings) {
+        String script = AssScriptBuilder.build(overlays, settings.getOutputWidth(), settings.getOutputHeight());
+        String path = settings.getScratchPath() + "/overlays_" + RenderCache.sha1(script) + ".ass";
+        command.addGeneratedFile(path, script);
+        return command.getGraph().chain(pad, "ass",
+                "filename", path,
+                "fontsdir", "/system/fonts");
+    }
+
+    /**
+     * Draw one overlay with drawtext; used when the command cannot write a
+     * subtitle script because no scratch directory is set
+     */
+    private static FilterGraph.Pad appendTextOverlay(FilterGraph graph, FilterGraph.Pad pad,
+                                                     TextOverlay overlay, ExportSettings settings) {
+        String fontName = overlay.getFontName() != null ? overlay.getFontName() : "Roboto";
+        int x = (int) (overlay.getPositionX() * settings.getResolution());
+        int y = (int) (overlay.getPositionY() * settings.getResolution());
+
+        FilterGraph.Node node = graph.add("drawtext")
+                .arg("text", overlay.getText())
+                .arg("fontfile", "/system/fonts/" + fontName.replace(" ", "").toLowerCase() + ".ttf")
+                .arg("fontsize", (int) overlay.getFontSize())
+                .arg("fontcolor", "0x" + Integer.toHexString(overlay.getColor()))
+                .arg("y", y)
+                .arg("enable", "between(t," + format(overlay.getStartTime()) + ","
+                        + format(overlay.getEndTime()) + ")")
+                .input(pad);
+
+        double animDuration = 0.5; // animation duration in seconds
+        double startTime = overlay.getStartTime();
+        double endTime = overlay.getEndTime();
+
+        if ("slide".equals(overlay.getAnimation())) {
+            // Start offscreen and slide in
+            node.arg("x", "if(lt(t," + format(startTime + animDuration) + "),"
+                    + "(t-" + format(startTime) + ")/" + format(animDuration) + "*" + x + "," + x + ")");
+        } else {
+            node.arg("x", x);
+        }
+
+        if ("fade".equals(overlay.getAnimation())) {
+            node.arg("alpha", "if(lt(t," + format(startTime + animDuration) + "),"
+                    + "(t-" + format(startTime) + ")/" + format(animDuration) + ","
+                    + "if(gt(t," + format(endTime - animDuration) + "),"
+                    + "(" + format(endTime) + "-t)/" + format(animDuration) + ",1))");
+        }
+
+        return graph.output(node, FilterGraph.MediaType.VIDEO);
+    }
+
+    /**
+     * Format a number for a filter option without locale or trailing-zero noise
+     */
+    static String format(double value) {
+        String formatted = String.format(Locale.US, "%.6f", value);
+        int end = formatted.length();
+        while (formatted.charAt(end - 1) == '0') {
+            end--;
+        }
+        if (formatted.charAt(end - 1) == '.') {
+            end--;
+        }
+        formatted = formatted.substring(0, end);
+        return formatted.equals("-0") ? "0" : formatted;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.snapeditprovs.export;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Rewrites a FilterGraph into an equivalent graph with less per-frame work.
+ * Runs before the graph is emitted, so every pass works on typed nodes rather
+ * than on the final filter string.
+ */
+public class FilterGraphOptimizer {
+
+    // eq applies its luma options in this order whatever order they are given in
+    private static final List<String> EQ_LUMA_ORDER = Arrays.asList("contrast", "brightness", "gamma");
+    private static final int EQ_CHROMA = -1;
+    private static final int EQ_UNKNOWN = -2;
+
+    /**
+     * Optimize a graph in place
+     * @param graph The graph to optimize
+     * @param outputs Pads mapped to the output file; updated if a mapped node is removed
+     */
+    public static void optimize(FilterGraph graph, List<FilterGraph.Pad> outputs) {
+        boolean changed;
+        do {
+            changed = dropNoOps(graph, outputs);
+            changed |= fuseEq(graph, outputs);
+        } while (changed);
+    }
+
+    /**
+     * Remove single-input nodes that leave their stream unchanged
+     */
+    static boolean dropNoOps(FilterGraph graph, List<FilterGraph.Pad> outputs) {
+        boolean changed = false;
+        List<FilterGraph.Node> nodes = graph.getNodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            FilterGraph.Node node = nodes.get(i);
+            if (node.getInputs().size() != 1 || node.getOutputs().size() != 1 || !isNoOp(node)) {
+                continue;
+            }
+
+            FilterGraph.Pad input = node.getInputs().get(0);
+            FilterGraph.Pad output = node.getOutputs().get(0);
+            nodes.remove(i--);
+            graph.rewire(output, input);
+            replaceOutput(outputs, output, input);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Merge an eq node into the eq node feeding it when one eq pass gives the
+     * same result. eq applies contrast, then brightness, then gamma to luma no
+     * matter how its options are ordered, so the nodes are only merged when
+     * every luma option of the feeding node comes before every luma option of
+     * the other. Saturation only scales chroma, so it is merged freely.
+     */
+    static boolean fuseEq(FilterGraph graph, List<FilterGraph.Pad> outputs) {
+        boolean changed = false;
+        List<FilterGraph.Node> nodes = graph.getNodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            FilterGraph.Node node = nodes.get(i);
+            if (!"eq".equals(node.getName()) || node.getInputs().size() != 1) {
+                continue;
+            }
+
+            FilterGraph.Pad input = node.getInputs().get(0);
+            FilterGraph.Node producer = graph.producerOf(input);
+            if (producer == null || !"eq".equals(producer.getName())
+                    || producer.getOutputs().size() != 1
+                    || graph.consumerCount(input) != 1
+                    || outputs.contains(input)
+                    || sharesOption(producer, node)
+                    || !appliesInOrder(producer, node)) {
+                continue;
+            }
+
+            producer.getArgs().addAll(node.getArgs());
+            producer.getOutputs().set(0, node.getOutputs().get(0));
+            nodes.remove(i--);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean isNoOp(FilterGraph.Node node) {
+        switch (node.getName()) {
+            case "null":
+            case "anull":
+                return true;
+            case "setpts":
+            case "asetpts":
+                String expr = firstArg(node);
+                return expr == null || expr.equals("PTS") || isNumber(expr.replace("*PTS", ""), 1.0);
+            case "volume":
+                return isNumber(node.getArg("volume"), 1.0);
+            case "trim":
+            case "atrim":
+                return node.getArgs().isEmpty();
+            case "concat":
+                return isNumber(node.getArg("n"), 1.0);
+            case "amix":
+                return isNumber(node.getArg("inputs"), 1.0);
+            case "eq":
+                for (String[] arg : node.getArgs()) {
+                    double identity = "brightness".equals(arg[0]) ? 0.0 : 1.0;
+                    if (!isNumber(arg[1], identity)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean sharesOption(FilterGraph.Node a, FilterGraph.Node b) {
+        for (String[] arg : b.getArgs()) {
+            if (arg[0] == null || a.hasArg(arg[0])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether eq applies every luma option of the first node before every luma
+     * option of the second when both are set on one node
+     */
+    private static boolean appliesInOrder(FilterGraph.Node first, FilterGraph.Node second) {
+        int last = EQ_CHROMA;
+        for (String[] arg : first.getArgs()) {
+            int rank = eqRank(arg[0]);
+            if (rank == EQ_UNKNOWN) {
+                return false;
+            }
+            last = Math.max(last, rank);
+        }
+        for (String[] arg : second.getArgs()) {
+            int rank = eqRank(arg[0]);
+            if (rank == EQ_UNKNOWN || rank != EQ_CHROMA && rank <= last) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int eqRank(String option) {
+        if ("saturation".equals(option)) {
+            return EQ_CHROMA;
+        }
+        int rank = option != null ? EQ_LUMA_ORDER.indexOf(option) : -1;
+        return rank >= 0 ? rank : EQ_UNKNOWN;
+    }
+
+    private static String firstArg(FilterGraph.Node node) {
+        return node.getArgs().isEmpty() ? null : node.getArgs().get(0)[1];
+    }
+
+    private static boolean isNumber(String value, double expected) {
+        if (value == null) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(value) == expected;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void replaceOutput(List<FilterGraph.Pad> outputs, FilterGraph.Pad from, FilterGraph.Pad to) {
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i) == from) {
+                outputs.set(i, to);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.VideoClip;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Assigns video clips to decoder inputs. Clips cut from the same file share one
+ * input, fanned out with split/asplit, when decoding through the gap between
+ * them is cheaper than opening another decoder; otherwise the clip gets its own
+ * seeked input.
+ */
+public class InputPlanner {
+
+    // Decoding and dropping this many seconds costs about as much as another
+    // demuxer and decoder: their buffers, codec init, and the partial GOP
+    // decoded after an input seek
+    static final double OPEN_INPUT_COST_SECONDS = 4.0;
+
+    // Split points of VideoClip.splitAt may differ by rounding noise
+    private static final double OVERLAP_TOLERANCE = 0.001;
+
+    /**
+     * One -i input and the clips it serves, in timeline order
+     */
+    public static class Input {
+        private final String path;
+        private final double start;
+        private double end;
+        private final List<Integer> clipIndexes = new ArrayList<>();
+
+        Input(String path, double start) {
+            this.path = path;
+            this.start = start;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Start of the decoded range in source time
+         */
+        public double getStart() {
+            return start;
+        }
+
+        /**
+         * End of the decoded range in source time
+         */
+        public double getEnd() {
+            return end;
+        }
+
+        public List<Integer> getClipIndexes() {
+            return Collections.unmodifiableList(clipIndexes);
+        }
+
+        /**
+         * Whether the input is fanned out to several clips, which then need
+         * their own trims
+         */
+        public boolean isShared() {
+            return clipIndexes.size() > 1;
+        }
+
+        private void add(int clipIndex, double clipEnd) {
+            clipIndexes.add(clipIndex);
+            end = clipEnd;
+        }
+    }
+
+    /**
+     * Plan the inputs for a list of video clips
+     * @param clips Clips in timeline order
+     * @return Inputs in the order of the first clip each one serves
+     */
+    public static List<Input> plan(List<VideoClip> clips) {
+        List<Input> inputs = new ArrayList<>();
+        for (int i = 0; i < clips.size(); i++) {
+            VideoClip clip = clips.get(i);
+
+            Input best = null;
+            double bestCost = OPEN_INPUT_COST_SECONDS;
+            for (Input input : inputs) {
+                double cost = joinCost(input, clip);
+                if (cost < bestCost) {
+                    best = input;
+                    bestCost = cost;
+                }
+            }
+
+            if (best == null) {
+                best = new Input(clip.getPath(), clip.getStartTime());
+                inputs.add(best);
+            }
+            best.add(i, clip.getEndTime());
+        }
+        return inputs;
+    }
+
+    /**
+     * Cost of serving a clip from an existing input: the seconds decoded and
+     * dropped between the input's last clip and this one. A clip starting
+     * before that clip ends would make split buffer decoded frames until the
+     * clip's turn in the timeline, so it never joins.
+     */
+    static double joinCost(Input input, VideoClip clip) {
+        if (!input.path.equals(clip.getPath()) || clip.getStartTime() < input.end - OVERLAP_TOLERANCE) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.max(0, clip.getStartTime() - input.end);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.snapeditprovs.export;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keyframe timestamps of a video stream in microseconds, sorted. Lookups are
+ * binary searches over the primitive array and allocate nothing, so seeking
+ * and cut planning can query it freely. It is stored as a compact binary
+ * file: a magic number, the count and the timestamps as 8-byte values.
+ */
+public class KeyframeIndex {
+    private static final int MAGIC = 0x4B465831; // "KFX1"
+
+    private final long[] timesUs;
+
+    /**
+     * @param timesUs Keyframe times in microseconds; the index takes the array
+     *                over and sorts it if needed
+     */
+    public KeyframeIndex(long[] timesUs) {
+        this.timesUs = timesUs;
+        for (int i = 1; i < timesUs.length; i++) {
+            if (timesUs[i] < timesUs[i - 1]) {
+                Arrays.sort(timesUs);
+                break;
+            }
+        }
+    }
+
+    public int size() {
+        return timesUs.length;
+    }
+
+    public long getTimeUs(int index) {
+        return timesUs[index];
+    }
+
+    /**
+     * Get the backing array, e.g. for planners iterating all keyframes. It
+     * must not be modified.
+     */
+    public long[] getTimesUs() {
+        return timesUs;
+    }
+
+    /**
+     * Get the position of the last keyframe at or before a time
+     * @return The position, or -1 if the time is before the first keyframe
+     */
+    public int indexAtOrBefore(long timeUs) {
+        int index = Arrays.binarySearch(timesUs, timeUs);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Get the position of the first keyframe at or after a time
+     * @return The position, or size() if the time is after the last keyframe
+     */
+    public int indexAtOrAfter(long timeUs) {
+        int index = Arrays.binarySearch(timesUs, timeUs);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Get the keyframe a seek to a time starts decoding from
+     * @param seconds Time in seconds
+     * @return Time of the keyframe in seconds, or NaN if there is none before it
+     */
+    public double keyframeAtOrBefore(double seconds) {
+        int index = indexAtOrBefore(toUs(seconds));
+        return index >= 0 ? timesUs[index] / 1_000_000.0 : Double.NaN;
+    }
+
+    /**
+     * Get the first keyframe at or after a time
+     * @param seconds Time in seconds
+     * @return Time of the keyframe in seconds, or NaN if there is none after it
+     */
+    public double keyframeAtOrAfter(double seconds) {
+        int index = indexAtOrAfter(toUs(seconds));
+        return index < timesUs.length ? timesUs[index] / 1_000_000.0 : Double.NaN;
+    }
+
+    /**
+     * Get the keyframe closest to a time, on either side
+     * @param seconds Time in seconds
+     * @return Time of the keyframe in seconds, or NaN if the index is empty
+     */
+    public double nearestKeyframe(double seconds) {
+        double before = keyframeAtOrBefore(seconds);
+        double after = keyframeAtOrAfter(seconds);
+        if (Double.isNaN(before)) {
+            return after;
+        }
+        if (Double.isNaN(after)) {
+            return before;
+        }
+        return seconds - before <= after - seconds ? before : after;
+    }
+
+    /**
+     * Average distance between keyframes in seconds, or 0 if unknown
+     */
+    public double getAverageInterval() {
+        if (timesUs.length < 2) {
+            return 0;
+        }
+        return (timesUs[timesUs.length - 1] - timesUs[0]) / 1_000_000.0 / (timesUs.length - 1);
+    }
+
+    /**
+     * Store the index
+     * @return True if it was written
+     */
+    public boolean write(File file) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(timesUs.length);
+            for (long timeUs : timesUs) {
+                out.writeLong(timeUs);
+            }
+            return true;
+        } catch (IOException e) {
+            file.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Load a stored index
+     * @return The index, or null if the file is missing or not a complete index
+     */
+    public static KeyframeIndex read(File file) {
+        if (!file.isFile() || file.length() < 8) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int count = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (count < 0 || file.length() != 8 + count * 8L) {
+                return null;
+            }
+            long[] timesUs = new long[count];
+            for (int i = 0; i < count; i++) {
+                timesUs[i] = in.readLong();
+            }
+            return new KeyframeIndex(timesUs);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long toUs(double seconds) {
+        return Math.round(seconds * 1_000_000);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.snapeditprovs.export;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Content-addressed store of rendered export pieces. A piece is keyed by a
+ * fingerprint of everything that determines its bytes: the compiled FFmpeg
+ * arguments (trims, speed, reverse, filter parameters, overlays, transitions
+ * and encoder settings) plus the size and modification time of every input.
+ * Entries are evicted least-recently-used first once the cache exceeds its cap.
+ * An entry keeps the extension it was rendered with, since FFmpeg chooses the
+ * muxer from it; MP4 unless given otherwise.
+ */
+public class RenderCache {
+    private static final String EXTENSION = ".mp4";
+    private static final String PENDING_SUFFIX = ".pending";
+
+    // FFmpeg keeps writing to the pending file of a running render, so one
+    // untouched for this long belongs to a render that died
+    static final long STALE_PENDING_MS = 60 * 60 * 1000;
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory Cache directory on internal storage
+     * @param maxBytes Size cap enforced by trimToSize()
+     */
+    public RenderCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Compute the cache key of a command. The output path is ignored.
+     */
+    public static String fingerprint(ExportCommand command) {
+        List<String> arguments = command.toArguments();
+        StringBuilder builder = new StringBuilder();
+        for (String argument : arguments.subList(0, arguments.size() - 1)) {
+            builder.append(argument).append('\0');
+        }
+        for (List<String> input : command.getInputs()) {
+            File file = new File(input.get(input.size() - 1));
+            builder.append(file.length()).append('\0').append(file.lastModified()).append('\0');
+        }
+        return sha1(builder.toString());
+    }
+
+    /**
+     * Combine several fingerprints, e.g. of the commands producing one piece, into one key
+     */
+    public static String combine(List<String> fingerprints) {
+        StringBuilder builder = new StringBuilder();
+        for (String fingerprint : fingerprints) {
+            builder.append(fingerprint).append('\0');
+        }
+        return sha1(builder.toString());
+    }
+
+    /**
+     * Look up a rendered piece and mark it as recently used
+     * @return The cached file, or null on a miss
+     */
+    public File get(String key) {
+        return get(key, EXTENSION);
+    }
+
+    /**
+     * Look up a rendered piece stored with an extension, e.g. ".ts"
+     * @return The cached file, or null on a miss
+     */
+    public synchronized File get(String key, String extension) {
+        File file = new File(directory, key + extension);
+        if (!file.exists()) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Get the file a missing piece should be rendered into
+     */
+    public File getPendingFile(String key) {
+        return getPendingFile(key, EXTENSION);
+    }
+
+    public File getPendingFile(String key, String extension) {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return new File(directory, key + PENDING_SUFFIX + extension);
+    }
+
+    /**
+     * Publish a successfully rendered pending file
+     * @return The cached file, or null if the pending file is missing
+     */
+    public File commit(String key) {
+        return commit(key, EXTENSION);
+    }
+
+    public synchronized File commit(String key, String extension) {
+        File pending = getPendingFile(key, extension);
+        File file = new File(directory, key + extension);
+        if (!pending.exists() || !pending.renameTo(file)) {
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Delete the pending file of a render that did not finish
+     */
+    public void discard(String key) {
+        discard(key, EXTENSION);
+    }
+
+    public void discard(String key, String extension) {
+        getPendingFile(key, extension).delete();
+    }
+
+    /**
+     * Evict least-recently-used entries until the cache fits its cap.
+     * Stale pending files are removed as well; pending files of renders that
+     * may still be running, e.g. of another export, are left alone.
+     */
+    public synchronized void trimToSize() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<>();
+        long totalBytes = 0;
+        long staleBefore = System.currentTimeMillis() - STALE_PENDING_MS;
+        for (File file : files) {
+            if (file.getName().contains(PENDING_SUFFIX + ".")) {
+                if (file.lastModified() < staleBefore) {
+                    file.delete();
+                }
+            } else {
+                entries.add(file);
+                totalBytes += file.length();
+            }
+        }
+
+        File[] oldestFirst = entries.toArray(new File[0]);
+        Arrays.sort(oldestFirst, Comparator.comparingLong(File::lastModified));
+        for (File file : oldestFirst) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            totalBytes -= file.length();
+            file.delete();
+        }
+    }
+
+    static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cuts a project timeline into independently renderable segments
+ */
+public class SegmentPlanner {
+
+    // A clip body shorter than this is left out rather than rendered on its own
+    private static final double MIN_BODY_SECONDS = 0.000001;
+
+    /**
+     * Plan the segments of a project in one pass over the clips. Every clip
+     * body, the part of a clip outside any transition, is its own segment, and
+     * every transition is a short window segment holding only the overlapping
+     * ends of its two clips. Bodies can then be smart-rendered or cached like
+     * plain clips, and only the windows pay for the xfade.
+     * @param project The project to plan
+     * @return Segments in timeline order
+     */
+    public static List<ExportSegment> plan(Project project) {
+        List<VideoClip> clips = project.getVideoClips();
+        List<ExportSegment> segments = new ArrayList<>();
+        if (clips.isEmpty()) {
+            return segments;
+        }
+
+        double[] overlaps = TransitionPlanner.overlaps(clips, TransitionPlanner.index(project.getTransitions()));
+
+        double outputStart = 0;
+        for (int i = 0; i < clips.size(); i++) {
+            double clipDuration = clips.get(i).getOutputDuration();
+            double head = i > 0 ? overlaps[i - 1] : 0;
+            double tail = i < overlaps.length ? overlaps[i] : 0;
+
+            double body = clipDuration - head - tail;
+            if (body > MIN_BODY_SECONDS) {
+                segments.add(new ExportSegment(segments.size(), i, i, head, tail, outputStart, body));
+                outputStart += body;
+            }
+
+            if (tail > 0) {
+                // Window: the last tail seconds of this clip and the first of the next
+                double nextTrim = clips.get(i + 1).getOutputDuration() - tail;
+                segments.add(new ExportSegment(segments.size(), i, i + 1, clipDuration - tail, nextTrim,
+                        outputStart, tail));
+                outputStart += tail;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Get the total output duration of a planned timeline
+     */
+    public static double getOutputDuration(List<ExportSegment> segments) {
+        return segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getOutputEnd();
+    }
+}
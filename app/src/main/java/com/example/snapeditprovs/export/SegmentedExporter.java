@@ -0,0 +1,455 @@
+package com.example.snapeditprovs.export;
+
+import android.util.Log;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.arthenica.mobileffmpeg.ExecuteCallback;
+import com.arthenica.mobileffmpeg.FFmpeg;
+import com.arthenica.mobileffmpeg.Statistics;
+import com.arthenica.mobileffmpeg.StatisticsCallback;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.ExportTelemetry;
+import com.example.snapeditprovs.models.Project;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports a project by rendering each segment as its own FFmpeg session on a
+ * bounded pool, then joining the segments with the concat demuxer using
+ * stream copy. Segments whose clip is exported unchanged are smart-rendered:
+ * only the partial GOPs at their cut points are encoded. With a RenderCache,
+ * pieces whose inputs did not change since a previous export are reused.
+ * Pieces are MPEG-TS, whose H.264 repeats its parameter sets in-band, so
+ * encoded and stream-copied pieces can be joined by stream copy.
+ */
+public class SegmentedExporter {
+    private static final String TAG = "SegmentedExporter";
+
+    private static final String PIECE_EXTENSION = ".ts";
+
+    // Share of the progress bar reserved for the stitch step
+    private static final int STITCH_PERCENT = 5;
+
+    /**
+     * One FFmpeg session producing one file of the concat list
+     */
+    static class RenderJob {
+        final int index;
+        final String key;
+        final boolean cached;
+        final File output;
+        final ExportCommand command;
+        final String[] arguments;
+        final double outputDuration;
+        // Earlier job of the export with the same fingerprint, whose file this one joins
+        RenderJob original;
+
+        RenderJob(int index, ExportCommand command, double outputDuration, RenderCache cache) {
+            this.index = index;
+            this.command = command;
+            this.outputDuration = outputDuration;
+            this.key = RenderCache.fingerprint(command);
+
+            File cachedFile = null;
+            if (cache != null) {
+                cachedFile = cache.get(key, PIECE_EXTENSION);
+                if (cachedFile == null) {
+                    command.setOutputPath(cache.getPendingFile(key, PIECE_EXTENSION).getAbsolutePath());
+                }
+            }
+
+            this.cached = cachedFile != null;
+            this.output = cached ? cachedFile : new File(command.getOutputPath());
+            this.arguments = cached ? null : command.toArguments().toArray(new String[0]);
+        }
+
+        boolean needsRender() {
+            return !cached && original == null;
+        }
+    }
+
+    /**
+     * Starts the FFmpeg runs of render jobs
+     */
+    interface Runner {
+        /**
+         * Start a run on an executor
+         * @param listener Receives the statistics of the run until it finishes
+         * @return The execution ID of the run
+         */
+        long executeAsync(String[] arguments, StatisticsCallback listener, ExecuteCallback callback,
+                          ExecutorService executor);
+
+        void cancel(long executionId);
+    }
+
+    /**
+     * Runs jobs with mobile-ffmpeg, routing their statistics through FFmpegSession
+     */
+    static final Runner FFMPEG_RUNNER = new Runner() {
+        @Override
+        public synchronized long executeAsync(String[] arguments, StatisticsCallback listener,
+                                              ExecuteCallback callback, ExecutorService executor) {
+            long executionId = FFmpeg.executeAsync(arguments, (id, returnCode) -> {
+                // Waits until the listener of a run that ends at once is added
+                synchronized (this) {
+                    FFmpegSession.removeStatisticsListener(id);
+                }
+                callback.apply(id, returnCode);
+            }, executor);
+            FFmpegSession.addStatisticsListener(executionId, listener);
+            return executionId;
+        }
+
+        @Override
+        public void cancel(long executionId) {
+            FFmpeg.cancel(executionId);
+        }
+    };
+
+    private final File workDir;
+    private final int parallelism;
+    private final SourceInspector inspector;
+    private final RenderCache cache;
+    private final SpriteRenderer spriteRenderer;
+    private final Runner runner;
+    private final Map<Long, RenderJob> runningJobs = new ConcurrentHashMap<>();
+    private final FFmpegSession stitchSession = new FFmpegSession();
+    private volatile boolean cancelled;
+    private volatile TelemetryTracker tracker;
+
+    /**
+     * @param workDir Directory for intermediate segment files
+     * @param parallelism Maximum number of concurrent FFmpeg sessions
+     * @param inspector Source probe used for smart rendering, or null to always re-encode
+     * @param cache Cache of rendered pieces, or null to render every piece
+     * @param spriteRenderer Renders the sticker sprites of segments, or null if there are none
+     */
+    public SegmentedExporter(File workDir, int parallelism, SourceInspector inspector, RenderCache cache,
+                             SpriteRenderer spriteRenderer) {
+        this(workDir, parallelism, inspector, cache, spriteRenderer, FFMPEG_RUNNER);
+    }
+
+    SegmentedExporter(File workDir, int parallelism, SourceInspector inspector, RenderCache cache,
+                      SpriteRenderer spriteRenderer, Runner runner) {
+        this.workDir = workDir;
+        this.parallelism = Math.max(1, parallelism);
+        this.inspector = inspector;
+        this.cache = cache;
+        this.spriteRenderer = spriteRenderer;
+        this.runner = runner;
+    }
+
+    /**
+     * Get a default session count for this device. Each libx264 session is
+     * itself multi-threaded, so one session per two cores avoids oversubscribing.
+     */
+    public static int getDefaultParallelism() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Export a project. Blocks until the export finishes.
+     * @param project The project to export
+     * @param settings Export settings with the final output path
+     * @param stem Audio stem to mux into the output, or null to join the audio of the segments.
+     *             Segments are then rendered without audio, so audio edits leave them cached.
+     * @param listener Receives throttled telemetry aggregated over all sessions
+     * @return FFmpeg return code of the first failing session, or RETURN_CODE_SUCCESS
+     */
+    public int export(Project project, ExportSettings settings, File stem, TelemetryTracker.Listener listener) {
+        List<ExportSegment> segments = SegmentPlanner.plan(project);
+        if (!workDir.exists()) {
+            workDir.mkdirs();
+        }
+
+        ExportSettings segmentSettings = settings;
+        if (stem != null) {
+            segmentSettings = settings.duplicate();
+            segmentSettings.setIncludeAudio(false);
+        }
+        List<RenderJob> jobs = new ArrayList<>();
+        for (ExportSegment segment : segments) {
+            addJobs(jobs, segment, project, segmentSettings);
+        }
+        markDuplicates(jobs);
+
+        TelemetryTracker tracker = new TelemetryTracker(jobs.size(), SegmentPlanner.getOutputDuration(segments),
+                STITCH_PERCENT, listener);
+        for (RenderJob job : jobs) {
+            if (!job.needsRender()) {
+                tracker.onReused(job.index, job.outputDuration);
+            }
+        }
+        this.tracker = tracker;
+
+        try {
+            int returnCode = renderJobs(jobs);
+            if (returnCode != Config.RETURN_CODE_SUCCESS) {
+                return returnCode;
+            }
+
+            List<File> segmentFiles = getSegmentFiles(jobs, cache);
+            if (segmentFiles == null) {
+                Log.e(TAG, "Rendered piece missing from the cache");
+                return Config.RETURN_CODE_CANCEL;
+            }
+
+            File concatList = new File(workDir, "segments.txt");
+            writeConcatList(concatList, segmentFiles);
+
+            ExportCommand stitch = FilterGraphCompiler.compileStitch(concatList.getAbsolutePath(),
+                    stem != null ? stem.getAbsolutePath() : null, project, settings);
+            returnCode = cancelled ? Config.RETURN_CODE_CANCEL
+                    : stitchSession.execute(stitch.toArguments().toArray(new String[0]));
+            if (returnCode == Config.RETURN_CODE_SUCCESS) {
+                tracker.finish();
+                if (cache != null) {
+                    // Only after success, so pieces of an interrupted export stay
+                    // available for its retry
+                    cache.trimToSize();
+                }
+            }
+            return returnCode;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing segment list", e);
+            return Config.RETURN_CODE_CANCEL;
+        } finally {
+            runningJobs.clear();
+            deleteWorkDir();
+        }
+    }
+
+    /**
+     * Cancel a running export from another thread. export() then returns
+     * RETURN_CODE_CANCEL; pieces that already finished stay in the cache.
+     */
+    public void cancel() {
+        cancelled = true;
+        FFmpegGovernor.getInstance().wakeUp();
+        cancelRunning();
+        stitchSession.cancel();
+    }
+
+    /**
+     * Get the current telemetry of the export, or null before it started
+     */
+    public ExportTelemetry getTelemetry() {
+        TelemetryTracker current = tracker;
+        return current != null ? current.getTelemetry() : null;
+    }
+
+    /**
+     * Route an FFmpeg statistics update to the job that produced it
+     */
+    private void onStatistics(Statistics statistics) {
+        RenderJob job = runningJobs.get(statistics.getExecutionId());
+        if (job == null) {
+            return;
+        }
+
+        tracker.onStatistics(job.index, statistics, job.outputDuration);
+    }
+
+    /**
+     * Add the jobs rendering one segment: a single encode, or the head, copy
+     * and tail pieces of a smart render
+     */
+    private void addJobs(List<RenderJob> jobs, ExportSegment segment, Project project, ExportSettings settings) {
+        Project segmentProject = segment.toProject(project);
+        SmartRenderPlanner.Plan plan = SmartRenderPlanner.plan(segmentProject, settings, inspector);
+
+        if (plan == null) {
+            ExportCommand command = FilterGraphCompiler.compile(segmentProject, settingsFor(settings, jobs.size()));
+            jobs.add(new RenderJob(jobs.size(), command, segment.getOutputDuration(), cache));
+            return;
+        }
+
+        Log.d(TAG, "Smart rendering segment " + segment.getIndex());
+        ExportSettings partSettings = plan.toPartSettings(settings);
+        if (plan.hasHead()) {
+            Project head = plan.toHeadProject();
+            ExportCommand command = FilterGraphCompiler.compile(head, settingsFor(partSettings, jobs.size()));
+            jobs.add(new RenderJob(jobs.size(), command, head.getDuration(), cache));
+        }
+
+        ExportCommand copy = FilterGraphCompiler.compileStreamCopy(plan.getClip().getPath(),
+                plan.getCopyStart(), plan.getCopyEnd(), settingsFor(settings, jobs.size()));
+        jobs.add(new RenderJob(jobs.size(), copy, plan.getCopyEnd() - plan.getCopyStart(), cache));
+
+        if (plan.hasTail()) {
+            Project tail = plan.toTailProject();
+            ExportCommand command = FilterGraphCompiler.compile(tail, settingsFor(partSettings, jobs.size()));
+            jobs.add(new RenderJob(jobs.size(), command, tail.getDuration(), cache));
+        }
+    }
+
+    private ExportSettings settingsFor(ExportSettings settings, int jobIndex) {
+        ExportSettings jobSettings = settings.duplicate();
+        jobSettings.setOutputPath(workDir.getAbsolutePath());
+        jobSettings.setOutputFilename(String.format(Locale.US, "segment_%03d", jobIndex) + PIECE_EXTENSION);
+        return jobSettings;
+    }
+
+    /**
+     * Render the uncached jobs. The sessions share one grant of the
+     * governor, so together they use no more threads than a single export.
+     * A job is only submitted once a session slot is free, so after a
+     * failure or cancel the jobs not yet started are skipped.
+     */
+    int renderJobs(List<RenderJob> jobs) {
+        FFmpegGovernor governor = FFmpegGovernor.getInstance();
+        FFmpegGovernor.Grant grant = governor.acquire(FFmpegGovernor.Priority.EXPORT, () -> cancelled);
+        if (grant == null) {
+            return Config.RETURN_CODE_CANCEL;
+        }
+        int sessions = Math.min(parallelism, grant.getThreads());
+        int threadsPerSession = Math.max(1, grant.getThreads() / sessions);
+
+        ExecutorService pool = Executors.newFixedThreadPool(sessions);
+        Semaphore slots = new Semaphore(sessions);
+        CountDownLatch remaining = new CountDownLatch(jobs.size());
+        AtomicInteger failure = new AtomicInteger(Config.RETURN_CODE_SUCCESS);
+
+        try {
+            for (RenderJob job : jobs) {
+                if (!job.needsRender()) {
+                    remaining.countDown();
+                    continue;
+                }
+                slots.acquire();
+                if (cancelled) {
+                    failure.compareAndSet(Config.RETURN_CODE_SUCCESS, Config.RETURN_CODE_CANCEL);
+                }
+                if (failure.get() != Config.RETURN_CODE_SUCCESS) {
+                    slots.release();
+                    remaining.countDown();
+                    continue;
+                }
+                try {
+                    job.command.writeGeneratedFiles(spriteRenderer);
+                } catch (IOException e) {
+                    Log.e(TAG, "Error writing files of render job " + job.index, e);
+                    failure.compareAndSet(Config.RETURN_CODE_SUCCESS, Config.RETURN_CODE_CANCEL);
+                    slots.release();
+                    remaining.countDown();
+                    continue;
+                }
+
+                synchronized (runningJobs) {
+                    String[] arguments = FFmpegGovernor.withThreads(job.arguments, threadsPerSession);
+                    long executionId = runner.executeAsync(arguments, this::onStatistics, (id, returnCode) -> {
+                        synchronized (runningJobs) {
+                            runningJobs.remove(id);
+                        }
+                        if (returnCode == Config.RETURN_CODE_SUCCESS) {
+                            if (cache != null) {
+                                cache.commit(job.key, PIECE_EXTENSION);
+                            }
+                        } else {
+                            if (cache != null) {
+                                cache.discard(job.key, PIECE_EXTENSION);
+                            }
+                            if (failure.compareAndSet(Config.RETURN_CODE_SUCCESS, returnCode)) {
+                                Log.e(TAG, "Render job " + job.index + " failed with code " + returnCode);
+                                cancelRunning();
+                            }
+                        }
+                        slots.release();
+                        remaining.countDown();
+                    }, pool);
+                    runningJobs.put(executionId, job);
+                    // cancel() may have run while the job was starting
+                    if (cancelled) {
+                        runner.cancel(executionId);
+                    }
+                }
+            }
+
+            remaining.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelRunning();
+            return Config.RETURN_CODE_CANCEL;
+        } finally {
+            pool.shutdown();
+            governor.release(grant);
+        }
+        return failure.get();
+    }
+
+    private void cancelRunning() {
+        synchronized (runningJobs) {
+            for (Long executionId : runningJobs.keySet()) {
+                runner.cancel(executionId);
+            }
+        }
+    }
+
+    /**
+     * Point jobs that repeat the fingerprint of an earlier job, e.g. a clip
+     * placed twice with the same trim, at that job, so each piece renders once
+     */
+    static void markDuplicates(List<RenderJob> jobs) {
+        Map<String, RenderJob> firstByKey = new HashMap<>();
+        for (RenderJob job : jobs) {
+            RenderJob first = firstByKey.get(job.key);
+            if (first == null) {
+                firstByKey.put(job.key, job);
+            } else if (!job.cached) {
+                job.original = first;
+            }
+        }
+    }
+
+    /**
+     * Get the files the concat list joins, in job order. With a cache, a
+     * rendered piece is looked up again, since commit() moved it away from
+     * the pending file the session wrote.
+     * @return The files, or null if a piece is missing
+     */
+    static List<File> getSegmentFiles(List<RenderJob> jobs, RenderCache cache) {
+        List<File> files = new ArrayList<>();
+        for (RenderJob job : jobs) {
+            RenderJob source = job.original != null ? job.original : job;
+            File file = cache != null ? cache.get(source.key, PIECE_EXTENSION) : source.output;
+            if (file == null || !file.exists()) {
+                return null;
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    static void writeConcatList(File listFile, List<File> segmentFiles) throws IOException {
+        try (Writer writer = new FileWriter(listFile)) {
+            for (File file : segmentFiles) {
+                writer.write("file '" + file.getAbsolutePath().replace("'", "'\\''") + "'\n");
+            }
+        }
+    }
+
+    private void deleteWorkDir() {
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+}
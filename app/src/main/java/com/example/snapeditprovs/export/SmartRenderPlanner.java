@@ -0,0 +1,204 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.MediaInfo;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+/**
+ * Finds segments whose clip is exported unchanged, so the keyframe-aligned
+ * interior can be stream-copied and only the partial GOPs at the cut points
+ * need to be re-encoded. Only 8-bit 4:2:0 sources of a profile libx264 can
+ * produce qualify, and the head and tail are encoded with the source's profile
+ * and level, so a decoder sees one stream configuration across the joins.
+ */
+public class SmartRenderPlanner {
+
+    // Below this the stream copy does not pay for the extra sessions
+    private static final double MIN_COPY_SECONDS = 1.0;
+
+    /**
+     * The parts of a passthrough clip, in source time
+     */
+    public static class Plan {
+        private final VideoClip clip;
+        private final double copyStart;
+        private final double copyEnd;
+        private final double frameDuration;
+        private final String profile;
+        private final String level;
+
+        Plan(VideoClip clip, double copyStart, double copyEnd, double frameDuration, String profile, String level) {
+            this.clip = clip;
+            this.copyStart = copyStart;
+            this.copyEnd = copyEnd;
+            this.frameDuration = frameDuration;
+            this.profile = profile;
+            this.level = level;
+        }
+
+        public VideoClip getClip() {
+            return clip;
+        }
+
+        /**
+         * First keyframe inside the clip; the copied range starts here
+         */
+        public double getCopyStart() {
+            return copyStart;
+        }
+
+        /**
+         * Last keyframe inside the clip; the copied range ends here
+         */
+        public double getCopyEnd() {
+            return copyEnd;
+        }
+
+        public boolean hasHead() {
+            return copyStart - clip.getStartTime() >= frameDuration;
+        }
+
+        public boolean hasTail() {
+            return clip.getEndTime() - copyEnd >= frameDuration;
+        }
+
+        /**
+         * Get the settings encoding the head and tail: those of the export with
+         * the profile and level of the copied source
+         */
+        public ExportSettings toPartSettings(ExportSettings settings) {
+            ExportSettings partSettings = settings.duplicate();
+            partSettings.setVideoProfile(profile);
+            partSettings.setVideoLevel(level);
+            return partSettings;
+        }
+
+        /**
+         * Project re-encoding the partial GOP before the copied range
+         */
+        public Project toHeadProject() {
+            return singleClipProject(clip.getStartTime(), copyStart);
+        }
+
+        /**
+         * Project re-encoding the partial GOP after the copied range
+         */
+        public Project toTailProject() {
+            return singleClipProject(copyEnd, clip.getEndTime());
+        }
+
+        private Project singleClipProject(double start, double end) {
+            VideoClip part = clip.duplicate();
+            part.setStartTime(start);
+            part.setEndTime(end);
+            Project project = new Project();
+            project.addVideoClip(part);
+            return project;
+        }
+    }
+
+    /**
+     * Plan a smart render for a segment
+     * @param segmentProject Stand-alone project of one segment
+     * @param settings Export settings
+     * @param inspector Source of stream properties and keyframes
+     * @return The plan, or null if the segment must be fully re-encoded
+     */
+    public static Plan plan(Project segmentProject, ExportSettings settings, SourceInspector inspector) {
+        if (inspector == null || !isUntouched(segmentProject, settings.isIncludeAudio()) || !"mp4".equals(settings.getFormat())) {
+            return null;
+        }
+
+        VideoClip clip = segmentProject.getVideoClips().get(0);
+        MediaInfo info = inspector.getMediaInfo(clip.getPath());
+        if (info == null || !matchesOutput(info, settings) || settings.isIncludeAudio() && !info.hasAudio()) {
+            return null;
+        }
+
+        KeyframeIndex keyframes = inspector.getKeyframeIndex(clip.getPath());
+        if (keyframes == null || keyframes.size() == 0) {
+            return null;
+        }
+
+        double copyStart = keyframes.keyframeAtOrAfter(clip.getStartTime());
+        double copyEnd = keyframes.keyframeAtOrBefore(clip.getEndTime());
+        if (Double.isNaN(copyStart) || Double.isNaN(copyEnd) || copyEnd - copyStart < MIN_COPY_SECONDS) {
+            return null;
+        }
+
+        return new Plan(clip, copyStart, copyEnd, 1.0 / info.getFrameRate(),
+                getEncoderProfile(info.getVideoProfile()), getEncoderLevel(info.getVideoLevel()));
+    }
+
+    /**
+     * A segment is untouched when its only clip is exported as recorded:
+     * no speed, reverse, volume, filter, overlay or transition applies to it
+     * @param withAudio Whether the piece carries audio; without it, volume and
+     *                  mute are applied by the audio stem instead
+     */
+    static boolean isUntouched(Project project, boolean withAudio) {
+        if (project.getVideoClips().size() != 1
+                || !project.getTransitions().isEmpty()
+                || project.getAppliedFilter() != null
+                || !project.getTextOverlays().isEmpty()
+                || !project.getStickerOverlays().isEmpty()
+                || !project.getAudioClips().isEmpty()) {
+            return false;
+        }
+
+        VideoClip clip = project.getVideoClips().get(0);
+        return clip.getSpeed() == 1.0f
+                && !clip.isReversed()
+                && (!withAudio || !clip.isMuted() && clip.getVolume() == 1.0f);
+    }
+
+    /**
+     * Whether copied source frames fit into the encoded output: same codec,
+     * size, frame rate and pixel format, no rotation to apply, and a profile
+     * and level the head and tail can be encoded with
+     */
+    static boolean matchesOutput(MediaInfo info, ExportSettings settings) {
+        return "h264".equals(info.getVideoCodec())
+                && info.getWidth() == settings.getOutputWidth()
+                && info.getHeight() == settings.getOutputHeight()
+                && info.getRotation() == 0
+                && Math.abs(info.getFrameRate() - settings.getFramerate()) < 0.01
+                && "yuv420p".equals(info.getPixelFormat())
+                && getEncoderProfile(info.getVideoProfile()) != null
+                && getEncoderLevel(info.getVideoLevel()) != null;
+    }
+
+    /**
+     * Get the libx264 profile producing streams of an FFprobe profile
+     * @return The profile, or null for profiles such as High 10 that libx264
+     *         does not produce in 8-bit 4:2:0
+     */
+    public static String getEncoderProfile(String profile) {
+        if (profile == null) {
+            return null;
+        }
+        switch (profile) {
+            case "Baseline":
+            case "Constrained Baseline":
+                return "baseline";
+            case "Main":
+                return "main";
+            case "High":
+                return "high";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Format an FFprobe level, e.g. 41, as a libx264 level, e.g. "4.1"
+     * @return The level, or null if unknown
+     */
+    public static String getEncoderLevel(int level) {
+        if (level < 10) {
+            return null;
+        }
+        return level / 10 + "." + level % 10;
+    }
+}
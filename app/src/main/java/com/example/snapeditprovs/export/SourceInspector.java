@@ -0,0 +1,21 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.MediaInfo;
+
+/**
+ * Gives export planners access to the stream properties of source files
+ */
+public interface SourceInspector {
+
+    /**
+     * Get the stream properties of a source file
+     * @return The media info, or null if the file could not be probed
+     */
+    MediaInfo getMediaInfo(String path);
+
+    /**
+     * Get the keyframe index of the first video stream
+     * @return The index, or null if unknown
+     */
+    KeyframeIndex getKeyframeIndex(String path);
+}
@@ -0,0 +1,13 @@
+package com.example.snapeditprovs.export;
+
+/**
+ * Renders sticker sprites to disk before an export session composites them
+ */
+public interface SpriteRenderer {
+
+    /**
+     * Render the frames of a sprite unless they already exist
+     * @return True if every frame exists afterwards
+     */
+    boolean render(StickerSprite sprite);
+}
@@ -0,0 +1,133 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.StickerOverlay;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * A sticker image pre-scaled and pre-rotated to its size in the output,
+ * stored as one RGBA PNG or, for motion animations, a short looping PNG
+ * sequence. The export graph only composites it; no per-frame scaling,
+ * rotation or position expression is left.
+ */
+public class StickerSprite {
+
+    // At scale 1.0 a sticker is a quarter of the output width wide
+    static final float BASE_WIDTH_FRACTION = 0.25f;
+
+    // Frames of one full turn of the rotate animation, and its period
+    static final int ROTATE_FRAMES = 36;
+    static final double ROTATE_PERIOD_SECONDS = 2.0;
+
+    // Frames of one hop of the bounce animation, its period and height
+    static final int BOUNCE_FRAMES = 20;
+    static final double BOUNCE_PERIOD_SECONDS = 1.0;
+    public static final float BOUNCE_HEIGHT_FRACTION = 0.2f;
+
+    private final String sourcePath;
+    private final int width;
+    private final float rotation;
+    private final String animation;
+    private final String path;
+
+    private StickerSprite(String sourcePath, int width, float rotation, String animation, String path) {
+        this.sourcePath = sourcePath;
+        this.width = width;
+        this.rotation = rotation;
+        this.animation = animation;
+        this.path = path;
+    }
+
+    /**
+     * Describe the sprite of a sticker in an output of the given width. The
+     * file name is derived from everything that determines its pixels, so a
+     * sprite is rendered once and reused by later exports.
+     * @param directory Directory holding the sprites
+     */
+    static StickerSprite of(StickerOverlay sticker, int outputWidth, String directory) {
+        int width = getWidth(sticker, outputWidth);
+        String animation = isSequence(sticker.getAnimation()) ? sticker.getAnimation() : "none";
+        File source = new File(sticker.getPath());
+        String key = RenderCache.sha1(sticker.getPath() + '\0' + source.length() + '\0' + source.lastModified()
+                + '\0' + width + '\0' + sticker.getRotation() + '\0' + animation);
+        String name = isSequence(animation) ? "sticker_" + key + "_%02d.png" : "sticker_" + key + ".png";
+        return new StickerSprite(sticker.getPath(), width, sticker.getRotation(), animation, directory + "/" + name);
+    }
+
+    /**
+     * Get the width of a sticker in an output of the given width, in pixels
+     */
+    static int getWidth(StickerOverlay sticker, int outputWidth) {
+        return Math.max(1, Math.round(outputWidth * BASE_WIDTH_FRACTION * sticker.getScale()));
+    }
+
+    private static boolean isSequence(String animation) {
+        return "rotate".equals(animation) || "bounce".equals(animation);
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    /**
+     * Width of the sticker image itself before rotation, in output pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public float getRotation() {
+        return rotation;
+    }
+
+    /**
+     * The animation baked into the frames: "rotate", "bounce" or "none"
+     */
+    public String getAnimation() {
+        return animation;
+    }
+
+    /**
+     * Path of the sprite, an image2 pattern for sequences
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public int getFrameCount() {
+        switch (animation) {
+            case "rotate":
+                return ROTATE_FRAMES;
+            case "bounce":
+                return BOUNCE_FRAMES;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Rate at which the frames play, for sequences
+     */
+    public double getFrameRate() {
+        switch (animation) {
+            case "rotate":
+                return ROTATE_FRAMES / ROTATE_PERIOD_SECONDS;
+            case "bounce":
+                return BOUNCE_FRAMES / BOUNCE_PERIOD_SECONDS;
+            default:
+                return 0;
+        }
+    }
+
+    public boolean isSequence() {
+        return getFrameCount() > 1;
+    }
+
+    /**
+     * Get the file of one frame
+     */
+    public File getFrameFile(int frame) {
+        return new File(isSequence() ? String.format(Locale.US, path, frame + 1) : path);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.snapeditprovs.export;
+
+import com.arthenica.mobileffmpeg.Statistics;
+import com.example.snapeditprovs.models.ExportTelemetry;
+
+/**
+ * Aggregates FFmpeg statistics of the sessions of one export into throttled
+ * ExportTelemetry snapshots. Progress is measured against the output duration
+ * of the compiled timeline, so speed changes and trims are accounted for.
+ */
+public class TelemetryTracker {
+
+    public interface Listener {
+        void onTelemetry(ExportTelemetry telemetry);
+    }
+
+    // Emit at most this often so observers and WorkManager's progress store are not flooded
+    private static final long THROTTLE_MS = 500;
+
+    private final double totalSeconds;
+    private final int reservedPercent;
+    private final Listener listener;
+    private final long startNanos = System.nanoTime();
+    private final double[] sessionSeconds;
+    private final int[] sessionFrames;
+    private final long[] sessionBytes;
+    private double cachedSeconds;
+    private long lastEmitMs = -THROTTLE_MS;
+
+    /**
+     * @param sessionCount Number of FFmpeg sessions producing the output
+     * @param totalSeconds Output duration of the export
+     * @param reservedPercent Share of the progress bar for work after the sessions, such as stitching
+     * @param listener Receives the snapshots
+     */
+    public TelemetryTracker(int sessionCount, double totalSeconds, int reservedPercent, Listener listener) {
+        this.totalSeconds = totalSeconds;
+        this.reservedPercent = reservedPercent;
+        this.listener = listener;
+        this.sessionSeconds = new double[sessionCount];
+        this.sessionFrames = new int[sessionCount];
+        this.sessionBytes = new long[sessionCount];
+    }
+
+    /**
+     * Record a statistics update of one session
+     * @param session Index of the session
+     * @param statistics The update
+     * @param sessionDuration Output duration of the session
+     */
+    public void onStatistics(int session, Statistics statistics, double sessionDuration) {
+        ExportTelemetry telemetry;
+        synchronized (this) {
+            sessionSeconds[session] = Math.min(statistics.getTime() / 1000.0, sessionDuration);
+            sessionFrames[session] = statistics.getVideoFrameNumber();
+            sessionBytes[session] = statistics.getSize();
+
+            long now = getElapsedMs();
+            if (now - lastEmitMs < THROTTLE_MS) {
+                return;
+            }
+            lastEmitMs = now;
+            telemetry = snapshot(now, false);
+        }
+        listener.onTelemetry(telemetry);
+    }
+
+    /**
+     * Count a session whose output was reused as done. It adds to progress but
+     * not to throughput.
+     */
+    public synchronized void onReused(int session, double sessionDuration) {
+        sessionSeconds[session] = sessionDuration;
+        cachedSeconds += sessionDuration;
+    }
+
+    /**
+     * Emit the final snapshot of a successful export
+     */
+    public void finish() {
+        ExportTelemetry telemetry;
+        synchronized (this) {
+            telemetry = snapshot(getElapsedMs(), true);
+        }
+        listener.onTelemetry(telemetry);
+    }
+
+    /**
+     * Get the current snapshot without waiting for the throttle
+     */
+    public synchronized ExportTelemetry getTelemetry() {
+        return snapshot(getElapsedMs(), false);
+    }
+
+    private ExportTelemetry snapshot(long elapsedMs, boolean finished) {
+        double encoded = 0;
+        int frames = 0;
+        long bytes = 0;
+        for (int i = 0; i < sessionSeconds.length; i++) {
+            encoded += sessionSeconds[i];
+            frames += sessionFrames[i];
+            bytes += sessionBytes[i];
+        }
+        double rendered = encoded - cachedSeconds;
+        double elapsedSeconds = elapsedMs / 1000.0;
+
+        int percent = 100;
+        if (!finished) {
+            int maxPercent = 100 - reservedPercent;
+            percent = totalSeconds > 0 ? (int) (encoded / totalSeconds * maxPercent) : 0;
+            percent = Math.min(maxPercent, Math.max(0, percent));
+        }
+
+        double speed = elapsedSeconds > 0 ? rendered / elapsedSeconds : 0;
+        double fps = elapsedSeconds > 0 ? frames / elapsedSeconds : 0;
+        double bitrateKbps = rendered > 0 ? bytes * 8 / 1000.0 / rendered : 0;
+        long etaMs = finished ? 0 : speed > 0 ? (long) (Math.max(0, totalSeconds - encoded) / speed * 1000) : -1;
+
+        return new ExportTelemetry(percent, encoded, totalSeconds, elapsedMs, etaMs, fps, speed, bitrateKbps, bytes);
+    }
+
+    private long getElapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.Transition;
+import com.example.snapeditprovs.models.VideoClip;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the transitions of a timeline into the overlap each cut really
+ * gets. Both the single-session graph and the segment planner use these
+ * overlaps, so xfade offsets and segment lengths always agree.
+ */
+public class TransitionPlanner {
+
+    /**
+     * Index transitions by the cut they belong to. The first transition of a
+     * position wins, as in the editor.
+     */
+    static Map<Integer, Transition> index(List<Transition> transitions) {
+        Map<Integer, Transition> transitionsByPosition = new HashMap<>();
+        for (Transition transition : transitions) {
+            if (!transitionsByPosition.containsKey(transition.getPosition())) {
+                transitionsByPosition.put(transition.getPosition(), transition);
+            }
+        }
+        return transitionsByPosition;
+    }
+
+    /**
+     * Get the overlap of every cut, in output seconds. A transition is
+     * shortened so it never reaches into the previous transition of its first
+     * clip or past the end of its second clip; every transition window then
+     * covers its own part of the timeline.
+     * @param clips Clips in timeline order
+     * @param transitionsByPosition Transitions indexed by position
+     * @return Overlap per cut, index i between clip i and i + 1; 0 for a hard cut
+     */
+    static double[] overlaps(List<VideoClip> clips, Map<Integer, Transition> transitionsByPosition) {
+        double[] overlaps = new double[Math.max(0, clips.size() - 1)];
+        double head = 0;
+        for (int i = 0; i < overlaps.length; i++) {
+            Transition transition = transitionsByPosition.get(i);
+            if (transition != null) {
+                double available = Math.min(clips.get(i).getOutputDuration() - head,
+                        clips.get(i + 1).getOutputDuration());
+                overlaps[i] = Math.max(0, Math.min(transition.getDuration(), available));
+            }
+            head = overlaps[i];
+        }
+        return overlaps;
+    }
+
+    /**
+     * Get the source range of a clip that plays during part of its output
+     * @param clip The clip
+     * @param outputFrom Start within the clip's output, in seconds
+     * @param outputTo End within the clip's output, in seconds
+     * @return {start, end} in source time
+     */
+    static double[] sourceRange(VideoClip clip, double outputFrom, double outputTo) {
+        double speed = clip.getSpeed();
+        if (clip.isReversed()) {
+            return new double[] {clip.getEndTime() - outputTo * speed, clip.getEndTime() - outputFrom * speed};
+        }
+        return new double[] {clip.getStartTime() + outputFrom * speed, clip.getStartTime() + outputTo * speed};
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.snapeditprovs.models;
+
+/**
+ * Encoding speed of one libx264 preset at one export resolution, measured on
+ * this device with a short calibration encode
+ */
+public class EncoderCalibration {
+    private String preset;
+    private int resolution;
+    private double fps;
+    private long measuredAt;
+
+    public EncoderCalibration() {
+    }
+
+    public EncoderCalibration(String preset, int resolution, double fps, long measuredAt) {
+        this.preset = preset;
+        this.resolution = resolution;
+        this.fps = fps;
+        this.measuredAt = measuredAt;
+    }
+
+    public String getPreset() {
+        return preset;
+    }
+
+    public void setPreset(String preset) {
+        this.preset = preset;
+    }
+
+    /**
+     * Export resolution as in ExportSettings, e.g. 1080
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(int resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Frames encoded per second of wall-clock time
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    public void setFps(double fps) {
+        this.fps = fps;
+    }
+
+    /**
+     * Wall-clock time of the measurement in milliseconds
+     */
+    public long getMeasuredAt() {
+        return measuredAt;
+    }
+
+    public void setMeasuredAt(long measuredAt) {
+        this.measuredAt = measuredAt;
+    }
+}
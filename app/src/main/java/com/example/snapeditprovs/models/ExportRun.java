@@ -0,0 +1,131 @@
+package com.example.snapeditprovs.models;
+
+/**
+ * Record of one finished export, kept to compare throughput across app
+ * versions and devices
+ */
+public class ExportRun {
+    private long id;
+    private long projectId;
+    private long startedAt;
+    private int resolution;
+    private int framerate;
+    private int bitrate;
+    private boolean segmented;
+    private int returnCode;
+    private String appVersion;
+    private String device;
+    private int sdkInt;
+    private ExportTelemetry telemetry;
+
+    public ExportRun() {
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(long projectId) {
+        this.projectId = projectId;
+    }
+
+    /**
+     * Wall-clock start time in milliseconds
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(int resolution) {
+        this.resolution = resolution;
+    }
+
+    public int getFramerate() {
+        return framerate;
+    }
+
+    public void setFramerate(int framerate) {
+        this.framerate = framerate;
+    }
+
+    /**
+     * Target video bitrate in kbps
+     */
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(int bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    public boolean isSegmented() {
+        return segmented;
+    }
+
+    public void setSegmented(boolean segmented) {
+        this.segmented = segmented;
+    }
+
+    /**
+     * FFmpeg return code of the export
+     */
+    public int getReturnCode() {
+        return returnCode;
+    }
+
+    public void setReturnCode(int returnCode) {
+        this.returnCode = returnCode;
+    }
+
+    public String getAppVersion() {
+        return appVersion;
+    }
+
+    public void setAppVersion(String appVersion) {
+        this.appVersion = appVersion;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public void setDevice(String device) {
+        this.device = device;
+    }
+
+    public int getSdkInt() {
+        return sdkInt;
+    }
+
+    public void setSdkInt(int sdkInt) {
+        this.sdkInt = sdkInt;
+    }
+
+    /**
+     * Last telemetry of the export, or null if it never started encoding
+     */
+    public ExportTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    public void setTelemetry(ExportTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+}
@@ -12,6 +12,12 @@ public class ExportSettings {
     private String format; // "mp4", "mov", "gif"
     private boolean includeAudio;
     private boolean hardwareAcceleration;
+    private boolean segmentedExport; // render segments in parallel and stitch them
+    private String scratchPath; // directory for files the export generates, e.g. subtitle scripts
+    private String encoderPreset; // libx264 preset
+    private String videoProfile; // H.264 profile, e.g. "high"
+    private String videoLevel; // H.264 level, e.g. "4.1"; null lets the encoder choose
+    private int timeBudgetSeconds; // target export time, 0 for no target
 
     public ExportSettings() {
         this.resolution = 1080;
@@ -20,6 +26,8 @@ public class ExportSettings {
         this.format = "mp4";
         this.includeAudio = true;
         this.hardwareAcceleration = true;
+        this.encoderPreset = "medium";
+        this.videoProfile = "high";
     }
 
     public int getResolution() {
@@ -70,6 +78,13 @@ public class ExportSettings {
         this.format = format;
     }
 
+    /**
+     * Whether this is an animated GIF export, which has no audio
+     */
+    public boolean isGif() {
+        return "gif".equals(format);
+    }
+
     public boolean isIncludeAudio() {
         return includeAudio;
     }
@@ -86,6 +101,87 @@ public class ExportSettings {
         this.hardwareAcceleration = hardwareAcceleration;
     }
 
+    public boolean isSegmentedExport() {
+        return segmentedExport;
+    }
+
+    public void setSegmentedExport(boolean segmentedExport) {
+        this.segmentedExport = segmentedExport;
+    }
+
+    public String getScratchPath() {
+        return scratchPath;
+    }
+
+    public void setScratchPath(String scratchPath) {
+        this.scratchPath = scratchPath;
+    }
+
+    public String getEncoderPreset() {
+        return encoderPreset;
+    }
+
+    public void setEncoderPreset(String encoderPreset) {
+        this.encoderPreset = encoderPreset;
+    }
+
+    public String getVideoProfile() {
+        return videoProfile;
+    }
+
+    public void setVideoProfile(String videoProfile) {
+        this.videoProfile = videoProfile;
+    }
+
+    public String getVideoLevel() {
+        return videoLevel;
+    }
+
+    public void setVideoLevel(String videoLevel) {
+        this.videoLevel = videoLevel;
+    }
+
+    /**
+     * Get the export time the user is willing to wait, which bounds how slow
+     * an encoder preset the export may use
+     * @return The budget in seconds, or 0 for no budget
+     */
+    public int getTimeBudgetSeconds() {
+        return timeBudgetSeconds;
+    }
+
+    public void setTimeBudgetSeconds(int timeBudgetSeconds) {
+        this.timeBudgetSeconds = timeBudgetSeconds;
+    }
+
+    /**
+     * Get the output frame width for the selected resolution
+     */
+    public int getOutputWidth() {
+        switch (resolution) {
+            case 720:
+                return 1280;
+            case 2160:
+                return 3840;
+            default:
+                return 1920;
+        }
+    }
+
+    /**
+     * Get the output frame height for the selected resolution
+     */
+    public int getOutputHeight() {
+        switch (resolution) {
+            case 720:
+                return 720;
+            case 2160:
+                return 2160;
+            default:
+                return 1080;
+        }
+    }
+
     /**
      * Get the full output file path
      */
@@ -135,4 +231,26 @@ public class ExportSettings {
         
         return baseArgs;
     }
+
+    /**
+     * Creates a copy of these settings
+     */
+    public ExportSettings duplicate() {
+        ExportSettings copy = new ExportSettings();
+        copy.setResolution(this.resolution);
+        copy.setBitrate(this.bitrate);
+        copy.setFramerate(this.framerate);
+        copy.setOutputPath(this.outputPath);
+        copy.setOutputFilename(this.outputFilename);
+        copy.setFormat(this.format);
+        copy.setIncludeAudio(this.includeAudio);
+        copy.setHardwareAcceleration(this.hardwareAcceleration);
+        copy.setSegmentedExport(this.segmentedExport);
+        copy.setScratchPath(this.scratchPath);
+        copy.setEncoderPreset(this.encoderPreset);
+        copy.setVideoProfile(this.videoProfile);
+        copy.setVideoLevel(this.videoLevel);
+        copy.setTimeBudgetSeconds(this.timeBudgetSeconds);
+        return copy;
+    }
 }
@@ -0,0 +1,86 @@
+package com.example.snapeditprovs.models;
+
+/**
+ * Snapshot of a running export, aggregated over all of its FFmpeg sessions
+ */
+public class ExportTelemetry {
+    private final int percent;
+    private final double encodedSeconds;
+    private final double totalSeconds;
+    private final long elapsedMs;
+    private final long etaMs;
+    private final double fps;
+    private final double speed;
+    private final double bitrateKbps;
+    private final long sizeBytes;
+
+    public ExportTelemetry(int percent, double encodedSeconds, double totalSeconds, long elapsedMs, long etaMs,
+                           double fps, double speed, double bitrateKbps, long sizeBytes) {
+        this.percent = percent;
+        this.encodedSeconds = encodedSeconds;
+        this.totalSeconds = totalSeconds;
+        this.elapsedMs = elapsedMs;
+        this.etaMs = etaMs;
+        this.fps = fps;
+        this.speed = speed;
+        this.bitrateKbps = bitrateKbps;
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * Progress from 0 to 100
+     */
+    public int getPercent() {
+        return percent;
+    }
+
+    /**
+     * Seconds of output produced so far, including pieces reused from the render cache
+     */
+    public double getEncodedSeconds() {
+        return encodedSeconds;
+    }
+
+    /**
+     * Length of the exported video, from the compiled timeline
+     */
+    public double getTotalSeconds() {
+        return totalSeconds;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * Estimated time to completion, or -1 before enough has been encoded to tell
+     */
+    public long getEtaMs() {
+        return etaMs;
+    }
+
+    /**
+     * Frames encoded per second of wall time, over all sessions
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * Seconds of output encoded per second of wall time
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getBitrateKbps() {
+        return bitrateKbps;
+    }
+
+    /**
+     * Bytes written so far
+     */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+}
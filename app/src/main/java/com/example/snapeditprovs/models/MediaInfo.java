@@ -0,0 +1,204 @@
+package com.example.snapeditprovs.models;
+
+/**
+ * Represents the probed stream properties of a media file
+ */
+public class MediaInfo {
+    private String path;
+    private long size;
+    private long lastModified;
+    private double duration;
+    private long bitrate;
+    private String videoCodec;
+    private int width;
+    private int height;
+    private int rotation;
+    private double frameRate;
+    private String videoProfile;
+    private int videoLevel;
+    private String pixelFormat;
+    private double keyframeInterval;
+    private String audioCodec;
+    private int audioChannels;
+    private String audioChannelLayout;
+    private int audioSampleRate;
+
+    public MediaInfo() {
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public double getDuration() {
+        return duration;
+    }
+
+    public void setDuration(double duration) {
+        this.duration = duration;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    public void setVideoCodec(String videoCodec) {
+        this.videoCodec = videoCodec;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public double getFrameRate() {
+        return frameRate;
+    }
+
+    public void setFrameRate(double frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Profile of the first video stream as FFprobe names it, e.g. "High"
+     */
+    public String getVideoProfile() {
+        return videoProfile;
+    }
+
+    public void setVideoProfile(String videoProfile) {
+        this.videoProfile = videoProfile;
+    }
+
+    /**
+     * Level of the first video stream times ten, e.g. 41 for level 4.1
+     */
+    public int getVideoLevel() {
+        return videoLevel;
+    }
+
+    public void setVideoLevel(int videoLevel) {
+        this.videoLevel = videoLevel;
+    }
+
+    /**
+     * Pixel format of the first video stream, e.g. "yuv420p"
+     */
+    public String getPixelFormat() {
+        return pixelFormat;
+    }
+
+    public void setPixelFormat(String pixelFormat) {
+        this.pixelFormat = pixelFormat;
+    }
+
+    /**
+     * Size of the probed file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Modification time of the probed file
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Overall bitrate in bits per second
+     */
+    public long getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(long bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * Display rotation in degrees clockwise
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    public void setRotation(int rotation) {
+        this.rotation = rotation;
+    }
+
+    /**
+     * Average keyframe interval of the first video stream in seconds
+     */
+    public double getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public void setKeyframeInterval(double keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    public void setAudioCodec(String audioCodec) {
+        this.audioCodec = audioCodec;
+    }
+
+    public int getAudioChannels() {
+        return audioChannels;
+    }
+
+    public void setAudioChannels(int audioChannels) {
+        this.audioChannels = audioChannels;
+    }
+
+    public String getAudioChannelLayout() {
+        return audioChannelLayout;
+    }
+
+    public void setAudioChannelLayout(String audioChannelLayout) {
+        this.audioChannelLayout = audioChannelLayout;
+    }
+
+    public int getAudioSampleRate() {
+        return audioSampleRate;
+    }
+
+    public void setAudioSampleRate(int audioSampleRate) {
+        this.audioSampleRate = audioSampleRate;
+    }
+
+    public boolean hasVideo() {
+        return videoCodec != null;
+    }
+
+    public boolean hasAudio() {
+        return audioCodec != null;
+    }
+}
@@ -89,32 +89,39 @@ public class Transition {
     }
 
     /**
-     * Get FFmpeg command for this transition
+     * Get the FFmpeg xfade transition name for this transition type
      */
-    public String toFFmpegTransitionCommand() {
+    public String getFFmpegTransitionName() {
         switch (type) {
             case "fade":
-                return "xfade=fade:duration=" + duration;
+                return "fade";
             case "dissolve":
-                return "xfade=dissolve:duration=" + duration;
+                return "dissolve";
             case "wipe":
-                return "xfade=wipeleft:duration=" + duration;
+                return "wipeleft";
             case "slide":
-                return "xfade=slideleft:duration=" + duration;
+                return "slideleft";
             case "push":
-                return "xfade=radial:duration=" + duration;
+                return "radial";
             case "zoom":
-                return "xfade=fadeblack:duration=" + duration;
+                return "fadeblack";
             case "whip":
-                return "xfade=wipeup:duration=" + duration;
+                return "wipeup";
             case "circle":
-                return "xfade=circleopen:duration=" + duration;
+                return "circleopen";
             case "clock":
-                return "xfade=clock:duration=" + duration;
+                return "clock";
             default:
-                return "xfade=fade:duration=" + duration;
+                return "fade";
         }
     }
+
+    /**
+     * Get FFmpeg command for this transition
+     */
+    public String toFFmpegTransitionCommand() {
+        return "xfade=" + getFFmpegTransitionName() + ":duration=" + duration;
+    }
     
     /**
      * Creates a deep copy of this transition
@@ -15,6 +15,7 @@ public class VideoClip {
     private float volume;
     private float speed;
     private String thumbnailPath;
+    private String proxyPath;
     private boolean isMuted;
     private boolean isReversed;
 
@@ -127,6 +128,26 @@ public class VideoClip {
         this.thumbnailPath = thumbnailPath;
     }
 
+    /**
+     * Low-resolution, short-GOP copy of the source used for preview and
+     * analysis, or null if none exists yet. Export always reads the source.
+     */
+    public String getProxyPath() {
+        return proxyPath;
+    }
+
+    public void setProxyPath(String proxyPath) {
+        this.proxyPath = proxyPath;
+    }
+
+    /**
+     * Get the file the editor should decode: the proxy if there is one,
+     * otherwise the source
+     */
+    public String getPreviewPath() {
+        return proxyPath != null ? proxyPath : path;
+    }
+
     public boolean isMuted() {
         return isMuted;
     }
@@ -143,6 +164,13 @@ public class VideoClip {
         isReversed = reversed;
     }
     
+    /**
+     * Get the length this clip occupies in the exported video, after speed is applied
+     */
+    public double getOutputDuration() {
+        return (endTime - startTime) / speed;
+    }
+    
     /**
      * Split this clip at the specified position
      * @param splitPosition position in seconds to split the clip
@@ -163,6 +191,7 @@ public class VideoClip {
         newClip.setHeight(this.height);
         newClip.setVolume(this.volume);
         newClip.setSpeed(this.speed);
+        newClip.setProxyPath(this.proxyPath);
         newClip.setMuted(this.isMuted);
         newClip.setReversed(this.isReversed);
         
@@ -180,13 +209,14 @@ public class VideoClip {
         copy.setPath(this.path);
         copy.setStartTime(this.startTime);
         copy.setEndTime(this.endTime);
-        copy.setDuration(this.duration);
         copy.setTimelinePosition(this.timelinePosition);
         copy.setWidth(this.width);
         copy.setHeight(this.height);
         copy.setVolume(this.volume);
+        // Also sets the duration; setDuration() would move the end time of a sped-up clip
         copy.setSpeed(this.speed);
         copy.setThumbnailPath(this.thumbnailPath);
+        copy.setProxyPath(this.proxyPath);
         copy.setMuted(this.isMuted);
         copy.setReversed(this.isReversed);
         return copy;
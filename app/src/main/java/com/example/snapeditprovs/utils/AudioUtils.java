@@ -5,13 +5,25 @@ import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.util.Log;
 
+import com.arthenica.mobileffmpeg.Config;
+import com.example.snapeditprovs.export.FFmpegGovernor;
+import com.example.snapeditprovs.models.MediaInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 public class AudioUtils {
     private static final String TAG = "AudioUtils";
+
+    // Decoding rate of waveforms; peaks need far fewer samples than playback
+    private static final int WAVEFORM_SAMPLE_RATE = 4000;
     
     /**
      * Audio metadata class to hold duration, bitrate, etc.
@@ -35,6 +47,12 @@ public class AudioUtils {
      * @return AudioMetadata object containing duration, bitrate, and MIME type
      */
     public static AudioMetadata getAudioMetadata(Context context, Uri audioUri) {
+        MediaInfo info = MediaProbeCache.getInstance(context).getMediaInfo(audioUri);
+        if (info != null && info.hasAudio()) {
+            return new AudioMetadata(info.getDuration(), (int) info.getBitrate(), getMimeType(info.getAudioCodec()));
+        }
+
+        // Content URIs cannot be keyed by file, so they are read directly
         MediaMetadataRetriever retriever = new MediaMetadataRetriever();
         try {
             retriever.setDataSource(context, audioUri);
@@ -60,6 +78,25 @@ public class AudioUtils {
         }
     }
     
+    /**
+     * Map an FFmpeg audio codec name to the MIME type MediaMetadataRetriever reports
+     */
+    private static String getMimeType(String codec) {
+        switch (codec) {
+            case "mp3":
+                return "audio/mpeg";
+            case "aac":
+                return "audio/mp4";
+            case "vorbis":
+            case "opus":
+                return "audio/ogg";
+            case "flac":
+                return "audio/flac";
+            default:
+                return codec.startsWith("pcm_") ? "audio/x-wav" : "audio/" + codec;
+        }
+    }
+    
     /**
      * Copy audio file from Uri to app's internal storage
      * @param context Application context
@@ -134,35 +171,102 @@ public class AudioUtils {
     }
     
     /**
-     * Extract waveform data from an audio file
+     * Extract waveform data from an audio file, or the audio of a video file.
+     * The audio is decoded to mono PCM at a low rate and each sample holds the
+     * peak of its stretch. Results are cached next to the thumbnails, keyed by
+     * the file's name, size and date. Blocks while FFmpeg decodes.
      * @param context Application context
      * @param audioPath Path to the audio file
      * @param sampleCount Number of samples to extract
      * @return Array of normalized amplitude values (0-1) or null if extraction failed
      */
     public static float[] extractWaveform(Context context, String audioPath, int sampleCount) {
-        // This is a complex operation that would typically use native code or a specialized library
-        // For a production app, you'd use something like SoundFile from Ringdroid or a native library
-        // This is a simplified placeholder implementation
-        
+        File cacheFile = getWaveformFile(context, audioPath, sampleCount);
+        float[] cached = readWaveform(cacheFile, sampleCount);
+        if (cached != null) {
+            return cached;
+        }
+
+        File pcmFile = new File(context.getCacheDir(), "waveform_" + System.nanoTime() + ".pcm");
         try {
-            // Create dummy waveform data for the UI
-            float[] waveform = new float[sampleCount];
-            
-            // Get audio duration to scale the waveform properly
-            AudioMetadata metadata = getAudioMetadata(context, Uri.fromFile(new File(audioPath)));
-            
-            for (int i = 0; i < sampleCount; i++) {
-                // Generate semi-random waveform for visualization
-                // In a real implementation, you'd extract actual amplitude data
-                double position = i / (double) sampleCount;
-                waveform[i] = (float) (0.2f + 0.8f * Math.sin(position * 20) * Math.sin(position * 10));
+            String[] arguments = {
+                    "-y", "-i", audioPath, "-vn",
+                    "-ac", "1", "-ar", String.valueOf(WAVEFORM_SAMPLE_RATE),
+                    "-f", "s16le", pcmFile.getAbsolutePath()
+            };
+            int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.BACKGROUND, arguments);
+            if (rc != Config.RETURN_CODE_SUCCESS) {
+                Log.e(TAG, "Error decoding audio for waveform, code: " + rc);
+                return null;
             }
-            
+
+            float[] waveform = getPeaks(pcmFile, sampleCount);
+            writeWaveform(cacheFile, waveform);
             return waveform;
         } catch (Exception e) {
             Log.e(TAG, "Error extracting waveform", e);
             return null;
+        } finally {
+            pcmFile.delete();
+        }
+    }
+
+    private static float[] getPeaks(File pcmFile, int sampleCount) throws IOException {
+        float[] peaks = new float[sampleCount];
+        long pcmSamples = pcmFile.length() / 2;
+        if (pcmSamples == 0) {
+            return peaks;
+        }
+
+        double samplesPerPeak = (double) pcmSamples / sampleCount;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(pcmFile))) {
+            for (long i = 0; i < pcmSamples; i++) {
+                int low = in.read();
+                int high = in.read();
+                if (high == -1) {
+                    break;
+                }
+                // 16-bit little endian
+                short sample = (short) ((high << 8) | low);
+                int peak = (int) Math.min(sampleCount - 1, i / samplesPerPeak);
+                peaks[peak] = Math.max(peaks[peak], Math.abs(sample) / 32768f);
+            }
+        }
+        return peaks;
+    }
+
+    private static File getWaveformFile(Context context, String audioPath, int sampleCount) {
+        File source = new File(audioPath);
+        return new File(new File(context.getFilesDir(), "waveforms"),
+                source.getName() + "_" + Long.toHexString(source.length()) + "_"
+                        + Long.toHexString(source.lastModified()) + "_" + sampleCount + ".peaks");
+    }
+
+    private static float[] readWaveform(File file, int sampleCount) {
+        if (!file.isFile() || file.length() != sampleCount * 4L) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            float[] waveform = new float[sampleCount];
+            for (int i = 0; i < sampleCount; i++) {
+                waveform[i] = in.readFloat();
+            }
+            return waveform;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading cached waveform", e);
+            return null;
+        }
+    }
+
+    private static void writeWaveform(File file, float[] waveform) {
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (float value : waveform) {
+                out.writeFloat(value);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error caching waveform", e);
+            file.delete();
         }
     }
     
@@ -253,7 +357,7 @@ public class AudioUtils {
     private static class FFmpegUtils {
         public static boolean executeCommand(String command) {
             try {
-                int rc = com.arthenica.mobileffmpeg.FFmpeg.execute(command);
+                int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, command);
                 return rc == com.arthenica.mobileffmpeg.Config.RETURN_CODE_SUCCESS;
             } catch (Exception e) {
                 Log.e(TAG, "Error executing FFmpeg command", e);
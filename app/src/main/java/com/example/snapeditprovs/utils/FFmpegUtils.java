@@ -6,23 +6,32 @@ import android.net.Uri;
 import android.provider.MediaStore;
 import android.util.Log;
 
-
-import com.example.snapeditprovs.models.AudioClip;
+import com.arthenica.mobileffmpeg.Config;
+import com.example.snapeditprovs.export.FFmpegGovernor;
+import com.example.snapeditprovs.export.FilterGraphCompiler;
+import com.example.snapeditprovs.export.KeyframeIndex;
+import com.example.snapeditprovs.export.SmartRenderPlanner;
 import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.Filter;
+import com.example.snapeditprovs.models.MediaInfo;
 import com.example.snapeditprovs.models.Project;
-import com.example.snapeditprovs.models.TextOverlay;
-import com.example.snapeditprovs.models.Transition;
-import com.example.snapeditprovs.models.VideoClip;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
 public class FFmpegUtils {
     private static final String TAG = "FFmpegUtils";
 
+    // Parts of an EXACT cut, in order, and the concat list joining them in the work directory
+    private static final String[] CUT_PARTS = {"head.ts", "rest.ts"};
+    private static final String CUT_PART_LIST = "parts.txt";
+
     /**
      * Generate FFmpeg command for exporting a project
      * @param project The project to export
@@ -30,290 +39,24 @@ public class FFmpegUtils {
      * @return FFmpeg command string
      */
     public static String generateExportCommand(Project project, ExportSettings settings) {
-        StringBuilder command = new StringBuilder();
-        
-        // Add video inputs
-        List<String> inputFiles = new ArrayList<>();
-        List<VideoClip> videoClips = project.getVideoClips();
-        
-        // First list all input files
-        for (int i = 0; i < videoClips.size(); i++) {
-            VideoClip clip = videoClips.get(i);
-            inputFiles.add(clip.getPath());
-            command.append("-i ").append(clip.getPath()).append(" ");
-        }
-        
-        // Add audio inputs
-        List<AudioClip> audioClips = project.getAudioClips();
-        for (AudioClip audioClip : audioClips) {
-            inputFiles.add(audioClip.getPath());
-            command.append("-i ").append(audioClip.getPath()).append(" ");
-        }
-        
-        // Start building the filter complex
-        command.append("-filter_complex \"");
-        
-        // Process video clips
-        List<String> videoStreams = new ArrayList<>();
-        for (int i = 0; i < videoClips.size(); i++) {
-            VideoClip clip = videoClips.get(i);
-            
-            // Trim the clip
-            String trimFilter = String.format(Locale.US, 
-                    "[%d:v]trim=%f:%f,setpts=PTS-STARTPTS[v%d];", 
-                    i, clip.getStartTime(), clip.getEndTime(), i);
-            command.append(trimFilter);
-            
-            // Apply speed effect
-            if (clip.getSpeed() != 1.0f) {
-                command.append(String.format(Locale.US, 
-                        "[v%d]setpts=%f*PTS[v%d];", 
-                        i, 1.0/clip.getSpeed(), i));
-            }
-            
-            // Apply filter if needed
-            if (project.getAppliedFilter() != null) {
-                command.append(String.format(Locale.US, 
-                        "[v%d]%s[v%d];", 
-                        i, project.getAppliedFilter().toFFmpegFilterString(), i));
-            }
-            
-            // If clip is reversed
-            if (clip.isReversed()) {
-                command.append(String.format(Locale.US, 
-                        "[v%d]reverse[v%d];", 
-                        i, i));
-            }
-            
-            videoStreams.add("[v" + i + "]");
-        }
-        
-        // Process audio clips
-        List<String> audioStreams = new ArrayList<>();
-        int audioInputIndex = videoClips.size();
-        
-        // First process audio from video clips
-        for (int i = 0; i < videoClips.size(); i++) {
-            VideoClip clip = videoClips.get(i);
-            
-            if (!clip.isMuted()) {
-                // Trim audio
-                String trimFilter = String.format(Locale.US, 
-                        "[%d:a]atrim=%f:%f,asetpts=PTS-STARTPTS[a%d];", 
-                        i, clip.getStartTime(), clip.getEndTime(), i);
-                command.append(trimFilter);
-                
-                // Apply volume
-                if (clip.getVolume() != 1.0f) {
-                    command.append(String.format(Locale.US, 
-                            "[a%d]volume=%f[a%d];", 
-                            i, clip.getVolume(), i));
-                }
-                
-                // If clip is reversed
-                if (clip.isReversed()) {
-                    command.append(String.format(Locale.US, 
-                            "[a%d]areverse[a%d];", 
-                            i, i));
-                }
-                
-                audioStreams.add("[a" + i + "]");
-            }
-        }
-        
-        // Process additional audio clips
-        for (int i = 0; i < audioClips.size(); i++) {
-            AudioClip clip = audioClips.get(i);
-            int audioIndex = audioInputIndex + i;
-            
-            // Trim audio
-            String trimFilter = String.format(Locale.US, 
-                    "[%d:a]atrim=%f:%f,asetpts=PTS-STARTPTS[aa%d];", 
-                    audioIndex, clip.getStartTime(), clip.getEndTime(), i);
-            command.append(trimFilter);
-            
-            // Apply fade in/out
-            if (clip.isFadeIn() || clip.isFadeOut()) {
-                StringBuilder fadeFilter = new StringBuilder("[aa" + i + "]afade=");
-                
-                if (clip.isFadeIn()) {
-                    fadeFilter.append("t=in:st=0:d=").append(clip.getFadeInDuration());
-                }
-                
-                if (clip.isFadeIn() && clip.isFadeOut()) {
-                    fadeFilter.append(",afade=");
-                }
-                
-                if (clip.isFadeOut()) {
-                    double outStart = clip.getDuration() - clip.getFadeOutDuration();
-                    fadeFilter.append("t=out:st=").append(outStart)
-                            .append(":d=").append(clip.getFadeOutDuration());
-                }
-                
-                fadeFilter.append("[aa").append(i).append("];");
-                command.append(fadeFilter);
-            }
-            
-            // Apply volume
-            if (clip.getVolume() != 1.0f) {
-                command.append(String.format(Locale.US, 
-                        "[aa%d]volume=%f[aa%d];", 
-                        i, clip.getVolume(), i));
-            }
-            
-            audioStreams.add("[aa" + i + "]");
-        }
-        
-        // Concatenate video clips with transitions
-        if (videoClips.size() > 1 && project.getTransitions().size() > 0) {
-            for (int i = 0; i < videoClips.size() - 1; i++) {
-                Transition transition = null;
-                // Find transition for this position
-                for (Transition t : project.getTransitions()) {
-                    if (t.getPosition() == i) {
-                        transition = t;
-                        break;
-                    }
-                }
-                
-                if (transition != null) {
-                    // Apply transition
-                    command.append(String.format(Locale.US, 
-                            "%s%s%s", 
-                            videoStreams.get(i), videoStreams.get(i + 1), transition.toFFmpegTransitionCommand()));
-                    
-                    // Update stream names for next operation
-                    videoStreams.set(i, "[v_trans" + i + "]");
-                    videoStreams.remove(i + 1);
-                    i--; // Process this position again with the next clip
-                } else {
-                    // No transition, just concatenate
-                    if (i == 0) {
-                        command.append(videoStreams.get(0) + videoStreams.get(1) + "concat=n=2:v=1:a=0[v_concat0];");
-                        videoStreams.set(0, "[v_concat0]");
-                        videoStreams.remove(1);
-                        i--; // Process this position again with the next clip
-                    }
-                }
-            }
-        } else if (videoClips.size() > 1) {
-            // Simple concatenation without transitions
-            StringBuilder concatFilter = new StringBuilder();
-            for (String stream : videoStreams) {
-                concatFilter.append(stream);
-            }
-            concatFilter.append("concat=n=").append(videoClips.size())
-                        .append(":v=1:a=0[v_final];");
-            command.append(concatFilter);
-            videoStreams.clear();
-            videoStreams.add("[v_final]");
-        }
-        
-        // Add text overlays
-        if (!project.getTextOverlays().isEmpty()) {
-            String baseStream = videoStreams.get(0);
-            videoStreams.remove(0);
-            
-            for (int i = 0; i < project.getTextOverlays().size(); i++) {
-                TextOverlay overlay = project.getTextOverlays().get(i);
-                
-                // Generate drawtext filter
-                StringBuilder textFilter = new StringBuilder(baseStream);
-                textFilter.append("drawtext=text='").append(overlay.getText()).append("'")
-                          .append(":fontfile=/system/fonts/").append(overlay.getFontName().contains(" ") ? 
-                                  overlay.getFontName().replace(" ", "").toLowerCase() : overlay.getFontName().toLowerCase())
-                          .append(".ttf")
-                          .append(":fontsize=").append((int)overlay.getFontSize())
-                          .append(":fontcolor=0x").append(Integer.toHexString(overlay.getColor()))
-                          .append(":x=").append((int)(overlay.getPositionX() * settings.getResolution()))
-                          .append(":y=").append((int)(overlay.getPositionY() * settings.getResolution()))
-                          .append(":enable='between(t,").append(overlay.getStartTime()).append(",").append(overlay.getEndTime()).append(")'");
-                
-                // Add text styling
-                if (overlay.isBold()) {
-                    textFilter.append(":fontweight=bold");
-                }
-                if (overlay.isItalic()) {
-                    textFilter.append(":italic=1");
-                }
-                
-                // Add text animation if specified
-                if (overlay.getAnimation() != null && !overlay.getAnimation().equals("none")) {
-                    double animDuration = 0.5; // animation duration in seconds
-                    double startTime = overlay.getStartTime();
-                    double endTime = overlay.getEndTime();
-                    
-                    if (overlay.getAnimation().equals("fade")) {
-                        textFilter.append(":alpha='if(lt(t,").append(startTime + animDuration).append("),");
-                        textFilter.append("(t-").append(startTime).append(")/").append(animDuration).append(",");
-                        textFilter.append("if(gt(t,").append(endTime - animDuration).append("),");
-                        textFilter.append("(").append(endTime).append("-t)/").append(animDuration).append(",1))'");
-                    } else if (overlay.getAnimation().equals("slide")) {
-                        // Start offscreen and slide in
-                        textFilter.append(":x='if(lt(t,").append(startTime + animDuration).append("),");
-                        textFilter.append("(t-").append(startTime).append(")/").append(animDuration).append("*");
-                        textFilter.append((int)(overlay.getPositionX() * settings.getResolution())).append(",");
-                        textFilter.append((int)(overlay.getPositionX() * settings.getResolution())).append(")'");
-                    }
-                }
-                
-                textFilter.append("[v_text").append(i).append("];");
-                command.append(textFilter);
-                
-                baseStream = "[v_text" + i + "]";
-            }
-            
-            videoStreams.add(baseStream);
-        }
-        
-        // Mix audio streams if there are multiple
-        if (audioStreams.size() > 1) {
-            StringBuilder mixFilter = new StringBuilder();
-            for (String stream : audioStreams) {
-                mixFilter.append(stream);
-            }
-            mixFilter.append("amix=inputs=").append(audioStreams.size())
-                     .append(":duration=longest[a_final]");
-            command.append(mixFilter);
-            
-            audioStreams.clear();
-            audioStreams.add("[a_final]");
-        } else if (audioStreams.size() == 1) {
-            audioStreams.set(0, audioStreams.get(0).replace(";", ""));
-        }
-        
-        // Close filter complex
-        command.append("\" ");
-        
-        // Add map for final video and audio streams
-        if (!videoStreams.isEmpty()) {
-            command.append("-map ").append(videoStreams.get(0).replace("[", "").replace("]", "")).append(" ");
-        }
-        
-        if (!audioStreams.isEmpty() && settings.isIncludeAudio()) {
-            command.append("-map ").append(audioStreams.get(0).replace("[", "").replace("]", "")).append(" ");
-        }
-        
-        // Add encoding settings
-        command.append("-s ").append(getResolutionString(settings.getResolution())).append(" ");
-        command.append("-b:v ").append(settings.getBitrate()).append("k ");
-        command.append("-r ").append(settings.getFramerate()).append(" ");
-        command.append("-c:v libx264 -preset medium -profile:v high ");
-        
-        if (settings.isIncludeAudio()) {
-            command.append("-c:a aac -b:a 128k ");
-        } else {
-            command.append("-an ");
-        }
-        
-        // Add output file
-        command.append("-y ").append(settings.getFullOutputPath());
-        
-        return command.toString();
+        return FilterGraphCompiler.compile(project, settings).toCommandString();
     }
     
     /**
-     * Extract a single frame from a video file at the specified position
+     * Generate FFmpeg arguments for exporting a project
+     * @param project The project to export
+     * @param settings Export settings
+     * @return FFmpeg argument array for FFmpeg.execute(String[])
+     */
+    public static String[] generateExportArguments(Project project, ExportSettings settings) {
+        List<String> arguments = FilterGraphCompiler.compile(project, settings).toArguments();
+        return arguments.toArray(new String[0]);
+    }
+    
+    /**
+     * Extract a single frame from a video file at the specified position.
+     * FFmpeg's default accurate seek already jumps to the preceding keyframe
+     * and decodes forward, so no keyframe index is needed here.
      * @param context Application context
      * @param videoUri URI of the video file
      * @param position Position in seconds
@@ -330,7 +73,7 @@ public class FFmpegUtils {
                 "-ss %f -i %s -vframes 1 -q:v 2 -y %s",
                 position, videoPath, outputPath);
         
-        int rc = FFmpeg.execute(command);
+        int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, command);
         return rc == Config.RETURN_CODE_SUCCESS;
     }
     
@@ -345,25 +88,214 @@ public class FFmpegUtils {
                 "-i %s -ss 0.5 -vframes 1 -s 320x240 -y %s",
                 videoPath, outputPath);
         
-        int rc = FFmpeg.execute(command);
+        int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, command);
         return rc == Config.RETURN_CODE_SUCCESS;
     }
     
     /**
-     * Cut a video file
+     * Generate the arguments transcoding a source into an editing proxy: at
+     * most 540 lines of H.264 with a keyframe every 15 frames and no B-frames,
+     * so seeking and scrubbing decode only a few cheap frames
+     * @param inputPath Source video path
+     * @param outputPath Proxy path; written as MP4 whatever its extension
+     * @return FFmpeg arguments
+     */
+    public static String[] generateProxyArguments(String inputPath, String outputPath) {
+        return new String[] {
+                "-i", inputPath,
+                "-map", "0:v:0", "-map", "0:a:0?",
+                "-vf", "scale=-2:min(540\\,ih)",
+                "-c:v", "libx264", "-preset", "ultrafast", "-tune", "fastdecode", "-crf", "28",
+                "-g", "15", "-keyint_min", "15", "-sc_threshold", "0", "-bf", "0", "-pix_fmt", "yuv420p",
+                "-c:a", "aac", "-b:a", "96k", "-ac", "2",
+                "-movflags", "+faststart", "-f", "mp4",
+                "-y", outputPath
+        };
+    }
+    
+    /**
+     * How cutVideo() trades accuracy for speed
+     */
+    public enum CutMode {
+        // Stream copy from the keyframe nearest the start; the cut may move by up to half a GOP
+        FAST,
+        // Re-encode the partial GOP before the first keyframe and stream-copy the rest
+        EXACT
+    }
+    
+    /**
+     * Cut a video file. Both modes seek the input, so only the cut range is
+     * read, and the keyframe index of the source decides where stream copy
+     * can start. Without an index, FAST lets FFmpeg snap to a keyframe and
+     * EXACT re-encodes the whole range.
+     * @param context Application context
      * @param inputPath Input video path
      * @param outputPath Output video path
      * @param startTime Start time in seconds
      * @param endTime End time in seconds
+     * @param mode Cut mode
      * @return True if successful, false otherwise
      */
-    public static boolean cutVideo(String inputPath, String outputPath, double startTime, double endTime) {
-        String command = String.format(Locale.US,
-                "-i %s -ss %f -to %f -c copy -y %s",
-                inputPath, startTime, endTime, outputPath);
+    public static boolean cutVideo(Context context, String inputPath, String outputPath,
+                                   double startTime, double endTime, CutMode mode) {
+        MediaProbeCache probeCache = MediaProbeCache.getInstance(context);
+        File workDir = new File(context.getCacheDir(), "cut_" + System.nanoTime());
+        List<String[]> commands = getCutArguments(inputPath, outputPath, startTime, endTime, mode,
+                probeCache.getMediaInfo(inputPath), probeCache.getKeyframeIndex(inputPath), workDir);
+        
+        if (commands.size() == 1) {
+            return execute(commands.get(0));
+        }
         
-        int rc = FFmpeg.execute(command);
-        return rc == Config.RETURN_CODE_SUCCESS;
+        workDir.mkdirs();
+        try {
+            try (Writer writer = new FileWriter(new File(workDir, CUT_PART_LIST))) {
+                for (String part : CUT_PARTS) {
+                    writer.write("file '" + new File(workDir, part).getAbsolutePath().replace("'", "'\\''") + "'\n");
+                }
+            }
+            for (String[] arguments : commands) {
+                if (!execute(arguments)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing cut part list", e);
+            return false;
+        } finally {
+            File[] files = workDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            workDir.delete();
+        }
+    }
+    
+    /**
+     * Get the FFmpeg runs of a cut, in order. An EXACT cut with a partial GOP
+     * takes three: the head re-encoded with the profile, level and pixel format
+     * of the source, the rest stream-copied, and the join. The parts are
+     * MPEG-TS, so each carries its H.264 parameter sets in-band and the decoder
+     * picks up the right ones after the join.
+     * @param info Probe of the source, or null if unknown
+     * @param keyframes Keyframe index of the source, or null if unknown
+     * @param workDir Directory of the parts and of their concat list
+     */
+    static List<String[]> getCutArguments(String inputPath, String outputPath, double startTime, double endTime,
+                                          CutMode mode, MediaInfo info, KeyframeIndex keyframes, File workDir) {
+        List<String[]> commands = new ArrayList<>();
+        if (mode == CutMode.FAST) {
+            double keyframe = keyframes != null ? keyframes.nearestKeyframe(startTime) : Double.NaN;
+            double start = !Double.isNaN(keyframe) && keyframe < endTime ? keyframe : startTime;
+            commands.add(getCopyArguments(inputPath, outputPath, start, endTime, false, false));
+            return commands;
+        }
+        
+        // The first keyframe of the range; everything before it is a partial GOP
+        double keyframe = keyframes != null ? keyframes.keyframeAtOrAfter(startTime) : Double.NaN;
+        double frameDuration = info != null && info.getFrameRate() > 0 ? 1 / info.getFrameRate() : 0;
+        boolean audio = info == null || info.hasAudio();
+        if (Double.isNaN(keyframe) || keyframe >= endTime || !canContinueStream(info)) {
+            commands.add(getEncodeArguments(inputPath, outputPath, startTime, endTime, audio, null, null));
+            return commands;
+        }
+        if (keyframe - startTime < frameDuration) {
+            commands.add(getCopyArguments(inputPath, outputPath, keyframe, endTime, audio, false));
+            return commands;
+        }
+        
+        // Audio is encoded in both parts, in one layout, so they join by stream copy
+        String head = new File(workDir, CUT_PARTS[0]).getAbsolutePath();
+        String rest = new File(workDir, CUT_PARTS[1]).getAbsolutePath();
+        commands.add(getEncodeArguments(inputPath, head, startTime, keyframe, audio,
+                SmartRenderPlanner.getEncoderProfile(info.getVideoProfile()),
+                SmartRenderPlanner.getEncoderLevel(info.getVideoLevel())));
+        commands.add(getCopyArguments(inputPath, rest, keyframe, endTime, audio, true));
+        commands.add(new String[] {
+                "-f", "concat", "-safe", "0", "-i", new File(workDir, CUT_PART_LIST).getAbsolutePath(),
+                "-c", "copy", "-bsf:a", "aac_adtstoasc", "-movflags", "+faststart",
+                "-y", outputPath
+        });
+        return commands;
+    }
+    
+    /**
+     * Whether re-encoded frames can lead into stream-copied frames of a
+     * source: 8-bit 4:2:0 H.264 of a profile libx264 produces, and no
+     * rotation, which re-encoding would apply to the head only
+     */
+    private static boolean canContinueStream(MediaInfo info) {
+        return info != null
+                && "h264".equals(info.getVideoCodec())
+                && "yuv420p".equals(info.getPixelFormat())
+                && info.getRotation() == 0
+                && SmartRenderPlanner.getEncoderProfile(info.getVideoProfile()) != null
+                && SmartRenderPlanner.getEncoderLevel(info.getVideoLevel()) != null;
+    }
+    
+    /**
+     * Arguments stream-copying the video of a range that starts on a keyframe
+     * @param encodeAudio Whether to encode the audio in the layout of
+     *                    getEncodeArguments() instead of copying it
+     * @param toTransportStream Whether the output is MPEG-TS, whose H.264
+     *                          carries its parameter sets in-band
+     */
+    private static String[] getCopyArguments(String inputPath, String outputPath, double start, double end,
+                                             boolean encodeAudio, boolean toTransportStream) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-ss", formatTime(start), "-i", inputPath, "-t", formatTime(end - start),
+                "-map", "0:v:0", "-map", "0:a:0?", "-c:v", "copy"));
+        if (toTransportStream) {
+            arguments.addAll(Arrays.asList("-bsf:v", "h264_mp4toannexb"));
+        }
+        if (encodeAudio) {
+            arguments.addAll(Arrays.asList("-c:a", "aac", "-b:a", "128k", "-ar", "48000", "-ac", "2"));
+        } else {
+            arguments.addAll(Arrays.asList("-c:a", "copy"));
+        }
+        arguments.addAll(Arrays.asList("-avoid_negative_ts", "make_zero", "-y", outputPath));
+        return arguments.toArray(new String[0]);
+    }
+    
+    /**
+     * Arguments re-encoding a range frame-accurately as H.264
+     * @param profile libx264 profile, or null for high
+     * @param level libx264 level, or null to let the encoder choose
+     */
+    private static String[] getEncodeArguments(String inputPath, String outputPath, double start, double end,
+                                               boolean audio, String profile, String level) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-ss", formatTime(start), "-i", inputPath, "-t", formatTime(end - start),
+                "-map", "0:v:0", "-map", "0:a:0?",
+                "-c:v", "libx264", "-preset", "veryfast", "-crf", "18",
+                "-profile:v", profile != null ? profile : "high",
+                "-pix_fmt", "yuv420p"));
+        if (level != null) {
+            arguments.addAll(Arrays.asList("-level", level));
+        }
+        if (audio) {
+            arguments.addAll(Arrays.asList("-c:a", "aac", "-b:a", "128k", "-ar", "48000", "-ac", "2"));
+        } else {
+            arguments.add("-an");
+        }
+        arguments.addAll(Arrays.asList("-avoid_negative_ts", "make_zero", "-y", outputPath));
+        return arguments.toArray(new String[0]);
+    }
+    
+    private static boolean execute(String[] arguments) {
+        int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, arguments);
+        if (rc != Config.RETURN_CODE_SUCCESS) {
+            Log.e(TAG, "FFmpeg failed with code: " + rc);
+            return false;
+        }
+        return true;
+    }
+    
+    private static String formatTime(double seconds) {
+        return String.format(Locale.US, "%.6f", seconds);
     }
     
     /**
@@ -380,7 +312,7 @@ public class FFmpegUtils {
                 "-i %s -vf \"%s\" -c:a copy -y %s",
                 inputPath, filterString, outputPath);
         
-        int rc = FFmpeg.execute(command);
+        int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, command);
         return rc == Config.RETURN_CODE_SUCCESS;
     }
     
@@ -397,12 +329,13 @@ public class FFmpegUtils {
                 "-i %s -i %s -filter_complex \"[1:a]volume=%f[a1];[0:a][a1]amix=inputs=2:duration=shortest\" -c:v copy -y %s",
                 videoPath, audioPath, volume, outputPath);
         
-        int rc = FFmpeg.execute(command);
+        int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, command);
         return rc == Config.RETURN_CODE_SUCCESS;
     }
     
     /**
      * Add text overlay to a video
+     * @param context Application context
      * @param inputPath Input video path
      * @param outputPath Output video path
      * @param text Text to overlay
@@ -415,11 +348,11 @@ public class FFmpegUtils {
      * @param endTime End time in seconds
      * @return True if successful, false otherwise
      */
-    public static boolean addTextOverlay(String inputPath, String outputPath, String text,
+    public static boolean addTextOverlay(Context context, String inputPath, String outputPath, String text,
                                          String fontName, float fontSize, int color,
                                          float posX, float posY, double startTime, double endTime) {
         // Get video dimensions
-        int[] dimensions = getVideoDimensions(inputPath);
+        int[] dimensions = getVideoDimensions(context, inputPath);
         if (dimensions == null) {
             return false;
         }
@@ -437,82 +370,25 @@ public class FFmpegUtils {
                 hexColor, (int)(posX * width), (int)(posY * height),
                 startTime, endTime, outputPath);
         
-        int rc = FFmpeg.execute(command);
+        int rc = FFmpegGovernor.getInstance().execute(FFmpegGovernor.Priority.INTERACTIVE, command);
         return rc == Config.RETURN_CODE_SUCCESS;
     }
     
     /**
      * Get video dimensions (width, height)
+     * @param context Application context
      * @param videoPath Path to the video file
      * @return int array with [width, height] or null if failed
      */
-    public static int[] getVideoDimensions(String videoPath) {
-        try {
-            String command = String.format(Locale.US,
-                    "-i %s -v error -select_streams v:0 -show_entries stream=width,height -of csv=s=x:p=0",
-                    videoPath);
-            
-            Config.enableLogCallback(message -> {
-                if (message.getText().contains("x")) {
-                    String dimensions = message.getText().trim();
-                    String[] parts = dimensions.split("x");
-                    if (parts.length == 2) {
-                        try {
-                            int width = Integer.parseInt(parts[0]);
-                            int height = Integer.parseInt(parts[1]);
-                            return new int[]{width, height};
-                        } catch (NumberFormatException e) {
-                            Log.e(TAG, "Error parsing dimensions", e);
-                        }
-                    }
-                }
-                return null;
-            });
-            
-            FFmpeg.execute(command);
-            
-            // Disable log callback
-            Config.enableLogCallback(null);
-            
-            // If we didn't get dimensions from the callback, try probe directly
-            File file = new File(videoPath);
-            if (file.exists()) {
-                MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-                retriever.setDataSource(videoPath);
-                String width = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH);
-                String height = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT);
-                retriever.release();
-                
-                if (width != null && height != null) {
-                    return new int[]{Integer.parseInt(width), Integer.parseInt(height)};
-                }
-            }
-            
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting video dimensions", e);
+    public static int[] getVideoDimensions(Context context, String videoPath) {
+        MediaInfo info = MediaProbeCache.getInstance(context).getMediaInfo(videoPath);
+        if (info == null || !info.hasVideo()) {
+            Log.e(TAG, "Error getting video dimensions of " + videoPath);
             return null;
         }
+        return new int[]{info.getWidth(), info.getHeight()};
     }
     
-    /**
-     * Get a resolution string (e.g., "1920x1080") from a resolution value
-     * @param resolution Resolution value (720, 1080, or 2160)
-     * @return Resolution string
-     */
-    private static String getResolutionString(int resolution) {
-        switch (resolution) {
-            case 720:
-                return "1280x720";
-            case 1080:
-                return "1920x1080";
-            case 2160:
-                return "3840x2160";
-            default:
-                return "1920x1080";
-        }
-    }
-
     // Helper inner class for URI to path conversion
     private static class UriUtils {
         public static String getPathFromUri(Context context, Uri uri) {
@@ -543,32 +419,4 @@ public class FFmpegUtils {
             }
         }
     }
-    
-    // MediaMetadataRetriever helper class for FFmpegUtils
-    private static class MediaMetadataRetriever {
-        public static final int METADATA_KEY_VIDEO_WIDTH = 18;
-        public static final int METADATA_KEY_VIDEO_HEIGHT = 19;
-        
-        private android.media.MediaMetadataRetriever retriever;
-        
-        public MediaMetadataRetriever() {
-            retriever = new android.media.MediaMetadataRetriever();
-        }
-        
-        public void setDataSource(String path) {
-            retriever.setDataSource(path);
-        }
-        
-        public String extractMetadata(int keyCode) {
-            return retriever.extractMetadata(keyCode);
-        }
-        
-        public void release() {
-            try {
-                retriever.release();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
-    }
 }
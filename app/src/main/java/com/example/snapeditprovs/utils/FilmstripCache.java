@@ -0,0 +1,550 @@
+package com.example.snapeditprovs.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.snapeditprovs.export.KeyframeIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thumbnail pyramid of each source for the timeline filmstrip. Level 0 has a
+ * tile every COARSEST_SECONDS_PER_TILE seconds of source and each finer level
+ * halves the spacing, so every timeline zoom band has a level whose tiles sit
+ * about a tile width apart. A level is stored as JPEG sprite sheets plus an
+ * index of each tile's frame time, sheet and offset. Decoded tiles are held
+ * in a bounded LRU.
+ *
+ * getTile() only looks into memory and is safe to call while drawing. A miss
+ * queues the sheet to be loaded, or the level to be rendered from the source,
+ * and returns a tile of another level in memory meanwhile. The coarsest level
+ * is always rendered first, so it can stand in while finer ones render.
+ */
+public class FilmstripCache {
+    private static final String TAG = "FilmstripCache";
+
+    public static final int LEVEL_COUNT = 4;
+    static final double COARSEST_SECONDS_PER_TILE = 8.0;
+
+    // 16:9 tiles, about as large as they are drawn in the timeline
+    public static final int TILE_WIDTH = 160;
+    public static final int TILE_HEIGHT = 90;
+
+    private static final int SHEET_COLUMNS = 8;
+    private static final int SHEET_ROWS = 8;
+    private static final int TILES_PER_SHEET = SHEET_COLUMNS * SHEET_ROWS;
+
+    private static final int INDEX_MAGIC = 0x46535431; // "FST1"
+    private static final long MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+    // Tiles rendered between updates of the timeline
+    private static final int PUBLISH_EVERY = 8;
+
+    private static FilmstripCache instance;
+
+    private final Context context;
+    private final File cacheDir;
+    private final LruCache<String, Bitmap> tiles;
+    private final Map<String, LevelIndex> indexes = new HashMap<>();
+    private final Map<String, String> sourceKeys = new ConcurrentHashMap<>();
+    private final Set<String> pending = new HashSet<>();
+    // Loading a stored sheet is quick; it does not wait behind a level rendering from video
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService renderExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicLong updates = new AtomicLong();
+    private final MutableLiveData<Long> tileUpdates = new MutableLiveData<>();
+
+    /**
+     * Where the tiles of one level are: frame time, sheet and offset in the sheet
+     */
+    static class LevelIndex {
+        final long[] timesUs;
+        final int[] sheets;
+        final int[] xs;
+        final int[] ys;
+
+        LevelIndex(int count) {
+            timesUs = new long[count];
+            sheets = new int[count];
+            xs = new int[count];
+            ys = new int[count];
+        }
+
+        int size() {
+            return timesUs.length;
+        }
+
+        boolean write(File file) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(size());
+                for (int i = 0; i < size(); i++) {
+                    out.writeLong(timesUs[i]);
+                    out.writeInt(sheets[i]);
+                    out.writeInt(xs[i]);
+                    out.writeInt(ys[i]);
+                }
+                return true;
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing filmstrip index", e);
+                file.delete();
+                return false;
+            }
+        }
+
+        static LevelIndex read(File file) {
+            if (!file.isFile()) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                int count = in.readInt() == INDEX_MAGIC ? in.readInt() : -1;
+                if (count <= 0 || file.length() != 8 + count * 20L) {
+                    return null;
+                }
+                LevelIndex index = new LevelIndex(count);
+                for (int i = 0; i < count; i++) {
+                    index.timesUs[i] = in.readLong();
+                    index.sheets[i] = in.readInt();
+                    index.xs[i] = in.readInt();
+                    index.ys[i] = in.readInt();
+                }
+                return index;
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading filmstrip index", e);
+                return null;
+            }
+        }
+    }
+
+    private FilmstripCache(Context context) {
+        this.context = context;
+        cacheDir = new File(context.getCacheDir(), "filmstrips");
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        tiles = new LruCache<String, Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap tile) {
+                return Math.max(1, tile.getByteCount() / 1024);
+            }
+        };
+    }
+
+    public static synchronized FilmstripCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new FilmstripCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Get the seconds of source between two tiles of a level
+     */
+    public static double getSecondsPerTile(int level) {
+        return COARSEST_SECONDS_PER_TILE / (1 << level);
+    }
+
+    /**
+     * Choose the level whose tiles are closest to one slot apart at a zoom
+     * @param pixelsPerSecond Timeline pixels per second of source
+     * @param slotWidth Width a tile is drawn at, in pixels
+     */
+    public static int getLevel(double pixelsPerSecond, int slotWidth) {
+        if (pixelsPerSecond <= 0 || slotWidth <= 0) {
+            return 0;
+        }
+        double level = Math.log(COARSEST_SECONDS_PER_TILE * pixelsPerSecond / slotWidth) / Math.log(2);
+        return (int) Math.max(0, Math.min(LEVEL_COUNT - 1, Math.round(level)));
+    }
+
+    /**
+     * Observe tiles becoming available; the value only counts updates
+     */
+    public LiveData<Long> getTileUpdates() {
+        return tileUpdates;
+    }
+
+    /**
+     * Get the key of a source's tiles. The file's size and date are read on
+     * the load thread, so this can be called while binding or drawing.
+     * @param sourcePath Path of the source
+     * @return The key, or null until it is read; tile updates are published then
+     */
+    public String requestSourceKey(String sourcePath) {
+        String key = sourceKeys.get(sourcePath);
+        if (key != null) {
+            return key;
+        }
+
+        String pendingKey = "key/" + sourcePath;
+        synchronized (pending) {
+            if (!pending.add(pendingKey)) {
+                return null;
+            }
+        }
+        loadExecutor.execute(() -> {
+            sourceKeys.put(sourcePath, readSourceKey(sourcePath));
+            synchronized (pending) {
+                pending.remove(pendingKey);
+            }
+            publish();
+        });
+        return null;
+    }
+
+    /**
+     * Get the tile showing a source time, from memory only. Never decodes, so
+     * it can be called while drawing.
+     * @param sourceKey Key of the source from requestSourceKey()
+     * @param decodePath File to render the tiles from, e.g. the source's proxy
+     * @param level Wanted level
+     * @param seconds Source time
+     * @return The tile of the wanted level, else one of another level covering
+     *         the time, or null while none is available
+     */
+    public Bitmap getTile(String sourceKey, String decodePath, int level, double seconds) {
+        int tileIndex = getTileIndex(level, seconds);
+        Bitmap tile = tiles.get(getTileKey(sourceKey, level, tileIndex));
+        if (tile != null) {
+            return tile;
+        }
+
+        requestSheet(sourceKey, decodePath, level, tileIndex / TILES_PER_SHEET);
+
+        // Coarser levels first: their tile shows the start of the wanted one's range
+        for (int other = level - 1; other >= 0; other--) {
+            tile = tiles.get(getTileKey(sourceKey, other, getTileIndex(other, seconds)));
+            if (tile != null) {
+                return tile;
+            }
+        }
+        for (int other = level + 1; other < LEVEL_COUNT; other++) {
+            tile = tiles.get(getTileKey(sourceKey, other, getTileIndex(other, seconds)));
+            if (tile != null) {
+                return tile;
+            }
+        }
+        return null;
+    }
+
+    private void requestSheet(String sourceKey, String decodePath, int level, int sheet) {
+        String sheetKey = getLevelKey(sourceKey, level) + "/" + sheet;
+        synchronized (pending) {
+            if (!pending.add(sheetKey)) {
+                return;
+            }
+        }
+        loadExecutor.execute(() -> loadSheet(sourceKey, decodePath, level, sheet, sheetKey));
+    }
+
+    /**
+     * Decode a stored sheet into tiles, or queue its level for rendering if
+     * it was not rendered yet. The sheet stays pending until the render ends.
+     */
+    private void loadSheet(String sourceKey, String decodePath, int level, int sheet, String sheetKey) {
+        LevelIndex index = getIndex(sourceKey, level);
+        if (index == null) {
+            if (level > 0 && getIndex(sourceKey, 0) == null) {
+                requestRender(sourceKey, decodePath, 0);
+            }
+            requestRender(sourceKey, decodePath, level);
+            return;
+        }
+
+        // Past the end of the source; stays pending so it is not asked for again
+        int first = sheet * TILES_PER_SHEET;
+        if (first >= index.size()) {
+            return;
+        }
+
+        File sourceDir = new File(cacheDir, sourceKey);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap page = BitmapFactory.decodeFile(getSheetFile(sourceDir, level, sheet).getAbsolutePath(), options);
+        if (page == null) {
+            Log.e(TAG, "Missing filmstrip sheet " + sheetKey + ", rendering the level again");
+            synchronized (indexes) {
+                indexes.remove(getLevelKey(sourceKey, level));
+            }
+            getIndexFile(sourceDir, level).delete();
+            requestRender(sourceKey, decodePath, level);
+            return;
+        }
+
+        for (int i = first; i < Math.min(index.size(), first + TILES_PER_SHEET); i++) {
+            tiles.put(getTileKey(sourceKey, level, i),
+                    Bitmap.createBitmap(page, index.xs[i], index.ys[i], TILE_WIDTH, TILE_HEIGHT));
+        }
+        page.recycle();
+        sourceDir.setLastModified(System.currentTimeMillis());
+        publish();
+
+        synchronized (pending) {
+            pending.remove(sheetKey);
+        }
+    }
+
+    private void requestRender(String sourceKey, String decodePath, int level) {
+        String renderKey = getLevelKey(sourceKey, level) + "/render";
+        synchronized (pending) {
+            if (!pending.add(renderKey)) {
+                return;
+            }
+        }
+        renderExecutor.execute(() -> {
+            try {
+                render(sourceKey, decodePath, level);
+            } finally {
+                // Misses after this load the stored sheets, or retry a failed render
+                String levelPrefix = getLevelKey(sourceKey, level) + "/";
+                synchronized (pending) {
+                    for (Iterator<String> it = pending.iterator(); it.hasNext(); ) {
+                        if (it.next().startsWith(levelPrefix)) {
+                            it.remove();
+                        }
+                    }
+                }
+                publish();
+            }
+        });
+    }
+
+    /**
+     * Render a level from video, sheet by sheet. Tiles go to memory as they
+     * are decoded, so the timeline fills in while the level renders.
+     */
+    private void render(String sourceKey, String decodePath, int level) {
+        if (getIndex(sourceKey, level) != null) {
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        File sourceDir = new File(cacheDir, sourceKey);
+        sourceDir.mkdirs();
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(decodePath);
+            String durationMs = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            double duration = durationMs != null ? Long.parseLong(durationMs) / 1000.0 : 0;
+            if (duration <= 0) {
+                Log.e(TAG, "Cannot render filmstrip of " + decodePath);
+                return;
+            }
+
+            double secondsPerTile = getSecondsPerTile(level);
+            LevelIndex index = new LevelIndex(Math.max(1, (int) Math.ceil(duration / secondsPerTile)));
+            KeyframeIndex keyframes = MediaProbeCache.getInstance(context).getKeyframeIndex(decodePath);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            Rect source = new Rect();
+            Rect target = new Rect();
+
+            int sheetCount = (index.size() + TILES_PER_SHEET - 1) / TILES_PER_SHEET;
+            for (int sheet = 0; sheet < sheetCount; sheet++) {
+                int first = sheet * TILES_PER_SHEET;
+                int count = Math.min(TILES_PER_SHEET, index.size() - first);
+                int rows = (count + SHEET_COLUMNS - 1) / SHEET_COLUMNS;
+                Bitmap page = Bitmap.createBitmap(SHEET_COLUMNS * TILE_WIDTH, rows * TILE_HEIGHT,
+                        Bitmap.Config.RGB_565);
+                Canvas canvas = new Canvas(page);
+
+                for (int i = first; i < first + count; i++) {
+                    int x = (i - first) % SHEET_COLUMNS * TILE_WIDTH;
+                    int y = (i - first) / SHEET_COLUMNS * TILE_HEIGHT;
+                    long timeUs = Math.round(i * secondsPerTile * 1_000_000);
+                    int option = MediaMetadataRetriever.OPTION_CLOSEST;
+
+                    // A keyframe close by is read alone instead of decoding forward to the exact time
+                    double keyframe = keyframes != null ? keyframes.nearestKeyframe(timeUs / 1_000_000.0) : Double.NaN;
+                    if (Math.abs(keyframe * 1_000_000 - timeUs) <= secondsPerTile * 1_000_000 / 4) {
+                        timeUs = Math.round(keyframe * 1_000_000);
+                        option = MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+                    }
+
+                    Bitmap frame = getFrame(retriever, timeUs, option);
+                    if (frame != null) {
+                        centerCrop(frame, source);
+                        target.set(x, y, x + TILE_WIDTH, y + TILE_HEIGHT);
+                        canvas.drawBitmap(frame, source, target, paint);
+                        frame.recycle();
+                    }
+                    index.timesUs[i] = timeUs;
+                    index.sheets[i] = sheet;
+                    index.xs[i] = x;
+                    index.ys[i] = y;
+                    tiles.put(getTileKey(sourceKey, level, i), Bitmap.createBitmap(page, x, y, TILE_WIDTH, TILE_HEIGHT));
+                    if ((i + 1) % PUBLISH_EVERY == 0) {
+                        publish();
+                    }
+                }
+
+                try (OutputStream out = new FileOutputStream(getSheetFile(sourceDir, level, sheet))) {
+                    page.compress(Bitmap.CompressFormat.JPEG, 80, out);
+                }
+                page.recycle();
+            }
+
+            // The index is written last, so a stored index means a complete level
+            if (index.write(getIndexFile(sourceDir, level))) {
+                synchronized (indexes) {
+                    indexes.put(getLevelKey(sourceKey, level), index);
+                }
+            }
+            Log.d(TAG, "Rendered filmstrip level " + level + " of " + decodePath + ": " + index.size()
+                    + " tiles in " + (System.currentTimeMillis() - started) + " ms");
+            sourceDir.setLastModified(System.currentTimeMillis());
+            trimDisk(sourceDir);
+        } catch (Exception e) {
+            Log.e(TAG, "Error rendering filmstrip", e);
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException e) {
+                Log.e(TAG, "Error releasing retriever", e);
+            }
+        }
+    }
+
+    private static Bitmap getFrame(MediaMetadataRetriever retriever, long timeUs, int option) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            // Decodes straight to tile size instead of a full frame
+            return retriever.getScaledFrameAtTime(timeUs, option, TILE_WIDTH * 2, TILE_HEIGHT * 2);
+        }
+        return retriever.getFrameAtTime(timeUs, option);
+    }
+
+    /**
+     * Set the part of a frame that fills a tile without distortion
+     */
+    private static void centerCrop(Bitmap frame, Rect source) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (width * TILE_HEIGHT > height * TILE_WIDTH) {
+            int cropped = height * TILE_WIDTH / TILE_HEIGHT;
+            source.set((width - cropped) / 2, 0, (width + cropped) / 2, height);
+        } else {
+            int cropped = width * TILE_HEIGHT / TILE_WIDTH;
+            source.set(0, (height - cropped) / 2, width, (height + cropped) / 2);
+        }
+    }
+
+    private LevelIndex getIndex(String sourceKey, int level) {
+        String levelKey = getLevelKey(sourceKey, level);
+        synchronized (indexes) {
+            LevelIndex index = indexes.get(levelKey);
+            if (index == null) {
+                index = LevelIndex.read(getIndexFile(new File(cacheDir, sourceKey), level));
+                if (index != null) {
+                    indexes.put(levelKey, index);
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Delete the least recently used sources until the cache fits its budget
+     */
+    private void trimDisk(File current) {
+        File[] sourceDirs = cacheDir.listFiles();
+        if (sourceDirs == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File dir : sourceDirs) {
+            total += getSize(dir);
+        }
+        Arrays.sort(sourceDirs, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File dir : sourceDirs) {
+            if (total <= MAX_DISK_BYTES) {
+                break;
+            }
+            if (dir.equals(current)) {
+                continue;
+            }
+            total -= getSize(dir);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+            synchronized (indexes) {
+                indexes.keySet().removeIf(key -> key.startsWith(dir.getName() + "/"));
+            }
+        }
+    }
+
+    private static long getSize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private void publish() {
+        tileUpdates.postValue(updates.incrementAndGet());
+    }
+
+    /**
+     * Key tiles by the source's name, size and date, like its proxy, so an
+     * edited or replaced file never shows stale tiles
+     */
+    private static String readSourceKey(String sourcePath) {
+        File source = new File(sourcePath);
+        return source.getName() + "_" + Long.toHexString(source.length()) + "_"
+                + Long.toHexString(source.lastModified());
+    }
+
+    private static int getTileIndex(int level, double seconds) {
+        return (int) Math.max(0, Math.floor(seconds / getSecondsPerTile(level)));
+    }
+
+    private static String getLevelKey(String sourceKey, int level) {
+        return sourceKey + "/" + level;
+    }
+
+    private static String getTileKey(String sourceKey, int level, int tileIndex) {
+        return sourceKey + "/" + level + "/" + tileIndex;
+    }
+
+    private static File getSheetFile(File sourceDir, int level, int sheet) {
+        return new File(sourceDir, "L" + level + "_" + sheet + ".jpg");
+    }
+
+    private static File getIndexFile(File sourceDir, int level) {
+        return new File(sourceDir, "L" + level + ".idx");
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.snapeditprovs.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+
+import com.example.snapeditprovs.models.VideoClip;
+
+/**
+ * Draws the filmstrip of a clip from the tiles in the FilmstripCache. The
+ * level follows the drawn width of the clip, so it changes with the timeline
+ * zoom. Tiles not in memory are requested and left transparent, so whatever
+ * is drawn below shows until they arrive; the owner redraws on
+ * FilmstripCache.getTileUpdates().
+ */
+public class FilmstripDrawable extends Drawable {
+    private final FilmstripCache cache;
+    private final VideoClip clip;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect slot = new Rect();
+    private String sourceKey;
+
+    /**
+     * @param sourceKey Key of the clip's source from FilmstripCache.requestSourceKey(),
+     *                  or null while it is being read
+     */
+    public FilmstripDrawable(FilmstripCache cache, VideoClip clip, String sourceKey) {
+        this.cache = cache;
+        this.clip = clip;
+        this.sourceKey = sourceKey;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty() || clip.getPath() == null || clip.getDuration() <= 0) {
+            return;
+        }
+        if (sourceKey == null) {
+            sourceKey = cache.requestSourceKey(clip.getPath());
+            if (sourceKey == null) {
+                return;
+            }
+        }
+
+        double pixelsPerSecond = bounds.width() / clip.getDuration();
+        int slotWidth = Math.max(1, bounds.height() * FilmstripCache.TILE_WIDTH / FilmstripCache.TILE_HEIGHT);
+        int level = FilmstripCache.getLevel(pixelsPerSecond, slotWidth);
+        for (int x = 0; x < bounds.width(); x += slotWidth) {
+            double seconds = clip.getStartTime() + x / pixelsPerSecond;
+            Bitmap tile = cache.getTile(sourceKey, clip.getPreviewPath(), level, seconds);
+            if (tile != null) {
+                slot.set(bounds.left + x, bounds.top, bounds.left + x + slotWidth, bounds.bottom);
+                canvas.drawBitmap(tile, null, slot, paint);
+            }
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.snapeditprovs.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.snapeditprovs.database.ProjectDao;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+import com.example.snapeditprovs.workers.ProxyJobs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Imports a batch of videos into a new project as a bounded pipeline. Sources
+ * are copied a few at a time and probed one at a time, and each clip is inserted as soon as
+ * it and every clip picked before it are probed, so the timeline keeps the
+ * picked order and the editor can open before the batch is done. Proxies are
+ * then queued in WorkManager, while thumbnails and waveforms are extracted on
+ * a small pool of their own.
+ */
+public class MediaImporter {
+    private static final String TAG = "MediaImporter";
+
+    // Copying is bound by storage; more threads only contend. Probes run on a
+    // single thread, since FFprobe calls are serialized anyway.
+    private static final int COPY_THREADS = 2;
+    private static final int MEDIA_THREADS = 2;
+
+    // Waveform resolution per clip
+    public static final int WAVEFORM_SAMPLES = 512;
+
+    private static MediaImporter instance;
+
+    private final Context context;
+    private final ProjectDao projectDao;
+    private final ExecutorService copyExecutor = Executors.newFixedThreadPool(COPY_THREADS);
+    private final ExecutorService probeExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mediaExecutor = Executors.newFixedThreadPool(MEDIA_THREADS);
+    private final Map<Long, Batch> batches = new HashMap<>();
+    private final MutableLiveData<Long> updatedProject = new MutableLiveData<>();
+
+    /**
+     * State of one import. Clips are inserted in picked order by the probe
+     * thread once the next one is complete.
+     */
+    private static class Batch {
+        final Project project;
+        final long timestamp;
+        final VideoClip[] probed;
+        final boolean[] done;
+        final List<VideoClip> inserted = new ArrayList<>();
+        final long startedAt = System.currentTimeMillis();
+        int next;
+        int failed;
+        int pending;
+
+        Batch(Project project, long timestamp, int count) {
+            this.project = project;
+            this.timestamp = timestamp;
+            probed = new VideoClip[count];
+            done = new boolean[count];
+            pending = count;
+        }
+    }
+
+    private MediaImporter(Context context) {
+        this.context = context;
+        projectDao = new ProjectDao(context);
+    }
+
+    public static synchronized MediaImporter getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaImporter(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Create a project and start importing videos into it. Blocks only while
+     * the empty project is inserted; clips are added in the background.
+     * @param uris Videos in timeline order
+     * @param timestamp Creation time, which also names the project and its files
+     * @return The ID of the new project, or -1 if it could not be created
+     */
+    public long importProject(List<Uri> uris, long timestamp) {
+        Project project = new Project();
+        project.setName("Project " + timestamp);
+        project.setCreatedAt(timestamp);
+        project.setLastModified(timestamp);
+
+        long projectId = projectDao.insertProject(project);
+        if (projectId == -1 || uris.isEmpty()) {
+            return projectId;
+        }
+
+        Batch batch = new Batch(project, timestamp, uris.size());
+        synchronized (batches) {
+            batches.put(projectId, batch);
+        }
+        for (int i = 0; i < uris.size(); i++) {
+            int index = i;
+            Uri uri = uris.get(i);
+            copyExecutor.execute(() -> copy(batch, index, uri));
+        }
+        return projectId;
+    }
+
+    /**
+     * Observe imports: the ID of a project is posted whenever one of its clips
+     * was inserted or got its thumbnail, and once its import is done
+     */
+    public LiveData<Long> getUpdatedProject() {
+        return updatedProject;
+    }
+
+    /**
+     * Whether clips are still being added to a project
+     */
+    public boolean isImporting(long projectId) {
+        synchronized (batches) {
+            return batches.containsKey(projectId);
+        }
+    }
+
+    /**
+     * Get copies of the clips inserted into a project so far
+     * @return The clips in timeline order, or an empty list if no import is running
+     */
+    public List<VideoClip> getImportedClips(long projectId) {
+        Batch batch;
+        synchronized (batches) {
+            batch = batches.get(projectId);
+        }
+        List<VideoClip> clips = new ArrayList<>();
+        if (batch != null) {
+            synchronized (batch) {
+                for (VideoClip clip : batch.inserted) {
+                    clips.add(clip.duplicate());
+                }
+            }
+        }
+        return clips;
+    }
+
+    private void copy(Batch batch, int index, Uri uri) {
+        String videoPath = null;
+        try {
+            videoPath = copyToStorage(uri, "project_" + batch.timestamp + "_" + index + ".mp4");
+        } catch (Exception e) {
+            Log.e(TAG, "Error copying video", e);
+        }
+
+        String path = videoPath;
+        probeExecutor.execute(() -> probe(batch, index, uri, path));
+    }
+
+    private void probe(Batch batch, int index, Uri uri, String videoPath) {
+        VideoClip clip = null;
+        try {
+            if (videoPath != null) {
+                VideoUtils.VideoMetadata metadata = VideoUtils.getVideoMetadata(context,
+                        Uri.fromFile(new File(videoPath)));
+                if (metadata.duration > 0) {
+                    clip = new VideoClip();
+                    clip.setPath(videoPath);
+                    clip.setStartTime(0);
+                    clip.setEndTime(metadata.duration);
+                    clip.setWidth(metadata.width);
+                    clip.setHeight(metadata.height);
+                } else {
+                    Log.e(TAG, "Skipping unreadable video: " + uri);
+                    new File(videoPath).delete();
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error probing video", e);
+        }
+
+        synchronized (batch) {
+            batch.probed[index] = clip;
+            batch.done[index] = true;
+            insertReady(batch);
+            finishTask(batch);
+        }
+    }
+
+    /**
+     * Insert every probed clip whose predecessors are all inserted, and start
+     * the later stages of each. Called with the batch locked.
+     */
+    private void insertReady(Batch batch) {
+        Project project = batch.project;
+        while (batch.next < batch.done.length && batch.done[batch.next]) {
+            VideoClip clip = batch.probed[batch.next];
+            int index = batch.next++;
+            if (clip == null) {
+                batch.failed++;
+                continue;
+            }
+
+            clip.setTimelinePosition(project.getDuration());
+            if (project.getVideoClips().isEmpty()) {
+                project.setWidth(clip.getWidth());
+                project.setHeight(clip.getHeight());
+            }
+            project.addVideoClip(clip);
+            project.setLastModified(System.currentTimeMillis());
+            if (projectDao.addVideoClip(project, clip) == -1) {
+                project.getVideoClips().remove(clip);
+                batch.failed++;
+                continue;
+            }
+            batch.inserted.add(clip);
+            updatedProject.postValue(project.getId());
+
+            // Editing and preview use a proxy once it is generated in the background
+            ProxyJobs.enqueue(context, clip.getPath());
+
+            String sourcePath = clip.getPath();
+            boolean first = batch.inserted.size() == 1;
+            batch.pending += 2;
+            mediaExecutor.execute(() -> generateThumbnail(batch, index, sourcePath, first));
+            mediaExecutor.execute(() -> generateWaveform(batch, sourcePath));
+        }
+    }
+
+    private void generateThumbnail(Batch batch, int index, String sourcePath, boolean first) {
+        String thumbnailPath = null;
+        try {
+            Bitmap thumbnail = VideoUtils.extractVideoThumbnail(context, Uri.fromFile(new File(sourcePath)));
+            if (thumbnail != null) {
+                File outputFile = new File(new File(context.getFilesDir(), "thumbnails"),
+                        "thumbnail_" + batch.timestamp + "_" + index + ".jpg");
+                if (VideoUtils.saveBitmapToFile(thumbnail, outputFile.getAbsolutePath())) {
+                    thumbnailPath = outputFile.getAbsolutePath();
+                }
+                thumbnail.recycle();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error generating thumbnail", e);
+        }
+
+        if (thumbnailPath != null) {
+            projectDao.updateThumbnailPath(sourcePath, thumbnailPath);
+            if (first) {
+                projectDao.updateProjectThumbnail(batch.project.getId(), thumbnailPath);
+            }
+        }
+
+        synchronized (batch) {
+            if (thumbnailPath != null) {
+                for (VideoClip clip : batch.inserted) {
+                    if (sourcePath.equals(clip.getPath())) {
+                        clip.setThumbnailPath(thumbnailPath);
+                    }
+                }
+                if (first) {
+                    batch.project.setThumbnailPath(thumbnailPath);
+                }
+                updatedProject.postValue(batch.project.getId());
+            }
+            finishTask(batch);
+        }
+    }
+
+    private void generateWaveform(Batch batch, String sourcePath) {
+        // Cached by AudioUtils for the timeline; sources without audio have none
+        AudioUtils.extractWaveform(context, sourcePath, WAVEFORM_SAMPLES);
+
+        synchronized (batch) {
+            finishTask(batch);
+        }
+    }
+
+    /**
+     * Count down the outstanding tasks of a batch. Called with the batch locked.
+     */
+    private void finishTask(Batch batch) {
+        if (--batch.pending > 0) {
+            return;
+        }
+
+        long projectId = batch.project.getId();
+        synchronized (batches) {
+            batches.remove(projectId);
+        }
+        updatedProject.postValue(projectId);
+        Log.d(TAG, "Imported " + batch.inserted.size() + " clips into project " + projectId
+                + " in " + (System.currentTimeMillis() - batch.startedAt) + " ms, " + batch.failed + " failed");
+    }
+
+    private String copyToStorage(Uri uri, String filename) {
+        try {
+            ContentResolver resolver = context.getContentResolver();
+            File videoDir = new File(context.getFilesDir(), "videos");
+            if (!videoDir.exists()) {
+                videoDir.mkdirs();
+            }
+
+            File outputFile = new File(videoDir, filename);
+
+            // Copy content from uri to file
+            byte[] buffer = new byte[65536];
+            int bytesRead;
+
+            try (InputStream inputStream = resolver.openInputStream(uri);
+                 OutputStream outputStream = new FileOutputStream(outputFile)) {
+
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, bytesRead);
+                }
+            }
+
+            return outputFile.getAbsolutePath();
+        } catch (IOException e) {
+            Log.e(TAG, "Error copying video file", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.snapeditprovs.utils;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import com.arthenica.mobileffmpeg.FFprobe;
+import com.arthenica.mobileffmpeg.MediaInformation;
+import com.arthenica.mobileffmpeg.StreamInformation;
+import com.example.snapeditprovs.export.KeyframeIndex;
+import com.example.snapeditprovs.export.SourceInspector;
+import com.example.snapeditprovs.models.MediaInfo;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Probes media files with FFprobe, and indexes keyframes with MediaExtractor.
+ * All FFprobe calls of the app go through here and run one at a time.
+ */
+public class MediaProbe implements SourceInspector {
+    private static final String TAG = "MediaProbe";
+
+    // FFprobe reports through the process-wide last command output, so
+    // concurrent probes would read each other's results
+    private static final Object FFPROBE_LOCK = new Object();
+
+    @Override
+    public MediaInfo getMediaInfo(String path) {
+        try {
+            MediaInformation information;
+            synchronized (FFPROBE_LOCK) {
+                information = FFprobe.getMediaInformation(path);
+            }
+            if (information == null) {
+                return null;
+            }
+
+            MediaInfo info = new MediaInfo();
+            info.setPath(path);
+            info.setDuration(parseDouble(information.getDuration()));
+            info.setBitrate((long) parseDouble(information.getBitrate()));
+
+            if (information.getStreams() != null) {
+                for (StreamInformation stream : information.getStreams()) {
+                    if ("video".equals(stream.getType()) && info.getVideoCodec() == null) {
+                        info.setVideoCodec(stream.getCodec());
+                        info.setWidth(stream.getWidth() != null ? stream.getWidth().intValue() : 0);
+                        info.setHeight(stream.getHeight() != null ? stream.getHeight().intValue() : 0);
+                        info.setFrameRate(parseRational(stream.getAverageFrameRate()));
+                        info.setRotation(parseRotation(stream));
+                        JSONObject properties = stream.getAllProperties();
+                        if (properties != null) {
+                            info.setVideoProfile(properties.optString("profile", null));
+                            info.setVideoLevel(properties.optInt("level"));
+                            info.setPixelFormat(properties.optString("pix_fmt", null));
+                        }
+                    } else if ("audio".equals(stream.getType()) && info.getAudioCodec() == null) {
+                        info.setAudioCodec(stream.getCodec());
+                        info.setAudioChannelLayout(stream.getChannelLayout());
+                        info.setAudioSampleRate((int) parseDouble(stream.getSampleRate()));
+                        JSONObject properties = stream.getAllProperties();
+                        info.setAudioChannels(properties != null ? properties.optInt("channels") : 0);
+                    }
+                }
+            }
+            return info;
+        } catch (Exception e) {
+            Log.e(TAG, "Error probing " + path, e);
+            return null;
+        }
+    }
+
+    @Override
+    public KeyframeIndex getKeyframeIndex(String path) {
+        // Walks the sync samples of the container's sample table, so no frame
+        // is decoded and no FFprobe output has to be parsed
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(path);
+            int track = findVideoTrack(extractor);
+            if (track < 0) {
+                return null;
+            }
+            extractor.selectTrack(track);
+
+            long[] keyframes = new long[64];
+            int count = 0;
+            extractor.seekTo(0, MediaExtractor.SEEK_TO_NEXT_SYNC);
+            long timeUs = extractor.getSampleTime();
+            while (timeUs >= 0 && (count == 0 || timeUs > keyframes[count - 1])) {
+                if (count == keyframes.length) {
+                    keyframes = Arrays.copyOf(keyframes, count * 2);
+                }
+                keyframes[count++] = timeUs;
+                extractor.seekTo(timeUs + 1, MediaExtractor.SEEK_TO_NEXT_SYNC);
+                timeUs = extractor.getSampleTime();
+            }
+            return new KeyframeIndex(Arrays.copyOf(keyframes, count));
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error indexing keyframes of " + path, e);
+            return null;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private static int findVideoTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("video/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read the display rotation of a video stream, from the legacy "rotate" tag
+     * or from the display matrix side data
+     * @return Clockwise rotation in degrees, 0 to 270
+     */
+    private static int parseRotation(StreamInformation stream) {
+        double rotation = 0;
+        JSONObject tags = stream.getTags();
+        JSONObject properties = stream.getAllProperties();
+        if (tags != null && tags.has("rotate")) {
+            rotation = parseDouble(tags.optString("rotate"));
+        } else if (properties != null && properties.optJSONArray("side_data_list") != null) {
+            JSONArray sideData = properties.optJSONArray("side_data_list");
+            for (int i = 0; i < sideData.length(); i++) {
+                JSONObject entry = sideData.optJSONObject(i);
+                if (entry != null && entry.has("rotation")) {
+                    // The display matrix angle is counter-clockwise
+                    rotation = -entry.optDouble("rotation", 0);
+                }
+            }
+        }
+        return (((int) Math.round(rotation)) % 360 + 360) % 360;
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse an FFmpeg rational such as "30000/1001"
+     */
+    private static double parseRational(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            return parseDouble(value);
+        }
+        double denominator = parseDouble(value.substring(slash + 1));
+        return denominator == 0 ? 0 : parseDouble(value.substring(0, slash)) / denominator;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.snapeditprovs.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.LruCache;
+
+import com.example.snapeditprovs.database.MediaProbeDao;
+import com.example.snapeditprovs.export.KeyframeIndex;
+import com.example.snapeditprovs.export.SourceInspector;
+import com.example.snapeditprovs.models.MediaInfo;
+
+import java.io.File;
+
+/**
+ * Probes each media file once. Results are keyed by path, size and modification
+ * time, held in memory and persisted in SQLite, so import, editing and export
+ * preflight all share a single FFprobe run per file. Keyframe indexes are
+ * kept the same way, persisted as binary files in files/keyframes.
+ */
+public class MediaProbeCache implements SourceInspector {
+    private static final int MEMORY_ENTRIES = 256;
+    private static final int KEYFRAME_ENTRIES = 64;
+
+    private static MediaProbeCache instance;
+
+    private final MediaProbeDao dao;
+    private final MediaProbe probe = new MediaProbe();
+    private final LruCache<String, MediaInfo> memory = new LruCache<>(MEMORY_ENTRIES);
+    private final LruCache<String, KeyframeIndex> keyframes = new LruCache<>(KEYFRAME_ENTRIES);
+    private final File keyframeDir;
+
+    private MediaProbeCache(Context context) {
+        dao = new MediaProbeDao(context);
+        keyframeDir = new File(context.getFilesDir(), "keyframes");
+    }
+
+    public static synchronized MediaProbeCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaProbeCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Get the probe of a local file, running FFprobe only on a cache miss
+     * @param path Path of the file
+     * @return The media info, or null if the file is missing or cannot be probed
+     */
+    @Override
+    public MediaInfo getMediaInfo(String path) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String key = path + '\0' + size + '\0' + lastModified;
+
+        MediaInfo info = memory.get(key);
+        if (info != null) {
+            return info;
+        }
+
+        info = dao.getMediaInfo(path, size, lastModified);
+        if (info == null) {
+            info = probe.getMediaInfo(path);
+            if (info == null) {
+                return null;
+            }
+            info.setSize(size);
+            info.setLastModified(lastModified);
+            if (info.hasVideo()) {
+                KeyframeIndex index = getKeyframeIndex(path);
+                info.setKeyframeInterval(index != null ? index.getAverageInterval() : 0);
+            }
+            dao.putMediaInfo(info);
+        }
+
+        memory.put(key, info);
+        return info;
+    }
+
+    /**
+     * Get the probe of a file URI
+     * @return The media info, or null for non-file URIs, which cannot be keyed
+     */
+    public MediaInfo getMediaInfo(Uri uri) {
+        if (uri == null || !"file".equalsIgnoreCase(uri.getScheme()) || uri.getPath() == null) {
+            return null;
+        }
+        return getMediaInfo(uri.getPath());
+    }
+
+    /**
+     * Get the keyframe index of a local file, walking its sync samples only
+     * when neither memory nor its index file has it
+     * @param path Path of the file
+     * @return The index, or null if the file is missing or cannot be probed
+     */
+    @Override
+    public KeyframeIndex getKeyframeIndex(String path) {
+        File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        String name = file.getName() + "_" + Long.toHexString(file.length()) + "_"
+                + Long.toHexString(file.lastModified());
+        String key = path + '\0' + name;
+        KeyframeIndex index = keyframes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        File indexFile = new File(keyframeDir, name + ".kfi");
+        index = KeyframeIndex.read(indexFile);
+        if (index == null) {
+            index = probe.getKeyframeIndex(path);
+            if (index == null) {
+                return null;
+            }
+            index.write(indexFile);
+        }
+
+        keyframes.put(key, index);
+        return index;
+    }
+
+    /**
+     * Get the keyframe index of a file URI
+     * @return The index, or null for non-file URIs, which cannot be keyed
+     */
+    public KeyframeIndex getKeyframeIndex(Uri uri) {
+        if (uri == null || !"file".equalsIgnoreCase(uri.getScheme()) || uri.getPath() == null) {
+            return null;
+        }
+        return getKeyframeIndex(uri.getPath());
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.snapeditprovs.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.example.snapeditprovs.export.SpriteRenderer;
+import com.example.snapeditprovs.export.StickerSprite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Renders sticker sprites with Android bitmaps. Every frame of a sprite has
+ * the same size, so the overlay position computed once at the start of the
+ * export stays valid for the whole animation.
+ */
+public class StickerSpriteRenderer implements SpriteRenderer {
+    private static final String TAG = "StickerSpriteRenderer";
+
+    @Override
+    public boolean render(StickerSprite sprite) {
+        if (allFramesExist(sprite)) {
+            return true;
+        }
+
+        Bitmap sticker = decodeScaled(sprite.getSourcePath(), sprite.getWidth());
+        if (sticker == null) {
+            Log.e(TAG, "Error decoding sticker: " + sprite.getSourcePath());
+            return false;
+        }
+
+        try {
+            File parent = sprite.getFrameFile(0).getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            int frameCount = sprite.getFrameCount();
+            int[] size = frameSize(sprite, sticker.getWidth(), sticker.getHeight());
+            for (int frame = 0; frame < frameCount; frame++) {
+                File file = sprite.getFrameFile(frame);
+                if (file.isFile()) {
+                    continue;
+                }
+                Bitmap bitmap = drawFrame(sprite, sticker, frame, size[0], size[1]);
+                boolean written = writePng(bitmap, file);
+                bitmap.recycle();
+                if (!written) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            sticker.recycle();
+        }
+    }
+
+    private static boolean allFramesExist(StickerSprite sprite) {
+        for (int frame = 0; frame < sprite.getFrameCount(); frame++) {
+            if (!sprite.getFrameFile(frame).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode a sticker subsampled close to its target width, then scale it
+     * to exactly that width keeping the aspect ratio
+     */
+    private static Bitmap decodeScaled(String path, int width) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (bounds.outWidth / (options.inSampleSize * 2) >= width) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap decoded = BitmapFactory.decodeFile(path, options);
+        if (decoded == null) {
+            return null;
+        }
+
+        int height = Math.max(1, Math.round((float) bounds.outHeight * width / bounds.outWidth));
+        if (decoded.getWidth() == width && decoded.getHeight() == height) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        decoded.recycle();
+        return scaled;
+    }
+
+    /**
+     * Get the frame size that holds the sticker in every frame of its
+     * animation: the rotated bounding box, the full diagonal for a turning
+     * sticker, and extra headroom for a bouncing one
+     */
+    private static int[] frameSize(StickerSprite sprite, int width, int height) {
+        if ("rotate".equals(sprite.getAnimation())) {
+            int diagonal = (int) Math.ceil(Math.hypot(width, height));
+            return new int[] {diagonal, diagonal};
+        }
+
+        double radians = Math.toRadians(sprite.getRotation());
+        double cos = Math.abs(Math.cos(radians));
+        double sin = Math.abs(Math.sin(radians));
+        int boxWidth = (int) Math.ceil(width * cos + height * sin);
+        int boxHeight = (int) Math.ceil(width * sin + height * cos);
+        if ("bounce".equals(sprite.getAnimation())) {
+            boxHeight += Math.round(height * StickerSprite.BOUNCE_HEIGHT_FRACTION);
+        }
+        return new int[] {boxWidth, boxHeight};
+    }
+
+    private static Bitmap drawFrame(StickerSprite sprite, Bitmap sticker, int frame, int width, int height) {
+        float rotation = sprite.getRotation();
+        float lift = 0;
+        if ("rotate".equals(sprite.getAnimation())) {
+            rotation += 360f * frame / sprite.getFrameCount();
+        } else if ("bounce".equals(sprite.getAnimation())) {
+            // One hop per loop: rest, rise, fall
+            double phase = (double) frame / sprite.getFrameCount();
+            lift = (float) (Math.sin(Math.PI * phase) * sticker.getHeight() * StickerSprite.BOUNCE_HEIGHT_FRACTION);
+        }
+
+        // The sticker rests at the bottom of a bounce frame and is centred otherwise
+        float centerX = width / 2f;
+        float centerY = "bounce".equals(sprite.getAnimation())
+                ? height - (height - Math.round(sticker.getHeight() * StickerSprite.BOUNCE_HEIGHT_FRACTION)) / 2f - lift
+                : height / 2f;
+
+        Matrix matrix = new Matrix();
+        matrix.postTranslate(-sticker.getWidth() / 2f, -sticker.getHeight() / 2f);
+        matrix.postRotate(rotation);
+        matrix.postTranslate(centerX, centerY);
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        new Canvas(bitmap).drawBitmap(sticker, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return bitmap;
+    }
+
+    /**
+     * Write a frame through a temporary file, so an interrupted write never
+     * leaves a truncated frame that later exports would reuse
+     */
+    private static boolean writePng(Bitmap bitmap, File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        boolean encoded;
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            encoded = bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing sprite frame", e);
+            temp.delete();
+            return false;
+        }
+        if (!encoded) {
+            Log.e(TAG, "Error encoding sprite frame: " + file);
+            temp.delete();
+            return false;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Error moving sprite frame into place: " + file);
+            temp.delete();
+            return false;
+        }
+        return true;
+    }
+}
@@ -7,6 +7,9 @@ import android.net.Uri;
 import android.util.Log;
 import android.util.Size;
 
+import com.example.snapeditprovs.export.KeyframeIndex;
+import com.example.snapeditprovs.models.MediaInfo;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -14,6 +17,9 @@ import java.io.IOException;
 public class VideoUtils {
     private static final String TAG = "VideoUtils";
     
+    // A thumbnail position this close to a keyframe is taken from the keyframe, about a frame at 30 fps
+    private static final long SYNC_TOLERANCE_US = 33_000;
+    
     /**
      * Video metadata class to hold width, height, and duration
      */
@@ -36,6 +42,12 @@ public class VideoUtils {
      * @return VideoMetadata object containing width, height, and duration
      */
     public static VideoMetadata getVideoMetadata(Context context, Uri videoUri) {
+        MediaInfo info = MediaProbeCache.getInstance(context).getMediaInfo(videoUri);
+        if (info != null && info.hasVideo()) {
+            return new VideoMetadata(info.getWidth(), info.getHeight(), info.getDuration());
+        }
+
+        // Content URIs cannot be keyed by file, so they are read directly
         MediaMetadataRetriever retriever = new MediaMetadataRetriever();
         try {
             retriever.setDataSource(context, videoUri);
@@ -63,17 +75,30 @@ public class VideoUtils {
     }
     
     /**
-     * Extract a thumbnail from a video at a specific position
+     * Extract a thumbnail from a video at a specific position. A position on a
+     * keyframe of a local file is read as that keyframe alone; any other is
+     * decoded forward from the keyframe before it.
      * @param context Application context
      * @param videoUri URI of the video file
      * @param timeMs Position in milliseconds
      * @return Bitmap thumbnail or null if extraction failed
      */
     public static Bitmap extractThumbnailAt(Context context, Uri videoUri, long timeMs) {
+        long timeUs = timeMs * 1000;
+        int option = MediaMetadataRetriever.OPTION_CLOSEST;
+        KeyframeIndex keyframes = MediaProbeCache.getInstance(context).getKeyframeIndex(videoUri);
+        if (keyframes != null) {
+            int index = keyframes.indexAtOrAfter(timeUs - SYNC_TOLERANCE_US);
+            if (index < keyframes.size() && keyframes.getTimeUs(index) <= timeUs + SYNC_TOLERANCE_US) {
+                timeUs = keyframes.getTimeUs(index);
+                option = MediaMetadataRetriever.OPTION_CLOSEST_SYNC;
+            }
+        }
+        
         MediaMetadataRetriever retriever = new MediaMetadataRetriever();
         try {
             retriever.setDataSource(context, videoUri);
-            return retriever.getFrameAtTime(timeMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST);
+            return retriever.getFrameAtTime(timeUs, option);
         } catch (Exception e) {
             Log.e(TAG, "Error extracting video thumbnail", e);
             return null;
@@ -141,9 +166,16 @@ public class VideoUtils {
         // Calculate interval between thumbnails
         double interval = metadata.duration / count;
         
+        // Thumbnails may move to a keyframe within a quarter interval, which needs no decoding forward
+        KeyframeIndex keyframes = MediaProbeCache.getInstance(context).getKeyframeIndex(videoUri);
+        
         for (int i = 0; i < count; i++) {
             // Get thumbnail at position
             double position = i * interval;
+            double keyframe = keyframes != null ? keyframes.nearestKeyframe(position) : Double.NaN;
+            if (Math.abs(keyframe - position) <= interval / 4) {
+                position = keyframe;
+            }
             Bitmap thumbnail = extractThumbnailAt(context, videoUri, (long)(position * 1000));
             
             if (thumbnail != null) {
@@ -15,10 +15,17 @@ import com.example.snapeditprovs.models.Project;
 import com.example.snapeditprovs.models.TextOverlay;
 import com.example.snapeditprovs.models.Transition;
 import com.example.snapeditprovs.models.VideoClip;
+import com.example.snapeditprovs.utils.MediaImporter;
+import com.example.snapeditprovs.workers.ProxyJobs;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -52,10 +59,97 @@ public class EditorViewModel extends AndroidViewModel {
         this.projectId = projectId;
         executor.execute(() -> {
             Project loadedProject = projectDao.getProject(projectId);
+            if (loadedProject != null) {
+                requestProxies(loadedProject);
+            }
             project.postValue(loadedProject);
         });
     }
 
+    /**
+     * Queue proxy generation for sources that have no proxy yet, e.g. because
+     * the app was closed during import. A proxy whose file is gone is dropped.
+     */
+    private void requestProxies(Project loadedProject) {
+        Set<String> requested = new HashSet<>();
+        for (VideoClip clip : loadedProject.getVideoClips()) {
+            if (clip.getProxyPath() != null && !new File(clip.getProxyPath()).isFile()) {
+                clip.setProxyPath(null);
+            }
+            if (clip.getProxyPath() == null && clip.getPath() != null && requested.add(clip.getPath())) {
+                ProxyJobs.enqueue(getApplication(), clip.getPath());
+            }
+        }
+    }
+
+    /**
+     * Switch the clips of a source to its proxy once it is generated. The
+     * proxy path is kept on later saves, which rewrite the clip rows.
+     */
+    public void onProxyReady(String sourcePath, String proxyPath) {
+        Project currentProject = project.getValue();
+        if (currentProject == null) {
+            return;
+        }
+
+        boolean changed = false;
+        for (VideoClip clip : currentProject.getVideoClips()) {
+            if (sourcePath.equals(clip.getPath()) && !proxyPath.equals(clip.getProxyPath())) {
+                clip.setProxyPath(proxyPath);
+                changed = true;
+            }
+        }
+        if (changed) {
+            project.setValue(currentProject);
+        }
+    }
+
+    /**
+     * Take over clips and thumbnails the MediaImporter added to the project
+     * since it was loaded. New clips are appended to the timeline; the editor
+     * keeps its own copy, so later saves store them with the user's edits.
+     */
+    public void onImportProgress(long updatedProjectId) {
+        Project currentProject = project.getValue();
+        if (currentProject == null || updatedProjectId != projectId) {
+            return;
+        }
+
+        Map<String, VideoClip> clipsByPath = new HashMap<>();
+        double timelineEnd = 0;
+        for (VideoClip clip : currentProject.getVideoClips()) {
+            clipsByPath.put(clip.getPath(), clip);
+            timelineEnd = Math.max(timelineEnd, clip.getTimelinePosition() + clip.getOutputDuration());
+        }
+
+        boolean changed = false;
+        for (VideoClip imported : MediaImporter.getInstance(getApplication()).getImportedClips(projectId)) {
+            VideoClip clip = clipsByPath.get(imported.getPath());
+            if (clip == null) {
+                imported.setTimelinePosition(timelineEnd);
+                timelineEnd += imported.getOutputDuration();
+                if (currentProject.getVideoClips().isEmpty()) {
+                    currentProject.setWidth(imported.getWidth());
+                    currentProject.setHeight(imported.getHeight());
+                }
+                currentProject.addVideoClip(imported);
+                clipsByPath.put(imported.getPath(), imported);
+                changed = true;
+            } else if (clip.getThumbnailPath() == null && imported.getThumbnailPath() != null) {
+                clip.setThumbnailPath(imported.getThumbnailPath());
+                changed = true;
+            }
+        }
+        if (currentProject.getThumbnailPath() == null && !currentProject.getVideoClips().isEmpty()
+                && currentProject.getVideoClips().get(0).getThumbnailPath() != null) {
+            currentProject.setThumbnailPath(currentProject.getVideoClips().get(0).getThumbnailPath());
+            changed = true;
+        }
+        if (changed) {
+            project.setValue(currentProject);
+        }
+    }
+
     public LiveData<Project> getProject() {
         return project;
     }
@@ -2,57 +2,77 @@ package com.example.snapeditprovs.viewmodels;
 
 import android.app.Application;
 import android.os.Environment;
-import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.work.WorkInfo;
 
+import com.example.snapeditprovs.database.EncoderCalibrationDao;
+import com.example.snapeditprovs.database.ExportRunDao;
 import com.example.snapeditprovs.database.ProjectDao;
+import com.example.snapeditprovs.export.EncoderTuner;
+import com.example.snapeditprovs.export.ExportEstimator;
+import com.example.snapeditprovs.export.FilterGraphCompiler;
+import com.example.snapeditprovs.models.EncoderCalibration;
+import com.example.snapeditprovs.models.ExportRun;
 import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.ExportTelemetry;
 import com.example.snapeditprovs.models.Project;
-import com.example.snapeditprovs.utils.FFmpegUtils;
+import com.example.snapeditprovs.workers.ExportJobs;
+import com.example.snapeditprovs.workers.ExportWorker;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExportViewModel extends AndroidViewModel {
     private static final String TAG = "ExportViewModel";
+
+    // Recent exports whose throughput the estimate is based on
+    private static final int HISTORY_RUNS = 20;
     
     private ProjectDao projectDao;
     private MutableLiveData<Project> project;
     private MutableLiveData<Integer> exportProgress;
+    private MutableLiveData<ExportTelemetry> exportTelemetry;
     private MutableLiveData<Boolean> exportCompleted;
     private MutableLiveData<String> exportError;
+    private MutableLiveData<Boolean> exportPaused;
+    private MutableLiveData<ExportEstimator.Estimate> exportEstimate;
     private long projectId;
     private ExecutorService executor;
     private ExportSettings exportSettings;
     private String exportedFilePath;
+    private String[] exportedFilePaths;
+    private LiveData<List<WorkInfo>> exportJob;
+    private final Observer<List<WorkInfo>> exportJobObserver = this::onExportJobChanged;
+    private boolean trackingExportJob;
+    private List<ExportSettings> lastRenditions;
+    private List<ExportRun> exportHistory;
+    private final AtomicInteger estimateGeneration = new AtomicInteger();
+    private final Map<Integer, List<EncoderCalibration>> calibrationsByResolution = new HashMap<>();
 
     public ExportViewModel(@NonNull Application application) {
         super(application);
         projectDao = new ProjectDao(application);
         project = new MutableLiveData<>();
         exportProgress = new MutableLiveData<>(0);
+        exportTelemetry = new MutableLiveData<>();
         exportCompleted = new MutableLiveData<>(false);
         exportError = new MutableLiveData<>("");
+        exportPaused = new MutableLiveData<>(false);
+        exportEstimate = new MutableLiveData<>();
         executor = Executors.newSingleThreadExecutor();
         exportSettings = new ExportSettings();
-        
-        // Set up FFmpeg progress callback
-        Config.enableStatisticsCallback(statistics -> {
-            // Calculate progress based on time
-            if (project.getValue() != null) {
-                double duration = project.getValue().getDuration();
-                double currentTime = statistics.getTime() / 1000.0; // Convert to seconds
-                int progress = (int) (currentTime / duration * 100);
-                // Ensure progress is between 0-100
-                progress = Math.min(100, Math.max(0, progress));
-                exportProgress.postValue(progress);
-            }
-        });
     }
 
     public void loadProject(long projectId) {
@@ -60,7 +80,14 @@ public class ExportViewModel extends AndroidViewModel {
         executor.execute(() -> {
             Project loadedProject = projectDao.getProject(projectId);
             project.postValue(loadedProject);
+            exportHistory = new ExportRunDao(getApplication()).getRecentExportRuns(HISTORY_RUNS);
+            if (loadedProject != null) {
+                postEstimate(loadedProject, exportSettings.duplicate(), estimateGeneration.incrementAndGet());
+            }
         });
+
+        // Reattach to an export job that is still queued or running
+        observeExportJob();
     }
 
     public LiveData<Project> getProject() {
@@ -71,6 +98,13 @@ public class ExportViewModel extends AndroidViewModel {
         return exportProgress;
     }
 
+    /**
+     * ETA, speed and size of the running export; null until it reports any
+     */
+    public LiveData<ExportTelemetry> getExportTelemetry() {
+        return exportTelemetry;
+    }
+
     public LiveData<Boolean> getExportCompleted() {
         return exportCompleted;
     }
@@ -79,78 +113,270 @@ public class ExportViewModel extends AndroidViewModel {
         return exportError;
     }
 
+    /**
+     * Whether the export is paused and can be resumed with resumeExport()
+     */
+    public LiveData<Boolean> getExportPaused() {
+        return exportPaused;
+    }
+
+    /**
+     * Predicted size and duration of an export with the current settings;
+     * refreshed whenever a setting changes
+     */
+    public LiveData<ExportEstimator.Estimate> getExportEstimate() {
+        return exportEstimate;
+    }
+
     public ExportSettings getExportSettings() {
         return exportSettings;
     }
 
     public void setExportResolution(int resolution) {
         exportSettings.setResolution(resolution);
+        refreshEstimate();
     }
 
     public void setExportBitrate(int bitrate) {
         exportSettings.setBitrate(bitrate);
+        refreshEstimate();
     }
 
     public void setExportFramerate(int framerate) {
         exportSettings.setFramerate(framerate);
+        refreshEstimate();
+    }
+
+    /**
+     * @param format Container of the export, e.g. "mp4" or "gif"
+     */
+    public void setExportFormat(String format) {
+        exportSettings.setFormat(format);
+        refreshEstimate();
+    }
+
+    public void setIncludeAudio(boolean includeAudio) {
+        exportSettings.setIncludeAudio(includeAudio);
+        refreshEstimate();
+    }
+
+    /**
+     * Set how long the user is willing to wait for the export. Slower encoder
+     * presets, which give better quality per bit, are used while they fit.
+     * @param seconds The budget, or 0 to always use the default preset
+     */
+    public void setExportTimeBudget(int seconds) {
+        exportSettings.setTimeBudgetSeconds(seconds);
+        refreshEstimate();
+    }
+
+    /**
+     * Choose the export mode. Segmented export renders independent segments
+     * in parallel and stitches them by stream copy; otherwise the timeline is
+     * encoded in one FFmpeg session.
+     */
+    public void setSegmentedExport(boolean segmented) {
+        exportSettings.setSegmentedExport(segmented);
     }
 
     public String getExportedFilePath() {
         return exportedFilePath;
     }
 
+    /**
+     * Get the files of every rendition of the last completed export
+     */
+    public String[] getExportedFilePaths() {
+        return exportedFilePaths;
+    }
+
     public void exportProject(String outputFilename) {
+        exportSettings.setOutputFilename(outputFilename);
+        exportRenditions(Collections.singletonList(exportSettings));
+    }
+
+    /**
+     * Export several renditions of the project, e.g. 720p, 1080p and 4K, from a
+     * single decode of the timeline
+     * @param renditions Settings of each rendition, each with its own output filename
+     */
+    public void exportRenditions(List<ExportSettings> renditions) {
         Project currentProject = project.getValue();
         if (currentProject == null) {
             exportError.postValue("No project loaded");
             return;
         }
         
-        executor.execute(() -> {
-            try {
-                // Set up output directory in Movies folder
-                File moviesDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MOVIES);
-                File snapEditDir = new File(moviesDir, "SnapEdit Pro");
-                if (!snapEditDir.exists()) {
-                    snapEditDir.mkdirs();
+        // Set up output directory in Movies folder
+        File moviesDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MOVIES);
+        File snapEditDir = new File(moviesDir, "SnapEdit Pro");
+        if (!snapEditDir.exists()) {
+            snapEditDir.mkdirs();
+        }
+        
+        // Set export settings output path
+        for (ExportSettings rendition : renditions) {
+            rendition.setOutputPath(snapEditDir.getAbsolutePath());
+        }
+        
+        // Reset progress and status
+        exportProgress.setValue(0);
+        exportTelemetry.setValue(null);
+        exportCompleted.setValue(false);
+        exportError.setValue("");
+        exportPaused.setValue(false);
+        
+        // Run as a persisted job so the export survives the Activity and the process
+        trackingExportJob = true;
+        lastRenditions = new ArrayList<>(renditions);
+        ExportJobs.enqueue(getApplication(), currentProject.getId(), renditions,
+                ExportJobs.Priority.HIGH, false);
+        observeExportJob();
+    }
+
+    public void cancelExport() {
+        if (Boolean.TRUE.equals(exportPaused.getValue())) {
+            // The job already stopped when it was paused
+            exportPaused.setValue(false);
+            exportError.setValue("Export cancelled");
+            return;
+        }
+        ExportJobs.cancel(getApplication(), projectId);
+    }
+
+    /**
+     * Pause the running export. FFmpeg sessions cannot be suspended, so the job
+     * is stopped; the pieces it already rendered stay in the render cache.
+     */
+    public void pauseExport() {
+        if (lastRenditions == null || !trackingExportJob) {
+            return;
+        }
+        exportPaused.setValue(true);
+        ExportJobs.cancel(getApplication(), projectId);
+    }
+
+    /**
+     * Resume a paused export. The job is enqueued again with the same
+     * settings, so it reuses the cached pieces and renders only the rest.
+     */
+    public void resumeExport() {
+        if (lastRenditions == null || !Boolean.TRUE.equals(exportPaused.getValue())) {
+            return;
+        }
+        exportPaused.setValue(false);
+        trackingExportJob = true;
+        ExportJobs.enqueue(getApplication(), projectId, lastRenditions, ExportJobs.Priority.HIGH, false);
+    }
+
+    private void refreshEstimate() {
+        Project currentProject = project.getValue();
+        if (currentProject == null) {
+            return;
+        }
+        // Settings are copied, since sliders keep changing them while the estimate is computed
+        ExportSettings settings = exportSettings.duplicate();
+        int generation = estimateGeneration.incrementAndGet();
+        executor.execute(() -> postEstimate(currentProject, settings, generation));
+    }
+
+    /**
+     * Compute an estimate on the executor. While a slider moves, only the
+     * latest of the queued requests is computed.
+     */
+    private void postEstimate(Project currentProject, ExportSettings settings, int generation) {
+        if (generation != estimateGeneration.get()) {
+            return;
+        }
+        List<EncoderCalibration> calibrations = calibrationsByResolution.get(settings.getResolution());
+        if (calibrations == null) {
+            calibrations = new EncoderCalibrationDao(getApplication()).getCalibrations(settings.getResolution());
+            calibrationsByResolution.put(settings.getResolution(), calibrations);
+        }
+        if (!settings.isGif()) {
+            // The preset the export worker would pick, as far as the stored
+            // calibrations tell without running new ones
+            double requiredFps = EncoderTuner.getRequiredFps(settings,
+                    FilterGraphCompiler.getOutputDuration(currentProject), 1);
+            String preset = requiredFps > 0
+                    ? EncoderTuner.choosePreset(requiredFps, calibrations, null, settings.getEncoderPreset())
+                    : null;
+            if (preset != null) {
+                settings.setEncoderPreset(preset);
+            }
+        }
+        double throughput = ExportEstimator.getThroughputFps(
+                exportHistory != null ? exportHistory : Collections.emptyList(), calibrations, settings);
+        exportEstimate.postValue(ExportEstimator.estimate(currentProject, settings, throughput));
+    }
+
+    private void observeExportJob() {
+        if (exportJob == null) {
+            exportJob = ExportJobs.getWorkInfo(getApplication(), projectId);
+            exportJob.observeForever(exportJobObserver);
+        }
+    }
+
+    private void onExportJobChanged(List<WorkInfo> infos) {
+        if (infos == null || infos.isEmpty()) {
+            return;
+        }
+
+        // A replaced job is reported next to its replacement, so prefer the unfinished one
+        WorkInfo info = infos.get(infos.size() - 1);
+        for (WorkInfo candidate : infos) {
+            if (!candidate.getState().isFinished()) {
+                info = candidate;
+            }
+        }
+
+        switch (info.getState()) {
+            case ENQUEUED:
+            case BLOCKED:
+                trackingExportJob = true;
+                break;
+            case RUNNING:
+                trackingExportJob = true;
+                ExportTelemetry telemetry = ExportWorker.fromProgressData(info.getProgress());
+                if (telemetry != null) {
+                    exportProgress.setValue(telemetry.getPercent());
+                    exportTelemetry.setValue(telemetry);
                 }
-                
-                // Set export settings output path
-                exportSettings.setOutputPath(snapEditDir.getAbsolutePath());
-                exportSettings.setOutputFilename(outputFilename);
-                
-                // Generate FFmpeg command for project export
-                String ffmpegCommand = FFmpegUtils.generateExportCommand(currentProject, exportSettings);
-                Log.d(TAG, "FFmpeg command: " + ffmpegCommand);
-                
-                // Reset progress and status
-                exportProgress.postValue(0);
-                exportCompleted.postValue(false);
-                exportError.postValue("");
-                
-                // Execute FFmpeg command
-                int returnCode = FFmpeg.execute(ffmpegCommand);
-                
-                if (returnCode == RETURN_CODE_SUCCESS) {
-                    exportedFilePath = exportSettings.getFullOutputPath();
-                    exportCompleted.postValue(true);
-                    exportProgress.postValue(100);
-                } else if (returnCode == RETURN_CODE_CANCEL) {
-                    exportError.postValue("Export cancelled");
-                } else {
-                    exportError.postValue("Export failed with code: " + returnCode);
+                break;
+            case SUCCEEDED:
+                if (trackingExportJob) {
+                    trackingExportJob = false;
+                    exportedFilePath = info.getOutputData().getString(ExportWorker.KEY_OUTPUT_FILE);
+                    exportedFilePaths = info.getOutputData().getStringArray(ExportWorker.KEY_OUTPUT_FILES);
+                    exportProgress.setValue(100);
+                    exportCompleted.setValue(true);
                 }
-                
-            } catch (Exception e) {
-                Log.e(TAG, "Error during export", e);
-                exportError.postValue("Export error: " + e.getMessage());
-            }
-        });
+                break;
+            case FAILED:
+                if (trackingExportJob) {
+                    trackingExportJob = false;
+                    String error = info.getOutputData().getString(ExportWorker.KEY_ERROR);
+                    exportError.setValue(error != null ? error : "Export failed");
+                }
+                break;
+            case CANCELLED:
+                if (trackingExportJob) {
+                    trackingExportJob = false;
+                    // A paused job is cancelled too, but it is not finished
+                    if (!Boolean.TRUE.equals(exportPaused.getValue())) {
+                        exportError.setValue("Export cancelled");
+                    }
+                }
+                break;
+        }
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
+        if (exportJob != null) {
+            exportJob.removeObserver(exportJobObserver);
+        }
         executor.shutdown();
     }
 }
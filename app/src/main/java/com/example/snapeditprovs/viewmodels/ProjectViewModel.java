@@ -1,10 +1,7 @@
 package com.example.snapeditprovs.viewmodels;
 
 import android.app.Application;
-import android.content.ContentResolver;
-import android.graphics.Bitmap;
 import android.net.Uri;
-import android.provider.MediaStore;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -16,11 +13,10 @@ import androidx.lifecycle.MutableLiveData;
 import com.example.snapeditprovs.database.ProjectDao;
 import com.example.snapeditprovs.models.Project;
 import com.example.snapeditprovs.models.VideoClip;
-import com.example.snapeditprovs.utils.VideoUtils;
+import com.example.snapeditprovs.utils.MediaImporter;
+import com.example.snapeditprovs.workers.ProxyJobs;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,13 +26,14 @@ public class ProjectViewModel extends AndroidViewModel {
     
     private ProjectDao projectDao;
     private MutableLiveData<List<Project>> projects;
-    private long lastCreatedProjectId = -1;
+    private MutableLiveData<Long> createdProjectId;
     private ExecutorService executor;
 
     public ProjectViewModel(@NonNull Application application) {
         super(application);
         projectDao = new ProjectDao(application);
         projects = new MutableLiveData<>();
+        createdProjectId = new MutableLiveData<>();
         executor = Executors.newSingleThreadExecutor();
         loadProjects();
     }
@@ -52,46 +49,22 @@ public class ProjectViewModel extends AndroidViewModel {
         return projects;
     }
 
-    public void createProject(Uri videoUri, long timestamp) {
+    /**
+     * Create a project from picked videos. The project ID is posted to
+     * getCreatedProjectId() as soon as the empty project is stored; its clips
+     * are added in picked order by the MediaImporter while the editor opens.
+     * @param videoUris Videos in timeline order
+     * @param timestamp Creation time
+     */
+    public void importClips(List<Uri> videoUris, long timestamp) {
         executor.execute(() -> {
             try {
-                ContentResolver resolver = getApplication().getContentResolver();
-                
-                // Create new project
-                Project project = new Project();
-                project.setName("Project " + timestamp);
-                project.setCreatedAt(timestamp);
-                project.setLastModified(timestamp);
-                
-                // Get video metadata
-                VideoUtils.VideoMetadata metadata = VideoUtils.getVideoMetadata(getApplication(), videoUri);
-                project.setWidth(metadata.width);
-                project.setHeight(metadata.height);
-                project.setDuration(metadata.duration);
-                
-                // Copy video file to app's storage
-                String videoPath = copyVideoToStorage(videoUri, "project_" + timestamp + ".mp4");
-                
-                // Create initial video clip
-                VideoClip clip = new VideoClip();
-                clip.setPath(videoPath);
-                clip.setStartTime(0);
-                clip.setEndTime(metadata.duration);
-                clip.setTimelinePosition(0);
-                clip.setWidth(metadata.width);
-                clip.setHeight(metadata.height);
-                
-                // Generate thumbnail
-                String thumbnailPath = generateThumbnail(videoUri, "thumbnail_" + timestamp + ".jpg");
-                clip.setThumbnailPath(thumbnailPath);
-                project.setThumbnailPath(thumbnailPath);
-                
-                // Add clip to project
-                project.addVideoClip(clip);
-                
-                // Save project to database
-                long projectId = projectDao.insertProject(project);
-                lastCreatedProjectId = projectId;
+                long projectId = MediaImporter.getInstance(getApplication()).importProject(videoUris, timestamp);
+                if (projectId == -1) {
+                    Log.e(TAG, "Error creating project");
+                    return;
+                }
+                createdProjectId.postValue(projectId);
                 
                 // Refresh projects list
                 loadProjects();
@@ -107,6 +80,8 @@ public class ProjectViewModel extends AndroidViewModel {
             try {
                 // Delete all project files
                 for (VideoClip clip : project.getVideoClips()) {
+                    // Before the source, whose size and date name the proxy
+                    ProxyJobs.deleteProxy(getApplication(), clip.getPath());
                     new File(clip.getPath()).delete();
                     if (clip.getThumbnailPath() != null) {
                         new File(clip.getThumbnailPath()).delete();
@@ -166,71 +141,19 @@ public class ProjectViewModel extends AndroidViewModel {
         });
     }
 
-    private String copyVideoToStorage(Uri uri, String filename) {
-        try {
-            ContentResolver resolver = getApplication().getContentResolver();
-            File videoDir = new File(getApplication().getFilesDir(), "videos");
-            if (!videoDir.exists()) {
-                videoDir.mkdirs();
-            }
-            
-            File outputFile = new File(videoDir, filename);
-            
-            // Copy content from uri to file
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            
-            try (java.io.InputStream inputStream = resolver.openInputStream(uri);
-                 java.io.OutputStream outputStream = new FileOutputStream(outputFile)) {
-                
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
-            }
-            
-            return outputFile.getAbsolutePath();
-        } catch (IOException e) {
-            Log.e(TAG, "Error copying video file", e);
-            return null;
-        }
-    }
-
-    private String generateThumbnail(Uri videoUri, String filename) {
-        try {
-            Bitmap thumbnail = MediaStore.Images.Thumbnails.getThumbnail(
-                    getApplication().getContentResolver(),
-                    Long.parseLong(videoUri.getLastPathSegment()),
-                    MediaStore.Images.Thumbnails.MINI_KIND,
-                    null);
-            
-            if (thumbnail == null) {
-                // Fall back to media metadata retriever
-                thumbnail = VideoUtils.extractVideoThumbnail(getApplication(), videoUri);
-            }
-            
-            if (thumbnail != null) {
-                File thumbnailDir = new File(getApplication().getFilesDir(), "thumbnails");
-                if (!thumbnailDir.exists()) {
-                    thumbnailDir.mkdirs();
-                }
-                
-                File outputFile = new File(thumbnailDir, filename);
-                
-                try (FileOutputStream out = new FileOutputStream(outputFile)) {
-                    thumbnail.compress(Bitmap.CompressFormat.JPEG, 90, out);
-                }
-                
-                return outputFile.getAbsolutePath();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error generating thumbnail", e);
-        }
-        
-        return null;
+    /**
+     * Observe the ID of the project created by the last importClips() call
+     */
+    public LiveData<Long> getCreatedProjectId() {
+        return createdProjectId;
     }
 
-    public long getLastCreatedProjectId() {
-        return lastCreatedProjectId;
+    /**
+     * Forget the created project once its editor was opened, so the ID is not
+     * delivered again e.g. after a configuration change
+     */
+    public void onCreatedProjectOpened() {
+        createdProjectId.setValue(null);
     }
 
     @Override
@@ -0,0 +1,102 @@
+package com.example.snapeditprovs.workers;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.example.snapeditprovs.models.ExportSettings;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of persisted export jobs. Each project has at most one export job;
+ * enqueuing a new one replaces the previous job of the same project.
+ */
+public class ExportJobs {
+    public static final String TAG_EXPORT = "export";
+
+    /**
+     * Export priority, mapped to the constraints a job waits for
+     */
+    public enum Priority {
+        // Start now; only needs enough free storage
+        HIGH,
+        // Also waits until the battery is not low
+        NORMAL,
+        // Waits for the charger, e.g. for overnight batch exports
+        LOW
+    }
+
+    /**
+     * Enqueue an export job
+     * @param context Application context
+     * @param projectId ID of the project to export
+     * @param settings Export settings with the final output path
+     * @param priority Job priority
+     * @param requiresCharging Whether to wait for the charger regardless of priority
+     * @return ID of the job
+     */
+    public static UUID enqueue(Context context, long projectId, ExportSettings settings,
+                               Priority priority, boolean requiresCharging) {
+        return enqueue(context, projectId, Collections.singletonList(settings), priority, requiresCharging);
+    }
+
+    /**
+     * Enqueue an export job that writes several renditions from one decode pass
+     * @param context Application context
+     * @param projectId ID of the project to export
+     * @param renditions Settings of each rendition. Resolution, bitrate, framerate and
+     *                   file name are per rendition; format, audio and output
+     *                   directory are taken from the first one.
+     * @param priority Job priority
+     * @param requiresCharging Whether to wait for the charger regardless of priority
+     * @return ID of the job
+     */
+    public static UUID enqueue(Context context, long projectId, List<ExportSettings> renditions,
+                               Priority priority, boolean requiresCharging) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresStorageNotLow(true)
+                .setRequiresBatteryNotLow(priority != Priority.HIGH)
+                .setRequiresCharging(requiresCharging || priority == Priority.LOW)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ExportWorker.class)
+                .setInputData(ExportWorker.toInputData(projectId, renditions))
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.LINEAR, 30, TimeUnit.SECONDS)
+                .addTag(TAG_EXPORT)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(getUniqueWorkName(projectId), ExistingWorkPolicy.REPLACE, request);
+        return request.getId();
+    }
+
+    /**
+     * Cancel the export job of a project. Segments it already rendered stay
+     * cached, so exporting again with the same settings reuses them.
+     */
+    public static void cancel(Context context, long projectId) {
+        WorkManager.getInstance(context).cancelUniqueWork(getUniqueWorkName(projectId));
+    }
+
+    /**
+     * Observe the export job of a project
+     */
+    public static LiveData<List<WorkInfo>> getWorkInfo(Context context, long projectId) {
+        return WorkManager.getInstance(context).getWorkInfosForUniqueWorkLiveData(getUniqueWorkName(projectId));
+    }
+
+    private static String getUniqueWorkName(long projectId) {
+        return "export_" + projectId;
+    }
+}
@@ -0,0 +1,560 @@
+package com.example.snapeditprovs.workers;
+
+import static com.arthenica.mobileffmpeg.Config.RETURN_CODE_CANCEL;
+import static com.arthenica.mobileffmpeg.Config.RETURN_CODE_SUCCESS;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.Data;
+import androidx.work.ForegroundInfo;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.snapeditprovs.R;
+import com.example.snapeditprovs.database.EncoderCalibrationDao;
+import com.example.snapeditprovs.database.ExportRunDao;
+import com.example.snapeditprovs.database.ProjectDao;
+import com.example.snapeditprovs.export.AudioStemRenderer;
+import com.example.snapeditprovs.export.ChunkedReverser;
+import com.example.snapeditprovs.export.EncoderTuner;
+import com.example.snapeditprovs.export.ExportCommand;
+import com.example.snapeditprovs.export.FFmpegGovernor;
+import com.example.snapeditprovs.export.FFmpegSession;
+import com.example.snapeditprovs.export.FilterGraphCompiler;
+import com.example.snapeditprovs.export.RenderCache;
+import com.example.snapeditprovs.export.SegmentedExporter;
+import com.example.snapeditprovs.export.SpriteRenderer;
+import com.example.snapeditprovs.export.TelemetryTracker;
+import com.example.snapeditprovs.models.EncoderCalibration;
+import com.example.snapeditprovs.models.ExportRun;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.ExportTelemetry;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.utils.MediaProbeCache;
+import com.example.snapeditprovs.utils.StickerSpriteRenderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs one export job. The job is persisted by WorkManager, so it survives the
+ * Activity and the process. Segment renders are committed to the render cache
+ * as they finish, which makes them checkpoints: a restarted job re-renders only
+ * the segments that had not completed.
+ */
+public class ExportWorker extends Worker {
+    private static final String TAG = "ExportWorker";
+
+    private static final String CHANNEL_ID = "export";
+    private static final long RENDER_CACHE_BYTES = 1024L * 1024 * 1024;
+    private static final long REVERSE_CACHE_BYTES = 512L * 1024 * 1024;
+
+    // Share of the progress bar reserved for muxing the audio stem in
+    private static final int REMUX_PERCENT = 2;
+
+    // Input keys
+    static final String KEY_PROJECT_ID = "project_id";
+    static final String KEY_RESOLUTION = "resolution";
+    static final String KEY_BITRATE = "bitrate";
+    static final String KEY_FRAMERATE = "framerate";
+    static final String KEY_FORMAT = "format";
+    static final String KEY_INCLUDE_AUDIO = "include_audio";
+    static final String KEY_OUTPUT_PATH = "output_path";
+    static final String KEY_OUTPUT_FILENAME = "output_filename";
+    static final String KEY_HARDWARE_ACCELERATION = "hardware_acceleration";
+    static final String KEY_SEGMENTED = "segmented";
+    static final String KEY_TIME_BUDGET = "time_budget";
+    static final String KEY_RENDITION_RESOLUTIONS = "rendition_resolutions";
+    static final String KEY_RENDITION_BITRATES = "rendition_bitrates";
+    static final String KEY_RENDITION_FRAMERATES = "rendition_framerates";
+    static final String KEY_RENDITION_FILENAMES = "rendition_filenames";
+
+    // Progress and output keys
+    public static final String KEY_PROGRESS = "progress";
+    public static final String KEY_ENCODED_SECONDS = "encoded_seconds";
+    public static final String KEY_TOTAL_SECONDS = "total_seconds";
+    public static final String KEY_ELAPSED_MS = "elapsed_ms";
+    public static final String KEY_ETA_MS = "eta_ms";
+    public static final String KEY_FPS = "fps";
+    public static final String KEY_SPEED = "speed";
+    public static final String KEY_BITRATE_KBPS = "bitrate_kbps";
+    public static final String KEY_SIZE_BYTES = "size_bytes";
+    public static final String KEY_OUTPUT_FILE = "output_file";
+    public static final String KEY_OUTPUT_FILES = "output_files";
+    public static final String KEY_ERROR = "error";
+
+    private volatile ChunkedReverser activeReverser;
+    private volatile AudioStemRenderer activeStemRenderer;
+    private volatile SegmentedExporter activeExporter;
+    private final FFmpegSession singleSession = new FFmpegSession();
+    private volatile TelemetryTracker singleSessionTracker;
+    private volatile ExportTelemetry lastTelemetry;
+    private boolean foreground;
+
+    public ExportWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Build the input data of an export job
+     * @param renditions Settings of each rendition; the first one also supplies
+     *                   the shared format, audio and output directory
+     */
+    static Data toInputData(long projectId, List<ExportSettings> renditions) {
+        Data.Builder builder = new Data.Builder().putAll(toInputData(projectId, renditions.get(0)));
+        if (renditions.size() > 1) {
+            int[] resolutions = new int[renditions.size()];
+            int[] bitrates = new int[renditions.size()];
+            int[] framerates = new int[renditions.size()];
+            String[] filenames = new String[renditions.size()];
+            for (int i = 0; i < renditions.size(); i++) {
+                ExportSettings rendition = renditions.get(i);
+                resolutions[i] = rendition.getResolution();
+                bitrates[i] = rendition.getBitrate();
+                framerates[i] = rendition.getFramerate();
+                filenames[i] = rendition.getOutputFilename();
+            }
+            builder.putIntArray(KEY_RENDITION_RESOLUTIONS, resolutions)
+                    .putIntArray(KEY_RENDITION_BITRATES, bitrates)
+                    .putIntArray(KEY_RENDITION_FRAMERATES, framerates)
+                    .putStringArray(KEY_RENDITION_FILENAMES, filenames);
+        }
+        return builder.build();
+    }
+
+    private static Data toInputData(long projectId, ExportSettings settings) {
+        return new Data.Builder()
+                .putLong(KEY_PROJECT_ID, projectId)
+                .putInt(KEY_RESOLUTION, settings.getResolution())
+                .putInt(KEY_BITRATE, settings.getBitrate())
+                .putInt(KEY_FRAMERATE, settings.getFramerate())
+                .putString(KEY_FORMAT, settings.getFormat())
+                .putBoolean(KEY_INCLUDE_AUDIO, settings.isIncludeAudio())
+                .putString(KEY_OUTPUT_PATH, settings.getOutputPath())
+                .putString(KEY_OUTPUT_FILENAME, settings.getOutputFilename())
+                .putBoolean(KEY_HARDWARE_ACCELERATION, settings.isHardwareAcceleration())
+                .putBoolean(KEY_SEGMENTED, settings.isSegmentedExport())
+                .putInt(KEY_TIME_BUDGET, settings.getTimeBudgetSeconds())
+                .build();
+    }
+
+    /**
+     * Read the telemetry published as progress of an export job
+     * @return The telemetry, or null if the job has not reported any yet
+     */
+    public static ExportTelemetry fromProgressData(Data data) {
+        if (data.getKeyValueMap().isEmpty()) {
+            return null;
+        }
+        return new ExportTelemetry(
+                data.getInt(KEY_PROGRESS, 0),
+                data.getDouble(KEY_ENCODED_SECONDS, 0),
+                data.getDouble(KEY_TOTAL_SECONDS, 0),
+                data.getLong(KEY_ELAPSED_MS, 0),
+                data.getLong(KEY_ETA_MS, -1),
+                data.getDouble(KEY_FPS, 0),
+                data.getDouble(KEY_SPEED, 0),
+                data.getDouble(KEY_BITRATE_KBPS, 0),
+                data.getLong(KEY_SIZE_BYTES, 0));
+    }
+
+    private static Data toProgressData(ExportTelemetry telemetry) {
+        return new Data.Builder()
+                .putInt(KEY_PROGRESS, telemetry.getPercent())
+                .putDouble(KEY_ENCODED_SECONDS, telemetry.getEncodedSeconds())
+                .putDouble(KEY_TOTAL_SECONDS, telemetry.getTotalSeconds())
+                .putLong(KEY_ELAPSED_MS, telemetry.getElapsedMs())
+                .putLong(KEY_ETA_MS, telemetry.getEtaMs())
+                .putDouble(KEY_FPS, telemetry.getFps())
+                .putDouble(KEY_SPEED, telemetry.getSpeed())
+                .putDouble(KEY_BITRATE_KBPS, telemetry.getBitrateKbps())
+                .putLong(KEY_SIZE_BYTES, telemetry.getSizeBytes())
+                .build();
+    }
+
+    private static ExportSettings toSettings(Data data) {
+        ExportSettings settings = new ExportSettings();
+        settings.setResolution(data.getInt(KEY_RESOLUTION, settings.getResolution()));
+        settings.setBitrate(data.getInt(KEY_BITRATE, settings.getBitrate()));
+        settings.setFramerate(data.getInt(KEY_FRAMERATE, settings.getFramerate()));
+        if (data.getString(KEY_FORMAT) != null) {
+            settings.setFormat(data.getString(KEY_FORMAT));
+        }
+        settings.setIncludeAudio(data.getBoolean(KEY_INCLUDE_AUDIO, settings.isIncludeAudio()));
+        settings.setOutputPath(data.getString(KEY_OUTPUT_PATH));
+        settings.setOutputFilename(data.getString(KEY_OUTPUT_FILENAME));
+        settings.setHardwareAcceleration(data.getBoolean(KEY_HARDWARE_ACCELERATION, settings.isHardwareAcceleration()));
+        settings.setSegmentedExport(data.getBoolean(KEY_SEGMENTED, settings.isSegmentedExport()));
+        settings.setTimeBudgetSeconds(data.getInt(KEY_TIME_BUDGET, 0));
+        return settings;
+    }
+
+    private static List<ExportSettings> toRenditions(Data data, ExportSettings settings) {
+        List<ExportSettings> renditions = new ArrayList<>();
+        int[] resolutions = data.getIntArray(KEY_RENDITION_RESOLUTIONS);
+        int[] bitrates = data.getIntArray(KEY_RENDITION_BITRATES);
+        int[] framerates = data.getIntArray(KEY_RENDITION_FRAMERATES);
+        String[] filenames = data.getStringArray(KEY_RENDITION_FILENAMES);
+        if (resolutions == null || bitrates == null || framerates == null || filenames == null) {
+            renditions.add(settings);
+            return renditions;
+        }
+
+        for (int i = 0; i < resolutions.length; i++) {
+            ExportSettings rendition = settings.duplicate();
+            rendition.setResolution(resolutions[i]);
+            rendition.setBitrate(bitrates[i]);
+            rendition.setFramerate(framerates[i]);
+            rendition.setOutputFilename(filenames[i]);
+            renditions.add(rendition);
+        }
+        return renditions;
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        long projectId = getInputData().getLong(KEY_PROJECT_ID, -1);
+        ExportSettings settings = toSettings(getInputData());
+        // Shared across jobs: generated files are named after their content
+        settings.setScratchPath(new File(context.getCacheDir(), "export_scratch").getAbsolutePath());
+        List<ExportSettings> renditions = toRenditions(getInputData(), settings);
+
+        Project project = new ProjectDao(context).getProject(projectId);
+        if (project == null) {
+            return failure("Project not found");
+        }
+
+        foreground = startForeground(project);
+        long startedAt = System.currentTimeMillis();
+        double outputDuration = FilterGraphCompiler.getOutputDuration(project);
+
+        // Segment sessions are routed to the exporter by their own IDs
+        singleSession.setStatisticsListener(statistics -> {
+            TelemetryTracker tracker = singleSessionTracker;
+            if (tracker != null) {
+                tracker.onStatistics(0, statistics, outputDuration);
+            }
+        });
+
+        StickerSpriteRenderer spriteRenderer = new StickerSpriteRenderer();
+        RenderCache cache = new RenderCache(new File(context.getFilesDir(), "render_cache"), RENDER_CACHE_BYTES);
+        int returnCode = -1;
+        try {
+            if (!settings.isGif()) {
+                tuneEncoder(context, renditions, outputDuration);
+            }
+
+            Project prepared = prepareReversedClips(context, project);
+            if (prepared == null) {
+                returnCode = RETURN_CODE_CANCEL;
+                return isStopped() ? Result.retry() : failure("Could not reverse clips");
+            }
+
+            File stem = null;
+            if (settings.isIncludeAudio() && !settings.isGif()) {
+                stem = renderAudioStem(prepared, settings, cache);
+                if (stem == null) {
+                    returnCode = RETURN_CODE_CANCEL;
+                    return isStopped() ? Result.retry() : failure("Could not render audio");
+                }
+            }
+
+            // Renditions share one decode pass, which only a single session can provide;
+            // a GIF palette is computed over the whole animation
+            if (renditions.size() == 1 && settings.isSegmentedExport() && !settings.isGif()
+                    && !prepared.getVideoClips().isEmpty()) {
+                File workDir = new File(context.getCacheDir(), "export_segments/" + getId());
+                SegmentedExporter exporter = new SegmentedExporter(workDir,
+                        SegmentedExporter.getDefaultParallelism(), MediaProbeCache.getInstance(context), cache,
+                        spriteRenderer);
+                activeExporter = exporter;
+                if (isStopped()) {
+                    exporter.cancel();
+                }
+                returnCode = exporter.export(prepared, settings, stem, this::onTelemetry);
+            } else {
+                TelemetryTracker tracker = new TelemetryTracker(1, outputDuration,
+                        stem != null && renditions.size() == 1 ? REMUX_PERCENT : 0, this::onTelemetry);
+                singleSessionTracker = tracker;
+                if (stem != null && renditions.size() == 1) {
+                    returnCode = exportWithStem(prepared, settings, stem, cache, spriteRenderer, tracker);
+                } else {
+                    ExportCommand command = FilterGraphCompiler.compileRenditions(prepared, renditions,
+                            stem != null ? stem.getAbsolutePath() : null);
+                    command.writeGeneratedFiles(spriteRenderer);
+                    String[] arguments = command.toArguments().toArray(new String[0]);
+                    returnCode = singleSession.execute(arguments);
+                }
+                if (returnCode == RETURN_CODE_SUCCESS) {
+                    tracker.finish();
+                } else {
+                    lastTelemetry = tracker.getTelemetry();
+                }
+            }
+
+            if (returnCode == RETURN_CODE_SUCCESS) {
+                cache.trimToSize();
+                String[] outputFiles = new String[renditions.size()];
+                for (int i = 0; i < renditions.size(); i++) {
+                    outputFiles[i] = renditions.get(i).getFullOutputPath();
+                }
+                return Result.success(new Data.Builder()
+                        .putString(KEY_OUTPUT_FILE, outputFiles[0])
+                        .putStringArray(KEY_OUTPUT_FILES, outputFiles)
+                        .build());
+            } else if (returnCode == RETURN_CODE_CANCEL && isStopped()) {
+                // Stopped for unmet constraints or cancelled; WorkManager ignores the
+                // result, and a rescheduled run resumes from the cached segments
+                return Result.retry();
+            } else {
+                return failure("Export failed with code: " + returnCode);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error during export", e);
+            return failure("Export error: " + e.getMessage());
+        } finally {
+            SegmentedExporter exporter = activeExporter;
+            if (exporter != null && returnCode != RETURN_CODE_SUCCESS) {
+                lastTelemetry = exporter.getTelemetry();
+            }
+            activeExporter = null;
+            singleSessionTracker = null;
+            recordRun(project, settings, startedAt, returnCode);
+        }
+    }
+
+    /**
+     * Choose the encoder preset of each rendition for the export time budget,
+     * calibrating presets this device has not measured yet. Without a budget
+     * the default preset is kept.
+     */
+    private void tuneEncoder(Context context, List<ExportSettings> renditions, double outputDuration) {
+        EncoderCalibrationDao dao = new EncoderCalibrationDao(context);
+        for (ExportSettings rendition : renditions) {
+            double requiredFps = EncoderTuner.getRequiredFps(rendition, outputDuration, renditions.size());
+            if (requiredFps <= 0 || isStopped()) {
+                continue;
+            }
+
+            String preset = EncoderTuner.choosePreset(requiredFps, dao.getCalibrations(rendition.getResolution()),
+                    candidate -> {
+                        double fps = EncoderTuner.measure(singleSession, candidate, rendition);
+                        if (fps > 0) {
+                            dao.saveCalibration(new EncoderCalibration(candidate, rendition.getResolution(), fps,
+                                    System.currentTimeMillis()));
+                        }
+                        return fps;
+                    }, rendition.getEncoderPreset());
+            if (preset == null) {
+                // mobile-ffmpeg has no MediaCodec encoder, so the fastest software preset is the floor
+                Log.w(TAG, String.format(Locale.US, "No preset reaches %.1f fps at %dp",
+                        requiredFps, rendition.getResolution()));
+                preset = EncoderTuner.FASTEST_PRESET;
+            }
+            rendition.setEncoderPreset(preset);
+        }
+    }
+
+    /**
+     * Render reversed clips as reversed intermediates, so no export session
+     * has to hold a whole clip in memory for the reverse filter
+     * @return The project to export, or null if rendering failed or was stopped
+     */
+    private Project prepareReversedClips(Context context, Project project) {
+        ChunkedReverser reverser = new ChunkedReverser(new File(context.getCacheDir(), "reverse_chunks"),
+                MediaProbeCache.getInstance(context),
+                new RenderCache(new File(context.getFilesDir(), "reverse_cache"), REVERSE_CACHE_BYTES));
+        activeReverser = reverser;
+        try {
+            if (isStopped()) {
+                return null;
+            }
+            return reverser.prepare(project);
+        } finally {
+            activeReverser = null;
+        }
+    }
+
+    /**
+     * Get the cached audio stem of the project, rendering it if the audio
+     * changed since the last export
+     * @return The stem, or null if rendering failed or was stopped
+     */
+    private File renderAudioStem(Project project, ExportSettings settings, RenderCache cache) {
+        AudioStemRenderer renderer = new AudioStemRenderer(cache);
+        activeStemRenderer = renderer;
+        try {
+            if (isStopped()) {
+                return null;
+            }
+            return renderer.render(project, settings);
+        } finally {
+            activeStemRenderer = null;
+        }
+    }
+
+    /**
+     * Encode the video without audio, then mux the audio stem in. The video
+     * encode is cached like a segment, so after an audio-only edit the export
+     * is a remux.
+     */
+    private int exportWithStem(Project project, ExportSettings settings, File stem, RenderCache cache,
+                               SpriteRenderer spriteRenderer, TelemetryTracker tracker) throws IOException {
+        ExportSettings videoSettings = settings.duplicate();
+        videoSettings.setIncludeAudio(false);
+        ExportCommand command = FilterGraphCompiler.compile(project, videoSettings);
+        String key = RenderCache.fingerprint(command);
+
+        File video = cache.get(key);
+        if (video != null) {
+            Log.d(TAG, "Reusing video encode " + key);
+            tracker.onReused(0, FilterGraphCompiler.getOutputDuration(project));
+        } else {
+            command.setOutputPath(cache.getPendingFile(key).getAbsolutePath());
+            command.writeGeneratedFiles(spriteRenderer);
+            String[] arguments = command.toArguments().toArray(new String[0]);
+            int returnCode = singleSession.execute(arguments);
+            if (returnCode != RETURN_CODE_SUCCESS) {
+                cache.discard(key);
+                return returnCode;
+            }
+            video = cache.commit(key);
+        }
+
+        // The remux reports statistics of its own; they are not encode progress
+        singleSessionTracker = null;
+        ExportCommand remux = FilterGraphCompiler.compileRemux(video.getAbsolutePath(), stem.getAbsolutePath(),
+                settings);
+        return singleSession.execute(remux.toArguments().toArray(new String[0]));
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        ChunkedReverser reverser = activeReverser;
+        if (reverser != null) {
+            reverser.cancel();
+        }
+        AudioStemRenderer stemRenderer = activeStemRenderer;
+        if (stemRenderer != null) {
+            stemRenderer.cancel();
+        }
+        SegmentedExporter exporter = activeExporter;
+        if (exporter != null) {
+            exporter.cancel();
+        } else {
+            // Cancels the single session or the remux, whichever is running
+            singleSession.cancel();
+        }
+    }
+
+    private void onTelemetry(ExportTelemetry telemetry) {
+        ExportTelemetry previous = lastTelemetry;
+        lastTelemetry = telemetry;
+        setProgressAsync(toProgressData(telemetry));
+        // Telemetry is already throttled; the notification only changes with the percentage
+        if (foreground && (previous == null || previous.getPercent() != telemetry.getPercent())) {
+            setForegroundAsync(createForegroundInfo(telemetry));
+        }
+    }
+
+    /**
+     * Store the outcome and throughput of this run, so export performance can be
+     * compared across app versions and devices
+     */
+    private void recordRun(Project project, ExportSettings settings, long startedAt, int returnCode) {
+        ExportRun run = new ExportRun();
+        run.setProjectId(project.getId());
+        run.setStartedAt(startedAt);
+        run.setResolution(settings.getResolution());
+        run.setFramerate(settings.getFramerate());
+        run.setBitrate(settings.getBitrate());
+        run.setSegmented(settings.isSegmentedExport());
+        run.setReturnCode(returnCode);
+        run.setAppVersion(getAppVersion());
+        run.setDevice(Build.MANUFACTURER + " " + Build.MODEL);
+        run.setSdkInt(Build.VERSION.SDK_INT);
+        run.setTelemetry(lastTelemetry);
+        new ExportRunDao(getApplicationContext()).insertExportRun(run);
+        Log.d(TAG, "Thread governor: " + FFmpegGovernor.getInstance().getMetrics());
+    }
+
+    private String getAppVersion() {
+        Context context = getApplicationContext();
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read app version", e);
+            return null;
+        }
+    }
+
+    private Result failure(String error) {
+        return Result.failure(new Data.Builder().putString(KEY_ERROR, error).build());
+    }
+
+    /**
+     * Run as a foreground service so long exports are not stopped when the app
+     * is backgrounded. Android 12+ refuses this while the app is in the
+     * background, e.g. when a job is resumed after a restart; the job then runs
+     * within normal limits and relies on its checkpoints if it is stopped.
+     */
+    private boolean startForeground(Project project) {
+        Context context = getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager =
+                    (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Export",
+                    NotificationManager.IMPORTANCE_LOW));
+        }
+
+        try {
+            setForegroundAsync(createForegroundInfo(null)).get();
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not run export of " + project.getName() + " in the foreground", e);
+            return false;
+        }
+    }
+
+    private ForegroundInfo createForegroundInfo(ExportTelemetry telemetry) {
+        Notification notification = buildNotification(telemetry);
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                ? new ForegroundInfo(getNotificationId(), notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC)
+                : new ForegroundInfo(getNotificationId(), notification);
+    }
+
+    private Notification buildNotification(ExportTelemetry telemetry) {
+        int percent = telemetry != null ? telemetry.getPercent() : 0;
+        String text = percent + "%";
+        if (telemetry != null && telemetry.getEtaMs() > 0) {
+            long seconds = telemetry.getEtaMs() / 1000;
+            text += String.format(Locale.US, ", %d:%02d left", seconds / 60, seconds % 60);
+        }
+        return new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
+                .setContentTitle("Exporting video")
+                .setContentText(text)
+                .setSmallIcon(R.drawable.ic_export)
+                .setProgress(100, percent, false)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+
+    private int getNotificationId() {
+        return getId().hashCode();
+    }
+}
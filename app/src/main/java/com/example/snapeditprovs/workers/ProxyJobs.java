@@ -0,0 +1,64 @@
+package com.example.snapeditprovs.workers;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of proxy generation jobs. Each source file has at most one job, and
+ * a job that is already queued or running is kept.
+ */
+public class ProxyJobs {
+    public static final String TAG_PROXY = "proxy";
+
+    /**
+     * Enqueue proxy generation for a source file
+     * @param context Application context
+     * @param sourcePath Path of the imported source
+     */
+    public static void enqueue(Context context, String sourcePath) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ProxyWorker.class)
+                .setInputData(ProxyWorker.toInputData(sourcePath))
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.LINEAR, 30, TimeUnit.SECONDS)
+                .addTag(TAG_PROXY)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(getUniqueWorkName(sourcePath), ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Delete the proxy of a source file, e.g. when the source is deleted
+     */
+    public static void deleteProxy(Context context, String sourcePath) {
+        WorkManager.getInstance(context).cancelUniqueWork(getUniqueWorkName(sourcePath));
+        ProxyWorker.getProxyFile(context, sourcePath).delete();
+    }
+
+    /**
+     * Observe all proxy jobs. A succeeded job carries the source path and,
+     * if one was needed, the proxy path in its output data.
+     */
+    public static LiveData<List<WorkInfo>> getWorkInfo(Context context) {
+        return WorkManager.getInstance(context).getWorkInfosByTagLiveData(TAG_PROXY);
+    }
+
+    private static String getUniqueWorkName(String sourcePath) {
+        return "proxy_" + new File(sourcePath).getAbsolutePath();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.snapeditprovs.workers;
+
+import static com.arthenica.mobileffmpeg.Config.RETURN_CODE_SUCCESS;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.snapeditprovs.database.ProjectDao;
+import com.example.snapeditprovs.export.FFmpegGovernor;
+import com.example.snapeditprovs.export.FFmpegSession;
+import com.example.snapeditprovs.models.MediaInfo;
+import com.example.snapeditprovs.utils.FFmpegUtils;
+import com.example.snapeditprovs.utils.MediaProbeCache;
+
+import java.io.File;
+
+/**
+ * Generates the editing proxy of one imported source and records it on the
+ * clips that play the source. Sources that already decode cheaply, i.e. H.264
+ * at no more than the proxy height, get no proxy.
+ */
+public class ProxyWorker extends Worker {
+    private static final String TAG = "ProxyWorker";
+
+    static final int PROXY_HEIGHT = 540;
+
+    // Input and output keys
+    public static final String KEY_SOURCE_PATH = "source_path";
+    public static final String KEY_PROXY_PATH = "proxy_path";
+
+    private final FFmpegSession session = new FFmpegSession(FFmpegGovernor.Priority.BACKGROUND);
+
+    public ProxyWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    static Data toInputData(String sourcePath) {
+        return new Data.Builder()
+                .putString(KEY_SOURCE_PATH, sourcePath)
+                .build();
+    }
+
+    /**
+     * Get the file the proxy of a source is written to. The name includes the
+     * source's size and modification time, so a replaced source gets a new proxy.
+     */
+    static File getProxyFile(Context context, String sourcePath) {
+        File source = new File(sourcePath);
+        String name = source.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension > 0) {
+            name = name.substring(0, extension);
+        }
+        return new File(new File(context.getFilesDir(), "proxies"),
+                name + "_" + Long.toHexString(source.length()) + "_" + Long.toHexString(source.lastModified())
+                        + ".mp4");
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        String sourcePath = getInputData().getString(KEY_SOURCE_PATH);
+        if (sourcePath == null || !new File(sourcePath).isFile()) {
+            return Result.failure();
+        }
+
+        File proxy = getProxyFile(context, sourcePath);
+        if (!proxy.isFile()) {
+            MediaInfo info = MediaProbeCache.getInstance(context).getMediaInfo(sourcePath);
+            if (info != null && !needsProxy(info)) {
+                return Result.success(new Data.Builder().putString(KEY_SOURCE_PATH, sourcePath).build());
+            }
+            if (!render(sourcePath, proxy)) {
+                return isStopped() ? Result.retry() : Result.failure();
+            }
+        }
+
+        if (!new ProjectDao(context).updateProxyPath(sourcePath, proxy.getAbsolutePath())) {
+            return Result.retry();
+        }
+        return Result.success(new Data.Builder()
+                .putString(KEY_SOURCE_PATH, sourcePath)
+                .putString(KEY_PROXY_PATH, proxy.getAbsolutePath())
+                .build());
+    }
+
+    @Override
+    public void onStopped() {
+        super.onStopped();
+        // Only this proxy's session; an export may be running at the same time
+        session.cancel();
+    }
+
+    static boolean needsProxy(MediaInfo info) {
+        int lines = Math.min(info.getWidth(), info.getHeight());
+        return lines > PROXY_HEIGHT || !"h264".equals(info.getVideoCodec());
+    }
+
+    /**
+     * Transcode into a pending file and move it into place, so an interrupted
+     * run never leaves a truncated proxy behind
+     */
+    private boolean render(String sourcePath, File proxy) {
+        File directory = proxy.getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File pending = new File(proxy.getPath() + ".pending");
+        Log.d(TAG, "Generating proxy of " + sourcePath);
+        int returnCode = session.execute(FFmpegUtils.generateProxyArguments(sourcePath, pending.getAbsolutePath()));
+        if (returnCode != RETURN_CODE_SUCCESS || !pending.renameTo(proxy)) {
+            Log.e(TAG, "Proxy generation failed with code: " + returnCode);
+            pending.delete();
+            return false;
+        }
+        return true;
+    }
+}
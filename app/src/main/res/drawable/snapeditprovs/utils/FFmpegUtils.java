@@ -348,23 +348,6 @@ public class FFmpegUtils {
         return rc == Config.RETURN_CODE_SUCCESS;
     }
     
-    /**
-     * Cut a video file
-     * @param inputPath Input video path
-     * @param outputPath Output video path
-     * @param startTime Start time in seconds
-     * @param endTime End time in seconds
-     * @return True if successful, false otherwise
-     */
-    public static boolean cutVideo(String inputPath, String outputPath, double startTime, double endTime) {
-        String command = String.format(Locale.US,
-                "-i %s -ss %f -to %f -c copy -y %s",
-                inputPath, startTime, endTime, outputPath);
-        
-        int rc = FFmpeg.execute(command);
-        return rc == Config.RETURN_CODE_SUCCESS;
-    }
-    
     /**
      * Apply a filter to a video file
      * @param inputPath Input video path
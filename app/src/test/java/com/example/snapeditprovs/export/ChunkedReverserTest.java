@@ -0,0 +1,149 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how a reversed range is split into chunks, how the chunks are joined
+ * with the clip's audio, and how a project plays reversed clips that are
+ * already rendered
+ */
+public class ChunkedReverserTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("reverse").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static void assertChunk(double start, double end, double[] chunk) {
+        assertEquals(start, chunk[0], 1e-9);
+        assertEquals(end, chunk[1], 1e-9);
+    }
+
+    /**
+     * A cache that already holds every reversed clip, so nothing is rendered
+     */
+    private RenderCache cacheHolding(File reversed) {
+        return new RenderCache(directory, Long.MAX_VALUE) {
+            @Override
+            public synchronized File get(String key) {
+                return reversed;
+            }
+        };
+    }
+
+    @Test
+    public void chunks_startOnKeyframesAndMergeShortGops() {
+        long[] keyframes = {0, 500_000, 1_000_000, 1_500_000, 2_000_000, 4_500_000};
+
+        List<double[]> chunks = ChunkedReverser.planChunks(0.2, 4.8, keyframes, 1.0);
+
+        // 0.2-1.0 merges two short GOPs; the 2.5 s GOP is split into three equal chunks
+        assertEquals(6, chunks.size());
+        assertChunk(0.2, 1.0, chunks.get(0));
+        assertChunk(1.0, 2.0, chunks.get(1));
+        assertChunk(2.0, 2.0 + 2.5 / 3, chunks.get(2));
+        assertChunk(4.5 - 2.5 / 3, 4.5, chunks.get(4));
+        assertChunk(4.5, 4.8, chunks.get(5));
+        for (int i = 1; i < chunks.size(); i++) {
+            assertEquals(chunks.get(i - 1)[1], chunks.get(i)[0], 1e-9);
+            assertTrue(chunks.get(i)[1] - chunks.get(i)[0] <= 1.0 + 1e-9);
+        }
+    }
+
+    @Test
+    public void chunks_withoutKeyframes_splitEvenly() {
+        List<double[]> chunks = ChunkedReverser.planChunks(1.0, 3.0, null, 1.0);
+
+        assertEquals(2, chunks.size());
+        assertChunk(1.0, 2.0, chunks.get(0));
+        assertChunk(2.0, 3.0, chunks.get(1));
+    }
+
+    @Test
+    public void join_reversesAudioOnceAndCopiesChunkVideo() {
+        String chunk = String.join(" ", ChunkedReverser.compileChunk("/sdcard/b.mp4", 11, 12).toArguments());
+        File list = new File(directory, "chunks.txt");
+        ExportCommand join = ChunkedReverser.compileJoin(list, "/sdcard/b.mp4", 10, 14, true);
+        join.setOutputPath("/out/reversed.mp4");
+        String arguments = String.join(" ", join.toArguments());
+
+        assertTrue(chunk.contains("reverse"));
+        assertFalse(chunk.contains("areverse"));
+        assertTrue(chunk.contains("-an"));
+        assertTrue(arguments.startsWith("-f concat -safe 0 -i " + list.getAbsolutePath()
+                + " -ss 10 -t 4 -i /sdcard/b.mp4"));
+        assertTrue(arguments.contains("[1:a]areverse"));
+        assertTrue(arguments.contains("-map 0:v"));
+        assertTrue(arguments.contains("-c:v copy -c:a aac"));
+    }
+
+    @Test
+    public void join_withoutAudio_onlyCopiesChunks() {
+        ExportCommand join = ChunkedReverser.compileJoin(new File(directory, "chunks.txt"), "/sdcard/b.mp4",
+                10, 14, false);
+
+        assertEquals(1, join.getInputs().size());
+        assertTrue(join.getGraph().isEmpty());
+        assertTrue(join.getOutputOptions().contains("-an"));
+    }
+
+    @Test
+    public void prepare_playsCachedReverseForwards() throws IOException {
+        File reversed = new File(directory, "reversed.mp4");
+        assertTrue(reversed.createNewFile());
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 5, 0));
+        VideoClip clip = new VideoClip("/sdcard/b.mp4", 10, 14, 5);
+        clip.setReversed(true);
+        clip.setVolume(0.5f);
+        project.addVideoClip(clip);
+
+        Project prepared = new ChunkedReverser(directory, null, cacheHolding(reversed)).prepare(project);
+
+        assertNotSame(project, prepared);
+        assertEquals("/sdcard/a.mp4", prepared.getVideoClips().get(0).getPath());
+        VideoClip replacement = prepared.getVideoClips().get(1);
+        assertEquals(reversed.getAbsolutePath(), replacement.getPath());
+        assertEquals(0.0, replacement.getStartTime(), 1e-9);
+        assertEquals(4.0, replacement.getEndTime(), 1e-9);
+        assertFalse(replacement.isReversed());
+        assertEquals(5.0, replacement.getTimelinePosition(), 1e-9);
+        assertEquals(0.5f, replacement.getVolume(), 1e-6);
+        // The project being edited keeps its reversed clip
+        assertTrue(clip.isReversed());
+        assertEquals("/sdcard/b.mp4", clip.getPath());
+        assertEquals(10.0, clip.getStartTime(), 1e-9);
+    }
+
+    @Test
+    public void prepare_withoutReversedClips_returnsProject() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 5, 0));
+
+        assertSame(project, new ChunkedReverser(directory, null, cacheHolding(null)).prepare(project));
+    }
+}
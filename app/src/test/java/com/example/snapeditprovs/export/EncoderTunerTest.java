@@ -0,0 +1,65 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.EncoderCalibration;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the x264 preset chosen from measured encoder throughput
+ */
+public class EncoderTunerTest {
+
+    @Test
+    public void encoderPreset_slowestWithinTimeBudget() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 60, 0));
+        ExportSettings settings = new ExportSettings();
+        settings.setOutputPath("/out");
+        settings.setOutputFilename("export.mp4");
+        settings.setTimeBudgetSeconds(60);
+
+        // 30 fps for 60 s in 60 s, with headroom for decoding and filters
+        double requiredFps = EncoderTuner.getRequiredFps(settings, 60, 1);
+        assertEquals(45, requiredFps, 1e-9);
+
+        List<EncoderCalibration> stored = Arrays.asList(
+                new EncoderCalibration("ultrafast", 1080, 120, 0),
+                new EncoderCalibration("superfast", 1080, 90, 0));
+        List<String> measured = new ArrayList<>();
+        String preset = EncoderTuner.choosePreset(requiredFps, stored, candidate -> {
+            measured.add(candidate);
+            return "veryfast".equals(candidate) ? 50 : 20;
+        }, "medium");
+
+        // Calibration stops at the first preset that is too slow
+        assertEquals("veryfast", preset);
+        assertEquals(Arrays.asList("veryfast", "faster"), measured);
+        assertNull(EncoderTuner.choosePreset(200, stored, null, "medium"));
+
+        settings.setEncoderPreset(preset);
+        List<String> arguments = FilterGraphCompiler.compile(project, settings).toArguments();
+        assertEquals("veryfast", arguments.get(arguments.indexOf("-preset") + 1));
+    }
+
+    @Test
+    public void encoderPreset_failedCalibrationKeepsTheDefault() {
+        List<String> measured = new ArrayList<>();
+        String preset = EncoderTuner.choosePreset(45, new ArrayList<>(), candidate -> {
+            measured.add(candidate);
+            return -1;
+        }, "medium");
+
+        // A cancelled encode is not a slow one, so it does not fall back to the fastest preset
+        assertEquals("medium", preset);
+        assertEquals(Arrays.asList("ultrafast"), measured);
+    }
+}
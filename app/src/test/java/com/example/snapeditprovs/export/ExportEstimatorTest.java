@@ -0,0 +1,70 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.EncoderCalibration;
+import com.example.snapeditprovs.models.ExportRun;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.ExportTelemetry;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.Transition;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks export size and time estimates and the throughput they are based on
+ */
+public class ExportEstimatorTest {
+
+    private static ExportSettings settings() {
+        ExportSettings settings = new ExportSettings();
+        settings.setOutputPath("/out");
+        settings.setOutputFilename("export.mp4");
+        return settings;
+    }
+
+    @Test
+    public void estimate_chargesExpensiveNodesForTheirStretch() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 10, 15, 0));
+        VideoClip reversed = new VideoClip("/sdcard/b.mp4", 20, 25, 5);
+        project.addVideoClip(reversed);
+        Transition transition = new Transition("Fade", "fade", 1.0);
+        transition.setPosition(0);
+        project.addTransition(transition);
+
+        ExportEstimator.Estimate plain = ExportEstimator.estimate(project, settings(), 30);
+        reversed.setReversed(true);
+        ExportEstimator.Estimate withReverse = ExportEstimator.estimate(project, settings(), 30);
+
+        // 9 s at 5000 + 128 kbps with container overhead
+        assertEquals(Math.round(5128 * 125 * 9 * ExportEstimator.CONTAINER_OVERHEAD), plain.getSizeBytes());
+        assertTrue(plain.getTimeMs() > 9000);
+        // Reversing 5 of 9 s at 270 frames / 30 fps
+        assertEquals(7500, withReverse.getTimeMs() - plain.getTimeMs(), 1);
+        assertTrue(plain.isMeasured());
+    }
+
+    @Test
+    public void estimate_throughputFromHistoryThenCalibration() {
+        ExportRun run = new ExportRun();
+        run.setResolution(1080);
+        run.setFramerate(30);
+        run.setTelemetry(new ExportTelemetry(100, 60, 60, 90_000, 0, 0, 0, 0, 0));
+        ExportRun failed = new ExportRun();
+        failed.setResolution(1080);
+        failed.setFramerate(30);
+        failed.setReturnCode(1);
+        failed.setTelemetry(new ExportTelemetry(10, 6, 60, 1000, 0, 0, 0, 0, 0));
+        List<EncoderCalibration> calibrations = Arrays.asList(new EncoderCalibration("medium", 1080, 45, 0));
+
+        assertEquals(20, ExportEstimator.getThroughputFps(Arrays.asList(run, failed), calibrations, settings()), 1e-9);
+        assertEquals(30, ExportEstimator.getThroughputFps(Arrays.asList(failed), calibrations, settings()), 1e-9);
+        assertEquals(0, ExportEstimator.getThroughputFps(new ArrayList<>(), new ArrayList<>(), settings()), 1e-9);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.snapeditprovs.export;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the governor shares its thread budget between FFmpeg sessions
+ */
+public class FFmpegGovernorTest {
+
+    @Test
+    public void governor_limitsThreadsAndQueuesBackgroundWork() {
+        FFmpegGovernor governor = new FFmpegGovernor(8);
+        FFmpegGovernor.Grant export = governor.acquire(FFmpegGovernor.Priority.EXPORT, () -> false);
+        assertEquals(8, export.getThreads());
+
+        // Interactive work runs at once on a single thread over the budget; background work queues
+        FFmpegGovernor.Grant thumbnail = governor.acquire(FFmpegGovernor.Priority.INTERACTIVE, () -> false);
+        assertEquals(1, thumbnail.getThreads());
+        assertNull(governor.acquire(FFmpegGovernor.Priority.BACKGROUND, () -> true));
+        assertEquals(9, governor.getMetrics().getThreadsInUse());
+
+        governor.release(export);
+        governor.release(thumbnail);
+        FFmpegGovernor.Grant proxy = governor.acquire(FFmpegGovernor.Priority.BACKGROUND, () -> false);
+        assertEquals(2, proxy.getThreads());
+        assertEquals(1, governor.getMetrics().getRunning(FFmpegGovernor.Priority.BACKGROUND));
+        assertEquals(3, governor.getMetrics().getGrants());
+
+        List<String> limited = Arrays.asList(FFmpegGovernor.withThreads(
+                new String[] {"-i", "/sdcard/a.mp4", "-c:v", "libx264", "/out/a.mp4"}, proxy.getThreads()));
+        assertEquals(Arrays.asList("-filter_threads", "2", "-filter_complex_threads", "2",
+                "-threads", "2", "-i", "/sdcard/a.mp4", "-threads", "2", "-c:v", "libx264", "/out/a.mp4"), limited);
+    }
+}
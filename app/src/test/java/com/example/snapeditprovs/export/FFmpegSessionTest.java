@@ -0,0 +1,74 @@
+package com.example.snapeditprovs.export;
+
+import com.arthenica.mobileffmpeg.Config;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a cancelled session runs nothing, gives its threads back and
+ * leaves other sessions alone
+ */
+public class FFmpegSessionTest {
+
+    @Test
+    public void cancelledSession_returnsCancelWithoutRunning() {
+        FFmpegGovernor governor = FFmpegGovernor.getInstance();
+        int threadsInUse = governor.getMetrics().getThreadsInUse();
+        FFmpegSession session = new FFmpegSession(FFmpegGovernor.Priority.BACKGROUND);
+
+        session.cancel();
+
+        assertTrue(session.isCancelled());
+        assertEquals(Config.RETURN_CODE_CANCEL, session.execute(new String[] {"-i", "/sdcard/a.mp4", "/out/a.mp4"}));
+        assertEquals(Config.RETURN_CODE_CANCEL, session.execute(new String[] {"-i", "/sdcard/b.mp4", "/out/b.mp4"}));
+        assertEquals(-1, session.getExecutionId());
+        assertEquals(threadsInUse, governor.getMetrics().getThreadsInUse());
+    }
+
+    @Test
+    public void cancel_stopsOnlyItsOwnSession() {
+        FFmpegSession export = new FFmpegSession();
+        FFmpegSession proxy = new FFmpegSession(FFmpegGovernor.Priority.BACKGROUND);
+
+        export.cancel();
+        export.cancel();
+
+        assertTrue(export.isCancelled());
+        assertFalse(proxy.isCancelled());
+        assertEquals(-1, proxy.getExecutionId());
+    }
+
+    @Test
+    public void cancel_endsTheWaitForThreads() throws InterruptedException {
+        FFmpegGovernor governor = FFmpegGovernor.getInstance();
+        // An export holding the whole budget makes the background session queue
+        FFmpegGovernor.Grant export = governor.acquire(FFmpegGovernor.Priority.EXPORT, () -> false);
+        try {
+            FFmpegSession session = new FFmpegSession(FFmpegGovernor.Priority.BACKGROUND);
+            AtomicInteger result = new AtomicInteger(Config.RETURN_CODE_SUCCESS);
+            Thread thread = new Thread(() -> result.set(
+                    session.execute(new String[] {"-i", "/sdcard/a.mp4", "/out/a.mp4"})));
+            thread.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (governor.getMetrics().getWaiting(FFmpegGovernor.Priority.BACKGROUND) == 0
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, governor.getMetrics().getWaiting(FFmpegGovernor.Priority.BACKGROUND));
+
+            session.cancel();
+            thread.join(5000);
+
+            assertFalse(thread.isAlive());
+            assertEquals(Config.RETURN_CODE_CANCEL, result.get());
+            assertEquals(0, governor.getMetrics().getWaiting(FFmpegGovernor.Priority.BACKGROUND));
+            assertEquals(0, governor.getMetrics().getRunning(FFmpegGovernor.Priority.BACKGROUND));
+        } finally {
+            governor.release(export);
+        }
+    }
+}
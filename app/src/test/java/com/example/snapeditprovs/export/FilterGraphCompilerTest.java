@@ -0,0 +1,385 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.AudioClip;
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.StickerOverlay;
+import com.example.snapeditprovs.models.TextOverlay;
+import com.example.snapeditprovs.models.Transition;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the argument lists compiled for export projects, e.g. with clips
+ * trimmed deep into long recordings or joined by transitions.
+ */
+public class FilterGraphCompilerTest {
+
+    private static ExportSettings settings() {
+        ExportSettings settings = new ExportSettings();
+        settings.setOutputPath("/out");
+        settings.setOutputFilename("export.mp4");
+        return settings;
+    }
+
+    private static String filterComplex(List<String> arguments) {
+        int index = arguments.indexOf("-filter_complex");
+        return index >= 0 ? arguments.get(index + 1) : "";
+    }
+
+    @Test
+    public void deepTrim_seeksOnInputSide() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/recording.mp4", 3540.0, 3552.5, 0));
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals(Arrays.asList("-ss", "3540", "-t", "12.5", "-i", "/sdcard/recording.mp4"),
+                arguments.subList(0, 6));
+        assertFalse(filterComplex(arguments).contains("trim=start"));
+    }
+
+    @Test
+    public void clipFromStart_omitsSeek() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 4, 0));
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals(Arrays.asList("-t", "4", "-i", "/sdcard/a.mp4"), arguments.subList(0, 4));
+        assertFalse(arguments.contains("-ss"));
+    }
+
+    @Test
+    public void everyClipGetsItsOwnSeek() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 1800, 1810, 0));
+        project.addVideoClip(new VideoClip("/sdcard/b.mp4", 7200.25, 7201.25, 10));
+        project.addAudioClip(new AudioClip("/sdcard/music.mp3", 600, 611, 0));
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals(Arrays.asList(
+                "-ss", "1800", "-t", "10", "-i", "/sdcard/a.mp4",
+                "-ss", "7200.25", "-t", "1", "-i", "/sdcard/b.mp4",
+                "-ss", "600", "-t", "11", "-i", "/sdcard/music.mp3"),
+                arguments.subList(0, 18));
+        assertFalse(filterComplex(arguments).contains("trim=start"));
+        assertTrue(filterComplex(arguments).contains("concat=n=2"));
+    }
+
+    @Test
+    public void clipAudio_isSequencedLikeTheVideo() {
+        Project project = new Project();
+        VideoClip fast = new VideoClip("/sdcard/a.mp4", 0, 8, 0);
+        fast.setSpeed(2.0f);
+        project.addVideoClip(fast);
+        VideoClip muted = new VideoClip("/sdcard/b.mp4", 0, 3, 4);
+        muted.setMuted(true);
+        project.addVideoClip(muted);
+        project.addVideoClip(new VideoClip("/sdcard/c.mp4", 0, 5, 7));
+        Transition transition = new Transition("Fade", "fade", 1.0);
+        transition.setPosition(1);
+        project.addTransition(transition);
+        project.addAudioClip(new AudioClip("/sdcard/music.mp3", 0, 5, 2));
+
+        String graph = filterComplex(FilterGraphCompiler.compile(project, settings()).toArguments());
+
+        // a at double speed, b as silence, then c crossfaded in where the video fades
+        assertTrue(graph.contains("atempo=tempo=2"));
+        assertTrue(graph.contains("anullsrc=channel_layout=stereo:sample_rate=48000,atrim=duration=3"));
+        assertTrue(graph.contains("concat=n=2:v=0:a=1"));
+        assertTrue(graph.contains("acrossfade=d=1"));
+        // The music starts at its timeline position over the joined clip audio
+        assertTrue(graph.contains("adelay=delays=2000:all=1"));
+        assertTrue(graph.contains("amix=inputs=2:duration=first"));
+        assertTrue(graph.contains("apad,atrim=duration=11"));
+    }
+
+    @Test
+    public void stitch_seeksAudioClipInputs() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 10, 0));
+        project.addAudioClip(new AudioClip("/sdcard/music.mp3", 95.5, 105.5, 0));
+
+        List<String> arguments = FilterGraphCompiler.compileStitch("/tmp/segments.txt", project, settings())
+                .toArguments();
+
+        int input = arguments.indexOf("/sdcard/music.mp3");
+        assertEquals(Arrays.asList("-ss", "95.5", "-t", "10", "-i"), arguments.subList(input - 5, input));
+        assertFalse(filterComplex(arguments).contains("atrim"));
+    }
+
+    @Test
+    public void splitTake_opensSourceOnce() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 3600, 3610, 0));
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 3610, 3625, 10));
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 3627, 3630, 25));
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals(Arrays.asList("-ss", "3600", "-t", "30", "-i", "/sdcard/take.mp4"),
+                arguments.subList(0, 6));
+        assertEquals(1, arguments.stream().filter("-i"::equals).count());
+        String graph = filterComplex(arguments);
+        assertTrue(graph.contains("[0:v]split=3"));
+        assertTrue(graph.contains("[0:a]asplit=3"));
+        assertTrue(graph.contains("trim=start=10:end=25"));
+        assertTrue(graph.contains("atrim=start=27:end=30"));
+    }
+
+    @Test
+    public void distantRanges_getSeparateInputs() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 60, 70, 0));
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 1800, 1805, 10));
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals(Arrays.asList(
+                "-ss", "60", "-t", "10", "-i", "/sdcard/take.mp4",
+                "-ss", "1800", "-t", "5", "-i", "/sdcard/take.mp4"),
+                arguments.subList(0, 12));
+        assertFalse(filterComplex(arguments).contains("split"));
+    }
+
+    @Test
+    public void rewoundRange_getsSeparateInput() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 20, 30, 0));
+        project.addVideoClip(new VideoClip("/sdcard/take.mp4", 25, 28, 10));
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals(2, arguments.stream().filter("-i"::equals).count());
+    }
+
+    @Test
+    public void renditions_decodeOnceAndSplitToEachOutput() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 10, 0));
+
+        ExportSettings hd = settings();
+        hd.setResolution(720);
+        hd.setBitrate(2500);
+        hd.setOutputFilename("720.mp4");
+        ExportSettings fullHd = settings();
+        fullHd.setFramerate(60);
+        fullHd.setOutputFilename("1080.mp4");
+
+        List<String> arguments = FilterGraphCompiler.compileRenditions(project, Arrays.asList(hd, fullHd))
+                .toArguments();
+
+        assertEquals(1, arguments.stream().filter("-i"::equals).count());
+        assertTrue(filterComplex(arguments).contains("split=2"));
+        assertTrue(filterComplex(arguments).contains("asplit=2"));
+        int first = arguments.indexOf("/out/720.mp4");
+        int second = arguments.indexOf("/out/1080.mp4");
+        assertTrue(first > 0 && second > first);
+        assertTrue(arguments.subList(0, first).contains("2500k"));
+        assertEquals("60", arguments.get(arguments.subList(first, second).indexOf("-r") + first + 1));
+    }
+
+    @Test
+    public void transitions_getExactOffsets() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 5, 0));
+        project.addVideoClip(new VideoClip("/sdcard/b.mp4", 0, 5, 5));
+        project.addVideoClip(new VideoClip("/sdcard/c.mp4", 0, 5, 10));
+        for (int position = 0; position < 2; position++) {
+            Transition transition = new Transition("Fade", "fade", 1.0);
+            transition.setPosition(position);
+            project.addTransition(transition);
+        }
+
+        String graph = filterComplex(FilterGraphCompiler.compile(project, settings()).toArguments());
+
+        assertTrue(graph.contains("duration=1:offset=4"));
+        assertTrue(graph.contains("duration=1:offset=8"));
+        assertEquals(13.0, FilterGraphCompiler.getOutputDuration(project), 1e-9);
+    }
+
+    @Test
+    public void textOverlays_burnInThroughOneAssScript() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 10, 0));
+        project.addTextOverlay(new TextOverlay("Hello {world}", "Roboto", 0xFFFF0000, 1, 3));
+        TextOverlay caption = new TextOverlay("Bye", "Roboto", 0x80FFFFFF, 5, 7.5);
+        caption.setAnimation("fade");
+        project.addTextOverlay(caption);
+        ExportSettings settings = settings();
+        settings.setScratchPath("/cache/scratch");
+
+        ExportCommand command = FilterGraphCompiler.compile(project, settings);
+        String graph = filterComplex(command.toArguments());
+
+        assertFalse(graph.contains("drawtext"));
+        assertTrue(graph.contains("ass=filename=/cache/scratch/overlays_"));
+        assertEquals(1, command.getGeneratedFiles().size());
+        String script = command.getGeneratedFiles().values().iterator().next();
+        assertTrue(script.contains("Dialogue: 0,0:00:01.00,0:00:03.00,Plain,,0,0,0,,"));
+        assertTrue(script.contains("\\c&H0000FF&\\1a&H00&"));
+        assertTrue(script.contains("}Hello \\{world\\}"));
+        assertTrue(script.contains("0:00:07.50"));
+        assertTrue(script.contains("\\1a&H7F&"));
+        assertTrue(script.contains("\\fad(500,500)"));
+    }
+
+    @Test
+    public void stickers_compositeCachedSpritesInWindow() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 10, 0));
+        StickerOverlay spinner = new StickerOverlay("/sdcard/star.png", 2, 4);
+        spinner.setAnimation("rotate");
+        project.addStickerOverlay(spinner);
+        StickerOverlay badge = new StickerOverlay("/sdcard/badge.png", 1, 9);
+        badge.setAnimation("fade");
+        project.addStickerOverlay(badge);
+        ExportSettings settings = settings();
+        settings.setScratchPath("/cache/scratch");
+
+        ExportCommand command = FilterGraphCompiler.compile(project, settings);
+        List<String> arguments = command.toArguments();
+        String graph = filterComplex(arguments);
+
+        assertEquals(2, command.getSprites().size());
+        StickerSprite spin = command.getSprites().get(0);
+        assertTrue(spin.isSequence());
+        assertTrue(spin.getPath().startsWith("/cache/scratch/sticker_"));
+        assertTrue(spin.getPath().endsWith("_%02d.png"));
+        assertTrue(arguments.contains(spin.getPath()));
+        assertFalse(command.getSprites().get(1).isSequence());
+
+        // Sprites are composited at their rendered size, only inside their window
+        assertFalse(graph.contains("rotate="));
+        assertTrue(graph.contains("enable=between(t\\,2\\,4)"));
+        assertTrue(graph.contains("eval=init"));
+        assertTrue(graph.contains("fade=t=in:st=0:d=0.5:alpha=1"));
+        assertTrue(graph.contains("fade=t=out:st=7.5:d=0.5:alpha=1"));
+    }
+
+    @Test
+    public void stickers_withoutScratchPath_compositeStills() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 10, 0));
+        StickerOverlay tilted = new StickerOverlay("/sdcard/star.png", 2, 4);
+        tilted.setRotation(90);
+        tilted.setAnimation("rotate");
+        project.addStickerOverlay(tilted);
+
+        ExportCommand command = FilterGraphCompiler.compile(project, settings());
+        List<String> arguments = command.toArguments();
+        String graph = filterComplex(arguments);
+
+        // No sprite to render; the image is scaled and rotated in the graph
+        assertTrue(command.getSprites().isEmpty());
+        assertTrue(arguments.contains("/sdcard/star.png"));
+        assertTrue(graph.contains("scale=w=480:h=-1"));
+        assertTrue(graph.contains("rotate=a=1.570796"));
+        assertTrue(graph.contains("enable=between(t\\,2\\,4)"));
+    }
+
+    @Test
+    public void proxies_areNeverExported() {
+        Project project = new Project();
+        VideoClip clip = new VideoClip("/sdcard/a.mp4", 0, 10, 0);
+        clip.setProxyPath("/proxies/a.mp4");
+        project.addVideoClip(clip);
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings()).toArguments();
+
+        assertEquals("/proxies/a.mp4", clip.getPreviewPath());
+        assertTrue(arguments.contains("/sdcard/a.mp4"));
+        assertFalse(arguments.contains("/proxies/a.mp4"));
+        assertEquals("/proxies/a.mp4", clip.splitAt(5).getProxyPath());
+    }
+
+    @Test
+    public void audioStem_mixesTimelineAudioOnce() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 5, 0));
+        VideoClip fast = new VideoClip("/sdcard/b.mp4", 0, 8, 5);
+        fast.setSpeed(2.0f);
+        project.addVideoClip(fast);
+        Transition transition = new Transition("Fade", "fade", 1.0);
+        transition.setPosition(0);
+        project.addTransition(transition);
+        AudioClip music = new AudioClip("/sdcard/music.mp3", 0, 30, 2);
+        project.addAudioClip(music);
+
+        ExportCommand stem = FilterGraphCompiler.compileAudioStem(project, settings());
+        List<String> arguments = stem.toArguments();
+        String graph = filterComplex(arguments);
+
+        assertTrue(graph.contains("acrossfade=d=1"));
+        assertTrue(graph.contains("atempo=tempo=2"));
+        assertTrue(graph.contains("adelay=delays=2000:all=1"));
+        assertTrue(graph.contains("atrim=duration=8"));
+        assertFalse(graph.contains("xfade"));
+        assertTrue(arguments.containsAll(Arrays.asList("-c:a", "aac")));
+
+        // Video-only edits leave the stem command, and so its cache key, unchanged
+        project.addTextOverlay(new TextOverlay("Title", "Roboto", 0xFFFFFFFF, 0, 2));
+        assertEquals(arguments, FilterGraphCompiler.compileAudioStem(project, settings()).toArguments());
+    }
+
+    @Test
+    public void audioStem_isStreamCopiedIntoOutputs() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 5, 0));
+        ExportSettings hd = settings();
+        hd.setResolution(720);
+        ExportSettings fullHd = settings();
+        fullHd.setOutputFilename("export_1080.mp4");
+
+        List<String> renditions = FilterGraphCompiler.compileRenditions(project, Arrays.asList(hd, fullHd),
+                "/cache/stem.mp4").toArguments();
+        List<String> stitch = FilterGraphCompiler.compileStitch("/tmp/segments.txt", "/cache/stem.mp4",
+                project, settings()).toArguments();
+
+        assertFalse(filterComplex(renditions).contains("[0:a]"));
+        assertEquals(2, countOf(renditions, "1:a"));
+        assertEquals(2, countOf(renditions, "copy"));
+        assertEquals(Arrays.asList("-f", "concat", "-safe", "0", "-i", "/tmp/segments.txt",
+                "-i", "/cache/stem.mp4", "-map", "0:v", "-map", "1:a", "-c", "copy"), stitch.subList(0, 14));
+    }
+
+    @Test
+    public void gif_palettesInOneDecodePass() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 4, 0));
+        ExportSettings settings = settings();
+        settings.setFormat("gif");
+        settings.setOutputFilename("export.gif");
+
+        List<String> arguments = FilterGraphCompiler.compile(project, settings).toArguments();
+        String graph = filterComplex(arguments);
+
+        assertEquals(1, countOf(arguments, "-i"));
+        assertTrue(graph.contains("fps=fps=15,scale=w=480:h=-2:flags=lanczos,mpdecimate,split=2"));
+        assertTrue(graph.contains("palettegen=stats_mode=diff"));
+        assertTrue(graph.contains("paletteuse=dither=bayer"));
+        assertFalse(graph.contains("[0:a]"));
+        assertTrue(arguments.contains("-an"));
+        assertFalse(arguments.contains("libx264"));
+        assertEquals(Arrays.asList("-loop", "0"), arguments.subList(arguments.indexOf("-loop"),
+                arguments.indexOf("-loop") + 2));
+    }
+
+    private static int countOf(List<String> arguments, String argument) {
+        int count = 0;
+        for (String value : arguments) {
+            if (value.equals(argument)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
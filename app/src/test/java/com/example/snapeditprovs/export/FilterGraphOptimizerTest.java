@@ -0,0 +1,64 @@
+package com.example.snapeditprovs.export;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that optimizer passes keep the result of the graph unchanged
+ */
+public class FilterGraphOptimizerTest {
+
+    private static String optimize(FilterGraph graph, FilterGraph.Pad output) {
+        List<FilterGraph.Pad> outputs = new ArrayList<>(Collections.singletonList(output));
+        FilterGraphOptimizer.optimize(graph, outputs);
+        return graph.toFilterComplex(outputs);
+    }
+
+    @Test
+    public void eq_fusesOptionsEqAppliesInChainOrder() {
+        FilterGraph graph = new FilterGraph();
+        FilterGraph.Pad pad = FilterGraph.source(0, FilterGraph.MediaType.VIDEO);
+        pad = graph.chain(pad, "eq", "contrast", "1.5");
+        pad = graph.chain(pad, "eq", "saturation", "1.2");
+        pad = graph.chain(pad, "eq", "brightness", "0.1");
+        pad = graph.chain(pad, "eq", "gamma", "0.8");
+
+        String filterComplex = optimize(graph, pad);
+
+        assertEquals(1, graph.getNodes().size());
+        assertTrue(filterComplex.contains("eq=contrast=1.5:saturation=1.2:brightness=0.1:gamma=0.8"));
+    }
+
+    @Test
+    public void eq_keepsNodesEqWouldApplyInAnotherOrder() {
+        // Brightness before contrast: one eq node would scale the brightness offset too
+        FilterGraph graph = new FilterGraph();
+        FilterGraph.Pad pad = FilterGraph.source(0, FilterGraph.MediaType.VIDEO);
+        pad = graph.chain(pad, "eq", "brightness", "0.1");
+        pad = graph.chain(pad, "eq", "contrast", "1.5");
+        pad = graph.chain(pad, "eq", "saturation", "1.2");
+        pad = graph.chain(pad, "eq", "gamma", "0.8");
+
+        String filterComplex = optimize(graph, pad);
+
+        assertEquals(2, graph.getNodes().size());
+        assertTrue(filterComplex.contains("eq=brightness=0.1,eq=contrast=1.5:saturation=1.2:gamma=0.8"));
+    }
+
+    @Test
+    public void eq_gammaBeforeContrastStaysSeparate() {
+        FilterGraph graph = new FilterGraph();
+        FilterGraph.Pad pad = FilterGraph.source(0, FilterGraph.MediaType.VIDEO);
+        pad = graph.chain(pad, "eq", "gamma", "0.8");
+        pad = graph.chain(pad, "eq", "contrast", "1.5");
+
+        optimize(graph, pad);
+
+        assertEquals(2, graph.getNodes().size());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.snapeditprovs.export;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the filter graph IR is written out as FFmpeg arguments
+ */
+public class FilterGraphTest {
+
+    @Test
+    public void filterComplex_chainsSingleUseLinksAndLabelsSharedOnes() {
+        FilterGraph graph = new FilterGraph();
+        FilterGraph.Pad video = FilterGraph.source(0, FilterGraph.MediaType.VIDEO);
+        video = graph.chain(video, "scale", "w", 1280, "h", 720);
+        video = graph.chain(video, "fps", "fps", 30);
+        FilterGraph.Node split = graph.add("split").arg(2).input(video);
+        FilterGraph.Pad first = graph.output(split, FilterGraph.MediaType.VIDEO);
+        FilterGraph.Pad second = graph.output(split, FilterGraph.MediaType.VIDEO);
+        FilterGraph.Pad small = graph.chain(second, "scale", "w", 320, "h", -2);
+
+        String filterComplex = graph.toFilterComplex(Arrays.asList(first, small));
+
+        assertEquals("[0:v]scale=w=1280:h=720,fps=fps=30,split=2[v2][v3];[v3]scale=w=320:h=-2[v4]", filterComplex);
+        assertEquals(split, graph.producerOf(second));
+        assertEquals(1, graph.consumerCount(second));
+        assertNull(graph.producerOf(FilterGraph.source(0, FilterGraph.MediaType.VIDEO)));
+    }
+
+    @Test
+    public void escape_quotesOptionSyntaxAndEscapesGraphSyntax() {
+        assertEquals("plain", FilterGraph.escape("plain"));
+        assertEquals("between(t\\,2\\,4)", FilterGraph.escape("between(t,2,4)"));
+        assertEquals("\\'/sdcard/a:b.ass\\'", FilterGraph.escape("/sdcard/a:b.ass"));
+    }
+
+    @Test
+    public void arguments_orderInputsGraphMapsAndOutput() {
+        ExportCommand command = new ExportCommand();
+        int input = command.addInput("/sdcard/a.mp4", "-ss", "2");
+        FilterGraph.Pad video = command.getGraph().chain(
+                FilterGraph.source(input, FilterGraph.MediaType.VIDEO), "hflip");
+        command.addMap(video);
+        command.addMap(FilterGraph.source(input, FilterGraph.MediaType.AUDIO));
+        command.addOutputOptions("-c:v", "libx264");
+        command.setOutputPath("/out/a.mp4");
+
+        List<String> arguments = command.toArguments();
+
+        assertEquals(Arrays.asList("-ss", "2", "-i", "/sdcard/a.mp4",
+                "-filter_complex", "[0:v]hflip[v0]",
+                "-map", "[v0]", "-map", "0:a",
+                "-c:v", "libx264", "-y", "/out/a.mp4"), arguments);
+        assertEquals(Collections.singletonList(Arrays.asList("-ss", "2", "-i", "/sdcard/a.mp4")), command.getInputs());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.snapeditprovs.export;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks keyframe lookups and the stored index format
+ */
+public class KeyframeIndexTest {
+
+    @Test
+    public void keyframeIndex_findsSurroundingKeyframesAndSurvivesRoundTrip() throws Exception {
+        KeyframeIndex index = new KeyframeIndex(new long[] {4_000_000, 0, 2_000_000});
+
+        assertEquals(2.0, index.keyframeAtOrBefore(3.9), 1e-9);
+        assertEquals(4.0, index.keyframeAtOrAfter(2.000001), 1e-9);
+        assertEquals(2.0, index.keyframeAtOrBefore(2.0), 1e-9);
+        assertTrue(Double.isNaN(index.keyframeAtOrAfter(4.5)));
+        assertEquals(4.0, index.nearestKeyframe(3.1), 1e-9);
+        assertEquals(2.0, index.getAverageInterval(), 1e-9);
+
+        File file = File.createTempFile("keyframes", ".kfi");
+        try {
+            assertTrue(index.write(file));
+            assertEquals(8 + 3 * 8, file.length());
+            KeyframeIndex read = KeyframeIndex.read(file);
+            assertArrayEquals(index.getTimesUs(), read.getTimesUs());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.ExportSettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks cache keys and the lifecycle of cached pieces
+ */
+public class RenderCacheTest {
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("render_cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static ExportCommand copyCommand(String outputFilename, double end) {
+        ExportSettings settings = new ExportSettings();
+        settings.setOutputPath("/out");
+        settings.setOutputFilename(outputFilename);
+        return FilterGraphCompiler.compileStreamCopy("/sdcard/a.mp4", 0, end, settings);
+    }
+
+    private static void write(File file, int bytes) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            for (int i = 0; i < bytes; i++) {
+                writer.write('x');
+            }
+        }
+    }
+
+    @Test
+    public void fingerprint_ignoresOutputPathOnly() {
+        assertEquals(RenderCache.fingerprint(copyCommand("a.ts", 2)), RenderCache.fingerprint(copyCommand("b.ts", 2)));
+        assertNotEquals(RenderCache.fingerprint(copyCommand("a.ts", 2)), RenderCache.fingerprint(copyCommand("a.ts", 3)));
+    }
+
+    @Test
+    public void commit_publishesPendingFile() throws IOException {
+        RenderCache cache = new RenderCache(directory, Long.MAX_VALUE);
+
+        assertNull(cache.get("key", ".ts"));
+        File pending = cache.getPendingFile("key", ".ts");
+        assertTrue(pending.getName().endsWith(".ts"));
+        write(pending, 10);
+
+        File committed = cache.commit("key", ".ts");
+        assertNotNull(committed);
+        assertFalse(pending.exists());
+        assertEquals(committed, cache.get("key", ".ts"));
+        assertNull(cache.get("key"));
+        assertNull(cache.commit("missing", ".ts"));
+
+        write(cache.getPendingFile("failed", ".ts"), 10);
+        cache.discard("failed", ".ts");
+        assertFalse(cache.getPendingFile("failed", ".ts").exists());
+    }
+
+    @Test
+    public void trimToSize_evictsLeastRecentlyUsed() throws IOException {
+        RenderCache cache = new RenderCache(directory, 25);
+        long now = System.currentTimeMillis();
+        String[] keys = {"old", "used", "new"};
+        for (int i = 0; i < keys.length; i++) {
+            write(cache.getPendingFile(keys[i]), 10);
+            cache.commit(keys[i]).setLastModified(now - (3 - i) * 60_000L);
+        }
+        // A lookup marks the oldest entry as recently used
+        cache.get("old");
+
+        cache.trimToSize();
+
+        assertNotNull(cache.get("old"));
+        assertNull(cache.get("used"));
+        assertNotNull(cache.get("new"));
+    }
+
+    @Test
+    public void trimToSize_keepsPendingFilesOfRunningRenders() throws IOException {
+        RenderCache cache = new RenderCache(directory, 0);
+        File running = cache.getPendingFile("running", ".ts");
+        File abandoned = cache.getPendingFile("abandoned", ".ts");
+        write(running, 10);
+        write(abandoned, 10);
+        abandoned.setLastModified(System.currentTimeMillis() - RenderCache.STALE_PENDING_MS - 60_000L);
+
+        cache.trimToSize();
+
+        assertTrue(running.exists());
+        assertFalse(abandoned.exists());
+        assertNotNull(cache.commit("running", ".ts"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.TextOverlay;
+import com.example.snapeditprovs.models.Transition;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how a timeline is cut into independently rendered segments
+ */
+public class SegmentPlannerTest {
+
+    @Test
+    public void transitions_renderOnlyWindowsTogether() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 10, 15, 0));
+        project.addVideoClip(new VideoClip("/sdcard/b.mp4", 20, 25, 5));
+        Transition transition = new Transition("Fade", "fade", 1.0);
+        transition.setPosition(0);
+        project.addTransition(transition);
+
+        List<ExportSegment> segments = SegmentPlanner.plan(project);
+
+        assertEquals(3, segments.size());
+        Project window = segments.get(1).toProject(project);
+        assertEquals(14.0, window.getVideoClips().get(0).getStartTime(), 1e-9);
+        assertEquals(21.0, window.getVideoClips().get(1).getEndTime(), 1e-9);
+        assertEquals(1.0, segments.get(1).getOutputDuration(), 1e-9);
+        assertEquals(21.0, segments.get(2).toProject(project).getVideoClips().get(0).getStartTime(), 1e-9);
+        assertEquals(9.0, SegmentPlanner.getOutputDuration(segments), 1e-9);
+    }
+
+    @Test
+    public void hardCuts_segmentsAreContiguousClips() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 30, 34, 0));
+        VideoClip fast = new VideoClip("/sdcard/b.mp4", 0, 6, 4);
+        fast.setSpeed(2.0f);
+        project.addVideoClip(fast);
+
+        List<ExportSegment> segments = SegmentPlanner.plan(project);
+
+        assertEquals(2, segments.size());
+        assertEquals(0.0, segments.get(0).getOutputStart(), 1e-9);
+        assertEquals(segments.get(0).getOutputEnd(), segments.get(1).getOutputStart(), 1e-9);
+        assertEquals(3.0, segments.get(1).getOutputDuration(), 1e-9);
+        // An untrimmed clip keeps its source range
+        VideoClip body = segments.get(1).toProject(project).getVideoClips().get(0);
+        assertEquals(0.0, body.getStartTime(), 1e-9);
+        assertEquals(6.0, body.getEndTime(), 1e-9);
+        assertEquals(7.0, SegmentPlanner.getOutputDuration(segments), 1e-9);
+    }
+
+    @Test
+    public void overlappingTransitions_areShortenedAndEmptyBodiesDropped() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 4, 0));
+        project.addVideoClip(new VideoClip("/sdcard/b.mp4", 0, 2, 4));
+        project.addVideoClip(new VideoClip("/sdcard/c.mp4", 0, 4, 6));
+        for (int position = 0; position < 2; position++) {
+            Transition transition = new Transition("Fade", "fade", 1.5);
+            transition.setPosition(position);
+            project.addTransition(transition);
+        }
+
+        List<ExportSegment> segments = SegmentPlanner.plan(project);
+
+        // b is all transition: 1.5 s into the first, the 0.5 s left into the second
+        assertEquals(4, segments.size());
+        assertEquals(2.5, segments.get(0).getOutputDuration(), 1e-9);
+        assertEquals(1.5, segments.get(1).getOutputDuration(), 1e-9);
+        assertEquals(0.5, segments.get(2).getOutputDuration(), 1e-9);
+        assertEquals(3.5, segments.get(3).getOutputDuration(), 1e-9);
+        for (int i = 1; i < segments.size(); i++) {
+            assertEquals(segments.get(i - 1).getOutputEnd(), segments.get(i).getOutputStart(), 1e-9);
+        }
+        assertEquals(8.0, SegmentPlanner.getOutputDuration(segments), 1e-9);
+        assertEquals(FilterGraphCompiler.getOutputDuration(project), SegmentPlanner.getOutputDuration(segments), 1e-9);
+
+        Project second = segments.get(2).toProject(project);
+        assertEquals(1, second.getTransitions().size());
+        assertEquals(0, second.getTransitions().get(0).getPosition());
+        assertEquals(1.5, second.getVideoClips().get(0).getStartTime(), 1e-9);
+        assertEquals(2.0, second.getVideoClips().get(0).getEndTime(), 1e-9);
+        assertEquals(0.5, second.getVideoClips().get(1).getEndTime(), 1e-9);
+    }
+
+    @Test
+    public void window_takesPlayedEndOfReversedClip() {
+        Project project = new Project();
+        VideoClip reversed = new VideoClip("/sdcard/a.mp4", 10, 20, 0);
+        reversed.setSpeed(2.0f);
+        reversed.setReversed(true);
+        project.addVideoClip(reversed);
+        project.addVideoClip(new VideoClip("/sdcard/b.mp4", 0, 4, 5));
+        Transition transition = new Transition("Fade", "fade", 1.0);
+        transition.setPosition(0);
+        project.addTransition(transition);
+
+        List<ExportSegment> segments = SegmentPlanner.plan(project);
+
+        // The last output second of a reversed clip is the start of its source range
+        VideoClip head = segments.get(0).toProject(project).getVideoClips().get(0);
+        VideoClip window = segments.get(1).toProject(project).getVideoClips().get(0);
+        assertEquals(12.0, head.getStartTime(), 1e-9);
+        assertEquals(20.0, head.getEndTime(), 1e-9);
+        assertEquals(10.0, window.getStartTime(), 1e-9);
+        assertEquals(12.0, window.getEndTime(), 1e-9);
+    }
+
+    @Test
+    public void overlayAcrossBoundary_isShiftedIntoBothSegments() {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", 0, 5, 0));
+        project.addVideoClip(new VideoClip("/sdcard/b.mp4", 0, 5, 5));
+        project.addTextOverlay(new TextOverlay("Title", "Roboto", 0xFFFFFFFF, 4, 6));
+        project.addTextOverlay(new TextOverlay("Ends at cut", "Roboto", 0xFFFFFFFF, 1, 5));
+
+        List<ExportSegment> segments = SegmentPlanner.plan(project);
+        Project first = segments.get(0).toProject(project);
+        Project second = segments.get(1).toProject(project);
+
+        assertEquals(2, first.getTextOverlays().size());
+        assertEquals(1, second.getTextOverlays().size());
+        assertEquals(-1.0, second.getTextOverlays().get(0).getStartTime(), 1e-9);
+        assertEquals(1.0, second.getTextOverlays().get(0).getEndTime(), 1e-9);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.snapeditprovs.export;
+
+import com.arthenica.mobileffmpeg.Config;
+import com.arthenica.mobileffmpeg.ExecuteCallback;
+import com.arthenica.mobileffmpeg.StatisticsCallback;
+import com.example.snapeditprovs.models.ExportSettings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which pieces are rendered, which files the concat list joins, and
+ * that a failure or cancel stops the jobs of an export
+ */
+public class SegmentedExporterTest {
+    private File directory;
+    private RenderCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("segments").toFile();
+        cache = new RenderCache(new File(directory, "cache"), Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(directory);
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private SegmentedExporter.RenderJob job(int index, double start, double end) {
+        ExportSettings settings = new ExportSettings();
+        settings.setOutputPath(directory.getAbsolutePath());
+        settings.setOutputFilename("segment_" + index + ".ts");
+        ExportCommand command = FilterGraphCompiler.compileStreamCopy("/sdcard/a.mp4", start, end, settings);
+        return new SegmentedExporter.RenderJob(index, command, end - start, cache);
+    }
+
+    /**
+     * Stand in for a successful FFmpeg session: write the output and commit it
+     */
+    private void render(SegmentedExporter.RenderJob job) throws IOException {
+        try (Writer writer = new FileWriter(job.output)) {
+            writer.write("piece " + job.index);
+        }
+        assertNotNull(cache.commit(job.key, ".ts"));
+    }
+
+    /**
+     * Stand in for FFmpeg: runs finish when told to, or when cancelled
+     */
+    private class FakeRunner implements SegmentedExporter.Runner {
+        final List<String> started = new ArrayList<>();
+        final List<Long> cancelled = new ArrayList<>();
+        private final Map<Long, ExecuteCallback> running = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger(1);
+        // Return code runs finish with at once, or null to keep them running
+        volatile Integer immediateResult;
+
+        @Override
+        public synchronized long executeAsync(String[] arguments, StatisticsCallback listener,
+                                              ExecuteCallback callback, ExecutorService executor) {
+            long id = nextId.getAndIncrement();
+            String output = arguments[arguments.length - 1];
+            started.add(output);
+            Integer result = immediateResult;
+            if (result == null) {
+                running.put(id, callback);
+            } else {
+                executor.execute(() -> {
+                    if (result == Config.RETURN_CODE_SUCCESS) {
+                        write(new File(output));
+                    }
+                    callback.apply(id, result);
+                });
+            }
+            return id;
+        }
+
+        @Override
+        public synchronized void cancel(long executionId) {
+            cancelled.add(executionId);
+            ExecuteCallback callback = running.remove(executionId);
+            if (callback != null) {
+                callback.apply(executionId, Config.RETURN_CODE_CANCEL);
+            }
+        }
+
+        synchronized int startedCount() {
+            return started.size();
+        }
+    }
+
+    private static void write(File file) {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(file.getName());
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private SegmentedExporter exporter(int parallelism, SegmentedExporter.Runner runner) {
+        return new SegmentedExporter(new File(directory, "work"), parallelism, null, cache, null, runner);
+    }
+
+    @Test
+    public void renderJobs_rendersOnlyPiecesMissingFromTheCache() throws IOException {
+        render(job(0, 0, 2));
+        List<SegmentedExporter.RenderJob> jobs = Arrays.asList(job(0, 0, 2), job(1, 2, 4), job(2, 2, 4));
+        SegmentedExporter.markDuplicates(jobs);
+        FakeRunner runner = new FakeRunner();
+        runner.immediateResult = Config.RETURN_CODE_SUCCESS;
+
+        int returnCode = exporter(2, runner).renderJobs(jobs);
+
+        assertEquals(Config.RETURN_CODE_SUCCESS, returnCode);
+        assertEquals(Arrays.asList(jobs.get(1).output.getAbsolutePath()), runner.started);
+        assertNotNull(SegmentedExporter.getSegmentFiles(jobs, cache));
+    }
+
+    @Test
+    public void renderJobs_failureSkipsTheRemainingJobs() {
+        List<SegmentedExporter.RenderJob> jobs = Arrays.asList(job(0, 0, 2), job(1, 2, 4), job(2, 4, 6));
+        FakeRunner runner = new FakeRunner();
+        runner.immediateResult = 1;
+
+        int returnCode = exporter(1, runner).renderJobs(jobs);
+
+        assertEquals(1, returnCode);
+        assertEquals(1, runner.startedCount());
+        // The failed piece is not committed
+        assertNull(cache.get(jobs.get(0).key, ".ts"));
+    }
+
+    @Test
+    public void cancel_stopsTheRunningJobAndSkipsTheRest() throws InterruptedException {
+        List<SegmentedExporter.RenderJob> jobs = Arrays.asList(job(0, 0, 2), job(1, 2, 4), job(2, 4, 6));
+        FakeRunner runner = new FakeRunner();
+        SegmentedExporter exporter = exporter(1, runner);
+        AtomicInteger result = new AtomicInteger(Config.RETURN_CODE_SUCCESS);
+        Thread thread = new Thread(() -> result.set(exporter.renderJobs(jobs)));
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (runner.startedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        exporter.cancel();
+        thread.join(5000);
+
+        assertFalse(thread.isAlive());
+        assertEquals(Config.RETURN_CODE_CANCEL, result.get());
+        assertEquals(1, runner.startedCount());
+        assertEquals(Arrays.asList(1L), runner.cancelled);
+    }
+
+    @Test
+    public void concatList_pointsAtCommittedPieces() throws IOException {
+        List<SegmentedExporter.RenderJob> jobs = Arrays.asList(job(0, 0, 2), job(1, 2, 4), job(2, 0, 2));
+        SegmentedExporter.markDuplicates(jobs);
+
+        // The repeated range is rendered once
+        assertTrue(jobs.get(0).needsRender());
+        assertTrue(jobs.get(1).needsRender());
+        assertFalse(jobs.get(2).needsRender());
+        for (SegmentedExporter.RenderJob job : jobs) {
+            if (job.needsRender()) {
+                render(job);
+            }
+        }
+
+        List<File> files = SegmentedExporter.getSegmentFiles(jobs, cache);
+        assertNotNull(files);
+        assertEquals(files.get(0), files.get(2));
+        File listFile = new File(directory, "segments.txt");
+        SegmentedExporter.writeConcatList(listFile, files);
+
+        List<String> lines = Files.readAllLines(listFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        for (String line : lines) {
+            File file = new File(line.substring("file '".length(), line.length() - 1));
+            assertTrue(file.exists());
+            assertFalse(file.getName().contains(".pending"));
+        }
+
+        // A later export of the same pieces reuses them without rendering
+        SegmentedExporter.RenderJob again = job(0, 0, 2);
+        assertTrue(again.cached);
+        assertEquals(files.get(0), again.output);
+    }
+
+    @Test
+    public void segmentFiles_missingPieceFailsTheJoin() throws IOException {
+        List<SegmentedExporter.RenderJob> jobs = Arrays.asList(job(0, 0, 2), job(1, 2, 4));
+        SegmentedExporter.markDuplicates(jobs);
+        render(jobs.get(0));
+
+        assertNull(SegmentedExporter.getSegmentFiles(jobs, cache));
+    }
+}
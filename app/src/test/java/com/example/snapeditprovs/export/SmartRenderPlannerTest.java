@@ -0,0 +1,128 @@
+package com.example.snapeditprovs.export;
+
+import com.example.snapeditprovs.models.ExportSettings;
+import com.example.snapeditprovs.models.MediaInfo;
+import com.example.snapeditprovs.models.Project;
+import com.example.snapeditprovs.models.VideoClip;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which segments are smart-rendered and how their clip is split
+ */
+public class SmartRenderPlannerTest {
+
+    private static ExportSettings settings() {
+        ExportSettings settings = new ExportSettings();
+        settings.setOutputPath("/out");
+        settings.setOutputFilename("export.mp4");
+        return settings;
+    }
+
+    private static MediaInfo source() {
+        MediaInfo info = new MediaInfo();
+        info.setVideoCodec("h264");
+        info.setWidth(1920);
+        info.setHeight(1080);
+        info.setFrameRate(30);
+        info.setVideoProfile("High");
+        info.setVideoLevel(41);
+        info.setPixelFormat("yuv420p");
+        info.setAudioCodec("aac");
+        return info;
+    }
+
+    private static SourceInspector inspector(final MediaInfo info) {
+        return new SourceInspector() {
+            @Override
+            public MediaInfo getMediaInfo(String path) {
+                return info;
+            }
+
+            @Override
+            public KeyframeIndex getKeyframeIndex(String path) {
+                // A keyframe every 2 s
+                long[] timesUs = new long[10];
+                for (int i = 0; i < timesUs.length; i++) {
+                    timesUs[i] = i * 2_000_000L;
+                }
+                return new KeyframeIndex(timesUs);
+            }
+        };
+    }
+
+    private static Project clipProject(double start, double end) {
+        Project project = new Project();
+        project.addVideoClip(new VideoClip("/sdcard/a.mp4", start, end, 0));
+        return project;
+    }
+
+    @Test
+    public void plan_copiesBetweenKeyframesAndEncodesPartialGops() {
+        SmartRenderPlanner.Plan plan = SmartRenderPlanner.plan(clipProject(1.5, 9.0), settings(), inspector(source()));
+
+        assertNotNull(plan);
+        assertEquals(2.0, plan.getCopyStart(), 1e-9);
+        assertEquals(8.0, plan.getCopyEnd(), 1e-9);
+        assertTrue(plan.hasHead());
+        assertTrue(plan.hasTail());
+        assertEquals(1.5, plan.toHeadProject().getVideoClips().get(0).getStartTime(), 1e-9);
+        assertEquals(2.0, plan.toHeadProject().getVideoClips().get(0).getEndTime(), 1e-9);
+        assertEquals(8.0, plan.toTailProject().getVideoClips().get(0).getStartTime(), 1e-9);
+
+        ExportSettings partSettings = plan.toPartSettings(settings());
+        assertEquals("high", partSettings.getVideoProfile());
+        assertEquals("4.1", partSettings.getVideoLevel());
+    }
+
+    @Test
+    public void plan_skipsPartsShorterThanAFrame() {
+        SmartRenderPlanner.Plan plan = SmartRenderPlanner.plan(clipProject(2.0, 8.01), settings(), inspector(source()));
+
+        assertNotNull(plan);
+        assertFalse(plan.hasHead());
+        assertFalse(plan.hasTail());
+    }
+
+    @Test
+    public void plan_rejectsShortCopiesAndEditedClips() {
+        assertNull(SmartRenderPlanner.plan(clipProject(2.5, 5.5), settings(), inspector(source())));
+
+        Project project = clipProject(0, 8);
+        project.getVideoClips().get(0).setSpeed(2.0f);
+        assertNull(SmartRenderPlanner.plan(project, settings(), inspector(source())));
+    }
+
+    @Test
+    public void plan_rejectsSourcesTheOutputCannotContinue() {
+        MediaInfo tenBit = source();
+        tenBit.setPixelFormat("yuv420p10le");
+        assertNull(SmartRenderPlanner.plan(clipProject(0, 8), settings(), inspector(tenBit)));
+
+        MediaInfo high10 = source();
+        high10.setVideoProfile("High 10");
+        assertNull(SmartRenderPlanner.plan(clipProject(0, 8), settings(), inspector(high10)));
+
+        MediaInfo rotated = source();
+        rotated.setRotation(90);
+        assertNull(SmartRenderPlanner.plan(clipProject(0, 8), settings(), inspector(rotated)));
+
+        MediaInfo silent = source();
+        silent.setAudioCodec(null);
+        assertNull(SmartRenderPlanner.plan(clipProject(0, 8), settings(), inspector(silent)));
+        ExportSettings videoOnly = settings();
+        videoOnly.setIncludeAudio(false);
+        assertNotNull(SmartRenderPlanner.plan(clipProject(0, 8), videoOnly, inspector(silent)));
+    }
+
+    @Test
+    public void encoderProfileAndLevel_mapFfprobeNames() {
+        assertEquals("baseline", SmartRenderPlanner.getEncoderProfile("Constrained Baseline"));
+        assertEquals("main", SmartRenderPlanner.getEncoderProfile("Main"));
+        assertNull(SmartRenderPlanner.getEncoderProfile("High 4:2:2"));
+        assertEquals("3.0", SmartRenderPlanner.getEncoderLevel(30));
+        assertNull(SmartRenderPlanner.getEncoderLevel(0));
+    }
+}
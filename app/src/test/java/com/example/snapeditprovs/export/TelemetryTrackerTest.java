@@ -0,0 +1,54 @@
+package com.example.snapeditprovs.export;
+
+import com.arthenica.mobileffmpeg.Statistics;
+import com.example.snapeditprovs.models.ExportTelemetry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how statistics of several sessions add up to the progress of one export
+ */
+public class TelemetryTrackerTest {
+
+    private static Statistics statistics(int timeMs, int frames, long size) {
+        return new Statistics(1, frames, 30, 23, size, timeMs, 0, 1);
+    }
+
+    @Test
+    public void progress_sumsSessionsAndReservesStitchShare() {
+        List<ExportTelemetry> emitted = new ArrayList<>();
+        TelemetryTracker tracker = new TelemetryTracker(3, 10, 5, emitted::add);
+
+        tracker.onReused(0, 2);
+        tracker.onStatistics(1, statistics(3000, 90, 1_000_000), 4);
+        // A session's time is clamped to its own duration
+        tracker.onStatistics(2, statistics(9000, 120, 500_000), 4);
+
+        ExportTelemetry telemetry = tracker.getTelemetry();
+        assertEquals(9.0, telemetry.getEncodedSeconds(), 1e-9);
+        assertEquals(85, telemetry.getPercent());
+        assertEquals(1_500_000, telemetry.getSizeBytes());
+        // Reused output counts for progress, not for the bitrate of what was rendered
+        assertEquals(1_500_000 * 8 / 1000.0 / 7, telemetry.getBitrateKbps(), 1e-6);
+        assertEquals(1, emitted.size());
+
+        tracker.finish();
+        ExportTelemetry last = emitted.get(emitted.size() - 1);
+        assertEquals(100, last.getPercent());
+        assertEquals(0, last.getEtaMs());
+    }
+
+    @Test
+    public void progress_neverPassesTheReservedShare() {
+        TelemetryTracker tracker = new TelemetryTracker(1, 4, 5, telemetry -> { });
+
+        tracker.onReused(0, 4);
+
+        assertEquals(95, tracker.getTelemetry().getPercent());
+    }
+}
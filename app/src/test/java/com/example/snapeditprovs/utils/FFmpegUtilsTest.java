@@ -0,0 +1,114 @@
+package com.example.snapeditprovs.utils;
+
+import com.example.snapeditprovs.export.KeyframeIndex;
+import com.example.snapeditprovs.models.MediaInfo;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the FFmpeg runs planned for editing proxies and for fast and exact cuts
+ */
+public class FFmpegUtilsTest {
+    private static final File WORK_DIR = new File("/cache/cut");
+
+    private static MediaInfo source() {
+        MediaInfo info = new MediaInfo();
+        info.setVideoCodec("h264");
+        info.setFrameRate(30);
+        info.setVideoProfile("Main");
+        info.setVideoLevel(40);
+        info.setPixelFormat("yuv420p");
+        info.setAudioCodec("aac");
+        return info;
+    }
+
+    private static KeyframeIndex keyframes() {
+        return new KeyframeIndex(new long[] {0, 2_000_000, 4_000_000, 6_000_000});
+    }
+
+    private static String valueOf(String[] arguments, String option) {
+        List<String> list = Arrays.asList(arguments);
+        int index = list.indexOf(option);
+        return index >= 0 ? list.get(index + 1) : null;
+    }
+
+    @Test
+    public void proxy_isShortGopH264WithoutBFrames() {
+        String[] arguments = FFmpegUtils.generateProxyArguments("/in.mov", "/proxies/in.proxy");
+
+        assertEquals("/in.mov", valueOf(arguments, "-i"));
+        assertEquals("libx264", valueOf(arguments, "-c:v"));
+        assertEquals("15", valueOf(arguments, "-g"));
+        assertEquals("0", valueOf(arguments, "-bf"));
+        assertEquals("scale=-2:min(540\\,ih)", valueOf(arguments, "-vf"));
+        // Written as MP4 whatever the proxy's extension
+        assertEquals("mp4", valueOf(arguments, "-f"));
+        assertEquals("/proxies/in.proxy", arguments[arguments.length - 1]);
+    }
+
+    @Test
+    public void fastCut_copiesFromNearestKeyframe() {
+        List<String[]> commands = FFmpegUtils.getCutArguments("/in.mp4", "/out.mp4", 2.9, 5.5,
+                FFmpegUtils.CutMode.FAST, source(), keyframes(), WORK_DIR);
+
+        assertEquals(1, commands.size());
+        String[] arguments = commands.get(0);
+        // The input is seeked, so only the range is read
+        assertEquals("-ss", arguments[0]);
+        assertEquals("2.000000", valueOf(arguments, "-ss"));
+        assertEquals("3.500000", valueOf(arguments, "-t"));
+        assertEquals("copy", valueOf(arguments, "-c:v"));
+        assertNull(valueOf(arguments, "-bsf:v"));
+    }
+
+    @Test
+    public void exactCut_encodesHeadLikeTheSourceAndJoinsTransportStreams() {
+        List<String[]> commands = FFmpegUtils.getCutArguments("/in.mp4", "/out.mp4", 1.5, 5.5,
+                FFmpegUtils.CutMode.EXACT, source(), keyframes(), WORK_DIR);
+
+        assertEquals(3, commands.size());
+        String[] head = commands.get(0);
+        assertEquals("1.500000", valueOf(head, "-ss"));
+        assertEquals("0.500000", valueOf(head, "-t"));
+        assertEquals("libx264", valueOf(head, "-c:v"));
+        assertEquals("main", valueOf(head, "-profile:v"));
+        assertEquals("4.0", valueOf(head, "-level"));
+        assertEquals("yuv420p", valueOf(head, "-pix_fmt"));
+        assertTrue(head[head.length - 1].endsWith(".ts"));
+
+        String[] rest = commands.get(1);
+        assertEquals("2.000000", valueOf(rest, "-ss"));
+        assertEquals("copy", valueOf(rest, "-c:v"));
+        assertEquals("h264_mp4toannexb", valueOf(rest, "-bsf:v"));
+        assertEquals("aac", valueOf(rest, "-c:a"));
+
+        String[] join = commands.get(2);
+        assertEquals("concat", valueOf(join, "-f"));
+        assertEquals("aac_adtstoasc", valueOf(join, "-bsf:a"));
+        assertEquals("/out.mp4", join[join.length - 1]);
+    }
+
+    @Test
+    public void exactCut_reencodesSourcesItCannotContinue() {
+        MediaInfo tenBit = source();
+        tenBit.setPixelFormat("yuv420p10le");
+        List<String[]> commands = FFmpegUtils.getCutArguments("/in.mp4", "/out.mp4", 1.5, 5.5,
+                FFmpegUtils.CutMode.EXACT, tenBit, keyframes(), WORK_DIR);
+
+        assertEquals(1, commands.size());
+        assertEquals("libx264", valueOf(commands.get(0), "-c:v"));
+        assertEquals("4.000000", valueOf(commands.get(0), "-t"));
+
+        // Starting on a keyframe needs no head
+        commands = FFmpegUtils.getCutArguments("/in.mp4", "/out.mp4", 2.0, 5.5,
+                FFmpegUtils.CutMode.EXACT, source(), keyframes(), WORK_DIR);
+        assertEquals(1, commands.size());
+        assertEquals("copy", valueOf(commands.get(0), "-c:v"));
+    }
+}